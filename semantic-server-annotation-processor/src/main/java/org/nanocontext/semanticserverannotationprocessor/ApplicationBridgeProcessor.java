@@ -0,0 +1,349 @@
+package org.nanocontext.semanticserverannotationprocessor;
+
+import org.nanocontext.semanticserver.semanticserver.semantics.ApplicationSemanticsImpl;
+import org.nanocontext.semanticserver.semanticserver.semantics.VocabularyImpl;
+import org.nanocontext.semanticserverapi.core.semantics.LogicalNameParser;
+import org.nanocontext.semanticserverapi.core.semantics.ModelVocabulary;
+import org.nanocontext.semanticserverapi.core.semantics.ParsedName;
+import org.nanocontext.semanticserverapi.core.semantics.Vocabulary;
+import org.nanocontext.semanticserverapi.core.semantics.exceptions.CoreRouterSemanticsException;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A compile time annotation processor of the processor bridge interfaces that are
+ * annotated with ApplicationBridge.
+ * For each annotated interface this processor:
+ * 1.) validates the name of each method against the action and preposition vocabularies
+ *     and, if the "semanticserver.modelPackages" option is given, validates the subject
+ *     and object against the application model, reporting violations as compile errors
+ * 2.) generates a realization of the interface (see ApplicationBridgeSourceGenerator), including
+ *     a static table of the method names parsed into their semantic parts
+ *
+ * Methods that are annotated with CommandMapping are not validated, the Command is named
+ * explicitly.
+ *
+ * Usage (maven):
+ * add semantic-server-annotation-processor as a "provided" dependency and, optionally,
+ * <compilerArgs><arg>-Asemanticserver.modelPackages=com.acme.model,com.acme.other</arg></compilerArgs>
+ */
+@SupportedAnnotationTypes(ApplicationBridgeProcessor.APPLICATION_BRIDGE_ANNOTATION)
+@SupportedOptions(ApplicationBridgeProcessor.MODEL_PACKAGES_OPTION)
+public class ApplicationBridgeProcessor
+extends AbstractProcessor {
+    static final String APPLICATION_BRIDGE_ANNOTATION =
+            "org.nanocontext.semanticserver.semanticserver.applicationbridge.ApplicationBridge";
+    static final String COMMAND_MAPPING_ANNOTATION =
+            "org.nanocontext.semanticserver.semanticserver.applicationbridge.CommandMapping";
+
+    /** a comma separated list of the packages of the application model classes */
+    public static final String MODEL_PACKAGES_OPTION = "semanticserver.modelPackages";
+
+    private static final String ACTIONS_RESOURCE = "default_actions.csv";
+    private static final String PREPOSITIONS_RESOURCE = "default_prepositions.csv";
+
+    private LogicalNameParser logicalNameParser;
+    private MethodKeys methodKeys;
+
+    @Override
+    public synchronized void init(final ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+        this.methodKeys = new MethodKeys(processingEnv.getTypeUtils(), processingEnv.getElementUtils());
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment roundEnv) {
+        if (annotations.isEmpty()) {
+            return false;
+        }
+
+        try {
+            initializeSemantics();
+        } catch (CoreRouterSemanticsException crsX) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    String.format("Unable to load the application vocabulary, %s", crsX.getMessage()));
+            return false;
+        }
+
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                processBridge(element);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * The vocabularies are the defaults, as created by ApplicationSemanticsImpl.
+     * Only the action and preposition vocabularies are used by the parser, the model
+     * vocabularies are validated against the compiler model, see validateModelName().
+     */
+    private void initializeSemantics()
+            throws CoreRouterSemanticsException {
+        if (logicalNameParser != null) {
+            return;
+        }
+
+        ClassLoader classLoader = VocabularyImpl.class.getClassLoader();
+        Vocabulary actionVocabulary = VocabularyImpl.create(getResource(classLoader, ACTIONS_RESOURCE));
+        Vocabulary prepositionVocabulary = VocabularyImpl.create(getResource(classLoader, PREPOSITIONS_RESOURCE));
+        ModelVocabulary compileTimeModelVocabulary = new ModelVocabulary() {
+            @Override
+            public Class<?> getClass(final String simpleName) {
+                return null;
+            }
+        };
+
+        this.logicalNameParser = new ApplicationSemanticsImpl(
+                classLoader, actionVocabulary, compileTimeModelVocabulary, prepositionVocabulary, compileTimeModelVocabulary
+        ).getLogicalNameParserImpl();
+    }
+
+    private static URL getResource(final ClassLoader classLoader, final String resourceName)
+            throws CoreRouterSemanticsException {
+        URL resource = classLoader.getResource(resourceName);
+        if (resource == null) {
+            throw new CoreRouterSemanticsException(String.format("%s was not found on the processor path", resourceName));
+        }
+        return resource;
+    }
+
+    /**
+     * Validate and, if valid, generate the realization of a single processor bridge.
+     */
+    private void processBridge(final Element element) {
+        if (element.getKind() != ElementKind.INTERFACE) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "A processor bridge must be an interface", element);
+            return;
+        }
+        TypeElement bridgeInterface = (TypeElement) element;
+
+        if (!bridgeInterface.getModifiers().contains(Modifier.PUBLIC)) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "A processor bridge must be a public interface", element);
+            return;
+        }
+        if (!bridgeInterface.getTypeParameters().isEmpty()) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                    "A realization of a generic processor bridge is not generated at build time, it will be generated at runtime",
+                    element);
+            return;
+        }
+
+        boolean valid = true;
+        List<BridgeMethod> bridgeMethods = new ArrayList<>();
+        for (ExecutableElement method : getBridgeMethods(bridgeInterface).values()) {
+            for (TypeMirror thrownType : method.getThrownTypes()) {
+                if (thrownType.getKind() != TypeKind.DECLARED) {
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                            "A realization of a processor bridge with a generic exception is not generated at build time, it will be generated at runtime",
+                            method);
+                    return;
+                }
+            }
+
+            BridgeMethod bridgeMethod = createBridgeMethod(method);
+            if (bridgeMethod == null) {
+                valid = false;
+            } else {
+                bridgeMethods.add(bridgeMethod);
+            }
+        }
+
+        if (valid) {
+            writeSource(bridgeInterface, bridgeMethods);
+        }
+    }
+
+    /**
+     * Collect the abstract methods of the interface and its super-interfaces, keyed and
+     * ordered by the method key.
+     */
+    private Map<String, ExecutableElement> getBridgeMethods(final TypeElement bridgeInterface) {
+        List<ExecutableElement> methods = new ArrayList<>();
+        for (ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(bridgeInterface))) {
+            if (method.getModifiers().contains(Modifier.ABSTRACT)) {
+                methods.add(method);
+            }
+        }
+
+        Collections.sort(methods, new Comparator<ExecutableElement>() {
+            @Override
+            public int compare(final ExecutableElement m1, final ExecutableElement m2) {
+                return methodKeys.getMethodKey(m1).compareTo(methodKeys.getMethodKey(m2));
+            }
+        });
+
+        Map<String, ExecutableElement> result = new LinkedHashMap<>();
+        for (ExecutableElement method : methods) {
+            String key = methodKeys.getMethodKey(method);
+            if (!result.containsKey(key)) {
+                result.put(key, method);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Parse and validate the method name.
+     *
+     * @return the method and its parsed name, or null if the method name is not valid (an error has been reported)
+     */
+    private BridgeMethod createBridgeMethod(final ExecutableElement method) {
+        String methodKey = methodKeys.getMethodKey(method);
+
+        if (isAnnotatedWith(method, COMMAND_MAPPING_ANNOTATION)) {
+            return new BridgeMethod(method, methodKey, null, null, null, null, null);
+        }
+
+        String methodName = method.getSimpleName().toString();
+        ParsedName parsedName;
+        try {
+            parsedName = logicalNameParser.parse(methodName);
+        } catch (CoreRouterSemanticsException crsX) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, crsX.getMessage(), method);
+            return null;
+        }
+
+        boolean valid = validateModelName(method, "subject", parsedName.getSubject(), false);
+        if (parsedName.getObject() != null) {
+            valid &= validateModelName(method, "object", parsedName.getObject(), true);
+        }
+        if (!valid) {
+            return null;
+        }
+
+        // the action and preposition are recorded as they appear in the method name so that they may be
+        // found in the runtime vocabulary, the action is the longest prefix that is followed by the subject
+        // and is a synonym of the parsed action
+        String actionText = null;
+        for (int endOfAction = methodName.indexOf(parsedName.getSubject(), 1); endOfAction > 0;
+             endOfAction = methodName.indexOf(parsedName.getSubject(), endOfAction + 1)) {
+            String candidate = methodName.substring(0, endOfAction);
+            if (parsedName.getAction().matches(candidate)) {
+                actionText = candidate;
+            }
+        }
+        if (actionText == null) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    String.format("Unable to locate the action of method %s", methodName), method);
+            return null;
+        }
+
+        String prepositionText = null;
+        if (parsedName.getPreposition() != null) {
+            int startOfPreposition = actionText.length()
+                    + parsedName.getSubject().length()
+                    + (parsedName.getCollectionType() == null ? 0 : parsedName.getCollectionType().getSimpleName().length());
+            prepositionText = methodName.substring(startOfPreposition, methodName.length() - parsedName.getObject().length());
+        }
+
+        return new BridgeMethod(
+                method,
+                methodKey,
+                actionText,
+                parsedName.getSubject(),
+                parsedName.getCollectionType() == null ? null : parsedName.getCollectionType().name(),
+                prepositionText,
+                parsedName.getObject());
+    }
+
+    /**
+     * The subject must be the simple name of a class in one of the model packages, the object
+     * may also be the simple name of a class in one of the ApplicationSemanticsImpl default
+     * object packages.
+     * If no model packages are given then the model names are not validated.
+     */
+    private boolean validateModelName(
+            final ExecutableElement method,
+            final String role,
+            final String simpleName,
+            final boolean includeDefaultPackages) {
+        String modelPackagesOption = processingEnv.getOptions().get(MODEL_PACKAGES_OPTION);
+        if (modelPackagesOption == null || modelPackagesOption.trim().isEmpty()) {
+            return true;
+        }
+
+        List<String> packageNames = new ArrayList<>();
+        for (String packageName : modelPackagesOption.split(",")) {
+            packageNames.add(packageName.trim());
+        }
+        if (includeDefaultPackages) {
+            Collections.addAll(packageNames, ApplicationSemanticsImpl.DEFAULT_OBJECT_PACKAGES);
+        }
+
+        for (String packageName : packageNames) {
+            if (processingEnv.getElementUtils().getTypeElement(packageName + "." + simpleName) != null) {
+                return true;
+            }
+        }
+
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                String.format("The %s '%s' of method %s is not a class in the application model %s",
+                        role, simpleName, method.getSimpleName(), packageNames),
+                method);
+        return false;
+    }
+
+    private static boolean isAnnotatedWith(final Element element, final String annotationName) {
+        for (AnnotationMirror annotationMirror : element.getAnnotationMirrors()) {
+            if (annotationName.equals(annotationMirror.getAnnotationType().toString())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void writeSource(final TypeElement bridgeInterface, final List<BridgeMethod> bridgeMethods) {
+        ApplicationBridgeSourceGenerator generator =
+                new ApplicationBridgeSourceGenerator(processingEnv, bridgeInterface, bridgeMethods);
+        PackageElement packageElement = processingEnv.getElementUtils().getPackageOf(bridgeInterface);
+        String generatedClassName = packageElement.isUnnamed()
+                ? generator.getGeneratedSimpleName()
+                : packageElement.getQualifiedName() + "." + generator.getGeneratedSimpleName();
+
+        try {
+            JavaFileObject sourceFile = processingEnv.getFiler().createSourceFile(generatedClassName, bridgeInterface);
+            try (Writer writer = sourceFile.openWriter()) {
+                writer.write(generator.generate());
+            }
+        } catch (IOException ioX) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    String.format("Unable to write %s, %s", generatedClassName, ioX.getMessage()), bridgeInterface);
+        }
+    }
+}
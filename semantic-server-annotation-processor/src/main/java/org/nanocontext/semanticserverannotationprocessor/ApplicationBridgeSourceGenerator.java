@@ -0,0 +1,287 @@
+package org.nanocontext.semanticserverannotationprocessor;
+
+import org.nanocontext.semanticserver.semanticserver.applicationbridge.AbstractGeneratedApplicationBridge;
+import org.nanocontext.semanticserver.semanticserver.applicationbridge.exceptions.UnmappableCommandException;
+import org.nanocontext.semanticserverapi.core.Application;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.TypeParameterElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generates the source of a processor bridge realization, for example:
+ *
+ * public final class SubjectProcessorBridge_CompiledApplicationBridge
+ * extends AbstractGeneratedApplicationBridge
+ * implements SubjectProcessorBridge {
+ *     private static final String[][] PARSED_NAMES = {
+ *         {"postAuthorization(Lcom/acme/Authorization;)Lcom/acme/AuthorizationId;", "post", "Authorization", null, null, null},
+ *     };
+ *     public SubjectProcessorBridge_CompiledApplicationBridge(Application application) throws UnmappableCommandException {
+ *         super(application, SubjectProcessorBridge.class, PARSED_NAMES);
+ *     }
+ *     public AuthorizationId postAuthorization(Authorization p0) {
+ *         try {
+ *             return (AuthorizationId) invokeBridgeMethod(0, new Object[]{p0});
+ *         } catch (RuntimeException x) {
+ *             throw x;
+ *         } catch (Exception x) {
+ *             throw new UndeclaredThrowableException(x);
+ *         }
+ *     }
+ * }
+ *
+ * All type names are fully qualified in the generated source.
+ */
+class ApplicationBridgeSourceGenerator {
+    private final ProcessingEnvironment processingEnv;
+    private final TypeElement bridgeInterface;
+    private final List<BridgeMethod> bridgeMethods;
+
+    ApplicationBridgeSourceGenerator(
+            final ProcessingEnvironment processingEnv,
+            final TypeElement bridgeInterface,
+            final List<BridgeMethod> bridgeMethods) {
+        this.processingEnv = processingEnv;
+        this.bridgeInterface = bridgeInterface;
+        this.bridgeMethods = bridgeMethods;
+    }
+
+    /**
+     * @return the simple name of the generated class, which is a top level class in the
+     * package of the processor bridge
+     */
+    String getGeneratedSimpleName() {
+        PackageElement packageElement = processingEnv.getElementUtils().getPackageOf(bridgeInterface);
+        String binaryName = processingEnv.getElementUtils().getBinaryName(bridgeInterface).toString();
+        String simpleBinaryName = packageElement.isUnnamed()
+                ? binaryName
+                : binaryName.substring(packageElement.getQualifiedName().length() + 1);
+
+        return simpleBinaryName + AbstractGeneratedApplicationBridge.COMPILED_CLASS_SUFFIX;
+    }
+
+    /**
+     *
+     * @return the source of the realization
+     */
+    String generate() {
+        PackageElement packageElement = processingEnv.getElementUtils().getPackageOf(bridgeInterface);
+        String generatedSimpleName = getGeneratedSimpleName();
+        String interfaceName = bridgeInterface.getQualifiedName().toString();
+
+        StringBuilder sb = new StringBuilder();
+        if (!packageElement.isUnnamed()) {
+            sb.append("package ").append(packageElement.getQualifiedName()).append(";\n\n");
+        }
+
+        sb.append("/**\n");
+        sb.append(" * The realization of ").append(interfaceName).append(".\n");
+        sb.append(" * Generated by ").append(ApplicationBridgeProcessor.class.getName()).append(", do not modify.\n");
+        sb.append(" */\n");
+        sb.append("@SuppressWarnings(\"unchecked\")\n");
+        sb.append("public final class ").append(generatedSimpleName).append('\n');
+        sb.append("extends ").append(AbstractGeneratedApplicationBridge.class.getName()).append('\n');
+        sb.append("implements ").append(interfaceName).append(" {\n");
+
+        // the parsed names table
+        sb.append("    private static final String[][] PARSED_NAMES = {\n");
+        for (BridgeMethod bridgeMethod : bridgeMethods) {
+            sb.append("        {");
+            String[] parsedName = bridgeMethod.getParsedName();
+            for (int column = 0; column < parsedName.length; ++column) {
+                if (column > 0) {
+                    sb.append(", ");
+                }
+                appendStringLiteral(sb, parsedName[column]);
+            }
+            sb.append("},\n");
+        }
+        sb.append("    };\n\n");
+
+        // the constructor
+        sb.append("    public ").append(generatedSimpleName)
+                .append("(final ").append(Application.class.getName()).append(" application)\n");
+        sb.append("            throws ").append(UnmappableCommandException.class.getName()).append(" {\n");
+        sb.append("        super(application, ").append(interfaceName).append(".class, PARSED_NAMES);\n");
+        sb.append("    }\n");
+
+        for (int index = 0; index < bridgeMethods.size(); ++index) {
+            sb.append('\n');
+            appendMethod(sb, bridgeMethods.get(index).getMethod(), index);
+        }
+
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    private void appendMethod(final StringBuilder sb, final ExecutableElement method, final int methodIndex) {
+        Types types = processingEnv.getTypeUtils();
+
+        sb.append("    @Override\n");
+        sb.append("    public ");
+        appendTypeParameters(sb, method);
+        sb.append(method.getReturnType()).append(' ').append(method.getSimpleName()).append('(');
+
+        List<? extends VariableElement> parameters = method.getParameters();
+        for (int index = 0; index < parameters.size(); ++index) {
+            if (index > 0) {
+                sb.append(", ");
+            }
+            TypeMirror parameterType = parameters.get(index).asType();
+            if (method.isVarArgs() && index == parameters.size() - 1) {
+                sb.append("final ").append(((ArrayType) parameterType).getComponentType()).append("...");
+            } else {
+                sb.append("final ").append(parameterType);
+            }
+            sb.append(" p").append(index);
+        }
+        sb.append(')');
+
+        List<? extends TypeMirror> thrownTypes = method.getThrownTypes();
+        if (!thrownTypes.isEmpty()) {
+            sb.append("\n            throws ");
+            for (int index = 0; index < thrownTypes.size(); ++index) {
+                if (index > 0) {
+                    sb.append(", ");
+                }
+                sb.append(thrownTypes.get(index));
+            }
+        }
+        sb.append(" {\n");
+
+        // the call to invokeBridgeMethod()
+        StringBuilder invocation = new StringBuilder();
+        TypeMirror returnType = method.getReturnType();
+        if (returnType.getKind() != TypeKind.VOID) {
+            invocation.append("return (");
+            if (returnType.getKind().isPrimitive()) {
+                invocation.append(types.boxedClass((PrimitiveType) returnType).getQualifiedName());
+            } else {
+                invocation.append(returnType);
+            }
+            invocation.append(") ");
+        }
+        invocation.append("invokeBridgeMethod(").append(methodIndex).append(", ");
+        if (parameters.isEmpty()) {
+            invocation.append("null");
+        } else {
+            invocation.append("new Object[]{");
+            for (int index = 0; index < parameters.size(); ++index) {
+                if (index > 0) {
+                    invocation.append(", ");
+                }
+                invocation.append('p').append(index);
+            }
+            invocation.append('}');
+        }
+        invocation.append(");");
+
+        List<TypeMirror> rethrownTypes = getRethrownTypes(thrownTypes);
+        if (rethrownTypes == null) {
+            // the method declares Exception (or Throwable), all exceptions may be thrown as they are
+            sb.append("        ").append(invocation).append('\n');
+        } else {
+            sb.append("        try {\n");
+            sb.append("            ").append(invocation).append('\n');
+            sb.append("        } catch (RuntimeException");
+            for (TypeMirror rethrownType : rethrownTypes) {
+                sb.append(" | ").append(rethrownType);
+            }
+            sb.append(" x) {\n");
+            sb.append("            throw x;\n");
+            sb.append("        } catch (Exception x) {\n");
+            sb.append("            throw new java.lang.reflect.UndeclaredThrowableException(x);\n");
+            sb.append("        }\n");
+        }
+
+        sb.append("    }\n");
+    }
+
+    private void appendTypeParameters(final StringBuilder sb, final ExecutableElement method) {
+        List<? extends TypeParameterElement> typeParameters = method.getTypeParameters();
+        if (typeParameters.isEmpty()) {
+            return;
+        }
+
+        sb.append('<');
+        for (int index = 0; index < typeParameters.size(); ++index) {
+            if (index > 0) {
+                sb.append(", ");
+            }
+            TypeParameterElement typeParameter = typeParameters.get(index);
+            sb.append(typeParameter.getSimpleName());
+
+            String separator = " extends ";
+            for (TypeMirror bound : typeParameter.getBounds()) {
+                if (!Object.class.getName().equals(bound.toString())) {
+                    sb.append(separator).append(bound);
+                    separator = " & ";
+                }
+            }
+        }
+        sb.append("> ");
+    }
+
+    /**
+     * Determine the checked exceptions that must be caught and re-thrown as is. Declared exceptions
+     * that are RuntimeException, or a subclass of another declared exception, are not included because
+     * a multi-catch may not include related types.
+     *
+     * @return the checked exceptions to re-throw, or null if the method declares Exception or Throwable
+     */
+    private List<TypeMirror> getRethrownTypes(final List<? extends TypeMirror> thrownTypes) {
+        Types types = processingEnv.getTypeUtils();
+        TypeMirror exceptionType = processingEnv.getElementUtils().getTypeElement(Exception.class.getName()).asType();
+        TypeMirror runtimeExceptionType = processingEnv.getElementUtils().getTypeElement(RuntimeException.class.getName()).asType();
+
+        List<TypeMirror> result = new ArrayList<>();
+        for (TypeMirror thrownType : thrownTypes) {
+            if (types.isSubtype(exceptionType, thrownType)) {
+                return null;
+            }
+            if (types.isSubtype(thrownType, runtimeExceptionType) || !types.isSubtype(thrownType, exceptionType)) {
+                continue;
+            }
+
+            boolean redundant = false;
+            for (TypeMirror otherType : thrownTypes) {
+                if (otherType != thrownType && types.isSubtype(thrownType, otherType)
+                        && !types.isSameType(thrownType, otherType)) {
+                    redundant = true;
+                    break;
+                }
+            }
+            if (!redundant) {
+                result.add(thrownType);
+            }
+        }
+        return result;
+    }
+
+    private static void appendStringLiteral(final StringBuilder sb, final String value) {
+        if (value == null) {
+            sb.append("null");
+            return;
+        }
+
+        sb.append('"');
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                sb.append('\\');
+            }
+            sb.append(c);
+        }
+        sb.append('"');
+    }
+}
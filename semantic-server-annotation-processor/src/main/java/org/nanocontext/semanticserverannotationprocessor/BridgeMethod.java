@@ -0,0 +1,43 @@
+package org.nanocontext.semanticserverannotationprocessor;
+
+import org.nanocontext.semanticserver.semanticserver.applicationbridge.AbstractGeneratedApplicationBridge;
+
+import javax.lang.model.element.ExecutableElement;
+
+/**
+ * A processor bridge method and its name, parsed into the semantic parts.
+ * The parsed parts are null if the method is explicitly mapped to a Command.
+ */
+class BridgeMethod {
+    private final ExecutableElement method;
+    private final String[] parsedName;
+
+    BridgeMethod(
+            final ExecutableElement method,
+            final String methodKey,
+            final String action,
+            final String subject,
+            final String collectionType,
+            final String preposition,
+            final String object) {
+        this.method = method;
+        this.parsedName = new String[AbstractGeneratedApplicationBridge.PARSED_NAME_OBJECT + 1];
+        this.parsedName[AbstractGeneratedApplicationBridge.PARSED_NAME_METHOD_KEY] = methodKey;
+        this.parsedName[AbstractGeneratedApplicationBridge.PARSED_NAME_ACTION] = action;
+        this.parsedName[AbstractGeneratedApplicationBridge.PARSED_NAME_SUBJECT] = subject;
+        this.parsedName[AbstractGeneratedApplicationBridge.PARSED_NAME_COLLECTION_TYPE] = collectionType;
+        this.parsedName[AbstractGeneratedApplicationBridge.PARSED_NAME_PREPOSITION] = preposition;
+        this.parsedName[AbstractGeneratedApplicationBridge.PARSED_NAME_OBJECT] = object;
+    }
+
+    ExecutableElement getMethod() {
+        return method;
+    }
+
+    /**
+     * @return the row of the parsed names table, the caller must not modify the array
+     */
+    String[] getParsedName() {
+        return parsedName;
+    }
+}
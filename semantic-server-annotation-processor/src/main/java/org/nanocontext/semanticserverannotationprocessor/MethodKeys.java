@@ -0,0 +1,69 @@
+package org.nanocontext.semanticserverannotationprocessor;
+
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+
+/**
+ * Creates the key of a method, as AbstractGeneratedApplicationBridge.getMethodKey() does at runtime,
+ * from the compiler model of the method.
+ * The key is the method name followed by the JVM method descriptor of the erased method signature.
+ */
+class MethodKeys {
+    private final Types types;
+    private final Elements elements;
+
+    MethodKeys(final Types types, final Elements elements) {
+        this.types = types;
+        this.elements = elements;
+    }
+
+    /**
+     *
+     * @param method
+     * @return
+     */
+    String getMethodKey(final ExecutableElement method) {
+        StringBuilder sb = new StringBuilder(method.getSimpleName());
+        sb.append('(');
+        for (VariableElement parameter : method.getParameters()) {
+            appendDescriptor(sb, parameter.asType());
+        }
+        sb.append(')');
+        appendDescriptor(sb, method.getReturnType());
+
+        return sb.toString();
+    }
+
+    private void appendDescriptor(final StringBuilder sb, final TypeMirror type) {
+        TypeMirror erasedType = types.erasure(type);
+        switch (erasedType.getKind()) {
+            case BOOLEAN: sb.append('Z'); break;
+            case BYTE: sb.append('B'); break;
+            case CHAR: sb.append('C'); break;
+            case SHORT: sb.append('S'); break;
+            case INT: sb.append('I'); break;
+            case LONG: sb.append('J'); break;
+            case FLOAT: sb.append('F'); break;
+            case DOUBLE: sb.append('D'); break;
+            case VOID: sb.append('V'); break;
+            case ARRAY:
+                sb.append('[');
+                appendDescriptor(sb, ((ArrayType) erasedType).getComponentType());
+                break;
+            case DECLARED:
+                TypeElement typeElement = (TypeElement) ((DeclaredType) erasedType).asElement();
+                sb.append('L');
+                sb.append(elements.getBinaryName(typeElement).toString().replace('.', '/'));
+                sb.append(';');
+                break;
+            default:
+                throw new IllegalArgumentException(String.format("%s cannot be described in a method key", type));
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package org.nanocontext.semanticserverannotationprocessor;
+
+import org.nanocontext.semanticserver.semanticserver.applicationbridge.AbstractGeneratedApplicationBridge;
+import org.nanocontext.semanticserverapi.core.Application;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Compiles processor bridge sources with the ApplicationBridgeProcessor, through the
+ * javax.tools compiler, and examines the diagnostics and the generated realization.
+ */
+public class ApplicationBridgeProcessorTest {
+    private static final String MODEL_WIDGET =
+            "package com.acme.model;\n"
+            + "public class Widget {}\n";
+    private static final String MODEL_WIDGET_ID =
+            "package com.acme.model;\n"
+            + "public class WidgetId {}\n";
+
+    private Path workDirectory;
+    private DiagnosticCollector<JavaFileObject> diagnostics;
+
+    @BeforeMethod
+    public void b4Method() throws IOException {
+        workDirectory = Files.createTempDirectory("ApplicationBridgeProcessorTest");
+        diagnostics = new DiagnosticCollector<>();
+    }
+
+    @AfterMethod
+    public void afterMethod() {
+        delete(workDirectory.toFile());
+    }
+
+    @Test
+    public void testGeneratesRealization() throws Exception {
+        boolean compiled = compile(null,
+                "com/acme/model/Widget.java", MODEL_WIDGET,
+                "com/acme/model/WidgetId.java", MODEL_WIDGET_ID,
+                "com/acme/bridge/WidgetBridge.java",
+                "package com.acme.bridge;\n"
+                + "import com.acme.model.*;\n"
+                + "@org.nanocontext.semanticserver.semanticserver.applicationbridge.ApplicationBridge\n"
+                + "public interface WidgetBridge {\n"
+                + "    WidgetId postWidget(Widget widget);\n"
+                + "    Widget getWidgetByWidgetId(WidgetId widgetId) throws java.io.IOException;\n"
+                + "}\n");
+        Assert.assertTrue(compiled, diagnostics.getDiagnostics().toString());
+
+        Path generatedSource = workDirectory.resolve("generated/com/acme/bridge/WidgetBridge_CompiledApplicationBridge.java");
+        Assert.assertTrue(Files.exists(generatedSource));
+        String source = new String(Files.readAllBytes(generatedSource), StandardCharsets.UTF_8);
+        Assert.assertTrue(source.contains("extends " + AbstractGeneratedApplicationBridge.class.getName()));
+        Assert.assertTrue(source.contains(
+                "{\"getWidgetByWidgetId(Lcom/acme/model/WidgetId;)Lcom/acme/model/Widget;\", \"get\", \"Widget\", null, \"By\", \"WidgetId\"},"),
+                source);
+        Assert.assertTrue(source.contains(
+                "{\"postWidget(Lcom/acme/model/Widget;)Lcom/acme/model/WidgetId;\", \"post\", \"Widget\", null, null, null},"),
+                source);
+        Assert.assertTrue(source.contains("catch (RuntimeException | java.io.IOException x)"), source);
+
+        try (URLClassLoader classLoader = new URLClassLoader(
+                new URL[]{workDirectory.resolve("classes").toUri().toURL()}, getClass().getClassLoader())) {
+            Class<?> bridgeInterface = classLoader.loadClass("com.acme.bridge.WidgetBridge");
+            Class<?> generatedClass = classLoader.loadClass(
+                    "com.acme.bridge.WidgetBridge" + AbstractGeneratedApplicationBridge.COMPILED_CLASS_SUFFIX);
+            Assert.assertTrue(bridgeInterface.isAssignableFrom(generatedClass));
+            Assert.assertTrue(AbstractGeneratedApplicationBridge.class.isAssignableFrom(generatedClass));
+            Assert.assertNotNull(generatedClass.getConstructor(Application.class));
+        }
+    }
+
+    @Test
+    public void testInvalidMethodNameIsAnError() throws Exception {
+        boolean compiled = compile(null,
+                "com/acme/model/Widget.java", MODEL_WIDGET,
+                "com/acme/model/WidgetId.java", MODEL_WIDGET_ID,
+                "com/acme/bridge/WidgetBridge.java",
+                "package com.acme.bridge;\n"
+                + "import com.acme.model.*;\n"
+                + "@org.nanocontext.semanticserver.semanticserver.applicationbridge.ApplicationBridge\n"
+                + "public interface WidgetBridge {\n"
+                + "    WidgetId frobnicateWidget(Widget widget);\n"
+                + "}\n");
+
+        Assert.assertFalse(compiled);
+        Assert.assertTrue(hasError("frobnicateWidget"), diagnostics.getDiagnostics().toString());
+        Assert.assertFalse(Files.exists(workDirectory.resolve("generated/com/acme/bridge/WidgetBridge_CompiledApplicationBridge.java")));
+    }
+
+    @Test
+    public void testUnknownModelClassIsAnError() throws Exception {
+        boolean compiled = compile("com.acme.model",
+                "com/acme/model/Widget.java", MODEL_WIDGET,
+                "com/acme/model/WidgetId.java", MODEL_WIDGET_ID,
+                "com/acme/bridge/WidgetBridge.java",
+                "package com.acme.bridge;\n"
+                + "import com.acme.model.*;\n"
+                + "@org.nanocontext.semanticserver.semanticserver.applicationbridge.ApplicationBridge\n"
+                + "public interface WidgetBridge {\n"
+                + "    WidgetId postWidget(Widget widget);\n"
+                + "    Widget getGadgetByWidgetId(WidgetId widgetId);\n"
+                + "}\n");
+
+        Assert.assertFalse(compiled);
+        Assert.assertTrue(hasError("'Gadget'"), diagnostics.getDiagnostics().toString());
+    }
+
+    @Test
+    public void testNonPublicInterfaceIsAnError() throws Exception {
+        boolean compiled = compile(null,
+                "com/acme/model/Widget.java", MODEL_WIDGET,
+                "com/acme/model/WidgetId.java", MODEL_WIDGET_ID,
+                "com/acme/bridge/WidgetBridge.java",
+                "package com.acme.bridge;\n"
+                + "import com.acme.model.*;\n"
+                + "@org.nanocontext.semanticserver.semanticserver.applicationbridge.ApplicationBridge\n"
+                + "interface WidgetBridge {\n"
+                + "    WidgetId postWidget(Widget widget);\n"
+                + "}\n");
+
+        Assert.assertFalse(compiled);
+        Assert.assertTrue(hasError("must be a public interface"), diagnostics.getDiagnostics().toString());
+    }
+
+    // ==========================================================================================
+    // The compiler harness
+    // ==========================================================================================
+    /**
+     * Write the sources into the work directory and compile them with the ApplicationBridgeProcessor.
+     *
+     * @param modelPackages the value of the model packages option, null to not validate the model names
+     * @param pathsAndSources alternating relative paths and sources
+     * @return true if the compilation succeeded
+     */
+    private boolean compile(final String modelPackages, final String... pathsAndSources)
+            throws IOException, URISyntaxException {
+        List<File> sourceFiles = new ArrayList<>();
+        for (int index = 0; index < pathsAndSources.length; index += 2) {
+            Path sourceFile = workDirectory.resolve("src").resolve(pathsAndSources[index]);
+            Files.createDirectories(sourceFile.getParent());
+            Files.write(sourceFile, pathsAndSources[index + 1].getBytes(StandardCharsets.UTF_8));
+            sourceFiles.add(sourceFile.toFile());
+        }
+        Path classes = Files.createDirectories(workDirectory.resolve("classes"));
+        Path generated = Files.createDirectories(workDirectory.resolve("generated"));
+
+        List<String> options = new ArrayList<>(Arrays.asList(
+                "-classpath", getClassPath(),
+                "-d", classes.toString(),
+                "-s", generated.toString()));
+        if (modelPackages != null) {
+            options.add("-A" + ApplicationBridgeProcessor.MODEL_PACKAGES_OPTION + "=" + modelPackages);
+        }
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        Assert.assertNotNull(compiler, "the tests must run on a JDK");
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8)) {
+            JavaCompiler.CompilationTask task = compiler.getTask(
+                    null, fileManager, diagnostics, options, null, fileManager.getJavaFileObjectsFromFiles(sourceFiles));
+            task.setProcessors(Collections.singletonList(new ApplicationBridgeProcessor()));
+            return task.call();
+        }
+    }
+
+    /**
+     * The class path of the compiled sources, the semantic server classes and the test class path.
+     */
+    private static String getClassPath() throws URISyntaxException {
+        List<String> entries = new ArrayList<>();
+        for (Class<?> clazz : new Class<?>[]{AbstractGeneratedApplicationBridge.class, Application.class}) {
+            entries.add(new File(clazz.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath());
+        }
+        entries.add(System.getProperty("java.class.path"));
+        StringBuilder sb = new StringBuilder();
+        for (String entry : entries) {
+            if (sb.length() > 0) {
+                sb.append(File.pathSeparatorChar);
+            }
+            sb.append(entry);
+        }
+        return sb.toString();
+    }
+
+    private boolean hasError(final String messageFragment) {
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR
+                    && diagnostic.getMessage(null).contains(messageFragment)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void delete(final File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,186 @@
+package org.nanocontext.semanticserverannotationprocessor;
+
+import com.paypal.credit.context.Context;
+import com.paypal.credit.xactionctx.TransactionContextFactory;
+import org.nanocontext.semanticserver.ApplicationTransactionContext;
+import org.nanocontext.semanticserver.semanticserver.applicationbridge.AbstractGeneratedApplicationBridge;
+import org.nanocontext.semanticserver.semanticserver.applicationbridge.ApplicationBridgeProxyImplFactory;
+import org.nanocontext.semanticserver.semanticserver.applicationbridge.ProductTypeRoutingToken;
+import org.nanocontext.semanticserver.semanticserver.commandprocessor.CommandProcessorDefaultImpl;
+import org.nanocontext.semanticserver.semanticserver.semantics.ApplicationSemanticsImpl;
+import org.nanocontext.semanticserverannotationprocessor.test.bridge.WidgetProcessorBridge;
+import org.nanocontext.semanticserverannotationprocessor.test.model.Widget;
+import org.nanocontext.semanticserverannotationprocessor.test.model.WidgetId;
+import org.nanocontext.semanticserverapi.core.Application;
+import org.nanocontext.semanticserverapi.core.commandprocessor.CommandProcessor;
+import org.nanocontext.semanticserverapi.core.commandprocessor.RoutingToken;
+import org.nanocontext.semanticserverapi.core.commandprovider.CommandInstantiationToken;
+import org.nanocontext.semanticserverapi.core.commandprovider.CommandProvider;
+import org.nanocontext.semanticserverapi.core.datasourceprovider.RootDataSourceProvider;
+import org.nanocontext.semanticserverapi.core.semantics.ApplicationSemantics;
+import org.nanocontext.semanticserverapi.core.semantics.CommandClassSemantics;
+import org.nanocontext.semanticserverapi.core.semantics.exceptions.CoreRouterSemanticsException;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Uses the realization of WidgetProcessorBridge that the ApplicationBridgeProcessor generated
+ * when the test sources were compiled.
+ */
+public class CompiledApplicationBridgeTest {
+    private WidgetApplication application;
+
+    /**
+     * The transaction context through which the test sets the RoutingToken.
+     */
+    public interface WidgetTransactionContext
+    extends ApplicationTransactionContext {
+        void setRoutingToken(RoutingToken routingToken);
+    }
+
+    @BeforeClass
+    public void b4Class() throws CoreRouterSemanticsException {
+        application = new WidgetApplication();
+        TransactionContextFactory.get(WidgetTransactionContext.class).setRoutingToken(new ProductTypeRoutingToken("USACON"));
+    }
+
+    @AfterClass
+    public void afterClass() {
+        application.shutdown();
+    }
+
+    @Test
+    public void testGeneratedRealizationIsUsed() throws Exception {
+        WidgetProcessorBridge bridge = new ApplicationBridgeProxyImplFactory(application).create(WidgetProcessorBridge.class);
+
+        Assert.assertEquals(bridge.getClass().getName(),
+                WidgetProcessorBridge.class.getName() + AbstractGeneratedApplicationBridge.COMPILED_CLASS_SUFFIX);
+        Assert.assertSame(bridge.getClass().getClassLoader(), WidgetProcessorBridge.class.getClassLoader());
+    }
+
+    @Test
+    public void testInvokeGeneratedRealization() throws Exception {
+        WidgetProcessorBridge bridge = new ApplicationBridgeProxyImplFactory(application).create(WidgetProcessorBridge.class);
+        Widget widget = new Widget();
+        WidgetId widgetId = new WidgetId();
+
+        application.commandProvider.result = widgetId;
+        Assert.assertSame(bridge.postWidget(widget), widgetId);
+        Assert.assertEquals(application.commandProvider.lastSemantics,
+                application.getApplicationSemantics().createCommandClassSemantic("PostWidgetCommand"));
+        Assert.assertEquals(application.commandProvider.lastArguments, new Object[]{widget});
+
+        application.commandProvider.result = widget;
+        Assert.assertSame(bridge.getWidgetByWidgetId(widgetId), widget);
+
+        application.commandProvider.result = 3;
+        Assert.assertEquals(bridge.deleteWidgetByWidgetId(widgetId, true), 3);
+        Assert.assertEquals(application.commandProvider.lastArguments, new Object[]{widgetId, Boolean.TRUE});
+    }
+
+    // ==========================================================================================
+    // An application of the test model with a CommandProvider of fixed results
+    // ==========================================================================================
+    private static class WidgetApplication
+    implements Application {
+        private final ApplicationSemantics applicationSemantics;
+        private final WidgetCommandProvider commandProvider = new WidgetCommandProvider();
+        private final CommandProcessor commandProcessor = CommandProcessorDefaultImpl.create();
+
+        private WidgetApplication() throws CoreRouterSemanticsException {
+            this.applicationSemantics = ApplicationSemanticsImpl.create(Widget.class.getPackage().getName());
+            this.commandProcessor.setApplication(this);
+        }
+
+        @Override
+        public ClassLoader getClassLoader() {
+            return WidgetApplication.class.getClassLoader();
+        }
+
+        @Override
+        public ApplicationSemantics getApplicationSemantics() {
+            return applicationSemantics;
+        }
+
+        @Override
+        public CommandProvider getRootCommandProvider() {
+            return commandProvider;
+        }
+
+        @Override
+        public RootDataSourceProvider getServiceProvider() {
+            return null;
+        }
+
+        @Override
+        public CommandProcessor getCommandProcessor() {
+            return commandProcessor;
+        }
+
+        @Override
+        public Context getContext() {
+            return null;
+        }
+
+        @Override
+        public void shutdown() {
+            commandProcessor.shutdown();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return commandProcessor.isShutdown();
+        }
+    }
+
+    private static class WidgetCommandProvider
+    implements CommandProvider {
+        private volatile Object result;
+        private volatile CommandClassSemantics lastSemantics;
+        private volatile Object[] lastArguments;
+
+        @Override
+        public String getPublisher() {
+            return "widget";
+        }
+
+        @Override
+        public CommandInstantiationToken findCommand(
+                final RoutingToken routingToken,
+                final CommandClassSemantics commandClassSemantics,
+                final Class<?>[] parameterTypes,
+                final Class<?> resultType) {
+            this.lastSemantics = commandClassSemantics;
+            return new CommandInstantiationToken() {
+                @Override
+                public CommandProvider getCommandProvider() {
+                    return WidgetCommandProvider.this;
+                }
+            };
+        }
+
+        @Override
+        public Callable<?> createCommand(final CommandInstantiationToken commandInstantiationToken, final Object[] parameters) {
+            return new Callable<Object>() {
+                @Override
+                public Object call() {
+                    lastArguments = parameters;
+                    return result;
+                }
+            };
+        }
+
+        @Override
+        public <R, C extends Callable<R>> C createCommand(
+                final RoutingToken routingToken,
+                final CommandClassSemantics commandClassSemantics,
+                final Object[] parameters,
+                final Class<R> resultType) {
+            return (C) createCommand(findCommand(routingToken, commandClassSemantics, null, resultType), parameters);
+        }
+    }
+}
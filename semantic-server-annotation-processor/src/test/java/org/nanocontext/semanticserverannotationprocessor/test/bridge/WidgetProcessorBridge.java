@@ -0,0 +1,17 @@
+package org.nanocontext.semanticserverannotationprocessor.test.bridge;
+
+import org.nanocontext.semanticserver.semanticserver.applicationbridge.ApplicationBridge;
+import org.nanocontext.semanticserverannotationprocessor.test.model.Widget;
+import org.nanocontext.semanticserverannotationprocessor.test.model.WidgetId;
+
+/**
+ * A processor bridge whose realization is generated when the test sources are compiled.
+ */
+@ApplicationBridge
+public interface WidgetProcessorBridge {
+    WidgetId postWidget(Widget widget);
+
+    Widget getWidgetByWidgetId(WidgetId widgetId);
+
+    int deleteWidgetByWidgetId(WidgetId widgetId, boolean force);
+}
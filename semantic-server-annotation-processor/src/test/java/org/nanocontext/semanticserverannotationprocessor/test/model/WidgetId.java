@@ -0,0 +1,7 @@
+package org.nanocontext.semanticserverannotationprocessor.test.model;
+
+/**
+ * A model class of the test processor bridge.
+ */
+public class WidgetId {
+}
@@ -0,0 +1,27 @@
+package org.nanocontext.semanticserverapi.core.commandprocessor;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Implemented by an asynchronously executable command that is cheaper to execute together
+ * with other commands of the same class, e.g. audit writes and notifications.
+ * A CommandProcessor that batches asynchronous execution accumulates the submitted commands
+ * of a class and executes them in one call to callBatch(), the result of each command is
+ * reported to the callback that it was submitted with.
+ *
+ * @param <R> the result type of the command
+ */
+public interface BatchableCommand<R>
+extends Callable<R>
+{
+    /**
+     * Execute a batch of commands of the same class as this command, this command is the
+     * first of the batch.
+     *
+     * @param batch the commands, all of the same class, in order of submission
+     * @return the results of the commands, in the order of the batch
+     * @throws Exception if the batch failed, the failure is reported to every command of the batch
+     */
+    List<R> callBatch(List<? extends BatchableCommand<R>> batch) throws Exception;
+}
@@ -0,0 +1,34 @@
+package org.nanocontext.semanticserverapi.core.commandprocessor;
+
+import java.util.concurrent.Future;
+
+/**
+ * The handle of a command submitted for asynchronous execution.
+ * The result is awaited through get(), cancel(true) interrupts the command if it is
+ * executing and cancel(false) only prevents it from starting. The callback of a
+ * cancelled command is notified of the failure with a CancellationException.
+ *
+ * @param <R> the result type of the command
+ */
+public interface CommandHandle<R> extends Future<R> {
+    /**
+     * The states of an asynchronously executed command.
+     */
+    enum Status {
+        /** waiting to execute */
+        QUEUED,
+        /** executing */
+        RUNNING,
+        /** completed with a result */
+        SUCCEEDED,
+        /** completed with an exception, including a rejected command */
+        FAILED,
+        /** cancelled before it completed */
+        CANCELLED
+    }
+
+    /**
+     * @return the current state of the command, never null
+     */
+    Status getStatus();
+}
@@ -0,0 +1,26 @@
+package org.nanocontext.semanticserverapi.core.commandprocessor;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The priority of an asynchronously executable command, for a CommandProcessor that
+ * schedules asynchronous commands by priority.
+ * A command that is not annotated takes the priority of its action, e.g. a GET is
+ * HIGH and a SUBMIT is LOW.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface CommandPriority {
+    Priority value();
+
+    enum Priority {
+        /** latency sensitive, typically interactive reads */
+        HIGH,
+        NORMAL,
+        /** background work that uses the spare capacity */
+        LOW
+    }
+}
@@ -3,6 +3,7 @@ package org.nanocontext.semanticserverapi.core.commandprocessor;
 import org.nanocontext.semanticserverapi.core.Application;
 
 import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
 
 /**
  * This interface is the definition of the VIX core API.  All applicationbridge projects operate through
@@ -41,6 +42,60 @@ public interface CommandProcessor {
 	 */
 	<R> void doAsynchronously(final Callable<R> command, AsynchronousExecutionCallback<R> callback);
 
+	/**
+	 * Submit a commandprovider for asynchronous execution, the callback is notified by the
+	 * given Executor rather than by the thread that completed the commandprovider.
+	 *
+	 * @param command  the commandprovider to execute
+	 * @param callback an optional callback class
+	 * @param callbackExecutor the Executor that notifies the callback, null to notify on the completing thread
+	 * @param <R>      the result type of the command
+	 */
+	<R> void doAsynchronously(final Callable<R> command, AsynchronousExecutionCallback<R> callback, Executor callbackExecutor);
+
+	/**
+	 * Submit a commandprovider for asynchronous execution on behalf of a RoutingToken,
+	 * an implementation may isolate the commands of a RoutingToken from those of other RoutingTokens.
+	 *
+	 * @param routingToken the RoutingToken of the transaction that the commandprovider executes in
+	 * @param command  the commandprovider to execute
+	 * @param callback an optional callback class
+	 * @param <R>      the result type of the command
+	 */
+	<R> void doAsynchronously(RoutingToken routingToken, final Callable<R> command, AsynchronousExecutionCallback<R> callback);
+
+	/**
+	 * Submit a commandprovider for asynchronous execution and return a handle through which the
+	 * submitter may inspect, await or cancel it, e.g. when the client that is waiting for the
+	 * result has gone away.
+	 *
+	 * @param command  the commandprovider to execute
+	 * @param callback an optional callback class
+	 * @param <R>      the result type of the command
+	 * @return the handle of the submitted command, never null
+	 */
+	<R> CommandHandle<R> submitAsynchronously(final Callable<R> command, AsynchronousExecutionCallback<R> callback);
+
+	/**
+	 * Submit a commandprovider for asynchronous execution on behalf of a RoutingToken and
+	 * return a handle through which the submitter may inspect, await or cancel it.
+	 *
+	 * @param routingToken the RoutingToken of the transaction that the commandprovider executes in
+	 * @param command  the commandprovider to execute
+	 * @param callback an optional callback class
+	 * @param <R>      the result type of the command
+	 * @return the handle of the submitted command, never null
+	 */
+	<R> CommandHandle<R> submitAsynchronously(RoutingToken routingToken, final Callable<R> command, AsynchronousExecutionCallback<R> callback);
+
+	/**
+	 * The current load of asynchronous execution, as a fraction of the capacity of the
+	 * CommandProcessor. Facades may use this to shed load before submissions are rejected.
+	 *
+	 * @return 0.0 (idle) to 1.0 (saturated), an unbounded CommandProcessor always returns 0.0
+	 */
+	double getSaturation();
+
 	void shutdown();
 
 	boolean isShutdown();
@@ -0,0 +1,15 @@
+package org.nanocontext.semanticserverapi.core.commandprocessor;
+
+/**
+ * Implemented by an asynchronously executable command that must execute in order with
+ * the other commands of the same entity.
+ * A CommandProcessor that partitions asynchronous execution executes the commands with
+ * equal partition keys one at a time, in the order that they were submitted.
+ */
+public interface PartitionedCommand {
+    /**
+     * @return the key of the entity that the command operates on, e.g. an AuthorizationId,
+     * null if the command need not be ordered
+     */
+    Object getPartitionKey();
+}
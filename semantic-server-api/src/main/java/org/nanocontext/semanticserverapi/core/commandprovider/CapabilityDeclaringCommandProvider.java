@@ -0,0 +1,25 @@
+package org.nanocontext.semanticserverapi.core.commandprovider;
+
+import org.nanocontext.semanticserverapi.core.semantics.ApplicationSemantics;
+
+import java.util.Collection;
+
+/**
+ * An optional extension of CommandProvider, for a CommandProvider that can enumerate the
+ * Commands that it provides.
+ * The RootCommandProvider indexes the declared capabilities and asks a declaring CommandProvider
+ * to find only the Commands that it declared, so the declaration must be complete. Ambiguous
+ * declarations (two CommandProviders declaring the same semantics for the same RoutingToken)
+ * are rejected when the index is built, no Command of the ApplicationSemantics is then found.
+ * CommandProviders that do not implement this interface are asked to find every Command.
+ */
+public interface CapabilityDeclaringCommandProvider extends CommandProvider {
+    /**
+     * Called once per ApplicationSemantics, the first time that a Command of that
+     * ApplicationSemantics is found.
+     *
+     * @param applicationSemantics the semantics that the CommandClassSemantics must be created by
+     * @return the capabilities of this CommandProvider, never null
+     */
+    Collection<CommandCapability> getCapabilities(ApplicationSemantics applicationSemantics);
+}
@@ -0,0 +1,64 @@
+package org.nanocontext.semanticserverapi.core.commandprovider;
+
+import org.nanocontext.semanticserverapi.core.commandprocessor.RoutingToken;
+import org.nanocontext.semanticserverapi.core.semantics.CommandClassSemantics;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * The declaration, by a CapabilityDeclaringCommandProvider, that it provides the Commands
+ * described by a CommandClassSemantics for a set of RoutingTokens, or for any RoutingToken.
+ */
+public final class CommandCapability {
+    private final CommandClassSemantics commandClassSemantics;
+    /** the RoutingTokens served, empty for any RoutingToken */
+    private final Set<RoutingToken> routingTokens;
+
+    /**
+     * A capability for any RoutingToken.
+     *
+     * @param commandClassSemantics
+     */
+    public CommandCapability(final CommandClassSemantics commandClassSemantics) {
+        this(commandClassSemantics, null);
+    }
+
+    /**
+     *
+     * @param commandClassSemantics the semantics of the Commands that are provided
+     * @param routingTokens the RoutingTokens for which they are provided, null or empty for any RoutingToken
+     */
+    public CommandCapability(final CommandClassSemantics commandClassSemantics, final Collection<RoutingToken> routingTokens) {
+        if (commandClassSemantics == null) {
+            throw new IllegalArgumentException("'commandClassSemantics' is null and must not be");
+        }
+        this.commandClassSemantics = commandClassSemantics;
+        this.routingTokens = routingTokens == null || routingTokens.isEmpty()
+                ? Collections.<RoutingToken>emptySet()
+                : Collections.unmodifiableSet(new LinkedHashSet<>(routingTokens));
+    }
+
+    public CommandClassSemantics getCommandClassSemantics() {
+        return commandClassSemantics;
+    }
+
+    /**
+     * @return the RoutingTokens served, an empty Set if any RoutingToken is served
+     */
+    public Set<RoutingToken> getRoutingTokens() {
+        return routingTokens;
+    }
+
+    public boolean isAnyRoutingToken() {
+        return routingTokens.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s for %s", commandClassSemantics,
+                isAnyRoutingToken() ? "any routing token" : routingTokens.toString());
+    }
+}
@@ -0,0 +1,135 @@
+package org.nanocontext.semanticserverapi.core.commandprovider;
+
+import org.nanocontext.semanticserverapi.core.semantics.ApplicationSemantics;
+import org.nanocontext.semanticserverapi.core.semantics.CommandClassSemantics;
+import org.nanocontext.semanticserverapi.core.semantics.exceptions.CoreRouterSemanticsException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An index of command classes by their CommandClassSemantics, for use by CommandProvider
+ * implementations in place of calling CommandClassSemantics.describes() on each of the
+ * available command classes.
+ *
+ * The simple name of each registered command class is parsed once per ApplicationSemantics,
+ * the first time that a CommandClassSemantics of that ApplicationSemantics is looked up, after
+ * which lookup() is a single hash lookup.
+ * Command classes whose names cannot be parsed are never described by any semantics and are
+ * therefore not indexed.
+ */
+public class CommandClassIndex {
+    private final Set<Class<? extends Callable<?>>> commandClasses = new LinkedHashSet<>();
+
+    /** the index of the registered command classes, by the ApplicationSemantics that parsed their names */
+    private final Map<ApplicationSemantics, Map<CommandClassSemantics, List<Class<? extends Callable<?>>>>> indexes =
+            new ConcurrentHashMap<>();
+
+    public CommandClassIndex() {
+    }
+
+    /**
+     *
+     * @param commandClasses the command classes to register
+     */
+    public CommandClassIndex(final Collection<Class<? extends Callable<?>>> commandClasses) {
+        if (commandClasses != null) {
+            this.commandClasses.addAll(commandClasses);
+        }
+    }
+
+    /**
+     * Register a command class, the existing indexes are discarded and rebuilt when next used.
+     *
+     * @param commandClass
+     */
+    public void register(final Class<? extends Callable<?>> commandClass) {
+        if (commandClass == null) {
+            throw new IllegalArgumentException("'commandClass' is null and must not be");
+        }
+        synchronized (this.commandClasses) {
+            if (this.commandClasses.add(commandClass)) {
+                this.indexes.clear();
+            }
+        }
+    }
+
+    /**
+     * Find the registered command classes that the semantics describe, that is the same
+     * command classes for which commandClassSemantics.describes() would return true.
+     *
+     * @param commandClassSemantics
+     * @return the command classes, in order of registration, an empty List if there are none
+     */
+    public List<Class<? extends Callable<?>>> lookup(final CommandClassSemantics commandClassSemantics) {
+        if (commandClassSemantics == null) {
+            return Collections.emptyList();
+        }
+
+        Map<CommandClassSemantics, List<Class<? extends Callable<?>>>> index =
+                getIndex(commandClassSemantics.getApplicationSemanticsImpl());
+        List<Class<? extends Callable<?>>> result = index.get(commandClassSemantics);
+        return result == null ? Collections.<Class<? extends Callable<?>>>emptyList() : result;
+    }
+
+    /**
+     * The semantics that describe at least one of the registered command classes, e.g. to
+     * declare the capabilities of a CommandProvider.
+     *
+     * @param applicationSemantics
+     * @return the CommandClassSemantics, created by the given ApplicationSemantics
+     */
+    public Set<CommandClassSemantics> getCommandClassSemantics(final ApplicationSemantics applicationSemantics) {
+        if (applicationSemantics == null) {
+            return Collections.emptySet();
+        }
+        return Collections.unmodifiableSet(getIndex(applicationSemantics).keySet());
+    }
+
+    private Map<CommandClassSemantics, List<Class<? extends Callable<?>>>> getIndex(
+            final ApplicationSemantics applicationSemantics) {
+        Map<CommandClassSemantics, List<Class<? extends Callable<?>>>> index = this.indexes.get(applicationSemantics);
+        if (index == null) {
+            // synchronized with register() so that an index is never built from a stale set of classes
+            synchronized (this.commandClasses) {
+                index = this.indexes.get(applicationSemantics);
+                if (index == null) {
+                    index = createIndex(applicationSemantics);
+                    this.indexes.put(applicationSemantics, index);
+                }
+            }
+        }
+        return index;
+    }
+
+    private Map<CommandClassSemantics, List<Class<? extends Callable<?>>>> createIndex(
+            final ApplicationSemantics applicationSemantics) {
+        Map<CommandClassSemantics, List<Class<? extends Callable<?>>>> index = new HashMap<>();
+        for (Class<? extends Callable<?>> commandClass : this.commandClasses) {
+            try {
+                CommandClassSemantics semantics = applicationSemantics.createCommandClassSemantic(commandClass.getSimpleName());
+                List<Class<? extends Callable<?>>> described = index.get(semantics);
+                if (described == null) {
+                    described = new ArrayList<>(1);
+                    index.put(semantics, described);
+                }
+                described.add(commandClass);
+            } catch (CoreRouterSemanticsException crsX) {
+                // the class name does not follow the semantics, it is not described by any semantics
+            }
+        }
+
+        for (Map.Entry<CommandClassSemantics, List<Class<? extends Callable<?>>>> entry : index.entrySet()) {
+            entry.setValue(Collections.unmodifiableList(entry.getValue()));
+        }
+        return index;
+    }
+}
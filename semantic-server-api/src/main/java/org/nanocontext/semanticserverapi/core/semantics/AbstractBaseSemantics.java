@@ -19,5 +19,13 @@ public interface AbstractBaseSemantics {
 
     String getSubject();
 
+    /**
+     * A 64 bit hash of the action, subject, collection type, preposition and object.
+     * Semantics (of any type) that directly map to each other have the same fingerprint.
+     *
+     * @return the fingerprint, computed when the semantics are created
+     */
+    long getFingerprint();
+
     boolean directMapping(AbstractBaseSemantics other);
 }
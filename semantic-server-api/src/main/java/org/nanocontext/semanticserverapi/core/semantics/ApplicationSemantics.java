@@ -68,4 +68,17 @@ public interface ApplicationSemantics {
 
     ProcessorBridgeMethodSemantics createProcessorBridgeMethodSemantics(AbstractBaseSemantics baseSemantics)
                                                     throws CoreRouterSemanticsException;
+
+    // ===================================================================================================
+    // Interning of semantic types
+    // ===================================================================================================
+    /**
+     * Return the canonical instance of the given CommandClassSemantics, that is the first
+     * instance equal to it that was interned and is still referenced. The createCommandClassSemantic()
+     * methods always return canonical instances, so those may be compared by identity.
+     *
+     * @param commandClassSemantics
+     * @return the canonical instance equal to commandClassSemantics
+     */
+    CommandClassSemantics internCommandClassSemantic(CommandClassSemantics commandClassSemantics);
 }
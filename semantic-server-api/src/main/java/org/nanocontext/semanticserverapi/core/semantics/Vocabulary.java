@@ -1,5 +1,6 @@
 package org.nanocontext.semanticserverapi.core.semantics;
 
+import java.util.Set;
 import java.util.regex.Pattern;
 
 /**
@@ -26,4 +27,11 @@ public interface Vocabulary {
      * @return
      */
     Pattern getAnyPattern();
+
+    /**
+     * Return all of the words in the vocabulary.
+     *
+     * @return an unmodifiable Set of the vocabulary words
+     */
+    Set<VocabularyWord> getWords();
 }
@@ -82,6 +82,7 @@ public class ApplicationImpl implements Application {
         this.rootCommandProvider = context.getBean(COMMAND_PROVIDER_BEAN, CommandProvider.class);
         this.serviceProvider = context.getBean(DATA_SOURCE_PROVIDER_BEAN, RootDataSourceProvider.class);
         this.commandProcessor = context.getBean(COMMAND_PROCESSOR_BEAN, CommandProcessor.class);
+        this.commandProcessor.setApplication(this);
     }
 
     @Override
@@ -1,14 +1,21 @@
 package org.nanocontext.semanticserver.semanticserver.applicationbridge;
 
+import org.nanocontext.semanticserver.semanticserver.ApplicationTransactionContext;
+import org.nanocontext.semanticserver.semanticserver.applicationbridge.exceptions.InvalidTransactionContextException;
 import org.nanocontext.semanticserver.semanticserver.commandprocessor.exceptions.UnknownCommandException;
 import org.nanocontext.semanticserverapi.core.Application;
 import org.nanocontext.semanticserverapi.core.commandprocessor.AsynchronousExecutionCallback;
+import org.nanocontext.semanticserverapi.core.commandprocessor.CommandHandle;
+import org.nanocontext.semanticserverapi.core.commandprocessor.RoutingToken;
 import org.nanocontext.semanticserverapi.core.semantics.exceptions.CoreRouterSemanticsException;
+import com.paypal.credit.xactionctx.TransactionContextFactory;
 import com.paypal.utility.ParameterCheckUtility;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
 
 /**
  * An abstract, base, implementation of a ProcessorBridge.
@@ -23,6 +30,7 @@ import java.util.concurrent.Callable;
 public abstract class AbstractApplicationBridge {
     private static final Logger LOGGER = LoggerFactory.getLogger(AbstractApplicationBridge.class);
     private final Application application;
+    private final CommandResolutionCache commandResolutionCache = new CommandResolutionCache();
 
     /**
      *
@@ -39,6 +47,85 @@ public abstract class AbstractApplicationBridge {
         return application;
     }
 
+    /**
+     * Get the RoutingToken of the current transaction.
+     *
+     * @return the RoutingToken, never null
+     * @throws InvalidTransactionContextException if the transaction context does not include a RoutingToken
+     */
+    protected RoutingToken getRoutingToken()
+            throws InvalidTransactionContextException {
+        ApplicationTransactionContext ctx = TransactionContextFactory.get(ApplicationTransactionContext.class);
+        RoutingToken routingToken = ctx.getRoutingToken();
+        if (routingToken == null) {
+            throw new InvalidTransactionContextException("getRoutingToken");
+        }
+        return routingToken;
+    }
+
+    /**
+     * Create the Command described by the dispatch plan and either execute it
+     * or submit it for asynchronous execution.
+     *
+     * @param plan the resolved plan of the processor bridge method being called
+     * @param args the arguments as passed to the processor bridge method
+     * @return the result of the Command, a CompletableFuture of the result if the
+     * method returns a future, else always null for asynchronous execution
+     * @throws Exception
+     */
+    final <R> R dispatch(final MethodDispatchPlan plan, final Object[] args)
+            throws Exception {
+        if (plan.isFutureResult()) {
+            return (R) dispatchForFuture(plan, args);
+        }
+
+        RoutingToken routingToken = getRoutingToken();
+        Callable<R> command = Utility.createCommand(getApplication(), plan, args, routingToken, commandResolutionCache);
+
+        if (plan.isAsynchronous()) {
+            AsynchronousExecutionCallback<R> callback =
+                    (AsynchronousExecutionCallback<R>) plan.getCallback(args);
+            submitCommand(routingToken, command, callback);
+            return null;
+        } else {
+            return executeCommand(command);
+        }
+    }
+
+    /**
+     * Create the Command described by the dispatch plan and submit it for asynchronous
+     * execution, the returned future is completed when the Command completes.
+     * Any failure to create or to submit the Command completes the future exceptionally
+     * rather than being thrown to the caller. Cancelling the future, e.g. when the client
+     * has gone away, cancels (and interrupts) the Command.
+     *
+     * @param plan the resolved plan of a processor bridge method that returns a future
+     * @param args the arguments as passed to the processor bridge method
+     * @return a future of the result of the Command
+     */
+    private <R> CompletableFuture<R> dispatchForFuture(final MethodDispatchPlan plan, final Object[] args) {
+        CompletableFuture<R> future = new CompletableFuture<>();
+        try {
+            RoutingToken routingToken = getRoutingToken();
+            Callable<R> command = Utility.createCommand(getApplication(), plan, args, routingToken, commandResolutionCache);
+
+            AsynchronousExecutionCallback<R> callback =
+                    (AsynchronousExecutionCallback<R>) plan.getCallback(args);
+            final CommandHandle<R> handle = submitCommand(routingToken, command, new CompletableFutureCallback<>(future, callback));
+            future.whenComplete(new BiConsumer<R, Throwable>() {
+                @Override
+                public void accept(final R result, final Throwable t) {
+                    if (future.isCancelled()) {
+                        handle.cancel(true);
+                    }
+                }
+            });
+        } catch (Exception x) {
+            future.completeExceptionally(x);
+        }
+        return future;
+    }
+
     /**
      * Execute a Command and return the result.
      *
@@ -65,17 +152,18 @@ public abstract class AbstractApplicationBridge {
      * Submit a Command for asynchronous execution.
      *
      * @param <R>
+     * @param routingToken
      * @param command
      * @param callback
+     * @return the handle of the submitted Command
      * @throws UnknownCommandException
      */
-    protected <R> void submitCommand(final Callable<R> command, AsynchronousExecutionCallback<R> callback)
+    protected <R> CommandHandle<R> submitCommand(final RoutingToken routingToken, final Callable<R> command, AsynchronousExecutionCallback<R> callback)
             throws UnknownCommandException {
         try {
-            getApplication().getCommandProcessor().doAsynchronously(command, callback);
+            return getApplication().getCommandProcessor().submitAsynchronously(routingToken, command, callback);
         } catch (Throwable t) {
             throw new UnknownCommandException(command.getClass(), t);
         }
-        return;
     }
 }
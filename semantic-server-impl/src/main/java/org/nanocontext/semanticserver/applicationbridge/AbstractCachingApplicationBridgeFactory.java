@@ -6,6 +6,7 @@ import org.nanocontext.semanticserver.semanticserver.commandprocessor.exceptions
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.reflect.InvocationTargetException;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -48,13 +49,52 @@ implements ApplicationBridgeFactory {
         T result = (T) processorBridgeCache.get(processorBridgeClass);
 
         if (result == null) {
-            result = createNewInstance(processorBridgeClass);
+            result = createCompiledInstance(processorBridgeClass);
+            if (result == null) {
+                result = createNewInstance(processorBridgeClass);
+            }
             processorBridgeCache.put(processorBridgeClass, result);
         }
 
         return result;
     }
 
+    /**
+     * If a realization of the processor bridge was generated at build time (see
+     * the ApplicationBridge annotation) then create an instance of it.
+     *
+     * @param processorBridgeClass the interface to create from
+     * @param <T> the interface type
+     * @return a realization of the interface or null if no realization was generated at build time
+     * @throws ProcessorBridgeInstantiationException
+     */
+    protected <T> T createCompiledInstance(final Class<T> processorBridgeClass)
+            throws ProcessorBridgeInstantiationException {
+        final String compiledClassName =
+                processorBridgeClass.getName() + AbstractGeneratedApplicationBridge.COMPILED_CLASS_SUFFIX;
+        final Class<?> compiledClass;
+        try {
+            compiledClass = Class.forName(compiledClassName, true, processorBridgeClass.getClassLoader());
+        } catch (ClassNotFoundException cnfX) {
+            return null;
+        }
+
+        if (!processorBridgeClass.isAssignableFrom(compiledClass)
+                || !AbstractGeneratedApplicationBridge.class.isAssignableFrom(compiledClass)) {
+            LOGGER.warn("{} is not a generated realization of {}, ignoring it", compiledClassName, processorBridgeClass.getName());
+            return null;
+        }
+
+        try {
+            LOGGER.debug("Using build time generated {} as the realization of {}", compiledClassName, processorBridgeClass.getName());
+            return processorBridgeClass.cast(compiledClass.getConstructor(Application.class).newInstance(getApplication()));
+        } catch (InvocationTargetException itX) {
+            throw new ProcessorBridgeInstantiationException(processorBridgeClass, itX.getCause());
+        } catch (ReflectiveOperationException roX) {
+            throw new ProcessorBridgeInstantiationException(processorBridgeClass, roX);
+        }
+    }
+
     /**
      * Derived class must implement the "real" processor bridge creation.
      *
@@ -0,0 +1,146 @@
+package org.nanocontext.semanticserver.semanticserver.applicationbridge;
+
+import org.nanocontext.semanticserver.semanticserver.applicationbridge.exceptions.UnmappableCommandException;
+import org.nanocontext.semanticserverapi.core.Application;
+import org.objectweb.asm.Type;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The base class of the processor bridge realizations that are generated, either as
+ * byte code at runtime by the ApplicationBridgeGeneratedImplFactory or as source at
+ * build time by the semantic-server-annotation-processor.
+ * The dispatch plans of all of the processor bridge methods are resolved when the
+ * instance is constructed, each generated method is a direct call to invokeBridgeMethod()
+ * with the index of the pre-resolved plan.
+ *
+ * BIG IMPORTANT NOTE: the constructor and the invokeBridgeMethod() signatures are
+ * called from generated code, see ApplicationBridgeClassGenerator and the
+ * ApplicationBridgeProcessor.
+ * Modify with care.
+ */
+public abstract class AbstractGeneratedApplicationBridge
+extends AbstractApplicationBridge {
+    /** appended to the processor bridge interface name to form the name of the build time generated class */
+    public static final String COMPILED_CLASS_SUFFIX = "_CompiledApplicationBridge";
+
+    // ==========================================================================================
+    // The columns of a row in the pre-parsed names table of a build time generated class.
+    // The action and preposition are the text as it appears in the method name, the
+    // collection type is the name of the CollectionType constant.
+    // ==========================================================================================
+    public static final int PARSED_NAME_METHOD_KEY = 0;
+    public static final int PARSED_NAME_ACTION = 1;
+    public static final int PARSED_NAME_SUBJECT = 2;
+    public static final int PARSED_NAME_COLLECTION_TYPE = 3;
+    public static final int PARSED_NAME_PREPOSITION = 4;
+    public static final int PARSED_NAME_OBJECT = 5;
+
+    private final MethodDispatchPlan[] dispatchPlans;
+
+    /**
+     *
+     * @param application
+     * @param bridgeInterface the processor bridge interface that the derived class implements
+     * @throws UnmappableCommandException if any method of the processor bridge cannot be mapped
+     */
+    protected AbstractGeneratedApplicationBridge(final Application application, final Class<?> bridgeInterface)
+            throws UnmappableCommandException {
+        this(application, bridgeInterface, null);
+    }
+
+    /**
+     * Used by the build time generated classes, which provide the method names already
+     * parsed into their semantic parts.
+     * The methods are identified by the method key in each row, the index of a row is the
+     * index that the generated code passes to invokeBridgeMethod().
+     * A row with a null action (e.g. a method annotated with CommandMapping) is resolved
+     * as it would be at runtime.
+     *
+     * @param application
+     * @param bridgeInterface the processor bridge interface that the derived class implements
+     * @param parsedNames a row for each method of the processor bridge
+     * @throws UnmappableCommandException if any method of the processor bridge cannot be mapped
+     */
+    protected AbstractGeneratedApplicationBridge(
+            final Application application,
+            final Class<?> bridgeInterface,
+            final String[][] parsedNames)
+            throws UnmappableCommandException {
+        super(application);
+
+        Method[] bridgeMethods = ApplicationBridgeClassGenerator.getBridgeMethods(bridgeInterface);
+
+        if (parsedNames == null) {
+            this.dispatchPlans = new MethodDispatchPlan[bridgeMethods.length];
+            for (int index = 0; index < bridgeMethods.length; ++index) {
+                this.dispatchPlans[index] = MethodDispatchPlan.create(application, bridgeMethods[index]);
+            }
+        } else {
+            Map<String, Method> bridgeMethodsByKey = new HashMap<>();
+            for (Method bridgeMethod : bridgeMethods) {
+                bridgeMethodsByKey.put(getMethodKey(bridgeMethod), bridgeMethod);
+            }
+
+            this.dispatchPlans = new MethodDispatchPlan[parsedNames.length];
+            for (int index = 0; index < parsedNames.length; ++index) {
+                String[] parsedName = parsedNames[index];
+                Method method = bridgeMethodsByKey.get(parsedName[PARSED_NAME_METHOD_KEY]);
+                if (method == null) {
+                    throw new IllegalStateException(createMessage(bridgeInterface, parsedName[PARSED_NAME_METHOD_KEY]));
+                }
+
+                this.dispatchPlans[index] = parsedName[PARSED_NAME_ACTION] == null
+                        ? MethodDispatchPlan.create(application, method)
+                        : MethodDispatchPlan.create(method, Utility.getCommandClassSemantics(application, method, parsedName));
+            }
+        }
+    }
+
+    private static String createMessage(final Class<?> bridgeInterface, final String methodKey) {
+        return String.format("%s does not declare %s, the generated realization is out of date and must be re-built",
+                bridgeInterface.getName(), methodKey);
+    }
+
+    /**
+     * The key of a Method in the parsed names table, the method name followed
+     * by the method descriptor (e.g. "getAuthorization(Ljava/lang/String;)Lcom/acme/Authorization;")
+     *
+     * @param method
+     * @return
+     */
+    public static String getMethodKey(final Method method) {
+        return method.getName() + Type.getMethodDescriptor(method);
+    }
+
+    /**
+     * Called from each generated processor bridge method.
+     * Checked exceptions that the processor bridge method does not declare are wrapped in an
+     * UndeclaredThrowableException, as the dynamic proxy implementation would.
+     *
+     * @param methodIndex the index of the method, either in ApplicationBridgeClassGenerator.getBridgeMethods()
+     *                    or in the parsed names table
+     * @param args the method arguments, may be null if the method takes no arguments
+     * @return the result of the Command
+     * @throws Exception only those exceptions declared by the processor bridge method
+     */
+    protected final Object invokeBridgeMethod(final int methodIndex, final Object[] args)
+            throws Exception {
+        final MethodDispatchPlan plan = this.dispatchPlans[methodIndex];
+        try {
+            return dispatch(plan, args);
+        } catch (RuntimeException rtX) {
+            throw rtX;
+        } catch (Exception x) {
+            for (Class<?> declaredExceptionType : plan.getMethod().getExceptionTypes()) {
+                if (declaredExceptionType.isInstance(x)) {
+                    throw x;
+                }
+            }
+            throw new UndeclaredThrowableException(x);
+        }
+    }
+}
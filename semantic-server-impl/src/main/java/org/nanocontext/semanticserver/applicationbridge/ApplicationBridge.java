@@ -0,0 +1,22 @@
+package org.nanocontext.semanticserver.semanticserver.applicationbridge;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * An annotation that marks an interface as a processor bridge, for which the
+ * realization should be generated at build time.
+ * When the semantic-server-annotation-processor is on the compiler processor path,
+ * the method names of the annotated interface are validated against the application
+ * semantics, any violation is reported as a compile error, and a realization of the
+ * interface is generated.
+ * The ApplicationBridgeFactory implementations will use the generated realization
+ * in preference to creating one at runtime.
+ * Processor bridge interfaces that are not annotated are still realized at runtime.
+ */
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface ApplicationBridge {
+}
@@ -0,0 +1,254 @@
+package org.nanocontext.semanticserver.semanticserver.applicationbridge;
+
+import org.nanocontext.semanticserverapi.core.Application;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Generates the byte code of a processor bridge realization.
+ * The generated class extends AbstractGeneratedApplicationBridge and implements the
+ * processor bridge interface. Each interface method is compiled to a direct call to
+ * invokeBridgeMethod(), passing the index of the method and its arguments, for example:
+ *
+ * public final class SubjectProcessorBridge$$ApplicationBridge
+ * extends AbstractGeneratedApplicationBridge
+ * implements SubjectProcessorBridge {
+ *     public SubjectProcessorBridge$$ApplicationBridge(Application application) {
+ *         super(application, SubjectProcessorBridge.class);
+ *     }
+ *     public AuthorizationId postAuthorization(Authorization authorization) {
+ *         return (AuthorizationId) invokeBridgeMethod(1, new Object[]{authorization});
+ *     }
+ *     ...
+ * }
+ *
+ * The generated code has no branches and so needs no stack map frames.
+ * Usable ONLY by members of this package.
+ */
+class ApplicationBridgeClassGenerator
+implements Opcodes {
+    /** appended to the processor bridge interface name to form the generated class name */
+    static final String GENERATED_CLASS_SUFFIX = "$$ApplicationBridge";
+
+    private static final String SUPERCLASS_INTERNAL_NAME =
+            Type.getInternalName(AbstractGeneratedApplicationBridge.class);
+    private static final String CONSTRUCTOR_DESCRIPTOR =
+            Type.getMethodDescriptor(Type.VOID_TYPE, Type.getType(Application.class));
+    private static final String SUPER_CONSTRUCTOR_DESCRIPTOR =
+            Type.getMethodDescriptor(Type.VOID_TYPE, Type.getType(Application.class), Type.getType(Class.class));
+    private static final String INVOKE_BRIDGE_METHOD_NAME = "invokeBridgeMethod";
+    private static final String INVOKE_BRIDGE_METHOD_DESCRIPTOR =
+            Type.getMethodDescriptor(Type.getType(Object.class), Type.INT_TYPE, Type.getType(Object[].class));
+
+    /**
+     * Return the methods of a processor bridge interface that must be implemented by
+     * the realization, in a stable order. The index of a Method in the returned array
+     * is the index that the generated code passes to invokeBridgeMethod().
+     * Static and default methods are excluded, a method inherited through more than
+     * one super-interface is included once.
+     *
+     * @param bridgeInterface
+     * @return
+     */
+    static Method[] getBridgeMethods(final Class<?> bridgeInterface) {
+        Map<String, Method> methods = new LinkedHashMap<>();
+        for (Method method : bridgeInterface.getMethods()) {
+            if (Modifier.isStatic(method.getModifiers()) || method.isDefault()) {
+                continue;
+            }
+            String key = AbstractGeneratedApplicationBridge.getMethodKey(method);
+            if (!methods.containsKey(key)) {
+                methods.put(key, method);
+            }
+        }
+
+        List<Method> sorted = new ArrayList<>(methods.values());
+        Collections.sort(sorted, new Comparator<Method>() {
+            @Override
+            public int compare(final Method m1, final Method m2) {
+                int result = m1.getName().compareTo(m2.getName());
+                return result != 0
+                        ? result
+                        : Type.getMethodDescriptor(m1).compareTo(Type.getMethodDescriptor(m2));
+            }
+        });
+
+        return sorted.toArray(new Method[sorted.size()]);
+    }
+
+    /**
+     * @param bridgeInterface
+     * @return the binary name of the generated realization of the processor bridge
+     */
+    static String getGeneratedClassName(final Class<?> bridgeInterface) {
+        return bridgeInterface.getName() + GENERATED_CLASS_SUFFIX;
+    }
+
+    /**
+     * Generate the class file of a realization of the processor bridge interface.
+     *
+     * @param bridgeInterface a public interface
+     * @return the class file bytes
+     */
+    static byte[] generate(final Class<?> bridgeInterface) {
+        final String internalName = getGeneratedClassName(bridgeInterface).replace('.', '/');
+        final String interfaceInternalName = Type.getInternalName(bridgeInterface);
+
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(V1_8, ACC_PUBLIC | ACC_FINAL | ACC_SUPER | ACC_SYNTHETIC,
+                internalName, null, SUPERCLASS_INTERNAL_NAME, new String[]{interfaceInternalName});
+
+        generateConstructor(cw, bridgeInterface);
+
+        Method[] bridgeMethods = getBridgeMethods(bridgeInterface);
+        for (int index = 0; index < bridgeMethods.length; ++index) {
+            generateBridgeMethod(cw, internalName, bridgeMethods[index], index);
+        }
+
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    /**
+     * public <init>(Application application) {
+     *     super(application, BridgeInterface.class);
+     * }
+     */
+    private static void generateConstructor(final ClassWriter cw, final Class<?> bridgeInterface) {
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", CONSTRUCTOR_DESCRIPTOR, null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitLdcInsn(Type.getType(bridgeInterface));
+        mv.visitMethodInsn(INVOKESPECIAL, SUPERCLASS_INTERNAL_NAME, "<init>", SUPER_CONSTRUCTOR_DESCRIPTOR, false);
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /**
+     * public R method(P0 p0, P1 p1 ...) {
+     *     return (R) invokeBridgeMethod(methodIndex, new Object[]{p0, p1 ...});
+     * }
+     * Primitive parameters are boxed and primitive results are unboxed.
+     */
+    private static void generateBridgeMethod(
+            final ClassWriter cw,
+            final String internalName,
+            final Method method,
+            final int methodIndex) {
+        Class<?>[] exceptionTypes = method.getExceptionTypes();
+        String[] exceptionInternalNames = new String[exceptionTypes.length];
+        for (int index = 0; index < exceptionTypes.length; ++index) {
+            exceptionInternalNames[index] = Type.getInternalName(exceptionTypes[index]);
+        }
+
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC | ACC_FINAL,
+                method.getName(), Type.getMethodDescriptor(method), null, exceptionInternalNames);
+        mv.visitCode();
+
+        mv.visitVarInsn(ALOAD, 0);
+        pushInt(mv, methodIndex);
+
+        Type[] argumentTypes = Type.getArgumentTypes(method);
+        if (argumentTypes.length == 0) {
+            mv.visitInsn(ACONST_NULL);
+        } else {
+            pushInt(mv, argumentTypes.length);
+            mv.visitTypeInsn(ANEWARRAY, "java/lang/Object");
+            int localIndex = 1;
+            for (int index = 0; index < argumentTypes.length; ++index) {
+                mv.visitInsn(DUP);
+                pushInt(mv, index);
+                mv.visitVarInsn(argumentTypes[index].getOpcode(ILOAD), localIndex);
+                box(mv, argumentTypes[index]);
+                mv.visitInsn(AASTORE);
+                localIndex += argumentTypes[index].getSize();
+            }
+        }
+
+        mv.visitMethodInsn(INVOKEVIRTUAL, internalName, INVOKE_BRIDGE_METHOD_NAME, INVOKE_BRIDGE_METHOD_DESCRIPTOR, false);
+
+        Type returnType = Type.getReturnType(method);
+        if (returnType.getSort() == Type.VOID) {
+            mv.visitInsn(POP);
+            mv.visitInsn(RETURN);
+        } else {
+            unbox(mv, returnType);
+            mv.visitInsn(returnType.getOpcode(IRETURN));
+        }
+
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private static void pushInt(final MethodVisitor mv, final int value) {
+        if (value >= -1 && value <= 5) {
+            mv.visitInsn(ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            mv.visitIntInsn(BIPUSH, value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            mv.visitIntInsn(SIPUSH, value);
+        } else {
+            mv.visitLdcInsn(value);
+        }
+    }
+
+    /**
+     * If the type is primitive then replace the value on the top of the stack
+     * with its wrapper, else do nothing.
+     */
+    private static void box(final MethodVisitor mv, final Type type) {
+        Type wrapperType = getWrapperType(type);
+        if (wrapperType != null) {
+            mv.visitMethodInsn(INVOKESTATIC, wrapperType.getInternalName(), "valueOf",
+                    Type.getMethodDescriptor(wrapperType, type), false);
+        }
+    }
+
+    /**
+     * Replace the Object on the top of the stack with a value of the given type,
+     * either by a cast or by a cast and unwrapping the primitive value.
+     */
+    private static void unbox(final MethodVisitor mv, final Type type) {
+        Type wrapperType = getWrapperType(type);
+        if (wrapperType != null) {
+            mv.visitTypeInsn(CHECKCAST, wrapperType.getInternalName());
+            mv.visitMethodInsn(INVOKEVIRTUAL, wrapperType.getInternalName(), type.getClassName() + "Value",
+                    Type.getMethodDescriptor(type), false);
+        } else if (!"java/lang/Object".equals(type.getInternalName())) {
+            mv.visitTypeInsn(CHECKCAST, type.getSort() == Type.ARRAY ? type.getDescriptor() : type.getInternalName());
+        }
+    }
+
+    /**
+     * @return the wrapper type of a primitive type, or null if the type is not primitive
+     */
+    private static Type getWrapperType(final Type type) {
+        switch (type.getSort()) {
+            case Type.BOOLEAN: return Type.getType(Boolean.class);
+            case Type.CHAR: return Type.getType(Character.class);
+            case Type.BYTE: return Type.getType(Byte.class);
+            case Type.SHORT: return Type.getType(Short.class);
+            case Type.INT: return Type.getType(Integer.class);
+            case Type.FLOAT: return Type.getType(Float.class);
+            case Type.LONG: return Type.getType(Long.class);
+            case Type.DOUBLE: return Type.getType(Double.class);
+            default: return null;
+        }
+    }
+
+    private ApplicationBridgeClassGenerator() {
+    }
+}
@@ -0,0 +1,116 @@
+package org.nanocontext.semanticserver.semanticserver.applicationbridge;
+
+import org.nanocontext.semanticserver.semanticserver.commandprocessor.exceptions.ProcessorBridgeInstantiationException;
+import org.nanocontext.semanticserverapi.core.Application;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An implementation of the ProcessorBridgeFactory interface that
+ * creates ProcessorBridge realizations as classes generated at runtime.
+ * The generated classes call directly into the command location and
+ * execution, without the Proxy, InvocationHandler and Method lookup of
+ * the ApplicationBridgeProxyImplFactory realizations.
+ *
+ * Each generated class is defined in its own (child) class loader of the
+ * class loader of the processor bridge interface, so that the interface is
+ * visible to it wherever the interface was loaded from, and so that it may
+ * be unloaded along with the factory.
+ * The processor bridge interface must be public.
+ */
+public class ApplicationBridgeGeneratedImplFactory
+    extends AbstractCachingApplicationBridgeFactory
+    implements ApplicationBridgeFactory {
+    private final static Logger LOGGER = LoggerFactory.getLogger(ApplicationBridgeGeneratedImplFactory.class);
+
+    /** A cache of interface definitions mapped to the generated realization class */
+    private final Map<Class<?>, Class<? extends AbstractGeneratedApplicationBridge>> generatedClassCache =
+            new ConcurrentHashMap<>();
+
+    public ApplicationBridgeGeneratedImplFactory(Application application) {
+
+        super(application);
+    }
+
+    /**
+     *
+     * @param applicationCapabilities
+     * @param <T>
+     * @return
+     */
+    protected <T> T createNewInstance(final Class<T> applicationCapabilities)
+            throws ProcessorBridgeInstantiationException {
+        Class<? extends AbstractGeneratedApplicationBridge> generatedClass = getGeneratedClass(applicationCapabilities);
+
+        try {
+            return applicationCapabilities.cast(
+                    generatedClass.getConstructor(Application.class).newInstance(getApplication())
+            );
+        } catch (InvocationTargetException itX) {
+            throw new ProcessorBridgeInstantiationException(applicationCapabilities, itX.getCause());
+        } catch (ReflectiveOperationException roX) {
+            throw new ProcessorBridgeInstantiationException(applicationCapabilities, roX);
+        }
+    }
+
+    /**
+     * Get the generated realization of the processor bridge interface, generating
+     * and defining the class if it does not already exist.
+     *
+     * @param applicationCapabilities
+     * @return
+     * @throws ProcessorBridgeInstantiationException
+     */
+    private Class<? extends AbstractGeneratedApplicationBridge> getGeneratedClass(final Class<?> applicationCapabilities)
+            throws ProcessorBridgeInstantiationException {
+        Class<? extends AbstractGeneratedApplicationBridge> generatedClass = generatedClassCache.get(applicationCapabilities);
+
+        if (generatedClass == null) {
+            if (!Modifier.isPublic(applicationCapabilities.getModifiers())) {
+                throw new ProcessorBridgeInstantiationException(String.format(
+                        "%s must be public to generate a realization", applicationCapabilities.getName()));
+            }
+
+            try {
+                byte[] classFile = ApplicationBridgeClassGenerator.generate(applicationCapabilities);
+                BridgeClassLoader classLoader = new BridgeClassLoader(applicationCapabilities.getClassLoader());
+                generatedClass = classLoader.defineBridgeClass(
+                        ApplicationBridgeClassGenerator.getGeneratedClassName(applicationCapabilities),
+                        classFile
+                );
+                LOGGER.debug("Generated {} as the realization of {}", generatedClass.getName(), applicationCapabilities.getName());
+            } catch (RuntimeException | LinkageError x) {
+                throw new ProcessorBridgeInstantiationException(applicationCapabilities, x);
+            }
+
+            Class<? extends AbstractGeneratedApplicationBridge> existing =
+                    generatedClassCache.putIfAbsent(applicationCapabilities, generatedClass);
+            if (existing != null) {
+                generatedClass = existing;
+            }
+        }
+
+        return generatedClass;
+    }
+
+    /**
+     * The class loader of a single generated processor bridge realization.
+     * All other classes are delegated to the class loader of the processor bridge interface.
+     */
+    private static class BridgeClassLoader
+    extends ClassLoader {
+        private BridgeClassLoader(final ClassLoader parent) {
+            super(parent);
+        }
+
+        private Class<? extends AbstractGeneratedApplicationBridge> defineBridgeClass(final String name, final byte[] classFile) {
+            return defineClass(name, classFile, 0, classFile.length)
+                    .asSubclass(AbstractGeneratedApplicationBridge.class);
+        }
+    }
+}
@@ -1,21 +1,14 @@
 package org.nanocontext.semanticserver.semanticserver.applicationbridge;
 
-import org.nanocontext.semanticserver.semanticserver.ApplicationTransactionContext;
-import org.nanocontext.semanticserver.semanticserver.applicationbridge.exceptions.InvalidTransactionContextException;
 import org.nanocontext.semanticserver.semanticserver.applicationbridge.exceptions.UnmappableCommandException;
-import org.nanocontext.semanticserver.semanticserver.commandprocessor.exceptions.UnknownCommandException;
 import org.nanocontext.semanticserverapi.core.Application;
-import org.nanocontext.semanticserverapi.core.commandprocessor.AsynchronousExecutionCallback;
-import org.nanocontext.semanticserverapi.core.commandprocessor.RoutingToken;
-import org.nanocontext.semanticserverapi.core.semantics.CommandClassSemantics;
-import com.paypal.credit.xactionctx.TransactionContextFactory;
-import org.nanocontext.semanticserverapi.core.semantics.exceptions.CoreRouterSemanticsException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
-import java.util.concurrent.Callable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A processor bridge realization as a dynamic proxy invocation handler.
@@ -26,6 +19,13 @@ implements InvocationHandler {
     private static final Logger LOGGER =
             LoggerFactory.getLogger(ApplicationBridgeProxyInvocationHandler.class);
 
+    /**
+     * The resolved dispatch plans, keyed by the processor bridge Method.
+     * The proxy passes the same Method instances on every invocation so, once
+     * warmed, this is a single map lookup per call.
+     */
+    private final Map<Method, MethodDispatchPlan> dispatchPlans = new ConcurrentHashMap<>();
+
     /**
      *
      * @param application
@@ -40,43 +40,29 @@ implements InvocationHandler {
     @Override
     public Object invoke(final Object proxy, final Method method, final Object[] args)
             throws Exception {
-        ApplicationTransactionContext ctx = TransactionContextFactory.get(ApplicationTransactionContext.class);
-        RoutingToken routingToken = ctx.getRoutingToken();
-        if (routingToken == null) {
-            throw new InvalidTransactionContextException("getRoutingToken");
-        }
-
-        return findAndInvokeCommand(method, args, routingToken, method.getReturnType());
+        return dispatch(getDispatchPlan(method), args);
     }
 
     /**
+     * Get the dispatch plan for the Method, creating it on the first invocation.
+     * Note that there is a small chance that a plan will get created multiple times,
+     * the plans are equivalent and the first one into the Map is retained.
      *
      * @param method
-     * @param args
-     * @param routingToken
      * @return
      * @throws UnmappableCommandException
-     * @throws UnknownCommandException
-     * @throws CoreRouterSemanticsException
      */
-    private <R> R findAndInvokeCommand(
-            final Method method,
-            final Object[] args,
-            final RoutingToken routingToken,
-            final Class<R> resultType)
-    throws UnmappableCommandException, UnknownCommandException, CoreRouterSemanticsException {
-        CommandClassSemantics commandClassSemantics = Utility.getCommandClassSemantics(getApplication(), method);
-        Callable<R> command =
-                Utility.createCommand(getApplication(), method, args, routingToken, commandClassSemantics, resultType);
-
-        if (method.getAnnotation(AsynchronousExecution.class) != null) {
-            AsynchronousExecutionCallback<R> callback =
-                    (AsynchronousExecutionCallback<R>) Utility.extractAsynchronousExecutionCallback(args);
-            submitCommand(command, callback);
-            return null;
-        } else {
-            return executeCommand(command);
+    private MethodDispatchPlan getDispatchPlan(final Method method)
+            throws UnmappableCommandException {
+        MethodDispatchPlan plan = dispatchPlans.get(method);
+        if (plan == null) {
+            plan = MethodDispatchPlan.create(getApplication(), method);
+            MethodDispatchPlan existing = dispatchPlans.putIfAbsent(method, plan);
+            if (existing != null) {
+                plan = existing;
+            }
         }
+        return plan;
     }
 
 }
@@ -0,0 +1,59 @@
+package org.nanocontext.semanticserver.semanticserver.applicationbridge;
+
+import org.nanocontext.semanticserverapi.core.Application;
+
+/**
+ * The kinds of processor bridge realization, each creates the ApplicationBridgeFactory
+ * of that kind.
+ * The realization is selected by configuration, the system property
+ * "semanticserver.applicationbridge.realization" (e.g. -Dsemanticserver.applicationbridge.realization=GENERATED),
+ * and is PROXY if the property is not set.
+ * Either way a realization that was generated at build time (see the ApplicationBridge
+ * annotation) is used in preference.
+ */
+public enum ApplicationBridgeRealization {
+    /** dynamic proxies, see ApplicationBridgeProxyImplFactory */
+    PROXY {
+        @Override
+        public ApplicationBridgeFactory newFactory(final Application application) {
+            return new ApplicationBridgeProxyImplFactory(application);
+        }
+    },
+    /** classes generated at runtime, see ApplicationBridgeGeneratedImplFactory */
+    GENERATED {
+        @Override
+        public ApplicationBridgeFactory newFactory(final Application application) {
+            return new ApplicationBridgeGeneratedImplFactory(application);
+        }
+    };
+
+    /** the name of the system property that selects the realization */
+    public static final String REALIZATION_PROPERTY = "semanticserver.applicationbridge.realization";
+
+    /**
+     * @param application
+     * @return a new ApplicationBridgeFactory of this kind
+     */
+    public abstract ApplicationBridgeFactory newFactory(Application application);
+
+    /**
+     * @return the configured realization, PROXY if none is configured
+     * @throws IllegalArgumentException if the configured value is not the name of a realization
+     */
+    public static ApplicationBridgeRealization getConfigured() {
+        String configured = System.getProperty(REALIZATION_PROPERTY);
+        return configured == null || configured.trim().isEmpty()
+                ? PROXY
+                : valueOf(configured.trim().toUpperCase());
+    }
+
+    /**
+     * Create an ApplicationBridgeFactory of the configured realization.
+     *
+     * @param application
+     * @return
+     */
+    public static ApplicationBridgeFactory createConfiguredFactory(final Application application) {
+        return getConfigured().newFactory(application);
+    }
+}
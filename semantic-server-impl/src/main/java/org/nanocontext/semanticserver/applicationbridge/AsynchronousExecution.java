@@ -13,6 +13,9 @@ import java.lang.annotation.Target;
  * is made and results, if any, are discarded.
  * The CommandCallback method parameter is NOT used when locating the implementing Command,
  * i.e. the Command should NOT include the CommandCallback as a constructor parameter.
+ * A method that returns a CompletableFuture or a CompletionStage is always executed
+ * asynchronously and need not be annotated, the returned future completes with the
+ * result of the Command.
  */
 @Retention(RetentionPolicy.RUNTIME)
 @Target(ElementType.METHOD)
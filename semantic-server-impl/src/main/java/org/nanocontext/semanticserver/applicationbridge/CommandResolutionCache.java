@@ -0,0 +1,139 @@
+package org.nanocontext.semanticserver.semanticserver.applicationbridge;
+
+import org.nanocontext.semanticserver.semanticserver.commandprovider.RootCommandProvider;
+import org.nanocontext.semanticserverapi.core.commandprocessor.RoutingToken;
+import org.nanocontext.semanticserverapi.core.commandprovider.CommandInstantiationToken;
+import org.nanocontext.semanticserverapi.core.commandprovider.CommandProvider;
+import org.nanocontext.semanticserverapi.core.commandprovider.exceptions.CommandProviderException;
+import com.paypal.utility.TypeAndInstanceUtility;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caches the CommandInstantiationToken that the root CommandProvider found for a
+ * processor bridge Method, called in the context of a RoutingToken with arguments of
+ * a particular (runtime) type signature, so that repeated calls create the Command directly
+ * from the token rather than asking every CommandProvider to find the Command again.
+ *
+ * Cached tokens are invalidated by RootCommandProvider.reload(), every token is cached
+ * with the generation of the RootCommandProvider at the time it was found and a token found
+ * in a previous generation is never used.
+ * Calls that do not find exactly one Command are not cached.
+ *
+ * Usable ONLY by members of this package.
+ */
+final class CommandResolutionCache {
+    /** the cache is cleared, rather than grow past this number of entries */
+    static final int MAXIMUM_SIZE = 4096;
+
+    private final ConcurrentHashMap<ResolutionKey, Resolution> resolutions = new ConcurrentHashMap<>();
+
+    /**
+     * The equivalent of rootCommandProvider.createCommand(routingToken, semantics, commandArgs, resultType),
+     * that is findCommand() followed by createCommand(), using a cached token where there is one.
+     *
+     * @param rootCommandProvider
+     * @param plan
+     * @param commandArgs the arguments of the Command (i.e. less any callback)
+     * @param routingToken
+     * @return the Command, or null if no Command was found
+     * @throws CommandProviderException
+     */
+    <R> Callable<R> createCommand(
+            final CommandProvider rootCommandProvider,
+            final MethodDispatchPlan plan,
+            final Object[] commandArgs,
+            final RoutingToken routingToken)
+            throws CommandProviderException {
+        final long generation = getGeneration(rootCommandProvider);
+        final ResolutionKey key = new ResolutionKey(routingToken, plan.getMethod(), getArgumentTypes(commandArgs));
+
+        Resolution resolution = this.resolutions.get(key);
+        if (resolution == null || resolution.generation != generation) {
+            CommandInstantiationToken token = rootCommandProvider.findCommand(
+                    routingToken,
+                    plan.getCommandClassSemantics(),
+                    TypeAndInstanceUtility.getTypes(commandArgs),
+                    plan.getResultType());
+            if (token == null) {
+                return null;
+            }
+
+            resolution = new Resolution(token, generation);
+            if (this.resolutions.size() >= MAXIMUM_SIZE) {
+                this.resolutions.clear();
+            }
+            this.resolutions.put(key, resolution);
+        }
+
+        return (Callable<R>) rootCommandProvider.createCommand(resolution.token, commandArgs);
+    }
+
+    private static long getGeneration(final CommandProvider rootCommandProvider) {
+        return rootCommandProvider instanceof RootCommandProvider
+                ? ((RootCommandProvider) rootCommandProvider).getGeneration()
+                : 0L;
+    }
+
+    /**
+     * The runtime types of the arguments, a null argument has a null type.
+     */
+    private static Class<?>[] getArgumentTypes(final Object[] args) {
+        Class<?>[] argumentTypes = new Class<?>[args == null ? 0 : args.length];
+        for (int index = 0; index < argumentTypes.length; ++index) {
+            argumentTypes[index] = args[index] == null ? null : args[index].getClass();
+        }
+        return argumentTypes;
+    }
+
+    // ==========================================================================================
+    // Cache keys and values
+    // ==========================================================================================
+    private static final class ResolutionKey {
+        private final RoutingToken routingToken;
+        private final Method method;
+        private final Class<?>[] argumentTypes;
+        private final int hashCode;
+
+        private ResolutionKey(final RoutingToken routingToken, final Method method, final Class<?>[] argumentTypes) {
+            this.routingToken = routingToken;
+            this.method = method;
+            this.argumentTypes = argumentTypes;
+            this.hashCode = 31 * (31 * Objects.hashCode(routingToken) + method.hashCode()) + Arrays.hashCode(argumentTypes);
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ResolutionKey)) {
+                return false;
+            }
+            ResolutionKey that = (ResolutionKey) o;
+            return hashCode == that.hashCode
+                    && method.equals(that.method)
+                    && Arrays.equals(argumentTypes, that.argumentTypes)
+                    && Objects.equals(routingToken, that.routingToken);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    private static final class Resolution {
+        private final CommandInstantiationToken token;
+        private final long generation;
+
+        private Resolution(final CommandInstantiationToken token, final long generation) {
+            this.token = token;
+            this.generation = generation;
+        }
+    }
+}
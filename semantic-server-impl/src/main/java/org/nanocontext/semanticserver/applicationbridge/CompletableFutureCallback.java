@@ -0,0 +1,42 @@
+package org.nanocontext.semanticserver.semanticserver.applicationbridge;
+
+import org.nanocontext.semanticserverapi.core.commandprocessor.AsynchronousExecutionCallback;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * An AsynchronousExecutionCallback that completes a CompletableFuture, and then
+ * notifies the callback that was passed to the processor bridge method, if there was one.
+ *
+ * Usable ONLY by members of this package.
+ */
+final class CompletableFutureCallback<R> implements AsynchronousExecutionCallback<R> {
+    private final CompletableFuture<R> future;
+    private final AsynchronousExecutionCallback<R> delegate;
+
+    /**
+     *
+     * @param future the future to complete
+     * @param delegate the callback passed to the processor bridge method, may be null
+     */
+    CompletableFutureCallback(final CompletableFuture<R> future, final AsynchronousExecutionCallback<R> delegate) {
+        this.future = future;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void success(final R result) {
+        future.complete(result);
+        if (delegate != null) {
+            delegate.success(result);
+        }
+    }
+
+    @Override
+    public void failure(final Throwable t) {
+        future.completeExceptionally(t);
+        if (delegate != null) {
+            delegate.failure(t);
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package org.nanocontext.semanticserver.semanticserver.applicationbridge;
+
+import org.nanocontext.semanticserver.semanticserver.applicationbridge.exceptions.UnmappableCommandException;
+import org.nanocontext.semanticserverapi.core.Application;
+import org.nanocontext.semanticserverapi.core.commandprocessor.AsynchronousExecutionCallback;
+import org.nanocontext.semanticserverapi.core.semantics.CommandClassSemantics;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * The immutable result of everything that can be determined about a processor bridge
+ * Method without knowing the arguments of a particular call.
+ * A plan is built once, on the first invocation of a Method, and re-used for every
+ * subsequent invocation. Building the plan is where the (expensive) parsing of the
+ * method name into semantics and the reflection on the method annotations happens.
+ *
+ * NOTE: the callback stripping rule is decided from the declared parameter types,
+ * a Method that is annotated with AsynchronousExecution and declares an
+ * AsynchronousExecutionCallback as its first parameter will always have the first
+ * argument removed before the Command is located.
+ *
+ * A Method that returns a CompletableFuture or a CompletionStage is always executed
+ * asynchronously, whether or not it is annotated with AsynchronousExecution. The Command
+ * is located by the type argument of the future (e.g. AuthorizationId for a
+ * CompletableFuture&lt;AuthorizationId&gt;) and the future is completed with its result.
+ */
+final class MethodDispatchPlan {
+    private static final Object[] NO_ARGUMENTS = new Object[0];
+
+    private final Method method;
+    private final CommandClassSemantics commandClassSemantics;
+    private final Class<?> resultType;
+    private final boolean asynchronous;
+    private final boolean futureResult;
+    private final boolean callbackParameter;
+    private final Annotation[][] parameterAnnotations;
+
+    /**
+     * Resolve the semantics and annotations of the given Method.
+     *
+     * @param application the application that the bridge fronts
+     * @param method a processor bridge method
+     * @return a dispatch plan for the Method
+     * @throws UnmappableCommandException if the Method cannot be mapped to command semantics
+     */
+    static MethodDispatchPlan create(final Application application, final Method method)
+            throws UnmappableCommandException {
+        return create(method, Utility.getCommandClassSemantics(application, method));
+    }
+
+    /**
+     * Create a dispatch plan of the given Method where the semantics have already
+     * been determined, e.g. from the pre-parsed names of a build time generated bridge.
+     *
+     * @param method a processor bridge method
+     * @param commandClassSemantics the semantics of the Command that the Method maps to
+     * @return a dispatch plan for the Method
+     */
+    static MethodDispatchPlan create(final Method method, final CommandClassSemantics commandClassSemantics) {
+        boolean futureResult = isFutureResult(method);
+        boolean asynchronous = futureResult || method.getAnnotation(AsynchronousExecution.class) != null;
+        boolean callbackParameter = asynchronous
+                && Utility.includesAsynchronousExecutionCallback(method.getParameterTypes());
+
+        return new MethodDispatchPlan(
+                method,
+                commandClassSemantics,
+                futureResult ? getFutureResultType(method) : method.getReturnType(),
+                asynchronous,
+                futureResult,
+                callbackParameter,
+                method.getParameterAnnotations());
+    }
+
+    /**
+     * @return true if the Method returns a CompletableFuture or a CompletionStage
+     */
+    private static boolean isFutureResult(final Method method) {
+        Class<?> returnType = method.getReturnType();
+        return returnType == CompletableFuture.class || returnType == CompletionStage.class;
+    }
+
+    /**
+     * @return the (raw) type of the type argument of the future returned by the Method,
+     * Object if it cannot be determined
+     */
+    private static Class<?> getFutureResultType(final Method method) {
+        Type genericReturnType = method.getGenericReturnType();
+        if (genericReturnType instanceof ParameterizedType) {
+            Type typeArgument = ((ParameterizedType) genericReturnType).getActualTypeArguments()[0];
+            if (typeArgument instanceof WildcardType) {
+                typeArgument = ((WildcardType) typeArgument).getUpperBounds()[0];
+            }
+            if (typeArgument instanceof ParameterizedType) {
+                typeArgument = ((ParameterizedType) typeArgument).getRawType();
+            }
+            if (typeArgument instanceof Class) {
+                return (Class<?>) typeArgument;
+            }
+        }
+        return Object.class;
+    }
+
+    private MethodDispatchPlan(
+            final Method method,
+            final CommandClassSemantics commandClassSemantics,
+            final Class<?> resultType,
+            final boolean asynchronous,
+            final boolean futureResult,
+            final boolean callbackParameter,
+            final Annotation[][] parameterAnnotations) {
+        this.method = method;
+        this.commandClassSemantics = commandClassSemantics;
+        this.resultType = resultType;
+        this.asynchronous = asynchronous;
+        this.futureResult = futureResult;
+        this.callbackParameter = callbackParameter;
+        this.parameterAnnotations = parameterAnnotations;
+    }
+
+    Method getMethod() {
+        return method;
+    }
+
+    CommandClassSemantics getCommandClassSemantics() {
+        return commandClassSemantics;
+    }
+
+    /**
+     * @return the result type of the Command, for a Method that returns a future this is
+     * the type of the future result
+     */
+    Class<?> getResultType() {
+        return resultType;
+    }
+
+    /**
+     * @return true if the Method is annotated with AsynchronousExecution or returns a future
+     */
+    boolean isAsynchronous() {
+        return asynchronous;
+    }
+
+    /**
+     * @return true if the Method returns a CompletableFuture or a CompletionStage
+     */
+    boolean isFutureResult() {
+        return futureResult;
+    }
+
+    /**
+     * @return true if the first argument is an AsynchronousExecutionCallback that must
+     * be removed from the Command arguments
+     */
+    boolean hasCallbackParameter() {
+        return callbackParameter;
+    }
+
+    /**
+     * Note: the parameter annotations and the (declared) method parameters are the same length.
+     * There are no standard parameter annotations defined by the framework,
+     * but the parameter annotations may include annotations defined and/or
+     * used by the command providers.
+     * @return the parameter annotations of the Method, the caller must not modify the array
+     */
+    Annotation[][] getParameterAnnotations() {
+        return parameterAnnotations;
+    }
+
+    /**
+     * Return the arguments that are used to locate and to construct the Command,
+     * that is the invocation arguments less the callback, if there is one.
+     *
+     * @param args the arguments as passed to the processor bridge method
+     * @return the Command arguments
+     */
+    Object[] getCommandArguments(final Object[] args) {
+        if (callbackParameter && args != null && args.length >= 1) {
+            Object[] commandArgs = new Object[args.length - 1];
+            System.arraycopy(args, 1, commandArgs, 0, commandArgs.length);
+            return commandArgs;
+        }
+        return args == null ? NO_ARGUMENTS : args;
+    }
+
+    /**
+     * @param args the arguments as passed to the processor bridge method
+     * @return the callback argument, or null if the Method does not take a callback
+     */
+    AsynchronousExecutionCallback<?> getCallback(final Object[] args) {
+        if (callbackParameter && args != null && args.length >= 1) {
+            return (AsynchronousExecutionCallback<?>) args[0];
+        }
+        return null;
+    }
+}
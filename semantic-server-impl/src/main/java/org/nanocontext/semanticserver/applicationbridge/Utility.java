@@ -5,8 +5,11 @@ import org.nanocontext.semanticserver.semanticserver.commandprocessor.exceptions
 import org.nanocontext.semanticserverapi.core.Application;
 import org.nanocontext.semanticserverapi.core.commandprocessor.AsynchronousExecutionCallback;
 import org.nanocontext.semanticserverapi.core.commandprocessor.RoutingToken;
+import org.nanocontext.semanticserverapi.core.semantics.ApplicationSemantics;
+import org.nanocontext.semanticserverapi.core.semantics.CollectionType;
 import org.nanocontext.semanticserverapi.core.semantics.CommandClassSemantics;
 import org.nanocontext.semanticserverapi.core.semantics.ProcessorBridgeMethodSemantics;
+import org.nanocontext.semanticserverapi.core.semantics.VocabularyWord;
 import org.nanocontext.semanticserverapi.core.semantics.exceptions.CoreRouterSemanticsException;
 
 import java.lang.annotation.Annotation;
@@ -58,6 +61,52 @@ class Utility {
         return commandClassSemantics;
     }
 
+    /**
+     * Create the command class semantics from a method name that was parsed at build time,
+     * without parsing the method name again.
+     * If the pre-parsed action or preposition is not in the application vocabulary, which is
+     * possible if the application vocabulary differs from the default vocabulary used at build
+     * time, then the method name is parsed.
+     *
+     * @param application
+     * @param method
+     * @param parsedName a row of the parsed names table, see AbstractGeneratedApplicationBridge
+     * @return
+     * @throws UnmappableCommandException
+     */
+    static CommandClassSemantics getCommandClassSemantics(
+            final Application application,
+            final Method method,
+            final String[] parsedName)
+            throws UnmappableCommandException {
+        ApplicationSemantics applicationSemantics = application.getApplicationSemantics();
+
+        String actionText = parsedName[AbstractGeneratedApplicationBridge.PARSED_NAME_ACTION];
+        String collectionTypeName = parsedName[AbstractGeneratedApplicationBridge.PARSED_NAME_COLLECTION_TYPE];
+        String prepositionText = parsedName[AbstractGeneratedApplicationBridge.PARSED_NAME_PREPOSITION];
+
+        VocabularyWord action = applicationSemantics.getActionVocabulary().find(actionText);
+        VocabularyWord preposition = prepositionText == null
+                ? null
+                : applicationSemantics.getPrepositionVocabulary().find(prepositionText);
+        if (action == null || (prepositionText != null && preposition == null)) {
+            return getCommandClassSemantics(application, method);
+        }
+
+        try {
+            ProcessorBridgeMethodSemantics methodSemantics = applicationSemantics.createProcessorBridgeMethodSemantics(
+                    action,
+                    parsedName[AbstractGeneratedApplicationBridge.PARSED_NAME_SUBJECT],
+                    collectionTypeName == null ? null : CollectionType.valueOf(collectionTypeName),
+                    preposition,
+                    parsedName[AbstractGeneratedApplicationBridge.PARSED_NAME_OBJECT]
+            );
+            return applicationSemantics.createCommandClassSemantic(methodSemantics);
+        } catch (CoreRouterSemanticsException crsX) {
+            throw new UnmappableCommandException(method, crsX);
+        }
+    }
+
     /**
      * Create a Command instance from the Method, arguments, RoutingToken,
      * and other stuff.
@@ -119,6 +168,48 @@ class Utility {
         }
     }
 
+    /**
+     * Create a Command instance from a previously resolved MethodDispatchPlan.
+     * This is the equivalent of the createCommand above without the reflection
+     * on the Method, the plan has already determined the semantics and whether
+     * the first argument is a callback, and the Command is located through the
+     * resolution cache.
+     *
+     * @param application
+     * @param plan
+     * @param args
+     * @param routingToken
+     * @param commandResolutionCache
+     * @return
+     * @throws UnknownCommandException
+     */
+    public static <R> Callable<R> createCommand(
+            final Application application,
+            final MethodDispatchPlan plan,
+            final Object[] args,
+            final RoutingToken routingToken,
+            final CommandResolutionCache commandResolutionCache)
+            throws UnknownCommandException {
+        final CommandClassSemantics commandClassSemantics = plan.getCommandClassSemantics();
+
+        try {
+            Callable<R> command = commandResolutionCache.createCommand(
+                    application.getRootCommandProvider(),
+                    plan,
+                    plan.getCommandArguments(args),
+                    routingToken
+            );
+
+            if (command == null) {
+                throw new UnmappableCommandException(plan.getMethod(), commandClassSemantics);
+            }
+
+            return command;
+        } catch (Throwable t) {
+            throw new UnknownCommandException(commandClassSemantics, t);
+        }
+    }
+
     // ==========================================================================================
     //
     // ==========================================================================================
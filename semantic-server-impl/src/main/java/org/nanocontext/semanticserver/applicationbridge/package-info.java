@@ -9,6 +9,9 @@
  * for class resolution, when the application bridge is generated (or proxied).
  *
  * The processor bridge is an interface only, the realization is generated at runtime.
+ * If the processor bridge is annotated with ApplicationBridge and the semantic-server-annotation-processor
+ * is on the compiler processor path then the realization is generated at build time, and
+ * any violation of the application semantics is a compile error.
  * The processor bridge has no requirements with regard to its class hierarchy.
  * The processor bridge must be an interface or an exception is thrown.
  * The methods declared in the processor bridge must be constrained to the application
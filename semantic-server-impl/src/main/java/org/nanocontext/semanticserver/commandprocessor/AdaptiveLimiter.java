@@ -0,0 +1,265 @@
+package org.nanocontext.semanticserver.semanticserver.commandprocessor;
+
+import org.nanocontext.semanticserver.semanticserver.commandprocessor.exceptions.ConcurrencyLimitExceededException;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Queue;
+import java.util.WeakHashMap;
+
+/**
+ * Limits the number of asynchronous Commands of each command class that are in flight, adjusting
+ * each limit from the observed execution time (RTT) of the Commands of that class by AIMD
+ * (additive increase, multiplicative decrease):
+ * - when an RTT exceeds the tolerance times the minimum RTT, the limit is multiplied by the backoff ratio
+ * - otherwise, when at least half of the limit is in use, the limit is increased by one
+ * The minimum RTT is measured over a window of samples, so that it follows a downstream
+ * whose unloaded latency has changed.
+ *
+ * A Command submitted when the limit of its class is reached waits in the queue of the class,
+ * if there is room, else it is rejected with a ConcurrencyLimitExceededException.
+ * A maximum queue length of zero rejects rather than queues.
+ */
+public class AdaptiveLimiter {
+    public static final int DEFAULT_INITIAL_LIMIT = 20;
+    public static final int DEFAULT_MINIMUM_LIMIT = 1;
+    public static final int DEFAULT_MAXIMUM_LIMIT = 1000;
+    public static final int DEFAULT_MAXIMUM_QUEUE_LENGTH = 100;
+    public static final double DEFAULT_BACKOFF_RATIO = 0.9;
+    public static final double DEFAULT_TOLERANCE = 2.0;
+    /** the number of samples after which the minimum RTT is re-measured */
+    static final int RTT_WINDOW = 500;
+    /** the weight of a sample in the smoothed RTT */
+    private static final double SMOOTHING = 0.1;
+
+    private final int initialLimit;
+    private final int minimumLimit;
+    private final int maximumLimit;
+    private final int maximumQueueLength;
+    private final double backoffRatio;
+    private final double tolerance;
+
+    /** weakly keyed, so that the command classes of an undeployed ClassLoader are not retained */
+    private final Map<Class<?>, CommandClassLimit> limits =
+            Collections.synchronizedMap(new WeakHashMap<Class<?>, CommandClassLimit>());
+
+    public AdaptiveLimiter() {
+        this(DEFAULT_INITIAL_LIMIT, DEFAULT_MINIMUM_LIMIT, DEFAULT_MAXIMUM_LIMIT, DEFAULT_MAXIMUM_QUEUE_LENGTH);
+    }
+
+    public AdaptiveLimiter(
+            final int initialLimit, final int minimumLimit, final int maximumLimit, final int maximumQueueLength) {
+        this(initialLimit, minimumLimit, maximumLimit, maximumQueueLength, DEFAULT_BACKOFF_RATIO, DEFAULT_TOLERANCE);
+    }
+
+    /**
+     *
+     * @param initialLimit the limit of a command class before any RTT is observed
+     * @param minimumLimit
+     * @param maximumLimit
+     * @param maximumQueueLength the maximum number of Commands of a class waiting for the limit, zero to reject
+     * @param backoffRatio the factor (less than one) applied to the limit when the RTT exceeds the tolerance
+     * @param tolerance the multiple (greater than one) of the minimum RTT above which an RTT indicates overload
+     */
+    public AdaptiveLimiter(
+            final int initialLimit,
+            final int minimumLimit,
+            final int maximumLimit,
+            final int maximumQueueLength,
+            final double backoffRatio,
+            final double tolerance) {
+        if (minimumLimit <= 0 || minimumLimit > initialLimit || initialLimit > maximumLimit) {
+            throw new IllegalArgumentException("The limits must satisfy 0 < minimumLimit <= initialLimit <= maximumLimit");
+        }
+        if (maximumQueueLength < 0) {
+            throw new IllegalArgumentException("'maximumQueueLength' must not be negative");
+        }
+        if (backoffRatio <= 0.0 || backoffRatio >= 1.0) {
+            throw new IllegalArgumentException("'backoffRatio' must be between zero and one");
+        }
+        if (tolerance <= 1.0) {
+            throw new IllegalArgumentException("'tolerance' must be greater than one");
+        }
+        this.initialLimit = initialLimit;
+        this.minimumLimit = minimumLimit;
+        this.maximumLimit = maximumLimit;
+        this.maximumQueueLength = maximumQueueLength;
+        this.backoffRatio = backoffRatio;
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * @return the limits of the command classes that have been submitted
+     */
+    public Collection<CommandClassLimit> getCommandClassLimits() {
+        synchronized (limits) {
+            return Collections.unmodifiableCollection(new ArrayList<>(limits.values()));
+        }
+    }
+
+    /**
+     * @param commandClass
+     * @return the limit of the command class, null if no Command of the class has been submitted
+     */
+    public CommandClassLimit getCommandClassLimit(final Class<?> commandClass) {
+        return limits.get(commandClass);
+    }
+
+    // ==========================================================================================
+    // Admission, usable ONLY by members of this package
+    // ==========================================================================================
+    /**
+     * Admit a Command, every admitted Command (including those dispatched from the queue) must
+     * be followed by exactly one release().
+     *
+     * @param commandClass
+     * @param dispatch executes the Command, run by the limiter when a queued Command is admitted
+     * @return true if the Command is admitted and the caller must dispatch it, false if it is queued
+     * @throws ConcurrencyLimitExceededException if the Command is neither admitted nor queued
+     */
+    boolean tryAcquire(final Class<?> commandClass, final Runnable dispatch) {
+        return getOrCreateLimit(commandClass).tryAcquire(dispatch);
+    }
+
+    /**
+     * @param commandClass
+     * @param rttNanos the execution time of the Command, negative if it was not executed
+     */
+    void release(final Class<?> commandClass, final long rttNanos) {
+        getOrCreateLimit(commandClass).release(rttNanos);
+    }
+
+    private CommandClassLimit getOrCreateLimit(final Class<?> commandClass) {
+        synchronized (limits) {
+            CommandClassLimit limit = limits.get(commandClass);
+            if (limit == null) {
+                limit = new CommandClassLimit(commandClass);
+                limits.put(commandClass, limit);
+            }
+            return limit;
+        }
+    }
+
+    // ==========================================================================================
+    // Per command class state
+    // ==========================================================================================
+    /**
+     * The limit, in flight count and RTT of one command class.
+     */
+    public final class CommandClassLimit {
+        /** weakly referenced, the limit is the value of its command class in a WeakHashMap */
+        private final WeakReference<Class<?>> commandClass;
+        private final String commandClassName;
+        private final Queue<Runnable> waiting = new ArrayDeque<>();
+
+        private int limit = initialLimit;
+        private int inFlight;
+        private long minimumRttNanos = Long.MAX_VALUE;
+        private long windowMinimumRttNanos = Long.MAX_VALUE;
+        private double smoothedRttNanos;
+        private long sampleCount;
+        private long rejectedCount;
+
+        private CommandClassLimit(final Class<?> commandClass) {
+            this.commandClass = new WeakReference<Class<?>>(commandClass);
+            this.commandClassName = commandClass.getSimpleName();
+        }
+
+        /**
+         * @return the command class, null if it has been unloaded
+         */
+        public Class<?> getCommandClass() {
+            return commandClass.get();
+        }
+
+        public synchronized int getLimit() {
+            return limit;
+        }
+
+        public synchronized int getInFlight() {
+            return inFlight;
+        }
+
+        public synchronized int getQueueLength() {
+            return waiting.size();
+        }
+
+        /**
+         * @return the minimum RTT, in nanoseconds, zero if no RTT has been observed
+         */
+        public synchronized long getMinimumRttNanos() {
+            return minimumRttNanos == Long.MAX_VALUE ? 0L : minimumRttNanos;
+        }
+
+        /**
+         * @return the exponentially smoothed RTT, in nanoseconds, zero if no RTT has been observed
+         */
+        public synchronized long getSmoothedRttNanos() {
+            return (long) smoothedRttNanos;
+        }
+
+        public synchronized long getRejectedCount() {
+            return rejectedCount;
+        }
+
+        private boolean tryAcquire(final Runnable dispatch) {
+            synchronized (this) {
+                if (inFlight < limit) {
+                    ++inFlight;
+                    return true;
+                }
+                if (waiting.size() < maximumQueueLength) {
+                    waiting.add(dispatch);
+                    return false;
+                }
+                ++rejectedCount;
+            }
+            throw new ConcurrencyLimitExceededException(commandClass.get(), getLimit());
+        }
+
+        private void release(final long rttNanos) {
+            Runnable next;
+            synchronized (this) {
+                if (rttNanos >= 0L) {
+                    sample(rttNanos);
+                }
+                next = inFlight <= limit ? waiting.poll() : null;
+                if (next == null) {
+                    --inFlight;
+                }
+                // else the permit passes to the next waiting Command
+            }
+            // dispatch outside of the lock, dispatching may execute the Command on this thread
+            if (next != null) {
+                next.run();
+            }
+        }
+
+        private void sample(final long rttNanos) {
+            minimumRttNanos = Math.min(minimumRttNanos, rttNanos);
+            windowMinimumRttNanos = Math.min(windowMinimumRttNanos, rttNanos);
+            smoothedRttNanos = sampleCount == 0 ? rttNanos : smoothedRttNanos + SMOOTHING * (rttNanos - smoothedRttNanos);
+            if (++sampleCount % RTT_WINDOW == 0) {
+                minimumRttNanos = windowMinimumRttNanos;
+                windowMinimumRttNanos = Long.MAX_VALUE;
+            }
+
+            if (rttNanos > minimumRttNanos * tolerance) {
+                limit = Math.max(minimumLimit, (int) (limit * backoffRatio));
+            } else if (inFlight * 2 >= limit) {
+                limit = Math.min(maximumLimit, limit + 1);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s[limit=%d, inFlight=%d, queued=%d, minRtt=%dus, rtt=%dus, rejected=%d]",
+                    commandClassName, getLimit(), getInFlight(), getQueueLength(),
+                    getMinimumRttNanos() / 1000L, getSmoothedRttNanos() / 1000L, getRejectedCount());
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package org.nanocontext.semanticserver.semanticserver.commandprocessor;
+
+import org.nanocontext.semanticserverapi.core.commandprocessor.BatchableCommand;
+
+import java.util.concurrent.Callable;
+
+/**
+ * BatchableCommands are accumulated by class, by a MicroBatcher, and executed in batches,
+ * without admission, other Commands are executed as by an UnboundedExecutionStrategy.
+ *
+ * Usable ONLY by members of this package.
+ */
+final class BatchingExecutionStrategy extends UnboundedExecutionStrategy {
+    private final MicroBatcher microBatcher;
+
+    BatchingExecutionStrategy(final int maximumBatchSize, final long maximumLingerMillis) {
+        this.microBatcher = new MicroBatcher(maximumBatchSize, maximumLingerMillis, getExecutor());
+    }
+
+    @Override
+    public boolean isExecutedUnadmitted(final Callable<?> command) {
+        return command instanceof BatchableCommand;
+    }
+
+    @Override
+    public <R> void executeUnadmitted(final Callable<R> command, final UnadmittedTask<R> task) {
+        this.microBatcher.add((BatchableCommand<R>) command, task);
+    }
+
+    /**
+     * Pending batches are executed before the executor stops accepting them.
+     */
+    @Override
+    public void shutdown() {
+        this.microBatcher.shutdown();
+        super.shutdown();
+    }
+}
@@ -0,0 +1,119 @@
+package org.nanocontext.semanticserver.semanticserver.commandprocessor;
+
+import org.nanocontext.semanticserver.semanticserver.commandprocessor.CommandProcessorDefaultImpl.SaturationPolicy;
+import org.nanocontext.semanticserver.semanticserver.commandprocessor.exceptions.CommandProcessorSaturatedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * At most the maximum number of threads execute Commands and at most the work queue size
+ * Commands wait for a thread, when both are exhausted the SaturationPolicy determines what
+ * happens to a Command.
+ *
+ * Usable ONLY by members of this package.
+ */
+final class BoundedExecutionStrategy extends UnboundedExecutionStrategy {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BoundedExecutionStrategy.class);
+    private static final long KEEP_ALIVE_SECONDS = 10L;
+
+    private final int workQueueSize;
+    private final int maximumThreads;
+    private final SaturationPolicy saturationPolicy;
+
+    BoundedExecutionStrategy(
+            final int workQueueSize,
+            final int coreThreads,
+            final int maximumThreads,
+            final SaturationPolicy saturationPolicy,
+            final long blockTimeoutMillis) {
+        super(new ThreadPoolExecutor(
+                coreThreads, maximumThreads,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(workQueueSize),
+                createThreadFactory(),
+                new SaturationHandler(saturationPolicy, blockTimeoutMillis, maximumThreads, workQueueSize)));
+        this.workQueueSize = workQueueSize;
+        this.maximumThreads = maximumThreads;
+        this.saturationPolicy = saturationPolicy;
+    }
+
+    SaturationPolicy getSaturationPolicy() {
+        return saturationPolicy;
+    }
+
+    /**
+     * A task that is rejected because the strategy is saturated is executed on the calling
+     * thread if the SaturationPolicy is CALLER_RUNS.
+     */
+    @Override
+    public void execute(final Callable<?> command, final Runnable task) {
+        try {
+            super.execute(command, task);
+        } catch (CommandProcessorSaturatedException cpsX) {
+            if (saturationPolicy != SaturationPolicy.CALLER_RUNS) {
+                throw cpsX;
+            }
+            LOGGER.debug("Saturated, executing '{}' on the calling thread.", command.getClass().getSimpleName());
+            task.run();
+        }
+    }
+
+    /**
+     * The number of executing and of waiting Commands as a fraction of the maximum threads
+     * plus the work queue size.
+     */
+    @Override
+    public double getSaturation() {
+        ThreadPoolExecutor executor = (ThreadPoolExecutor) getExecutor();
+        int load = executor.getActiveCount() + executor.getQueue().size();
+        return Math.min(1.0, (double)load / (this.maximumThreads + this.workQueueSize));
+    }
+
+    /**
+     * Handles the tasks that the Executor cannot accept.
+     * CALLER_RUNS is implemented by execute(), here it is rejected just as REJECT is.
+     */
+    private static class SaturationHandler implements RejectedExecutionHandler {
+        private final SaturationPolicy saturationPolicy;
+        private final long blockTimeoutMillis;
+        private final int maximumThreads;
+        private final int workQueueSize;
+
+        private SaturationHandler(
+                final SaturationPolicy saturationPolicy,
+                final long blockTimeoutMillis,
+                final int maximumThreads,
+                final int workQueueSize) {
+            this.saturationPolicy = saturationPolicy;
+            this.blockTimeoutMillis = blockTimeoutMillis;
+            this.maximumThreads = maximumThreads;
+            this.workQueueSize = workQueueSize;
+        }
+
+        @Override
+        public void rejectedExecution(final Runnable task, final ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException("The command processor has been shut down");
+            }
+
+            if (saturationPolicy == SaturationPolicy.BLOCK) {
+                try {
+                    if (executor.getQueue().offer(task, blockTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                        return;
+                    }
+                } catch (InterruptedException iX) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            throw new CommandProcessorSaturatedException(maximumThreads, workQueueSize);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package org.nanocontext.semanticserver.semanticserver.commandprocessor;
+
+import com.paypal.utility.ParameterCheckUtility;
+import org.nanocontext.semanticserverapi.core.commandprocessor.RoutingToken;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An isolated concurrency budget for the asynchronous Commands of a group of RoutingTokens.
+ * A Command is admitted when it is submitted and holds its permit until it completes, a Command
+ * that cannot be admitted (within the maximum wait) is rejected and counted, so that a slow
+ * downstream of one group cannot take the threads of the CommandProcessor from the other groups.
+ *
+ * Bulkheads are configured in the application context, as the bulkheads of the command processor:
+ * <pre>
+ * &lt;bean id="command-processor" class="org.nanocontext.semanticserver.semanticserver.commandprocessor.CommandProcessorDefaultImpl" factory-method="createBulkheaded" scope="singleton"&gt;
+ *     &lt;constructor-arg&gt;
+ *         &lt;list&gt;
+ *             &lt;bean class="org.nanocontext.semanticserver.semanticserver.commandprocessor.Bulkhead" scope="singleton"&gt;
+ *                 &lt;constructor-arg&gt;&lt;value&gt;credit&lt;/value&gt;&lt;/constructor-arg&gt;
+ *                 &lt;constructor-arg&gt;&lt;value&gt;20&lt;/value&gt;&lt;/constructor-arg&gt;
+ *                 &lt;constructor-arg&gt;
+ *                     &lt;list&gt;
+ *                         &lt;bean class="org.nanocontext.semanticserver.semanticserver.applicationbridge.ProductTypeRoutingToken" scope="singleton"&gt;
+ *                             &lt;constructor-arg&gt;&lt;value&gt;CREDIT&lt;/value&gt;&lt;/constructor-arg&gt;
+ *                         &lt;/bean&gt;
+ *                     &lt;/list&gt;
+ *                 &lt;/constructor-arg&gt;
+ *             &lt;/bean&gt;
+ *         &lt;/list&gt;
+ *     &lt;/constructor-arg&gt;
+ * &lt;/bean&gt;
+ * </pre>
+ */
+public class Bulkhead {
+    private final String name;
+    private final int maximumConcurrency;
+    private final long maximumWaitMillis;
+    private final List<RoutingToken> routingTokens;
+
+    private final Semaphore permits;
+    private final AtomicLong admittedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    /**
+     * A Bulkhead that rejects a Command immediately when it is full.
+     *
+     * @param name
+     * @param maximumConcurrency
+     * @param routingTokens
+     */
+    public Bulkhead(final String name, final int maximumConcurrency, final List<RoutingToken> routingTokens) {
+        this(name, maximumConcurrency, 0L, routingTokens);
+    }
+
+    /**
+     *
+     * @param name the name of the Bulkhead, for logging and monitoring
+     * @param maximumConcurrency the maximum number of admitted Commands that have not completed
+     * @param maximumWaitMillis the maximum time that a submitter waits to be admitted, zero to reject immediately
+     * @param routingTokens the RoutingTokens whose Commands share this Bulkhead
+     */
+    public Bulkhead(
+            final String name,
+            final int maximumConcurrency,
+            final long maximumWaitMillis,
+            final List<RoutingToken> routingTokens) {
+        ParameterCheckUtility.checkParameterNotNull(name, "name");
+        ParameterCheckUtility.checkParameterStrictlyPositive(maximumConcurrency, "maximumConcurrency");
+        this.name = name;
+        this.maximumConcurrency = maximumConcurrency;
+        this.maximumWaitMillis = Math.max(0L, maximumWaitMillis);
+        this.routingTokens = routingTokens == null
+                ? Collections.<RoutingToken>emptyList()
+                : Collections.unmodifiableList(new ArrayList<>(routingTokens));
+        this.permits = new Semaphore(maximumConcurrency);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getMaximumConcurrency() {
+        return maximumConcurrency;
+    }
+
+    public long getMaximumWaitMillis() {
+        return maximumWaitMillis;
+    }
+
+    public List<RoutingToken> getRoutingTokens() {
+        return routingTokens;
+    }
+
+    /**
+     * @return the number of Commands that are admitted and have not yet completed
+     */
+    public int getActiveCount() {
+        return maximumConcurrency - permits.availablePermits();
+    }
+
+    /**
+     * @return the number of Commands admitted since the Bulkhead was created
+     */
+    public long getAdmittedCount() {
+        return admittedCount.get();
+    }
+
+    /**
+     * @return the number of Commands rejected since the Bulkhead was created
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    // ==========================================================================================
+    // Admission, usable ONLY by members of this package
+    // ==========================================================================================
+    /**
+     * Admit a Command, a successful admission must be followed by exactly one release().
+     *
+     * @return true if the Command is admitted, false if it is rejected
+     */
+    boolean tryAdmit() {
+        boolean admitted;
+        try {
+            admitted = permits.tryAcquire(maximumWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException iX) {
+            Thread.currentThread().interrupt();
+            admitted = false;
+        }
+
+        if (admitted) {
+            admittedCount.incrementAndGet();
+        } else {
+            rejectedCount.incrementAndGet();
+        }
+        return admitted;
+    }
+
+    void release() {
+        permits.release();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Bulkhead[%s, active=%d/%d, admitted=%d, rejected=%d]",
+                name, getActiveCount(), maximumConcurrency, getAdmittedCount(), getRejectedCount());
+    }
+}
@@ -0,0 +1,57 @@
+package org.nanocontext.semanticserver.semanticserver.commandprocessor;
+
+import org.nanocontext.semanticserverapi.core.Application;
+
+import java.util.concurrent.Callable;
+
+/**
+ * How a CommandProcessorDefaultImpl executes its asynchronous Commands, that is the threads
+ * that execute them and what happens when those threads are busy.
+ * The CommandProcessorDefaultImpl admits a Command (through its Bulkhead and AdaptiveLimiter),
+ * wraps it in a task that notifies its callback, and then passes the task to the strategy.
+ *
+ * Usable ONLY by members of this package.
+ */
+interface CommandExecutionStrategy {
+    /**
+     * @param application the Application in which the CommandProcessor is running
+     */
+    void setApplication(Application application);
+
+    /**
+     * @param command
+     * @return true if the Command is executed by executeUnadmitted(), without admission by
+     * a Bulkhead or an AdaptiveLimiter
+     */
+    boolean isExecutedUnadmitted(Callable<?> command);
+
+    /**
+     * Execute a Command for which isExecutedUnadmitted() returned true.
+     *
+     * @param command
+     * @param task started before the Command is executed and completed with its result
+     */
+    <R> void executeUnadmitted(Callable<R> command, UnadmittedTask<R> task);
+
+    /**
+     * Execute the task of an admitted Command.
+     *
+     * @param command the Command, as submitted
+     * @param task the task that executes the Command, the execution time of the Command is
+     *             measured from when the task is run, so a strategy that limits the Commands
+     *             executing at once must wait for the limit before it runs the task
+     * @throws org.nanocontext.semanticserver.semanticserver.commandprocessor.exceptions.CommandProcessorSaturatedException
+     * if the task is rejected because the strategy is saturated
+     * @throws java.util.concurrent.RejectedExecutionException if the strategy has been shut down
+     */
+    void execute(Callable<?> command, Runnable task);
+
+    /**
+     * @return 0.0 (idle) to 1.0 (saturated), always 0.0 if the strategy is unbounded
+     */
+    double getSaturation();
+
+    void shutdown();
+
+    boolean isShutdown();
+}
@@ -0,0 +1,629 @@
+package org.nanocontext.semanticserver.semanticserver.commandprocessor;
+
+import org.nanocontext.semanticserver.semanticserver.commandprocessor.exceptions.CommandJournalException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A durable journal of the asynchronous Commands that have been submitted and have not yet
+ * completed successfully, so that they can be executed again after a crash or a restart.
+ *
+ * The journal is a sequence of memory-mapped segment files in a directory, a new segment is
+ * started when the current segment is full and the oldest segment is deleted when all of the
+ * Commands submitted in it have completed. Segments are deleted oldest first because the completion
+ * of a Command may be recorded in a later segment than its submission. Each record is:
+ *   int length (of the remainder of the record), byte type, long id,
+ *   int attempts and byte[] serialized Command (SUBMITTED and FAILED only)
+ * The length of a record is written after the rest of it, so a record is either complete or
+ * has a zero length, which marks the end of the segment.
+ * The body of a SUBMITTED record starts with the number of times that the Command has been
+ * submitted, a Command that is recovered is submitted again by the CommandProcessor and its
+ * new record counts one more attempt.
+ *
+ * A recovered Command that has already been submitted the maximum number of attempts (e.g. one
+ * that fails, or crashes the JVM, every time it is executed) is not recovered again, its serialized
+ * form is written to a dead letter file in the journal directory for inspection.
+ *
+ * A Command that fails ends its attempt with a FAILED record, which takes the place of its
+ * SUBMITTED record, so that the failure does not keep its segment, and every later segment, from
+ * being deleted. A FAILED record is recovered as its SUBMITTED record would have been, it is
+ * appended again to the current segment before the segment that holds it is deleted. A Command
+ * that fails its last attempt is written to a dead letter file when it fails.
+ *
+ * A record is in the memory of the operating system, and survives a crash of the JVM, when append
+ * returns. The segments are forced to the device by a background timer every group commit interval,
+ * so the records of the last interval may be lost if the operating system crashes.
+ *
+ * Only Serializable Commands can be journaled.
+ */
+public class CommandJournal {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CommandJournal.class);
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    public static final long DEFAULT_GROUP_COMMIT_MILLIS = 10L;
+    public static final int DEFAULT_MAXIMUM_ATTEMPTS = 3;
+
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String DEAD_LETTER_PREFIX = "dead-letter-";
+    private static final String DEAD_LETTER_SUFFIX = ".ser";
+    private static final byte SUBMITTED = 1;
+    private static final byte COMPLETED = 2;
+    private static final byte FAILED = 3;
+    /** the length, type and id of a record */
+    private static final int HEADER_SIZE = 4 + 1 + 8;
+    /** the attempts at the start of the body of a SUBMITTED record */
+    private static final int ATTEMPTS_SIZE = 4;
+
+    /**
+     * Open the journal in a directory, reading the Commands that did not complete.
+     *
+     * @param directory created if it does not exist
+     * @return
+     * @throws IOException
+     */
+    public static CommandJournal open(final String directory) throws IOException {
+        return open(directory, DEFAULT_SEGMENT_SIZE, DEFAULT_GROUP_COMMIT_MILLIS, DEFAULT_MAXIMUM_ATTEMPTS);
+    }
+
+    /**
+     *
+     * @param directory created if it does not exist
+     * @param segmentSize the size of each segment file, in bytes
+     * @param groupCommitMillis the interval at which the segments are forced to the device
+     * @param maximumAttempts the number of times that a Command is submitted before it is dead lettered
+     * @return
+     * @throws IOException
+     */
+    public static CommandJournal open(
+            final String directory, final int segmentSize, final long groupCommitMillis, final int maximumAttempts)
+            throws IOException {
+        File dir = new File(directory);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException(String.format("Unable to create journal directory '%s'", directory));
+        }
+        if (segmentSize <= HEADER_SIZE + ATTEMPTS_SIZE) {
+            throw new IllegalArgumentException("'segmentSize' is too small");
+        }
+        if (maximumAttempts <= 0) {
+            throw new IllegalArgumentException("'maximumAttempts' must be greater than zero");
+        }
+        return new CommandJournal(dir, segmentSize, groupCommitMillis, maximumAttempts);
+    }
+
+    // ==========================================================================================
+    // Instance Members
+    // ==========================================================================================
+    private final File directory;
+    private final int segmentSize;
+    private final int maximumAttempts;
+    private final ScheduledThreadPoolExecutor groupCommitTimer;
+
+    /** the Commands read at open that did not complete, by id */
+    private final Map<Long, Callable<?>> recovered = new LinkedHashMap<>();
+    /** the attempts of the recovered Commands that have not been submitted again, by identity */
+    private final Map<Callable<?>, Integer> recoveredAttempts = new IdentityHashMap<>();
+    /** the dead letter files written at open */
+    private final List<File> deadLetters = new ArrayList<>();
+    /** the segment files read at open, deleted by discardRecovered() */
+    private final List<File> recoveredSegments = new ArrayList<>();
+
+    // guarded by this
+    private Segment current;
+    /** the segments that have not been deleted, oldest first, the last is the current segment */
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private final Map<Long, Submission> outstanding = new HashMap<>();
+    /** the FAILED records of this journal, by id, carried forward until the journal is reopened */
+    private final Map<Long, FailedRecord> failed = new LinkedHashMap<>();
+    private long nextId;
+    private long nextSegmentSequence;
+    private boolean dirty;
+    private boolean closed;
+    private boolean deletingSegments;
+
+    private CommandJournal(
+            final File directory, final int segmentSize, final long groupCommitMillis, final int maximumAttempts)
+            throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maximumAttempts = maximumAttempts;
+        recover();
+        this.current = new Segment(this.nextSegmentSequence++);
+        this.segments.add(this.current);
+
+        this.groupCommitTimer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable r) {
+                Thread result = new Thread(r, "CommandJournalGroupCommit");
+                result.setDaemon(true);
+                return result;
+            }
+        });
+        long interval = Math.max(1L, groupCommitMillis);
+        this.groupCommitTimer.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                commit();
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Append the submission of a Command, a Command returned by getRecovered() is recorded as
+     * one more attempt.
+     *
+     * @param command must be Serializable
+     * @return the id of the record, to be given to complete()
+     * @throws CommandJournalException if the Command cannot be journaled
+     */
+    long submitted(final Callable<?> command) {
+        byte[] serialized = serialize(command);
+        synchronized (this) {
+            checkOpen();
+            Integer previousAttempts = this.recoveredAttempts.remove(command);
+            int attempts = previousAttempts == null ? 1 : previousAttempts + 1;
+            byte[] body = ByteBuffer.allocate(ATTEMPTS_SIZE + serialized.length)
+                    .putInt(attempts)
+                    .put(serialized)
+                    .array();
+            long id = this.nextId++;
+            append(SUBMITTED, id, body);
+            this.outstanding.put(id, new Submission(this.current, attempts));
+            ++this.current.outstanding;
+            return id;
+        }
+    }
+
+    /**
+     * Append the completion of a Command, after which it is not recovered.
+     *
+     * @param id
+     */
+    synchronized void completed(final long id) {
+        if (this.closed) {
+            return;
+        }
+        Submission submission = this.outstanding.remove(id);
+        if (submission == null) {
+            return;
+        }
+        try {
+            append(COMPLETED, id, null);
+        } catch (CommandJournalException cjX) {
+            LOGGER.error("Unable to journal the completion of command {}, it will be replayed", id, cjX);
+            return;
+        }
+        --submission.segment.outstanding;
+        deleteCompletedSegments();
+    }
+
+    /**
+     * Append the failure of an attempt of a Command, after which it is recovered from the FAILED
+     * record, unless this was its last attempt.
+     *
+     * @param id
+     * @param command the failed Command
+     */
+    void failed(final long id, final Callable<?> command) {
+        byte[] serialized;
+        try {
+            serialized = serialize(command);
+        } catch (CommandJournalException cjX) {
+            LOGGER.error("Unable to journal the failure of command {}, it will be replayed", id, cjX);
+            return;
+        }
+        synchronized (this) {
+            if (this.closed) {
+                return;
+            }
+            Submission submission = this.outstanding.remove(id);
+            if (submission == null) {
+                return;
+            }
+            byte[] body = ByteBuffer.allocate(ATTEMPTS_SIZE + serialized.length)
+                    .putInt(submission.attempts)
+                    .put(serialized)
+                    .array();
+            boolean lastAttempt = submission.attempts >= this.maximumAttempts;
+            try {
+                append(lastAttempt ? COMPLETED : FAILED, id, lastAttempt ? null : body);
+            } catch (CommandJournalException cjX) {
+                LOGGER.error("Unable to journal the failure of command {}, it will be replayed", id, cjX);
+                this.outstanding.put(id, submission);
+                return;
+            }
+            --submission.segment.outstanding;
+            if (lastAttempt) {
+                writeDeadLetter(id, new RecoveredRecord(submission.segment.file, submission.attempts, serialized));
+            } else {
+                this.failed.put(id, new FailedRecord(this.current, body));
+                ++this.current.failed;
+            }
+            deleteCompletedSegments();
+        }
+    }
+
+    /**
+     * @return the Commands read at open that had not completed, in order of submission
+     */
+    public synchronized List<Callable<?>> getRecovered() {
+        return Collections.unmodifiableList(new ArrayList<>(this.recovered.values()));
+    }
+
+    /**
+     * @return the dead letter files written by this journal, each holds a serialized Command that was
+     * not recovered, or failed its last attempt, having been submitted the maximum number of attempts
+     */
+    public synchronized List<File> getDeadLetters() {
+        return Collections.unmodifiableList(new ArrayList<>(this.deadLetters));
+    }
+
+    public int getMaximumAttempts() {
+        return maximumAttempts;
+    }
+
+    /**
+     * Delete the segments read at open, to be called once the recovered Commands have been
+     * submitted again (and so journaled again).
+     */
+    public synchronized void discardRecovered() {
+        this.recovered.clear();
+        this.recoveredAttempts.clear();
+        for (File segmentFile : this.recoveredSegments) {
+            if (!segmentFile.delete()) {
+                LOGGER.warn("Unable to delete journal segment '{}'", segmentFile);
+            }
+        }
+        this.recoveredSegments.clear();
+    }
+
+    /**
+     * Force the journal to the device and stop the group commit timer.
+     */
+    public void close() {
+        this.groupCommitTimer.shutdown();
+        synchronized (this) {
+            if (!this.closed) {
+                this.current.force();
+                this.closed = true;
+            }
+        }
+    }
+
+    // ==========================================================================================
+    // Writing
+    // ==========================================================================================
+    private void append(final byte type, final long id, final byte[] body) {
+        int recordSize = HEADER_SIZE + (body == null ? 0 : body.length);
+        // a zero length must also fit after the record, to mark the end of the segment
+        if (recordSize + 4 > this.segmentSize) {
+            throw new CommandJournalException(String.format("A record of %d bytes does not fit in a segment", recordSize));
+        }
+        if (this.current.buffer.remaining() < recordSize + 4) {
+            rotate();
+        }
+
+        MappedByteBuffer buffer = this.current.buffer;
+        int start = buffer.position();
+        buffer.position(start + 4);
+        buffer.put(type);
+        buffer.putLong(id);
+        if (body != null) {
+            buffer.put(body);
+        }
+        // the length is written last, the record is not visible to recovery until it is complete
+        buffer.putInt(start, recordSize - 4);
+        this.dirty = true;
+    }
+
+    private void rotate() {
+        Segment full = this.current;
+        full.force();
+        try {
+            this.current = new Segment(this.nextSegmentSequence++);
+        } catch (IOException ioX) {
+            throw new CommandJournalException("Unable to create a journal segment", ioX);
+        }
+        this.segments.add(this.current);
+        deleteCompletedSegments();
+    }
+
+    /**
+     * Delete the oldest segments, while all of their Commands have completed or failed,
+     * carrying the FAILED records of each forward before it is deleted.
+     */
+    private void deleteCompletedSegments() {
+        // carrying records forward may rotate, which deletes segments
+        if (this.deletingSegments) {
+            return;
+        }
+        this.deletingSegments = true;
+        try {
+            while (this.segments.size() > 1 && this.segments.peekFirst().outstanding == 0) {
+                Segment oldest = this.segments.peekFirst();
+                if (oldest.failed > 0 && !carryForward(oldest)) {
+                    return;
+                }
+                this.segments.pollFirst().delete();
+            }
+        } finally {
+            this.deletingSegments = false;
+        }
+    }
+
+    /**
+     * Append the FAILED records of a segment again, to the current segment.
+     *
+     * @return false if a record could not be appended, in which case the segment must not be deleted
+     */
+    private boolean carryForward(final Segment segment) {
+        for (Map.Entry<Long, FailedRecord> entry : this.failed.entrySet()) {
+            FailedRecord record = entry.getValue();
+            if (record.segment != segment) {
+                continue;
+            }
+            try {
+                append(FAILED, entry.getKey(), record.body);
+            } catch (CommandJournalException cjX) {
+                LOGGER.error("Unable to carry the failure of command {} forward, journal segment '{}' is kept",
+                        entry.getKey(), segment.file, cjX);
+                return false;
+            }
+            --segment.failed;
+            record.segment = this.current;
+            ++this.current.failed;
+        }
+        return true;
+    }
+
+    private void commit() {
+        Segment segment;
+        synchronized (this) {
+            if (!this.dirty || this.closed) {
+                return;
+            }
+            this.dirty = false;
+            segment = this.current;
+        }
+        // forcing a MappedByteBuffer does not need the lock, appends continue meanwhile
+        segment.force();
+    }
+
+    private void checkOpen() {
+        if (this.closed) {
+            throw new CommandJournalException("The command journal is closed");
+        }
+    }
+
+    private static byte[] serialize(final Callable<?> command) {
+        if (!(command instanceof Serializable)) {
+            throw new CommandJournalException(String.format("'%s' is not Serializable", command.getClass().getName()));
+        }
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            ObjectOutputStream out = new ObjectOutputStream(bytes);
+            out.writeObject(command);
+            out.close();
+            return bytes.toByteArray();
+        } catch (IOException ioX) {
+            throw new CommandJournalException(String.format("Unable to serialize '%s'", command.getClass().getName()), ioX);
+        }
+    }
+
+    // ==========================================================================================
+    // Recovery
+    // ==========================================================================================
+    private void recover() throws IOException {
+        File[] segmentFiles = this.directory.listFiles();
+        if (segmentFiles == null) {
+            return;
+        }
+        List<File> sorted = new ArrayList<>();
+        for (File segmentFile : segmentFiles) {
+            if (getSequence(segmentFile) >= 0L) {
+                sorted.add(segmentFile);
+            }
+        }
+        File[] ordered = sorted.toArray(new File[sorted.size()]);
+        Arrays.sort(ordered, new Comparator<File>() {
+            @Override
+            public int compare(final File f1, final File f2) {
+                return Long.compare(getSequence(f1), getSequence(f2));
+            }
+        });
+
+        // the records of the Commands that have not completed, by id
+        Map<Long, RecoveredRecord> records = new LinkedHashMap<>();
+        for (File segmentFile : ordered) {
+            recoverSegment(segmentFile, records);
+            this.recoveredSegments.add(segmentFile);
+            this.nextSegmentSequence = Math.max(this.nextSegmentSequence, getSequence(segmentFile) + 1);
+        }
+
+        for (Map.Entry<Long, RecoveredRecord> entry : records.entrySet()) {
+            RecoveredRecord record = entry.getValue();
+            if (record.attempts >= this.maximumAttempts) {
+                writeDeadLetter(entry.getKey(), record);
+                continue;
+            }
+            Callable<?> command = deserialize(record.serialized, record.segmentFile, entry.getKey());
+            if (command != null) {
+                this.recovered.put(entry.getKey(), command);
+                this.recoveredAttempts.put(command, record.attempts);
+            }
+        }
+        if (!this.recovered.isEmpty()) {
+            LOGGER.info("Recovered {} incomplete commands from the journal in '{}'", this.recovered.size(), this.directory);
+        }
+    }
+
+    private void recoverSegment(final File segmentFile, final Map<Long, RecoveredRecord> records) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(segmentFile, "r");
+             FileChannel channel = file.getChannel()) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            while (buffer.remaining() >= 4) {
+                int length = buffer.getInt();
+                if (length <= 0 || length > buffer.remaining()) {
+                    break;
+                }
+                byte type = buffer.get();
+                long id = buffer.getLong();
+                this.nextId = Math.max(this.nextId, id + 1);
+                byte[] body = new byte[length - (HEADER_SIZE - 4)];
+                buffer.get(body);
+
+                if ((type == SUBMITTED || type == FAILED) && body.length >= ATTEMPTS_SIZE) {
+                    ByteBuffer bodyBuffer = ByteBuffer.wrap(body);
+                    int attempts = bodyBuffer.getInt();
+                    byte[] serialized = new byte[bodyBuffer.remaining()];
+                    bodyBuffer.get(serialized);
+                    records.put(id, new RecoveredRecord(segmentFile, attempts, serialized));
+                } else if (type == COMPLETED) {
+                    records.remove(id);
+                }
+            }
+        }
+    }
+
+    private void writeDeadLetter(final long id, final RecoveredRecord record) {
+        File deadLetter = new File(this.directory, String.format("%s%016d%s", DEAD_LETTER_PREFIX, id, DEAD_LETTER_SUFFIX));
+        try (FileOutputStream out = new FileOutputStream(deadLetter)) {
+            out.write(record.serialized);
+            this.deadLetters.add(deadLetter);
+            LOGGER.error("Command {} from journal segment '{}' was submitted {} times without completing, it is written to '{}'",
+                    id, record.segmentFile, record.attempts, deadLetter);
+        } catch (IOException ioX) {
+            LOGGER.error("Command {} from journal segment '{}' was submitted {} times without completing and could not be written to '{}', it is discarded",
+                    id, record.segmentFile, record.attempts, deadLetter, ioX);
+        }
+    }
+
+    private static Callable<?> deserialize(final byte[] body, final File segmentFile, final long id) {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(body)) {
+            @Override
+            protected Class<?> resolveClass(final ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+                // the Command classes may be loaded by the context class loader of the application
+                ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+                return classLoader == null ? super.resolveClass(desc) : Class.forName(desc.getName(), false, classLoader);
+            }
+        }) {
+            return (Callable<?>) in.readObject();
+        } catch (IOException | ClassNotFoundException | ClassCastException x) {
+            LOGGER.error("Unable to read command {} from journal segment '{}', it is discarded", id, segmentFile, x);
+            return null;
+        }
+    }
+
+    private static long getSequence(final File segmentFile) {
+        String name = segmentFile.getName();
+        if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) {
+            return -1L;
+        }
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException nfX) {
+            return -1L;
+        }
+    }
+
+    /**
+     * A SUBMITTED or FAILED record read at open, the Command is deserialized once all of the
+     * segments have been read, if it has not completed.
+     */
+    private static final class RecoveredRecord {
+        private final File segmentFile;
+        private final int attempts;
+        private final byte[] serialized;
+
+        private RecoveredRecord(final File segmentFile, final int attempts, final byte[] serialized) {
+            this.segmentFile = segmentFile;
+            this.attempts = attempts;
+            this.serialized = serialized;
+        }
+    }
+
+    /**
+     * The segment and attempts of a SUBMITTED record whose Command has neither completed nor failed.
+     */
+    private static final class Submission {
+        private final Segment segment;
+        private final int attempts;
+
+        private Submission(final Segment segment, final int attempts) {
+            this.segment = segment;
+            this.attempts = attempts;
+        }
+    }
+
+    /**
+     * The body of a FAILED record and the segment that holds its latest copy.
+     */
+    private static final class FailedRecord {
+        private Segment segment;
+        private final byte[] body;
+
+        private FailedRecord(final Segment segment, final byte[] body) {
+            this.segment = segment;
+            this.body = body;
+        }
+    }
+
+    // ==========================================================================================
+    // Segment
+    // ==========================================================================================
+    private final class Segment {
+        private final File file;
+        private final MappedByteBuffer buffer;
+        /** the number of Commands submitted in this segment that have not completed, guarded by the journal */
+        private int outstanding;
+        /** the number of FAILED records whose latest copy is in this segment, guarded by the journal */
+        private int failed;
+
+        private Segment(final long sequence) throws IOException {
+            this.file = new File(directory, String.format("%s%016d%s", SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX));
+            try (RandomAccessFile raf = new RandomAccessFile(this.file, "rw");
+                 FileChannel channel = raf.getChannel()) {
+                // the mapping remains valid after the channel is closed
+                this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            }
+        }
+
+        private void force() {
+            this.buffer.force();
+        }
+
+        private void delete() {
+            if (!this.file.delete()) {
+                LOGGER.warn("Unable to delete journal segment '{}'", this.file);
+            }
+        }
+    }
+}
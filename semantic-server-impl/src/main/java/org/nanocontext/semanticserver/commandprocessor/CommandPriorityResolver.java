@@ -0,0 +1,82 @@
+package org.nanocontext.semanticserver.semanticserver.commandprocessor;
+
+import org.nanocontext.semanticserverapi.core.commandprocessor.CommandPriority;
+import org.nanocontext.semanticserverapi.core.semantics.ApplicationSemantics;
+import org.nanocontext.semanticserverapi.core.semantics.CommandClassSemantics;
+import org.nanocontext.semanticserverapi.core.semantics.exceptions.CoreRouterSemanticsException;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Determines the priority of a command class, in order of precedence:
+ * 1.) the CommandPriority annotation of the class
+ * 2.) the priority of the action of the class, as parsed by the ApplicationSemantics
+ * 3.) NORMAL
+ * The priority of each class is determined once, while the class is referenced.
+ *
+ * Usable ONLY by members of this package.
+ */
+final class CommandPriorityResolver {
+    /** the priority of the actions (the nominal values in default_actions.csv) that are not NORMAL */
+    static final Map<String, CommandPriority.Priority> DEFAULT_ACTION_PRIORITIES;
+    static {
+        Map<String, CommandPriority.Priority> actionPriorities = new HashMap<>();
+        actionPriorities.put("GET", CommandPriority.Priority.HIGH);
+        actionPriorities.put("POST", CommandPriority.Priority.LOW);
+        actionPriorities.put("SUBMIT", CommandPriority.Priority.LOW);
+        DEFAULT_ACTION_PRIORITIES = Collections.unmodifiableMap(actionPriorities);
+    }
+
+    private final Map<String, CommandPriority.Priority> actionPriorities;
+    /** weakly keyed, so that the command classes of an undeployed ClassLoader are not retained */
+    private final Map<Class<?>, CommandPriority.Priority> priorities =
+            Collections.synchronizedMap(new WeakHashMap<Class<?>, CommandPriority.Priority>());
+
+    CommandPriorityResolver(final Map<String, CommandPriority.Priority> actionPriorities) {
+        this.actionPriorities = actionPriorities;
+    }
+
+    /**
+     *
+     * @param commandClass
+     * @param applicationSemantics may be null, in which case only the annotation is used
+     * @return the priority, never null
+     */
+    CommandPriority.Priority getPriority(final Class<?> commandClass, final ApplicationSemantics applicationSemantics) {
+        CommandPriority.Priority priority = this.priorities.get(commandClass);
+        if (priority == null) {
+            priority = resolvePriority(commandClass, applicationSemantics);
+            // without semantics the priority may be wrong, only cache a priority determined with semantics
+            if (applicationSemantics != null || commandClass.getAnnotation(CommandPriority.class) != null) {
+                this.priorities.put(commandClass, priority);
+            }
+        }
+        return priority;
+    }
+
+    private CommandPriority.Priority resolvePriority(final Class<?> commandClass, final ApplicationSemantics applicationSemantics) {
+        CommandPriority annotation = commandClass.getAnnotation(CommandPriority.class);
+        if (annotation != null) {
+            return annotation.value();
+        }
+
+        if (applicationSemantics != null) {
+            try {
+                CommandClassSemantics semantics = applicationSemantics.createCommandClassSemantic(commandClass.getSimpleName());
+                CommandPriority.Priority priority = semantics.getAction() == null
+                        ? null
+                        : this.actionPriorities.get(semantics.getAction().getNominalValue());
+                if (priority != null) {
+                    return priority;
+                }
+            } catch (CoreRouterSemanticsException crsX) {
+                // the class name does not follow the semantics, it has no action
+            }
+        }
+
+        return CommandPriority.Priority.NORMAL;
+    }
+}
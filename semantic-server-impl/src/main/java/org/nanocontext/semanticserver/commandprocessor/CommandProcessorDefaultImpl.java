@@ -1,33 +1,65 @@
 package org.nanocontext.semanticserver.semanticserver.commandprocessor;
 
 import org.nanocontext.semanticserverapi.core.Application;
-import org.nanocontext.semanticserver.semanticserver.ApplicationImpl;
+import org.nanocontext.semanticserver.semanticserver.commandprocessor.exceptions.BulkheadFullException;
+import org.nanocontext.semanticserver.semanticserver.commandprocessor.exceptions.CommandNotAsynchronouslyExecutableException;
+import org.nanocontext.semanticserver.semanticserver.commandprocessor.exceptions.ConcurrencyLimitExceededException;
+import org.nanocontext.semanticserver.semanticserver.commandprovider.RootCommandProvider;
 import com.paypal.utility.ParameterCheckUtility;
 import org.nanocontext.semanticserverapi.core.commandprocessor.ApplicationAwareCommand;
 import org.nanocontext.semanticserverapi.core.commandprocessor.AsynchronousExecutionCallback;
 import org.nanocontext.semanticserverapi.core.commandprocessor.AsynchronouslyExecutableCommand;
+import org.nanocontext.semanticserverapi.core.commandprocessor.CommandHandle;
 import org.nanocontext.semanticserverapi.core.commandprocessor.CommandProcessor;
+import org.nanocontext.semanticserverapi.core.commandprocessor.RoutingToken;
+import org.nanocontext.semanticserverapi.core.commandprovider.CommandProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
-import java.util.concurrent.ExecutorCompletionService;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
- *
+ * The default CommandProcessor executes synchronous Commands on the calling thread and
+ * asynchronous Commands on an Executor, in one of the following modes:
+ * - unbounded (create()), a new thread is created whenever there is no idle thread
+ * - bounded (createBounded()), at most the maximum number of threads execute Commands
+ *   and at most the work queue size Commands wait for a thread, when both are exhausted
+ *   the SaturationPolicy determines what happens to a submitted Command
+ * - virtual threaded (createVirtualThreaded()), every Command runs on a virtual thread, at most
+ *   the maximum concurrency Commands execute at once and the rest wait (on their own virtual
+ *   threads) for a permit. On a JVM without virtual threads this mode falls back to platform
+ *   threads, with the same concurrency limit.
+ * - prioritized (createPrioritized()), a fixed number of threads execute Commands in order of
+ *   their CommandPriority, waiting Commands age so that LOW priority Commands are not starved
+ * - partitioned (createPartitioned()), PartitionedCommands are executed in order of submission
+ *   per partition key, on a fixed number of single threaded and bounded lanes, other Commands
+ *   are unbounded
+ * - batching (createBatching()), BatchableCommands are accumulated by class and executed in batches,
+ *   other Commands are unbounded
+ * Each mode is a CommandExecutionStrategy, which the CommandProcessor passes its admitted Commands to.
+ * In every mode asynchronous Commands may additionally be isolated by RoutingToken, in Bulkheads,
+ * and limited by command class, by an AdaptiveLimiter, and Serializable asynchronous Commands
+ * may be journaled, by a CommandJournal, so that they are executed again after a restart.
+ * In every mode the callback of an asynchronous Command is notified by the thread that completed
+ * the Command or, if one is given, by a callback Executor, and an asynchronous Command submitted
+ * by submitAsynchronously() may be cancelled through its CommandHandle.
+ * The completion of every Command, including one that is rejected or cancelled before it executes,
+ * is reported to the RootCommandProvider of the Application, which holds the class loader of a
+ * provider deployment open until its Commands have completed.
  */
 public class CommandProcessorDefaultImpl
 implements CommandProcessor
@@ -36,73 +68,251 @@ implements CommandProcessor
     public static final int DEFAULT_WORK_QUEUE_SIZE = 100;
     private static final int DEFAULT_CORE_THREADS = 10;
     private static final int DEFAULT_MAX_THREADS = 100;
-    private static final long DEFAULT_KEEP_ALIVE = 10L;
-    private static final TimeUnit DEFAULT_KEEP_ALIVE_UNITS = TimeUnit.SECONDS;
+    private static final long DEFAULT_BLOCK_TIMEOUT_MILLIS = 1000L;
+    public static final int DEFAULT_MAX_CONCURRENCY = 10000;
+    public static final long DEFAULT_PRIORITY_AGING_MILLIS = 100L;
+
+    /**
+     * What a bounded CommandProcessor does with an asynchronous Command when all of its
+     * threads are busy and its work queue is full.
+     */
+    public enum SaturationPolicy {
+        /** doAsynchronously() throws a CommandProcessorSaturatedException */
+        REJECT,
+        /** the Command is executed on the thread that called doAsynchronously(), which slows the caller */
+        CALLER_RUNS,
+        /**
+         * doAsynchronously() waits for room in the work queue, up to the block timeout, and then
+         * throws a CommandProcessorSaturatedException
+         */
+        BLOCK
+    }
 
     public static CommandProcessorDefaultImpl create() {
         return create(DEFAULT_WORK_QUEUE_SIZE);
     }
 
+    /**
+     * Create an unbounded CommandProcessor.
+     * Note that the work queue size is not used, an unbounded CommandProcessor has no work queue.
+     *
+     * @param workQueueSize
+     * @return
+     */
     public static CommandProcessorDefaultImpl create(int workQueueSize) {
-        return new CommandProcessorDefaultImpl(workQueueSize);
+        ParameterCheckUtility.checkParameterStrictlyPositive(workQueueSize, "workQueueSize");
+        return new CommandProcessorDefaultImpl(new UnboundedExecutionStrategy());
     }
 
-    // ============================================================
-    // Instance Members
-    // ============================================================
-    private ApplicationImpl application;
-    private final BlockingQueue<Callable<?>> workQueue;
-    private final Map<Future<?>, AsynchronousExecutionCallback<?>> callbackMap;
-    private final ExecutorService asynchExecutor;
-    private final ExecutorCompletionService asynchCompletionService;
-    private final Executor completionNotifier;
-
-    /**
-     * Create the following:
-     * 1.) A (blocking) work queue
-     * 2.) An Executor that takes its tasks from the work queue
-     *     - tasks are Command instances (Command extends Callable)
-     * 3.) An ExecutorCompletionService that wraps the Executor
-     *     - makes the Future results available on a queue
-     * 4.) An Executor that takes its tasks from the ExecutorCompletionService queue
-     *     - and notifies the callback if one was provided
-     * @param workQueueSize
+    public static CommandProcessorDefaultImpl createBounded() {
+        return createBounded(DEFAULT_WORK_QUEUE_SIZE, DEFAULT_CORE_THREADS, DEFAULT_MAX_THREADS, SaturationPolicy.REJECT);
+    }
+
+    public static CommandProcessorDefaultImpl createBounded(
+            int workQueueSize, int coreThreads, int maximumThreads, SaturationPolicy saturationPolicy) {
+        return createBounded(workQueueSize, coreThreads, maximumThreads, saturationPolicy, DEFAULT_BLOCK_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Create a bounded CommandProcessor.
+     *
+     * @param workQueueSize the maximum number of Commands waiting for a thread
+     * @param coreThreads the number of threads kept when idle
+     * @param maximumThreads the maximum number of threads executing Commands
+     * @param saturationPolicy what to do with a Command when the CommandProcessor is saturated
+     * @param blockTimeoutMillis the maximum time to wait for room in the work queue, only used by SaturationPolicy.BLOCK
+     * @return
      */
-	private CommandProcessorDefaultImpl(final int workQueueSize)
-	{
-		LOGGER.info("CommandProcessorDefaultImpl() - " + this.hashCode());
+    public static CommandProcessorDefaultImpl createBounded(
+            int workQueueSize, int coreThreads, int maximumThreads, SaturationPolicy saturationPolicy, long blockTimeoutMillis) {
+        ParameterCheckUtility.checkParameterStrictlyPositive(maximumThreads, "maximumThreads");
+        ParameterCheckUtility.checkParameterNotNull(saturationPolicy, "saturationPolicy");
+        if (coreThreads < 0 || coreThreads > maximumThreads) {
+            throw new IllegalArgumentException("'coreThreads' must be between zero and 'maximumThreads'");
+        }
         ParameterCheckUtility.checkParameterStrictlyPositive(workQueueSize, "workQueueSize");
+        return new CommandProcessorDefaultImpl(
+                new BoundedExecutionStrategy(workQueueSize, coreThreads, maximumThreads, saturationPolicy, blockTimeoutMillis));
+    }
 
-        this.workQueue = new ArrayBlockingQueue<Callable<?>>(workQueueSize);
-        this.asynchExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
-            private AtomicInteger threadSerialNumber = new AtomicInteger(0);
+    /**
+     * Create an unbounded CommandProcessor that isolates the asynchronous Commands of the
+     * RoutingTokens of each Bulkhead, the Commands of other RoutingTokens are not limited.
+     *
+     * @param bulkheads
+     * @return
+     */
+    public static CommandProcessorDefaultImpl createBulkheaded(final List<Bulkhead> bulkheads) {
+        return createBulkheaded(bulkheads, null);
+    }
 
-            @Override
-            public Thread newThread(final Runnable r) {
-                Thread result = new Thread(r,
-                        String.format("AsynchCommandExecution-%d", threadSerialNumber.addAndGet(1)));
-                return result;
-            }
-        });
-        this.callbackMap = new ConcurrentHashMap<>(workQueueSize);
+    /**
+     * Create an unbounded CommandProcessor that isolates the asynchronous Commands of the
+     * RoutingTokens of each Bulkhead.
+     *
+     * @param bulkheads
+     * @param defaultBulkhead the Bulkhead of all other RoutingTokens, null to not limit them
+     * @return
+     */
+    public static CommandProcessorDefaultImpl createBulkheaded(final List<Bulkhead> bulkheads, final Bulkhead defaultBulkhead) {
+        CommandProcessorDefaultImpl commandProcessor = create();
+        commandProcessor.setBulkheads(bulkheads);
+        commandProcessor.setDefaultBulkhead(defaultBulkhead);
+        return commandProcessor;
+    }
 
-        // A CompletionService that uses a supplied Executor to execute tasks.
-        // This class arranges that submitted tasks are, upon completion, placed on a queue
-        // accessible using take.
-        this.asynchCompletionService = new ExecutorCompletionService<>(this.asynchExecutor);
+    /**
+     * Create a CommandProcessor that accumulates BatchableCommands of the same class and executes
+     * them in batches, a batch is executed when it reaches the maximum batch size or when its
+     * first Command has waited the maximum linger time.
+     * Asynchronous Commands that are not batchable execute as in an unbounded CommandProcessor.
+     * BatchableCommands are not subject to Bulkheads or to the AdaptiveLimiter.
+     *
+     * @param maximumBatchSize
+     * @param maximumLingerMillis
+     * @return
+     */
+    public static CommandProcessorDefaultImpl createBatching(int maximumBatchSize, long maximumLingerMillis) {
+        ParameterCheckUtility.checkParameterStrictlyPositive(maximumBatchSize, "maximumBatchSize");
+        return new CommandProcessorDefaultImpl(new BatchingExecutionStrategy(maximumBatchSize, maximumLingerMillis));
+    }
+
+    /**
+     * Create an unbounded CommandProcessor that journals its Serializable asynchronous Commands in
+     * the given directory, the Commands that did not complete successfully before a crash or a
+     * restart are submitted again when the Application is set. A Command that has been submitted
+     * CommandJournal.DEFAULT_MAXIMUM_ATTEMPTS times without completing is dead lettered rather
+     * than submitted again.
+     *
+     * @param journalDirectory
+     * @return
+     * @throws IOException if the journal cannot be opened
+     */
+    public static CommandProcessorDefaultImpl createJournaled(final String journalDirectory) throws IOException {
+        ParameterCheckUtility.checkParameterNotNull(journalDirectory, "journalDirectory");
+        CommandProcessorDefaultImpl commandProcessor = create();
+        commandProcessor.setCommandJournal(CommandJournal.open(journalDirectory));
+        return commandProcessor;
+    }
 
-        this.completionNotifier = Executors.newCachedThreadPool(new ThreadFactory() {
-            private AtomicInteger threadSerialNumber = new AtomicInteger(0);
+    public static CommandProcessorDefaultImpl createAdaptive() {
+        return createAdaptive(new AdaptiveLimiter());
+    }
 
-            @Override
-            public Thread newThread(final Runnable r) {
-                Thread result = new Thread(r,
-                        String.format("AsynchCompletionNotifier-%d", threadSerialNumber.addAndGet(1)));
-                return result;
-            }
-        });
+    /**
+     * Create an unbounded CommandProcessor that limits the asynchronous Commands of each
+     * command class by the given AdaptiveLimiter.
+     *
+     * @param adaptiveLimiter
+     * @return
+     */
+    public static CommandProcessorDefaultImpl createAdaptive(final AdaptiveLimiter adaptiveLimiter) {
+        ParameterCheckUtility.checkParameterNotNull(adaptiveLimiter, "adaptiveLimiter");
+        CommandProcessorDefaultImpl commandProcessor = create();
+        commandProcessor.setAdaptiveLimiter(adaptiveLimiter);
+        return commandProcessor;
+    }
+
+    public static CommandProcessorDefaultImpl createVirtualThreaded() {
+        return createVirtualThreaded(DEFAULT_MAX_CONCURRENCY);
+    }
+
+    /**
+     * Create a CommandProcessor that executes asynchronous Commands on virtual threads.
+     * Intended for Commands that spend most of their time blocked on data sources, where
+     * the number of platform threads would otherwise limit the number of Commands in flight.
+     *
+     * @param maximumConcurrency the maximum number of Commands executing at once, protects the
+     *                           downstream data sources from being flooded
+     * @return
+     */
+    public static CommandProcessorDefaultImpl createVirtualThreaded(int maximumConcurrency) {
+        ParameterCheckUtility.checkParameterStrictlyPositive(maximumConcurrency, "maximumConcurrency");
+        return new CommandProcessorDefaultImpl(new VirtualThreadExecutionStrategy(maximumConcurrency));
+    }
+
+    /**
+     * Create a CommandProcessor that executes each PartitionedCommand on the lane of its partition
+     * key, with at most DEFAULT_WORK_QUEUE_SIZE Commands waiting in each lane.
+     *
+     * @param lanes the number of lanes, that is the maximum number of partitions executing at once
+     * @return
+     */
+    public static CommandProcessorDefaultImpl createPartitioned(int lanes) {
+        return createPartitioned(lanes, DEFAULT_WORK_QUEUE_SIZE);
+    }
+
+    /**
+     * Create a CommandProcessor that executes each PartitionedCommand on the lane of its partition
+     * key, so that the Commands of an entity execute one at a time and in order of submission.
+     * A PartitionedCommand submitted to a lane that already has the lane queue size Commands
+     * waiting is rejected with a CommandProcessorSaturatedException.
+     * Asynchronous Commands that are not partitioned execute as in an unbounded CommandProcessor.
+     *
+     * @param lanes the number of lanes, that is the maximum number of partitions executing at once
+     * @param laneQueueSize the maximum number of Commands waiting in each lane
+     * @return
+     */
+    public static CommandProcessorDefaultImpl createPartitioned(int lanes, int laneQueueSize) {
+        ParameterCheckUtility.checkParameterStrictlyPositive(lanes, "lanes");
+        ParameterCheckUtility.checkParameterStrictlyPositive(laneQueueSize, "laneQueueSize");
+        return new CommandProcessorDefaultImpl(new PartitionedExecutionStrategy(lanes, laneQueueSize));
+    }
+
+    public static CommandProcessorDefaultImpl createPrioritized() {
+        return createPrioritized(DEFAULT_MAX_THREADS, DEFAULT_PRIORITY_AGING_MILLIS);
+    }
+
+    /**
+     * Create a CommandProcessor that executes asynchronous Commands in order of priority.
+     * The priority of a Command is that of its CommandPriority annotation or else of its action,
+     * GET is HIGH, POST and SUBMIT are LOW and all other actions are NORMAL.
+     *
+     * A waiting Command ages, a Command is executed before any Command of the next higher
+     * priority that was submitted more than the aging time after it, so a LOW priority
+     * Command waits at most twice the aging time for the HIGH priority Commands submitted
+     * after it.
+     *
+     * @param threads the number of threads executing Commands
+     * @param agingMillis the aging time
+     * @return
+     */
+    public static CommandProcessorDefaultImpl createPrioritized(int threads, long agingMillis) {
+        ParameterCheckUtility.checkParameterStrictlyPositive(threads, "threads");
+        if (agingMillis <= 0L) {
+            throw new IllegalArgumentException("'agingMillis' must be greater than zero");
+        }
+        return new CommandProcessorDefaultImpl(new PrioritizedExecutionStrategy(threads, agingMillis));
+    }
+
+    // ============================================================
+    // Instance Members
+    // ============================================================
+    private volatile Application application;
+    /** the threads that execute the asynchronous Commands, and what happens when they are busy */
+    private final CommandExecutionStrategy executionStrategy;
+    /** limits the in flight Commands of each command class, null for no limit */
+    private volatile AdaptiveLimiter adaptiveLimiter;
+    /** journals the Serializable asynchronous Commands, null for no journal */
+    private volatile CommandJournal commandJournal;
+    /** notifies the callbacks of asynchronous Commands, null to notify on the thread that completed the Command */
+    private volatile Executor callbackExecutor;
+    private volatile List<Bulkhead> bulkheads = Collections.emptyList();
+    /** the Bulkheads by RoutingToken, replaced (never modified) when the Bulkheads are set */
+    private volatile Map<RoutingToken, Bulkhead> bulkheadsByRoutingToken = Collections.emptyMap();
+    /** the Bulkhead of the RoutingTokens that are not in any other Bulkhead, null for no limit */
+    private volatile Bulkhead defaultBulkhead;
 
-        this.completionNotifier.execute(new CompletionNotifier());
+    /**
+     * @param executionStrategy executes the asynchronous Commands once they have been admitted,
+     *                          the tasks are Command instances (Command extends Callable), wrapped
+     *                          in a CommandTask that notifies the callback, if one was provided,
+     *                          when the Command completes
+     */
+	private CommandProcessorDefaultImpl(final CommandExecutionStrategy executionStrategy)
+	{
+		LOGGER.info("CommandProcessorDefaultImpl() - " + this.hashCode());
+        this.executionStrategy = executionStrategy;
 	}
 
     /**
@@ -112,17 +322,164 @@ implements CommandProcessor
      * @param application the "owning" application
      */
     public void setApplication(final Application application) {
-        this.application = this.application;
+        this.application = application;
+        this.executionStrategy.setApplication(application);
+        // the recovered Commands are replayed once the Application that they may need is available
+        if (application != null && this.commandJournal != null) {
+            replayJournal();
+        }
     }
 
     @Override
     public void shutdown() {
-        ((ThreadPoolExecutor)this.asynchExecutor).shutdown();
+        this.executionStrategy.shutdown();
+        // Commands that have not completed are replayed when the journal is next opened
+        if (this.commandJournal != null) {
+            this.commandJournal.close();
+        }
     }
 
     @Override
     public boolean isShutdown() {
-        return ((ThreadPoolExecutor)this.asynchExecutor).isShutdown();
+        return this.executionStrategy.isShutdown();
+    }
+
+    /**
+     * Set the Executor that notifies the callbacks of asynchronous Commands when no Executor
+     * is given to doAsynchronously().
+     *
+     * @param callbackExecutor the Executor, null (the default) to notify callbacks on the
+     *                         thread that completed the Command
+     */
+    public void setCallbackExecutor(final Executor callbackExecutor) {
+        this.callbackExecutor = callbackExecutor;
+    }
+
+    public Executor getCallbackExecutor() {
+        return callbackExecutor;
+    }
+
+    /**
+     * Set the Bulkheads that isolate the asynchronous Commands of groups of RoutingTokens,
+     * a RoutingToken must not be in more than one Bulkhead.
+     *
+     * @param bulkheads
+     */
+    public void setBulkheads(final List<Bulkhead> bulkheads) {
+        List<Bulkhead> bulkheadList = bulkheads == null
+                ? Collections.<Bulkhead>emptyList()
+                : Collections.unmodifiableList(new ArrayList<>(bulkheads));
+        Map<RoutingToken, Bulkhead> byRoutingToken = new HashMap<>();
+        for (Bulkhead bulkhead : bulkheadList) {
+            for (RoutingToken routingToken : bulkhead.getRoutingTokens()) {
+                Bulkhead previous = byRoutingToken.put(routingToken, bulkhead);
+                if (previous != null && previous != bulkhead) {
+                    throw new IllegalArgumentException(String.format(
+                            "RoutingToken %s is in Bulkheads '%s' and '%s'", routingToken, previous.getName(), bulkhead.getName()));
+                }
+            }
+        }
+        this.bulkheadsByRoutingToken = byRoutingToken;
+        this.bulkheads = bulkheadList;
+    }
+
+    public List<Bulkhead> getBulkheads() {
+        return bulkheads;
+    }
+
+    /**
+     * Set the Bulkhead of the RoutingTokens that are not in any of the Bulkheads, including
+     * Commands submitted without a RoutingToken.
+     *
+     * @param defaultBulkhead the Bulkhead, null (the default) to not limit those Commands
+     */
+    public void setDefaultBulkhead(final Bulkhead defaultBulkhead) {
+        this.defaultBulkhead = defaultBulkhead;
+    }
+
+    public Bulkhead getDefaultBulkhead() {
+        return defaultBulkhead;
+    }
+
+    /**
+     * @param routingToken
+     * @return the Bulkhead that the Commands of the RoutingToken execute in, null if they are not limited
+     */
+    public Bulkhead getBulkhead(final RoutingToken routingToken) {
+        Bulkhead bulkhead = routingToken == null ? null : this.bulkheadsByRoutingToken.get(routingToken);
+        return bulkhead == null ? this.defaultBulkhead : bulkhead;
+    }
+
+    /**
+     * Set the CommandJournal that records the Serializable asynchronous Commands until they
+     * complete successfully. Should be set before the Application is set, which replays the
+     * Commands recovered by the journal.
+     *
+     * @param commandJournal the CommandJournal, null (the default) for no journal
+     */
+    public void setCommandJournal(final CommandJournal commandJournal) {
+        this.commandJournal = commandJournal;
+    }
+
+    public CommandJournal getCommandJournal() {
+        return commandJournal;
+    }
+
+    /**
+     * Submit the Commands recovered by the journal, each is journaled again when it is submitted.
+     * The recovered segments are discarded only if all of the Commands were submitted, so a
+     * Command is executed at least once.
+     */
+    private void replayJournal() {
+        CommandJournal journal = this.commandJournal;
+        boolean allSubmitted = true;
+        for (Callable<?> command : journal.getRecovered()) {
+            try {
+                doAsynchronously(command, null);
+            } catch (RuntimeException rX) {
+                LOGGER.error("Unable to replay journaled command '{}'", command.getClass().getSimpleName(), rX);
+                allSubmitted = false;
+            }
+        }
+        if (allSubmitted) {
+            journal.discardRecovered();
+        }
+    }
+
+    /**
+     * Set the AdaptiveLimiter that limits the in flight asynchronous Commands of each command class,
+     * the limits and measured RTT of each class are available from the AdaptiveLimiter.
+     *
+     * @param adaptiveLimiter the AdaptiveLimiter, null (the default) for no limit
+     */
+    public void setAdaptiveLimiter(final AdaptiveLimiter adaptiveLimiter) {
+        this.adaptiveLimiter = adaptiveLimiter;
+    }
+
+    public AdaptiveLimiter getAdaptiveLimiter() {
+        return adaptiveLimiter;
+    }
+
+    /**
+     * @return the SaturationPolicy, null if this CommandProcessor is unbounded
+     */
+    public SaturationPolicy getSaturationPolicy() {
+        return executionStrategy instanceof BoundedExecutionStrategy
+                ? ((BoundedExecutionStrategy) executionStrategy).getSaturationPolicy()
+                : null;
+    }
+
+    /**
+     * The number of executing and of waiting Commands as a fraction of the maximum threads
+     * plus the work queue size or, if virtual threaded, the number of executing Commands as a
+     * fraction of the maximum concurrency or, if partitioned, the number of Commands waiting in
+     * the fullest lane as a fraction of the lane queue size.
+     *
+     * @return 0.0 (idle) to 1.0 (saturated), always 0.0 if this CommandProcessor is unbounded
+     */
+    @Override
+    public double getSaturation() {
+        return this.executionStrategy.getSaturation();
     }
 
     // =====================================================================================================
@@ -137,6 +494,95 @@ implements CommandProcessor
      */
     @Override
     public <R> void doAsynchronously(Callable<R> command, AsynchronousExecutionCallback<R> callback) {
+        doAsynchronously(command, callback, this.callbackExecutor);
+    }
+
+    /**
+     * Submit a command for asynchronous execution, the callback is notified by the given Executor.
+     *
+     * @param command
+     * @param callback
+     * @param callbackExecutor null to notify the callback on the thread that completed the Command
+     */
+    @Override
+    public <R> void doAsynchronously(Callable<R> command, AsynchronousExecutionCallback<R> callback, Executor callbackExecutor) {
+        submit(null, command, callback, callbackExecutor);
+    }
+
+    /**
+     * Submit a command for asynchronous execution in the Bulkhead of the RoutingToken.
+     *
+     * @param routingToken
+     * @param command
+     * @param callback
+     * @throws BulkheadFullException if the Bulkhead of the RoutingToken cannot admit the Command
+     */
+    @Override
+    public <R> void doAsynchronously(RoutingToken routingToken, Callable<R> command, AsynchronousExecutionCallback<R> callback) {
+        submit(routingToken, command, callback, this.callbackExecutor);
+    }
+
+    /**
+     * Submit a command for asynchronous execution and return its handle.
+     *
+     * @param command
+     * @param callback
+     * @return the handle, a Command that is not asynchronously executable has a FAILED handle
+     */
+    @Override
+    public <R> CommandHandle<R> submitAsynchronously(Callable<R> command, AsynchronousExecutionCallback<R> callback) {
+        return submit(null, command, callback, this.callbackExecutor);
+    }
+
+    /**
+     * Submit a command for asynchronous execution in the Bulkhead of the RoutingToken and return its handle.
+     * Cancelling the handle releases the Bulkhead, and the AdaptiveLimiter, admissions of the Command
+     * immediately, a Command that has not started is then discarded when it is dequeued.
+     *
+     * @param routingToken
+     * @param command
+     * @param callback
+     * @return the handle, a Command that is not asynchronously executable has a FAILED handle
+     * @throws BulkheadFullException if the Bulkhead of the RoutingToken cannot admit the Command
+     */
+    @Override
+    public <R> CommandHandle<R> submitAsynchronously(RoutingToken routingToken, Callable<R> command, AsynchronousExecutionCallback<R> callback) {
+        return submit(routingToken, command, callback, this.callbackExecutor);
+    }
+
+    private <R> CommandHandle<R> submit(
+            final RoutingToken routingToken,
+            final Callable<R> command,
+            final AsynchronousExecutionCallback<R> callback,
+            final Executor callbackExecutor) {
+        CommandJournal journal = this.commandJournal;
+        if (journal == null || !(command instanceof Serializable) || !isCommandAsynchronouslyExecutable(command)) {
+            return doSubmit(routingToken, command, callback, callbackExecutor);
+        }
+
+        // the Command is journaled before it is accepted, and until it completes successfully
+        long journalId;
+        try {
+            journalId = journal.submitted(command);
+        } catch (RuntimeException rX) {
+            // the Command will never execute
+            completed(command);
+            throw rX;
+        }
+        try {
+            return doSubmit(routingToken, command, new JournalingCallback<>(journal, journalId, command, callback), callbackExecutor);
+        } catch (RuntimeException rX) {
+            // the Command was not accepted, it must not be replayed
+            journal.completed(journalId);
+            throw rX;
+        }
+    }
+
+    private <R> CommandHandle<R> doSubmit(
+            final RoutingToken routingToken,
+            final Callable<R> command,
+            final AsynchronousExecutionCallback<R> callback,
+            final Executor callbackExecutor) {
         LOGGER.info("Asynchronous execution of command of type '{}'", command.getClass().getSimpleName());
         if(isCommandAsynchronouslyExecutable(command))
         {
@@ -146,18 +592,83 @@ implements CommandProcessor
                 ((ApplicationAwareCommand)command).setApplicationContext(this.application);
             }
 
-            Future<R> future = this.asynchCompletionService.submit(command);
-            if (callback != null) {
-                this.callbackMap.put(future, callback);
+            if (this.executionStrategy.isExecutedUnadmitted(command)) {
+                // the task is never run, it is completed with the result of the Command
+                CommandTask<R> unadmitted = new CommandTask<>(
+                        command, command.getClass(), callback, callbackExecutor, null, null, createCompletion(command));
+                try {
+                    this.executionStrategy.executeUnadmitted(command, unadmitted.createUnadmittedTask());
+                } catch (RuntimeException rX) {
+                    unadmitted.reportCompletion();
+                    throw rX;
+                }
+                return unadmitted;
+            }
+
+            Bulkhead bulkhead = getBulkhead(routingToken);
+            if (bulkhead != null && !bulkhead.tryAdmit()) {
+                LOGGER.warn("'{}' rejected, {}", command.getClass().getSimpleName(), bulkhead);
+                completed(command);
+                throw new BulkheadFullException(bulkhead.getName(), bulkhead.getMaximumConcurrency());
+            }
+
+            // the callback is attached to the task before the task is scheduled
+            AdaptiveLimiter limiter = this.adaptiveLimiter;
+            final CommandTask<R> task = new CommandTask<>(
+                    command,
+                    command.getClass(),
+                    callback,
+                    callbackExecutor,
+                    bulkhead,
+                    limiter,
+                    createCompletion(command));
+
+            if (limiter != null) {
+                boolean admitted;
+                try {
+                    admitted = limiter.tryAcquire(command.getClass(), new Runnable() {
+                        @Override
+                        public void run() {
+                            // dispatched from the queue of the limiter, the submitter has returned
+                            task.limiterAdmitted();
+                            if (task.isDone()) {
+                                // cancelled while queued, the permit has passed to the next Command
+                                return;
+                            }
+                            try {
+                                dispatch(command, task);
+                            } catch (RuntimeException rX) {
+                                task.fail(rX);
+                            }
+                        }
+                    });
+                } catch (ConcurrencyLimitExceededException cleX) {
+                    LOGGER.warn("'{}' rejected, {}", command.getClass().getSimpleName(), limiter.getCommandClassLimit(command.getClass()));
+                    if (bulkhead != null) {
+                        bulkhead.release();
+                    }
+                    task.reportCompletion();
+                    throw cleX;
+                }
+                if (!admitted) {
+                    LOGGER.debug("'{}' queued by the adaptive limiter.", command.getClass().getSimpleName());
+                    return task;
+                }
+                task.limiterAdmitted();
             }
+
+            dispatch(command, task);
+            return task;
         }
         else
         {
             LOGGER.warn("'{}' is not marked as eligible for asynchronous execution.", command.getClass().getSimpleName());
-            return;
+            // the callback may be completing a future, it must hear that the command will never complete
+            CommandTask<R> rejected = new CommandTask<>(
+                    command, command.getClass(), callback, callbackExecutor, null, null, createCompletion(command));
+            rejected.fail(new CommandNotAsynchronouslyExecutableException(command.getClass()));
+            return rejected;
         }
-
-        return;
     }
 
     /**
@@ -184,6 +695,85 @@ implements CommandProcessor
         } catch (Throwable t) {
             LOGGER.error("{} caught in CommandProcessor", command.getClass().getSimpleName());
             throw t;
+        } finally {
+            completed(command);
+        }
+    }
+
+    /**
+     * Execute an admitted task by the execution strategy.
+     * If the task is rejected its admissions are released and the rejection is thrown.
+     */
+    private void dispatch(final Callable<?> command, final CommandTask<?> task) {
+        try {
+            this.executionStrategy.execute(command, task);
+        } catch (RuntimeException rX) {
+            task.releaseAdmissions();
+            task.reportCompletion();
+            throw rX;
+        }
+    }
+
+    /**
+     * Report the completion of a Command to the RootCommandProvider that may have created it.
+     */
+    private void completed(final Callable<?> command) {
+        Application app = this.application;
+        CommandProvider rootCommandProvider = app == null ? null : app.getRootCommandProvider();
+        if (rootCommandProvider instanceof RootCommandProvider) {
+            ((RootCommandProvider) rootCommandProvider).commandCompleted(command);
+        }
+    }
+
+    private Runnable createCompletion(final Callable<?> command) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                completed(command);
+            }
+        };
+    }
+
+    /**
+     * Records the successful completion, the cancellation or the failure of a journaled Command,
+     * then notifies the callback.
+     */
+    private static class JournalingCallback<R> implements AsynchronousExecutionCallback<R> {
+        private final CommandJournal journal;
+        private final long journalId;
+        private final Callable<R> command;
+        private final AsynchronousExecutionCallback<R> delegate;
+
+        private JournalingCallback(
+                final CommandJournal journal,
+                final long journalId,
+                final Callable<R> command,
+                final AsynchronousExecutionCallback<R> delegate) {
+            this.journal = journal;
+            this.journalId = journalId;
+            this.command = command;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void success(final R result) {
+            journal.completed(journalId);
+            if (delegate != null) {
+                delegate.success(result);
+            }
+        }
+
+        @Override
+        public void failure(final Throwable t) {
+            // a cancelled Command is no longer wanted, it must not be replayed
+            if (t instanceof CancellationException) {
+                journal.completed(journalId);
+            } else {
+                journal.failed(journalId, command);
+            }
+            if (delegate != null) {
+                delegate.failure(t);
+            }
         }
     }
 
@@ -198,32 +788,201 @@ implements CommandProcessor
     }
 
     /**
-     *
+     * The task executed for an asynchronous Command, the callback and the executor that
+     * notifies it are attached before the task is scheduled so that no completion can
+     * be missed. The callback is notified when the task completes, on the thread that
+     * completed it unless a callback Executor was given.
+     * The task is also the CommandHandle of the Command, cancelling it notifies the callback
+     * at once. The admissions of a cancelled task, and its completion, are released and reported
+     * once the Command has returned, or at once if the Command has not started and so never will.
      */
-    private class CompletionNotifier implements Runnable {
+    private static class CommandTask<R> extends FutureTask<R> implements CommandHandle<R> {
+        private final Class<?> commandClass;
+        private final AsynchronousExecutionCallback<R> callback;
+        private final Executor callbackExecutor;
+        /** the Bulkhead that admitted the task, null if none */
+        private final Bulkhead bulkhead;
+        /** the AdaptiveLimiter that admitted the task, null if none */
+        private final AdaptiveLimiter limiter;
+        /** the admissions of the task are released exactly once */
+        private final AtomicBoolean released = new AtomicBoolean(false);
+        /**
+         * the limiter permit is released when the task has been both admitted by the limiter
+         * and completed (or rejected), in either order, a task cancelled while queued by the
+         * limiter is completed before it is admitted
+         */
+        private final AtomicInteger limiterReleaseCountdown = new AtomicInteger(2);
+        /** System.nanoTime() when the task started executing, zero if it has not */
+        private volatile long startNanos;
+        private volatile boolean failed;
+        /** reports the completion of the Command, exactly once */
+        private final Runnable completion;
+        private final AtomicBoolean completionReported = new AtomicBoolean(false);
+
+        private CommandTask(
+                final Callable<R> command,
+                final Class<?> commandClass,
+                final AsynchronousExecutionCallback<R> callback,
+                final Executor callbackExecutor,
+                final Bulkhead bulkhead,
+                final AdaptiveLimiter limiter,
+                final Runnable completion) {
+            super(command);
+            this.commandClass = commandClass;
+            this.callback = callback;
+            this.callbackExecutor = callbackExecutor;
+            this.bulkhead = bulkhead;
+            this.limiter = limiter;
+            this.completion = completion;
+        }
+
         @Override
         public void run() {
-            while (true) {
-                try {
-                    Future<?> completed = asynchCompletionService.take();
-                    AsynchronousExecutionCallback callback = callbackMap.get(completed);
-                    callbackMap.remove(completed);
-
-                    try {
-                        Object result = completed.get();
-                        if (callback != null) {
-                            callback.success(result);
-                        }
-                    } catch (Throwable t) {
-                        Throwable rootCause = t instanceof ExecutionException ? t.getCause() : t;
-                        if (callback != null) {
-                            callback.failure(rootCause);
-                        }
+            this.startNanos = System.nanoTime();
+            try {
+                super.run();
+            } finally {
+                // a task cancelled while its Command executed holds its admissions until now
+                releaseAdmissions();
+                reportCompletion();
+            }
+        }
+
+        @Override
+        public Status getStatus() {
+            if (isCancelled()) {
+                return Status.CANCELLED;
+            }
+            if (isDone()) {
+                return failed ? Status.FAILED : Status.SUCCEEDED;
+            }
+            return startNanos == 0L ? Status.QUEUED : Status.RUNNING;
+        }
+
+        @Override
+        protected void setException(final Throwable t) {
+            this.failed = true;
+            super.setException(t);
+        }
+
+        /**
+         * Complete the task with a failure, without executing it.
+         */
+        private void fail(final Throwable t) {
+            setException(t);
+        }
+
+        /**
+         * @return the task as started and completed by the strategy, for a Command that is executed elsewhere
+         */
+        private UnadmittedTask<R> createUnadmittedTask() {
+            return new UnadmittedTask<R>() {
+                @Override
+                public boolean start() {
+                    startNanos = System.nanoTime();
+                    // done() reads startNanos after the task is done, so either it reports the
+                    // completion of a task cancelled before it started, or this does
+                    if (isDone()) {
+                        reportCompletion();
+                        return false;
                     }
-                } catch (InterruptedException e) {
-                    LOGGER.error("Interrupted while waiting for completion service.");
-                    break;
+                    return true;
+                }
+
+                @Override
+                public void succeeded(final R result) {
+                    set(result);
+                    reportCompletion();
+                }
+
+                @Override
+                public void failed(final Throwable t) {
+                    setException(t);
+                    reportCompletion();
+                }
+            };
+        }
+
+        /**
+         * Called when the AdaptiveLimiter has admitted the task.
+         */
+        private void limiterAdmitted() {
+            releaseLimiter();
+        }
+
+        private void releaseAdmissions() {
+            if (!released.compareAndSet(false, true)) {
+                return;
+            }
+            if (bulkhead != null) {
+                bulkhead.release();
+            }
+            releaseLimiter();
+        }
+
+        private void releaseLimiter() {
+            if (limiter != null && limiterReleaseCountdown.decrementAndGet() == 0) {
+                // a cancelled task did not run to completion, its execution time is not a sample
+                long start = this.startNanos;
+                limiter.release(commandClass, start == 0L || isCancelled() ? -1L : System.nanoTime() - start);
+            }
+        }
+
+        private void reportCompletion() {
+            if (completionReported.compareAndSet(false, true)) {
+                completion.run();
+            }
+        }
+
+        @Override
+        protected void done() {
+            // a started task reports when the Command returns, even if it was cancelled (interrupted) first
+            boolean started = startNanos != 0L;
+            if (!started) {
+                reportCompletion();
+            }
+            // the admissions are released before the callback is notified, except those of a
+            // Command that is still executing after its task was cancelled
+            if (!started || !isCancelled()) {
+                releaseAdmissions();
+            }
+            if (callback == null) {
+                return;
+            }
+
+            Runnable notification = new Runnable() {
+                @Override
+                public void run() {
+                    notifyCallback();
+                }
+            };
+            if (callbackExecutor == null) {
+                notification.run();
+            } else {
+                try {
+                    callbackExecutor.execute(notification);
+                } catch (RejectedExecutionException reX) {
+                    LOGGER.warn("Callback executor rejected the notification of '{}', notifying on the completing thread.", commandClass.getSimpleName());
+                    notification.run();
+                }
+            }
+        }
+
+        private void notifyCallback() {
+            try {
+                R result;
+                try {
+                    result = get();
+                } catch (ExecutionException eX) {
+                    callback.failure(eX.getCause());
+                    return;
+                } catch (CancellationException | InterruptedException x) {
+                    callback.failure(x);
+                    return;
                 }
+                callback.success(result);
+            } catch (Throwable t) {
+                LOGGER.error("Callback of '{}' threw an exception", commandClass.getSimpleName(), t);
             }
         }
     }
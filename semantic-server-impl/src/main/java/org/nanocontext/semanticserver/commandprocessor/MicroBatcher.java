@@ -0,0 +1,188 @@
+package org.nanocontext.semanticserver.semanticserver.commandprocessor;
+
+import org.nanocontext.semanticserverapi.core.commandprocessor.BatchableCommand;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Accumulates BatchableCommands by class, a batch is executed when it reaches the maximum
+ * batch size or when its first command has waited the maximum linger time, whichever is first.
+ * Each batch is executed by one call to callBatch() on the batch Executor and the result of each
+ * command completes its own task.
+ * The tasks that are done when their batch is executed (i.e. cancelled while pending) are
+ * dropped from the batch, the commands of the other tasks are started and then executed.
+ *
+ * Usable ONLY by members of this package.
+ */
+final class MicroBatcher {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MicroBatcher.class);
+
+    private final int maximumBatchSize;
+    private final long maximumLingerMillis;
+    private final Executor batchExecutor;
+    /** flushes the batches that have lingered */
+    private final ScheduledThreadPoolExecutor lingerTimer;
+
+    /** the accumulating batch of each command class, guarded by this */
+    private final Map<Class<?>, List<Entry<?>>> pending = new HashMap<>();
+
+    MicroBatcher(final int maximumBatchSize, final long maximumLingerMillis, final Executor batchExecutor) {
+        if (maximumBatchSize <= 0) {
+            throw new IllegalArgumentException("'maximumBatchSize' must be greater than zero");
+        }
+        this.maximumBatchSize = maximumBatchSize;
+        this.maximumLingerMillis = Math.max(0L, maximumLingerMillis);
+        this.batchExecutor = batchExecutor;
+        this.lingerTimer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable r) {
+                Thread result = new Thread(r, "AsynchCommandBatchLinger");
+                result.setDaemon(true);
+                return result;
+            }
+        });
+    }
+
+    int getMaximumBatchSize() {
+        return maximumBatchSize;
+    }
+
+    long getMaximumLingerMillis() {
+        return maximumLingerMillis;
+    }
+
+    /**
+     * Add a command to the batch of its class.
+     *
+     * @param command
+     * @param task completed with the result of the command
+     */
+    <R> void add(final BatchableCommand<R> command, final UnadmittedTask<R> task) {
+        final Class<?> commandClass = command.getClass();
+        List<Entry<?>> full = null;
+        synchronized (this) {
+            List<Entry<?>> batch = this.pending.get(commandClass);
+            if (batch == null) {
+                batch = new ArrayList<>(this.maximumBatchSize);
+                this.pending.put(commandClass, batch);
+                final List<Entry<?>> lingering = batch;
+                this.lingerTimer.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        flush(commandClass, lingering);
+                    }
+                }, this.maximumLingerMillis, TimeUnit.MILLISECONDS);
+            }
+            batch.add(new Entry<>(command, task));
+            if (batch.size() >= this.maximumBatchSize) {
+                this.pending.remove(commandClass);
+                full = batch;
+            }
+        }
+
+        if (full != null) {
+            execute(full);
+        }
+    }
+
+    /**
+     * Execute the batch if it is still accumulating, it may already have been executed when it
+     * reached the maximum size.
+     */
+    private void flush(final Class<?> commandClass, final List<Entry<?>> batch) {
+        synchronized (this) {
+            if (this.pending.get(commandClass) != batch) {
+                return;
+            }
+            this.pending.remove(commandClass);
+        }
+        execute(batch);
+    }
+
+    /**
+     * Execute all of the accumulating batches and stop the linger timer.
+     */
+    void shutdown() {
+        List<List<Entry<?>>> batches;
+        synchronized (this) {
+            batches = new ArrayList<>(this.pending.values());
+            this.pending.clear();
+        }
+        for (List<Entry<?>> batch : batches) {
+            execute(batch);
+        }
+        this.lingerTimer.shutdown();
+    }
+
+    private void execute(final List<Entry<?>> batch) {
+        try {
+            this.batchExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    executeBatch(batch);
+                }
+            });
+        } catch (RejectedExecutionException reX) {
+            LOGGER.warn("Batch of {} '{}' rejected", batch.size(), batch.get(0).command.getClass().getSimpleName());
+            for (Entry<?> entry : batch) {
+                entry.task.failed(reX);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <R> void executeBatch(final List<Entry<?>> pendingBatch) {
+        List<Entry<?>> batch = new ArrayList<>(pendingBatch.size());
+        List<BatchableCommand<R>> commands = new ArrayList<>(pendingBatch.size());
+        for (Entry<?> entry : pendingBatch) {
+            if (entry.task.start()) {
+                batch.add(entry);
+                commands.add((BatchableCommand<R>) entry.command);
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        List<R> results;
+        try {
+            results = commands.get(0).callBatch(commands);
+            if (results == null || results.size() != commands.size()) {
+                throw new IllegalStateException(String.format("'%s' returned %d results for a batch of %d",
+                        commands.get(0).getClass().getName(), results == null ? 0 : results.size(), commands.size()));
+            }
+        } catch (Throwable t) {
+            for (Entry<?> entry : batch) {
+                entry.task.failed(t);
+            }
+            return;
+        }
+
+        for (int index = 0; index < batch.size(); ++index) {
+            ((Entry<R>) batch.get(index)).task.succeeded(results.get(index));
+        }
+    }
+
+    // ==========================================================================================
+    // A command of a batch and its task
+    // ==========================================================================================
+    private static final class Entry<R> {
+        private final BatchableCommand<R> command;
+        private final UnadmittedTask<R> task;
+
+        private Entry(final BatchableCommand<R> command, final UnadmittedTask<R> task) {
+            this.command = command;
+            this.task = task;
+        }
+    }
+}
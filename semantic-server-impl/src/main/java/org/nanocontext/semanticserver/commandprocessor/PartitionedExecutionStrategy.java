@@ -0,0 +1,43 @@
+package org.nanocontext.semanticserver.semanticserver.commandprocessor;
+
+import org.nanocontext.semanticserverapi.core.commandprocessor.PartitionedCommand;
+
+import java.util.concurrent.Callable;
+
+/**
+ * PartitionedCommands are executed in order of submission per partition key, on the lanes of
+ * a PartitionedExecutor, other Commands are executed as by an UnboundedExecutionStrategy.
+ * The saturation is that of the fullest lane, the other Commands are not limited.
+ *
+ * Usable ONLY by members of this package.
+ */
+final class PartitionedExecutionStrategy extends UnboundedExecutionStrategy {
+    private final PartitionedExecutor partitionedExecutor;
+
+    PartitionedExecutionStrategy(final int lanes, final int laneQueueSize) {
+        this.partitionedExecutor = new PartitionedExecutor(lanes, laneQueueSize);
+    }
+
+    @Override
+    public void execute(final Callable<?> command, final Runnable task) {
+        Object partitionKey = command instanceof PartitionedCommand
+                ? ((PartitionedCommand) command).getPartitionKey()
+                : null;
+        if (partitionKey != null) {
+            this.partitionedExecutor.execute(partitionKey, task);
+        } else {
+            super.execute(command, task);
+        }
+    }
+
+    @Override
+    public double getSaturation() {
+        return this.partitionedExecutor.getSaturation();
+    }
+
+    @Override
+    public void shutdown() {
+        super.shutdown();
+        this.partitionedExecutor.shutdown();
+    }
+}
@@ -0,0 +1,113 @@
+package org.nanocontext.semanticserver.semanticserver.commandprocessor;
+
+import org.nanocontext.semanticserver.semanticserver.commandprocessor.exceptions.CommandProcessorSaturatedException;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A fixed number of lanes, each executing its tasks one at a time on its own thread in the
+ * order that they were submitted. Tasks are assigned to a lane by the hash of a partition key,
+ * so tasks with equal keys are executed in order, without locks, while tasks with different
+ * keys are (usually) executed in parallel.
+ * At most the lane queue size tasks wait in each lane, a task submitted to a full lane is
+ * rejected with a CommandProcessorSaturatedException, so that a hot partition key cannot
+ * accumulate an unbounded backlog.
+ *
+ * Usable ONLY by members of this package.
+ */
+final class PartitionedExecutor {
+    private final ThreadPoolExecutor[] lanes;
+    private final int laneQueueSize;
+
+    PartitionedExecutor(final int laneCount, final int laneQueueSize) {
+        if (laneCount <= 0) {
+            throw new IllegalArgumentException("'laneCount' must be greater than zero");
+        }
+        if (laneQueueSize <= 0) {
+            throw new IllegalArgumentException("'laneQueueSize' must be greater than zero");
+        }
+        this.laneQueueSize = laneQueueSize;
+        this.lanes = new ThreadPoolExecutor[laneCount];
+        RejectedExecutionHandler laneFullHandler = new LaneFullHandler(laneQueueSize);
+        for (int index = 0; index < laneCount; ++index) {
+            final String threadName = String.format("AsynchCommandPartition-%d", index);
+            this.lanes[index] = new ThreadPoolExecutor(
+                    1, 1,
+                    0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<Runnable>(laneQueueSize),
+                    new ThreadFactory() {
+                        @Override
+                        public Thread newThread(final Runnable r) {
+                            return new Thread(r, threadName);
+                        }
+                    },
+                    laneFullHandler);
+        }
+    }
+
+    int getLaneCount() {
+        return lanes.length;
+    }
+
+    int getLaneQueueSize() {
+        return laneQueueSize;
+    }
+
+    /**
+     * @param partitionKey must not be null
+     * @param task
+     * @throws CommandProcessorSaturatedException if the lane of the partition key is full
+     */
+    void execute(final Object partitionKey, final Runnable task) {
+        this.lanes[getLane(partitionKey)].execute(task);
+    }
+
+    int getLane(final Object partitionKey) {
+        int hash = partitionKey.hashCode();
+        // spread the high bits, as HashMap does, so keys differing only there do not share a lane
+        hash ^= (hash >>> 16);
+        return (hash & Integer.MAX_VALUE) % this.lanes.length;
+    }
+
+    /**
+     * @return the number of waiting tasks of the fullest lane as a fraction of the lane queue size
+     */
+    double getSaturation() {
+        int maximumWaiting = 0;
+        for (ThreadPoolExecutor lane : this.lanes) {
+            maximumWaiting = Math.max(maximumWaiting, lane.getQueue().size());
+        }
+        return (double)maximumWaiting / this.laneQueueSize;
+    }
+
+    void shutdown() {
+        for (ThreadPoolExecutor lane : this.lanes) {
+            lane.shutdown();
+        }
+    }
+
+    /**
+     * Rejects the tasks of a full lane.
+     */
+    private static class LaneFullHandler implements RejectedExecutionHandler {
+        private final int laneQueueSize;
+
+        private LaneFullHandler(final int laneQueueSize) {
+            this.laneQueueSize = laneQueueSize;
+        }
+
+        @Override
+        public void rejectedExecution(final Runnable task, final ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException("The command processor has been shut down");
+            }
+            // a lane has exactly one thread
+            throw new CommandProcessorSaturatedException(1, laneQueueSize);
+        }
+    }
+}
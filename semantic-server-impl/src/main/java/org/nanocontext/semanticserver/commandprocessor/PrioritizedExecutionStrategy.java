@@ -0,0 +1,91 @@
+package org.nanocontext.semanticserver.semanticserver.commandprocessor;
+
+import org.nanocontext.semanticserverapi.core.Application;
+import org.nanocontext.semanticserverapi.core.commandprocessor.CommandPriority;
+
+import java.util.Comparator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A fixed number of threads execute Commands in order of their CommandPriority, waiting
+ * Commands age so that LOW priority Commands are not starved.
+ * A Command is scheduled at the time that it is passed to the strategy (i.e. when it has been
+ * admitted) delayed by the aging time for each level of priority below HIGH, and the Commands
+ * are executed in order of schedule.
+ *
+ * Usable ONLY by members of this package.
+ */
+final class PrioritizedExecutionStrategy extends UnboundedExecutionStrategy {
+    private static final int INITIAL_QUEUE_CAPACITY = 100;
+    private static final long KEEP_ALIVE_SECONDS = 10L;
+
+    private final long agingNanos;
+    private final CommandPriorityResolver priorityResolver =
+            new CommandPriorityResolver(CommandPriorityResolver.DEFAULT_ACTION_PRIORITIES);
+    private final AtomicLong submissionSequence = new AtomicLong();
+    private volatile Application application;
+
+    PrioritizedExecutionStrategy(final int threads, final long agingMillis) {
+        // the queue is unbounded, so the executor never has more than the core threads
+        super(new ThreadPoolExecutor(
+                threads, threads,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<>(INITIAL_QUEUE_CAPACITY, SCHEDULE_ORDER),
+                createThreadFactory()));
+        this.agingNanos = TimeUnit.MILLISECONDS.toNanos(agingMillis);
+    }
+
+    @Override
+    public void setApplication(final Application application) {
+        this.application = application;
+    }
+
+    @Override
+    public void execute(final Callable<?> command, final Runnable task) {
+        super.execute(command, new ScheduledTask(task, getScheduleKey(command), submissionSequence.getAndIncrement()));
+    }
+
+    /**
+     * The time, in System.nanoTime(), at which a Command should be executed, that is the current
+     * time delayed by the aging time for each level of priority below HIGH.
+     */
+    private long getScheduleKey(final Callable<?> command) {
+        Application app = this.application;
+        CommandPriority.Priority priority = this.priorityResolver.getPriority(
+                command.getClass(), app == null ? null : app.getApplicationSemantics());
+        return System.nanoTime() + priority.ordinal() * this.agingNanos;
+    }
+
+    /** orders the ScheduledTasks by schedule key and then by submission */
+    private static final Comparator<Runnable> SCHEDULE_ORDER = new Comparator<Runnable>() {
+        @Override
+        public int compare(final Runnable r1, final Runnable r2) {
+            ScheduledTask t1 = (ScheduledTask) r1;
+            ScheduledTask t2 = (ScheduledTask) r2;
+            // schedule keys are nanoTime values, compared by difference
+            int result = Long.signum(t1.scheduleKey - t2.scheduleKey);
+            return result != 0 ? result : Long.compare(t1.sequence, t2.sequence);
+        }
+    };
+
+    private static final class ScheduledTask implements Runnable {
+        private final Runnable task;
+        private final long scheduleKey;
+        private final long sequence;
+
+        private ScheduledTask(final Runnable task, final long scheduleKey, final long sequence) {
+            this.task = task;
+            this.scheduleKey = scheduleKey;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public void run() {
+            task.run();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package org.nanocontext.semanticserver.semanticserver.commandprocessor;
+
+/**
+ * The task of a Command that a CommandExecutionStrategy executes by executeUnadmitted(), other
+ * than by running the task, e.g. in a batch. The strategy starts the task immediately before it
+ * executes the Command and then completes the task with the result of the Command.
+ *
+ * Usable ONLY by members of this package.
+ */
+interface UnadmittedTask<R> {
+    /**
+     * Mark the Command as executing, a Command that is started is executed even if its task is
+     * cancelled meanwhile, and its completion is reported only once it has been completed.
+     *
+     * @return false if the task is already done (i.e. cancelled), the Command must not be executed
+     */
+    boolean start();
+
+    /**
+     * Complete the task with the result of the Command.
+     *
+     * @param result
+     */
+    void succeeded(R result);
+
+    /**
+     * Complete the task with the failure of the Command, or of its execution.
+     *
+     * @param t
+     */
+    void failed(Throwable t);
+}
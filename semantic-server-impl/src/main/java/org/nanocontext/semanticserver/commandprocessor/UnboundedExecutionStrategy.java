@@ -0,0 +1,78 @@
+package org.nanocontext.semanticserver.semanticserver.commandprocessor;
+
+import org.nanocontext.semanticserverapi.core.Application;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executes every Command at once, a new thread is created whenever there is no idle thread.
+ *
+ * Usable ONLY by members of this package.
+ */
+class UnboundedExecutionStrategy implements CommandExecutionStrategy {
+    private final ExecutorService executor;
+
+    UnboundedExecutionStrategy() {
+        this(Executors.newCachedThreadPool(createThreadFactory()));
+    }
+
+    UnboundedExecutionStrategy(final ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * @return a ThreadFactory of the platform threads that execute asynchronous Commands
+     */
+    static ThreadFactory createThreadFactory() {
+        return new ThreadFactory() {
+            private final AtomicInteger threadSerialNumber = new AtomicInteger(0);
+
+            @Override
+            public Thread newThread(final Runnable r) {
+                return new Thread(r, String.format("AsynchCommandExecution-%d", threadSerialNumber.addAndGet(1)));
+            }
+        };
+    }
+
+    ExecutorService getExecutor() {
+        return executor;
+    }
+
+    @Override
+    public void setApplication(final Application application) {
+    }
+
+    @Override
+    public boolean isExecutedUnadmitted(final Callable<?> command) {
+        return false;
+    }
+
+    @Override
+    public <R> void executeUnadmitted(final Callable<R> command, final UnadmittedTask<R> task) {
+        throw new UnsupportedOperationException("Every Command is admitted");
+    }
+
+    @Override
+    public void execute(final Callable<?> command, final Runnable task) {
+        this.executor.execute(task);
+    }
+
+    @Override
+    public double getSaturation() {
+        return 0.0;
+    }
+
+    @Override
+    public void shutdown() {
+        this.executor.shutdown();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return this.executor.isShutdown();
+    }
+}
@@ -0,0 +1,104 @@
+package org.nanocontext.semanticserver.semanticserver.commandprocessor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Every Command runs on a virtual thread, at most the maximum concurrency Commands execute
+ * at once and the rest wait (on their own virtual threads) for a permit. On a JVM without
+ * virtual threads the Commands run on platform threads, with the same concurrency limit.
+ *
+ * Usable ONLY by members of this package.
+ */
+final class VirtualThreadExecutionStrategy extends UnboundedExecutionStrategy {
+    private static final Logger LOGGER = LoggerFactory.getLogger(VirtualThreadExecutionStrategy.class);
+
+    private final int maximumConcurrency;
+    private final Semaphore concurrencyLimit;
+
+    VirtualThreadExecutionStrategy(final int maximumConcurrency) {
+        this(maximumConcurrency, true);
+    }
+
+    /**
+     * @param maximumConcurrency
+     * @param virtualThreads false to always use platform threads, as on a JVM without virtual threads
+     */
+    VirtualThreadExecutionStrategy(final int maximumConcurrency, final boolean virtualThreads) {
+        super(createExecutor(virtualThreads));
+        this.maximumConcurrency = maximumConcurrency;
+        this.concurrencyLimit = new Semaphore(maximumConcurrency);
+    }
+
+    private static ExecutorService createExecutor(final boolean virtualThreads) {
+        ExecutorService virtualExecutor = virtualThreads
+                ? VirtualThreads.newThreadPerTaskExecutor("AsynchCommandExecution-")
+                : null;
+        if (virtualExecutor != null) {
+            return virtualExecutor;
+        }
+        if (virtualThreads) {
+            LOGGER.warn("Virtual threads are not supported by this JVM, asynchronous commands will execute on platform threads.");
+        }
+        return Executors.newCachedThreadPool(createThreadFactory());
+    }
+
+    /**
+     * The task is run when it holds a permit from the concurrency limit, so the execution
+     * time of the Command does not include the wait for a permit.
+     */
+    @Override
+    public void execute(final Callable<?> command, final Runnable task) {
+        super.execute(command, new ConcurrencyLimitedTask(task, concurrencyLimit));
+    }
+
+    /**
+     * The number of executing Commands as a fraction of the maximum concurrency.
+     */
+    @Override
+    public double getSaturation() {
+        return (double)(this.maximumConcurrency - this.concurrencyLimit.availablePermits()) / this.maximumConcurrency;
+    }
+
+    /**
+     * Holds a permit from the concurrency limit while the task runs.
+     * Waiting for a permit blocks the (virtual) thread that will run the task, never the thread
+     * that submitted it. A task that is cancelled while it waits is not run when it acquires
+     * the permit, a task whose thread is interrupted while it waits is cancelled.
+     */
+    private static class ConcurrencyLimitedTask implements Runnable {
+        private final Runnable task;
+        private final Semaphore concurrencyLimit;
+
+        private ConcurrencyLimitedTask(final Runnable task, final Semaphore concurrencyLimit) {
+            this.task = task;
+            this.concurrencyLimit = concurrencyLimit;
+        }
+
+        @Override
+        public void run() {
+            try {
+                concurrencyLimit.acquire();
+            } catch (InterruptedException iX) {
+                Thread.currentThread().interrupt();
+                if (task instanceof Future) {
+                    ((Future<?>) task).cancel(false);
+                }
+                return;
+            }
+            try {
+                if (!(task instanceof Future) || !((Future<?>) task).isDone()) {
+                    task.run();
+                }
+            } finally {
+                concurrencyLimit.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package org.nanocontext.semanticserver.semanticserver.commandprocessor;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Access to virtual threads (JDK 21 and later) from code compiled for Java 8.
+ * The virtual thread API is looked up reflectively, once, when this class is loaded.
+ *
+ * Usable ONLY by members of this package.
+ */
+final class VirtualThreads {
+    private static final Method OF_VIRTUAL = findMethod(Thread.class, "ofVirtual");
+    private static final Method NAME = findMethod(findClass("java.lang.Thread$Builder"), "name", String.class, long.class);
+    private static final Method FACTORY = findMethod(findClass("java.lang.Thread$Builder"), "factory");
+    private static final Method NEW_THREAD_PER_TASK_EXECUTOR =
+            findMethod(Executors.class, "newThreadPerTaskExecutor", ThreadFactory.class);
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return true if the JVM supports virtual threads
+     */
+    static boolean isAvailable() {
+        return OF_VIRTUAL != null && NAME != null && FACTORY != null && NEW_THREAD_PER_TASK_EXECUTOR != null;
+    }
+
+    /**
+     * Create an ExecutorService that starts a new virtual thread for each task, the threads
+     * are named with the given prefix followed by a serial number.
+     *
+     * @param namePrefix
+     * @return the ExecutorService, or null if the JVM does not support virtual threads
+     */
+    static ExecutorService newThreadPerTaskExecutor(final String namePrefix) {
+        if (!isAvailable()) {
+            return null;
+        }
+        try {
+            Object builder = NAME.invoke(OF_VIRTUAL.invoke(null), namePrefix, 1L);
+            ThreadFactory threadFactory = (ThreadFactory) FACTORY.invoke(builder);
+            return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, threadFactory);
+        } catch (ReflectiveOperationException roX) {
+            return null;
+        }
+    }
+
+    private static Class<?> findClass(final String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException cnfX) {
+            return null;
+        }
+    }
+
+    private static Method findMethod(final Class<?> clazz, final String name, final Class<?>... parameterTypes) {
+        if (clazz == null) {
+            return null;
+        }
+        try {
+            return clazz.getMethod(name, parameterTypes);
+        } catch (NoSuchMethodException nsmX) {
+            return null;
+        }
+    }
+}
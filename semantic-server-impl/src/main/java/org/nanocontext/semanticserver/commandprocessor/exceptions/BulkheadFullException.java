@@ -0,0 +1,26 @@
+package org.nanocontext.semanticserver.semanticserver.commandprocessor.exceptions;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Thrown when a Command is submitted for asynchronous execution and the Bulkhead of its
+ * RoutingToken has no concurrency budget left.
+ */
+public class BulkheadFullException
+extends RejectedExecutionException
+{
+	private static final long serialVersionUID = 1L;
+	private static String createMessage(final String bulkheadName, final int maximumConcurrency) {
+		return String.format("The bulkhead '%s' is full, %d commands are executing",
+				bulkheadName, maximumConcurrency);
+	}
+
+	/**
+	 * @param bulkheadName
+	 * @param maximumConcurrency
+	 */
+	public BulkheadFullException(final String bulkheadName, final int maximumConcurrency)
+	{
+		super(createMessage(bulkheadName, maximumConcurrency));
+	}
+}
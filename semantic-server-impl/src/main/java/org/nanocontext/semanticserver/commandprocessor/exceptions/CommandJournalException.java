@@ -0,0 +1,30 @@
+package org.nanocontext.semanticserver.semanticserver.commandprocessor.exceptions;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Thrown when a Command submitted for asynchronous execution cannot be journaled,
+ * the Command is not accepted.
+ */
+public class CommandJournalException
+extends RejectedExecutionException
+{
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * @param message
+	 */
+	public CommandJournalException(final String message)
+	{
+		super(message);
+	}
+
+	/**
+	 * @param message
+	 * @param cause
+	 */
+	public CommandJournalException(final String message, final Throwable cause)
+	{
+		super(message, cause);
+	}
+}
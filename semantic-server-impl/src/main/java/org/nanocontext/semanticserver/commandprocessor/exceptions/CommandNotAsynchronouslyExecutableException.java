@@ -0,0 +1,23 @@
+package org.nanocontext.semanticserver.semanticserver.commandprocessor.exceptions;
+
+/**
+ * Reported to the callback of a Command that was submitted for asynchronous execution
+ * but is not annotated with AsynchronouslyExecutableCommand.
+ */
+public class CommandNotAsynchronouslyExecutableException
+extends Exception
+{
+	private static final long serialVersionUID = 1L;
+	private static String createMessage(final Class<?> commandClass) {
+		return String.format("'%s' is not marked as eligible for asynchronous execution.",
+				commandClass == null ? "<null>" : commandClass.getName());
+	}
+
+	/**
+	 * @param commandClass
+	 */
+	public CommandNotAsynchronouslyExecutableException(final Class<?> commandClass)
+	{
+		super(createMessage(commandClass));
+	}
+}
@@ -0,0 +1,26 @@
+package org.nanocontext.semanticserver.semanticserver.commandprocessor.exceptions;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Thrown when a Command is submitted for asynchronous execution and the bounded
+ * CommandProcessor has neither a free thread nor room in its work queue.
+ */
+public class CommandProcessorSaturatedException
+extends RejectedExecutionException
+{
+	private static final long serialVersionUID = 1L;
+	private static String createMessage(final int maximumThreads, final int workQueueSize) {
+		return String.format("The command processor is saturated, all %d threads are busy and the work queue of %d is full",
+				maximumThreads, workQueueSize);
+	}
+
+	/**
+	 * @param maximumThreads
+	 * @param workQueueSize
+	 */
+	public CommandProcessorSaturatedException(final int maximumThreads, final int workQueueSize)
+	{
+		super(createMessage(maximumThreads, workQueueSize));
+	}
+}
@@ -0,0 +1,26 @@
+package org.nanocontext.semanticserver.semanticserver.commandprocessor.exceptions;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Thrown when a Command is submitted for asynchronous execution and the adaptive limit
+ * of its command class is reached and its queue is full.
+ */
+public class ConcurrencyLimitExceededException
+extends RejectedExecutionException
+{
+	private static final long serialVersionUID = 1L;
+	private static String createMessage(final Class<?> commandClass, final int limit) {
+		return String.format("The concurrency limit of '%s' (%d) is reached and its queue is full",
+				commandClass == null ? "<null>" : commandClass.getName(), limit);
+	}
+
+	/**
+	 * @param commandClass
+	 * @param limit
+	 */
+	public ConcurrencyLimitExceededException(final Class<?> commandClass, final int limit)
+	{
+		super(createMessage(commandClass, limit));
+	}
+}
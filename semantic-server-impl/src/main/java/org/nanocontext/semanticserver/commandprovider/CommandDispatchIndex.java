@@ -0,0 +1,232 @@
+package org.nanocontext.semanticserver.semanticserver.commandprovider;
+
+import org.nanocontext.semanticserver.semanticserver.commandprovider.exceptions.AmbiguousCommandCapabilitiesException;
+import org.nanocontext.semanticserverapi.core.commandprocessor.RoutingToken;
+import org.nanocontext.semanticserverapi.core.commandprovider.CapabilityDeclaringCommandProvider;
+import org.nanocontext.semanticserverapi.core.commandprovider.CommandCapability;
+import org.nanocontext.semanticserverapi.core.commandprovider.CommandProvider;
+import org.nanocontext.semanticserverapi.core.semantics.ApplicationSemantics;
+import org.nanocontext.semanticserverapi.core.semantics.CommandClassSemantics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An index of the capabilities declared by CapabilityDeclaringCommandProviders, from which the
+ * RootCommandProvider selects the CommandProviders to ask for a Command rather than asking all of them.
+ * The index of an ApplicationSemantics is built the first time that it is used. Capabilities of
+ * different providers that overlap (the same semantics for the same, or any, RoutingToken) reject
+ * a deployment that is warmed with them, a lookup of the overlapping semantics throws an
+ * AmbiguousCommandCapabilitiesException while the other semantics are still found. A provider
+ * that declares the same semantics more than once does not overlap itself.
+ * A CommandProvider whose capabilities cannot be determined is a candidate for every Command.
+ *
+ * Usable ONLY by members of this package.
+ */
+final class CommandDispatchIndex {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CommandDispatchIndex.class);
+
+    private final CapabilityDeclaringCommandProvider[] declaringProviders;
+
+    /** the index of the declared capabilities, by the ApplicationSemantics that created their semantics */
+    private final Map<ApplicationSemantics, SemanticsIndex> indexes = new ConcurrentHashMap<>();
+
+    CommandDispatchIndex(final CapabilityDeclaringCommandProvider[] declaringProviders) {
+        this.declaringProviders = declaringProviders;
+    }
+
+    /**
+     * @param commandClassSemantics
+     * @param routingToken
+     * @return the declaring CommandProviders that may provide the Command, an empty List if none
+     * @throws AmbiguousCommandCapabilitiesException if the declared capabilities of the semantics overlap
+     */
+    List<CommandProvider> lookup(final CommandClassSemantics commandClassSemantics, final RoutingToken routingToken)
+            throws AmbiguousCommandCapabilitiesException {
+        if (this.declaringProviders.length == 0) {
+            return Collections.emptyList();
+        }
+
+        return getIndex(commandClassSemantics.getApplicationSemanticsImpl()).lookup(commandClassSemantics, routingToken);
+    }
+
+    /**
+     * Build the index of an ApplicationSemantics, before the index is put into service.
+     *
+     * @param applicationSemantics
+     * @throws AmbiguousCommandCapabilitiesException if the declared capabilities of any semantics overlap
+     */
+    void warm(final ApplicationSemantics applicationSemantics)
+            throws AmbiguousCommandCapabilitiesException {
+        if (this.declaringProviders.length > 0) {
+            getIndex(applicationSemantics).checkUnambiguous();
+        }
+    }
+
+    private SemanticsIndex getIndex(final ApplicationSemantics applicationSemantics) {
+        SemanticsIndex index = this.indexes.get(applicationSemantics);
+        if (index == null) {
+            synchronized (this.indexes) {
+                index = this.indexes.get(applicationSemantics);
+                if (index == null) {
+                    index = new SemanticsIndex(applicationSemantics);
+                    this.indexes.put(applicationSemantics, index);
+                }
+            }
+        }
+        return index;
+    }
+
+    // ==========================================================================================
+    // The index of one ApplicationSemantics
+    // ==========================================================================================
+    private final class SemanticsIndex {
+        private final Map<CommandClassSemantics, Dispatch> dispatches = new HashMap<>();
+        /** the declaring providers whose capabilities could not be determined */
+        private final List<CommandProvider> undeclared = new ArrayList<>();
+        /** the overlapping capabilities, empty if there are none */
+        private final List<String> ambiguities = new ArrayList<>();
+
+        private SemanticsIndex(final ApplicationSemantics applicationSemantics) {
+            for (CapabilityDeclaringCommandProvider provider : declaringProviders) {
+                Collection<CommandCapability> capabilities;
+                try {
+                    capabilities = provider.getCapabilities(applicationSemantics);
+                } catch (RuntimeException rX) {
+                    LOGGER.error("Unable to get the capabilities of '{}', it will be asked for every command",
+                            provider.getPublisher(), rX);
+                    capabilities = null;
+                }
+                if (capabilities == null) {
+                    this.undeclared.add(provider);
+                    continue;
+                }
+
+                for (CommandCapability capability : capabilities) {
+                    Dispatch dispatch = this.dispatches.get(capability.getCommandClassSemantics());
+                    if (dispatch == null) {
+                        dispatch = new Dispatch();
+                        this.dispatches.put(capability.getCommandClassSemantics(), dispatch);
+                    }
+                    dispatch.add(provider, capability);
+                }
+            }
+
+            for (Map.Entry<CommandClassSemantics, Dispatch> entry : this.dispatches.entrySet()) {
+                Dispatch dispatch = entry.getValue();
+                if (dispatch.seal()) {
+                    dispatch.ambiguity = String.format("'%s' is provided by more than one of %s",
+                            entry.getKey(), dispatch.describeProviders());
+                    this.ambiguities.add(dispatch.ambiguity);
+                }
+            }
+            if (!this.ambiguities.isEmpty()) {
+                LOGGER.error("Ambiguous command capabilities, {}", this.ambiguities);
+            }
+        }
+
+        private void checkUnambiguous() throws AmbiguousCommandCapabilitiesException {
+            if (!this.ambiguities.isEmpty()) {
+                throw new AmbiguousCommandCapabilitiesException(Collections.unmodifiableList(this.ambiguities));
+            }
+        }
+
+        private List<CommandProvider> lookup(final CommandClassSemantics commandClassSemantics, final RoutingToken routingToken)
+                throws AmbiguousCommandCapabilitiesException {
+            Dispatch dispatch = this.dispatches.get(commandClassSemantics);
+            if (dispatch != null && dispatch.ambiguity != null) {
+                throw new AmbiguousCommandCapabilitiesException(Collections.singletonList(dispatch.ambiguity));
+            }
+            List<CommandProvider> candidates = dispatch == null
+                    ? Collections.<CommandProvider>emptyList()
+                    : dispatch.getCandidates(routingToken);
+            if (this.undeclared.isEmpty()) {
+                return candidates;
+            }
+            List<CommandProvider> result = new ArrayList<>(candidates);
+            result.addAll(this.undeclared);
+            return result;
+        }
+    }
+
+    // ==========================================================================================
+    // The providers of one CommandClassSemantics
+    // ==========================================================================================
+    private static final class Dispatch {
+        private List<CommandProvider> anyToken = new ArrayList<>(1);
+        private final Map<RoutingToken, List<CommandProvider>> byToken = new HashMap<>();
+        /** the description of the overlapping capabilities, null if there are none */
+        private String ambiguity;
+
+        private void add(final CommandProvider provider, final CommandCapability capability) {
+            if (capability.isAnyRoutingToken()) {
+                addDistinct(this.anyToken, provider);
+                return;
+            }
+            for (RoutingToken routingToken : capability.getRoutingTokens()) {
+                List<CommandProvider> providers = this.byToken.get(routingToken);
+                if (providers == null) {
+                    providers = new ArrayList<>(1);
+                    this.byToken.put(routingToken, providers);
+                }
+                addDistinct(providers, provider);
+            }
+        }
+
+        /** add the provider unless it is already present, providers are compared by identity */
+        private static void addDistinct(final List<CommandProvider> providers, final CommandProvider provider) {
+            for (CommandProvider present : providers) {
+                if (present == provider) {
+                    return;
+                }
+            }
+            providers.add(provider);
+        }
+
+        /**
+         * Complete the candidates of each RoutingToken with the providers of any RoutingToken.
+         *
+         * @return true if any RoutingToken has more than one candidate
+         */
+        private boolean seal() {
+            boolean ambiguous = this.anyToken.size() > 1;
+            for (Map.Entry<RoutingToken, List<CommandProvider>> entry : this.byToken.entrySet()) {
+                List<CommandProvider> candidates = new ArrayList<>(entry.getValue());
+                for (CommandProvider provider : this.anyToken) {
+                    addDistinct(candidates, provider);
+                }
+                ambiguous |= candidates.size() > 1;
+                entry.setValue(Collections.unmodifiableList(candidates));
+            }
+            this.anyToken = Collections.unmodifiableList(this.anyToken);
+            return ambiguous;
+        }
+
+        private List<CommandProvider> getCandidates(final RoutingToken routingToken) {
+            List<CommandProvider> candidates = this.byToken.get(routingToken);
+            return candidates == null ? this.anyToken : candidates;
+        }
+
+        private String describeProviders() {
+            List<String> publishers = new ArrayList<>();
+            for (CommandProvider provider : this.anyToken) {
+                publishers.add(provider.getPublisher() + "(any)");
+            }
+            for (Map.Entry<RoutingToken, List<CommandProvider>> entry : this.byToken.entrySet()) {
+                for (CommandProvider provider : entry.getValue()) {
+                    if (!this.anyToken.contains(provider)) {
+                        publishers.add(provider.getPublisher() + "(" + entry.getKey() + ")");
+                    }
+                }
+            }
+            return publishers.toString();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package org.nanocontext.semanticserver.semanticserver.commandprovider;
+
+import org.nanocontext.semanticserverapi.core.commandprocessor.RoutingToken;
+import org.nanocontext.semanticserverapi.core.semantics.CommandClassSemantics;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers, for a limited time, the lookups for which no CommandProvider found a Command,
+ * so that repeating such a lookup does not ask every CommandProvider again.
+ * A NegativeResultCache belongs to one snapshot of the CommandProviders, it is discarded
+ * (and so invalidated) when the CommandProviders are reloaded.
+ *
+ * Usable ONLY by members of this package.
+ */
+final class NegativeResultCache {
+    /** the cache is cleared, rather than grow past this number of entries */
+    static final int MAXIMUM_SIZE = 4096;
+
+    /** the System.nanoTime() at which each cached lookup expires */
+    private final ConcurrentHashMap<LookupKey, Long> expirations = new ConcurrentHashMap<>();
+
+    /**
+     * @param key
+     * @return true if the lookup found no Command and has not expired
+     */
+    boolean contains(final LookupKey key) {
+        Long expiration = this.expirations.get(key);
+        if (expiration == null) {
+            return false;
+        }
+        if (System.nanoTime() - expiration < 0L) {
+            return true;
+        }
+        this.expirations.remove(key, expiration);
+        return false;
+    }
+
+    /**
+     * @param key a lookup that found no Command
+     * @param timeToLiveNanos the time for which the lookup is remembered, zero to not remember it
+     */
+    void add(final LookupKey key, final long timeToLiveNanos) {
+        if (timeToLiveNanos <= 0L) {
+            return;
+        }
+        if (this.expirations.size() >= MAXIMUM_SIZE) {
+            this.expirations.clear();
+        }
+        this.expirations.put(key, System.nanoTime() + timeToLiveNanos);
+    }
+
+    int size() {
+        return this.expirations.size();
+    }
+
+    // ==========================================================================================
+    // Cache keys
+    // ==========================================================================================
+    static final class LookupKey {
+        private final RoutingToken routingToken;
+        private final CommandClassSemantics commandClassSemantics;
+        private final Class<?>[] parameterTypes;
+        private final Class<?> resultType;
+        private final int hashCode;
+
+        LookupKey(
+                final RoutingToken routingToken,
+                final CommandClassSemantics commandClassSemantics,
+                final Class<?>[] parameterTypes,
+                final Class<?> resultType) {
+            this.routingToken = routingToken;
+            this.commandClassSemantics = commandClassSemantics;
+            this.parameterTypes = parameterTypes == null ? new Class<?>[0] : parameterTypes.clone();
+            this.resultType = resultType;
+            this.hashCode = 31 * (31 * (31 * routingToken.hashCode() + commandClassSemantics.hashCode())
+                    + Arrays.hashCode(this.parameterTypes)) + Objects.hashCode(resultType);
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof LookupKey)) {
+                return false;
+            }
+            LookupKey that = (LookupKey) o;
+            return hashCode == that.hashCode
+                    && commandClassSemantics.equals(that.commandClassSemantics)
+                    && Arrays.equals(parameterTypes, that.parameterTypes)
+                    && Objects.equals(resultType, that.resultType)
+                    && routingToken.equals(that.routingToken);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package org.nanocontext.semanticserver.semanticserver.commandprovider;
+
+import org.nanocontext.semanticserver.semanticserver.commandprovider.exceptions.ProviderDeploymentException;
+import org.nanocontext.semanticserverapi.core.commandprovider.CommandProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The CommandProviders of a set of jars, loaded in a class loader of their own (a child of the
+ * class loader of the RootCommandProvider) so that they can be deployed, replaced and undeployed
+ * while the application is running.
+ * Only the CommandProviders declared (in META-INF/services) by the jars of the deployment are
+ * loaded, classes that are also on the application class path are loaded from the application
+ * class path.
+ *
+ * When a deployment is replaced or undeployed it is retired, it is drained until the Commands
+ * that its CommandProviders created have completed (or the drain timeout passes) and then its
+ * class loader is closed. A Command is in flight from its creation until the CommandProcessor
+ * reports its completion to the RootCommandProvider.
+ */
+public class ProviderDeployment {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProviderDeployment.class);
+    private static final String SERVICE_RESOURCE = "META-INF/services/" + CommandProvider.class.getName();
+    /** the bit of the state that is set once the deployment is released */
+    private static final int RELEASED = Integer.MIN_VALUE;
+    /** the bits of the state that count the Commands in flight */
+    private static final int IN_FLIGHT = Integer.MAX_VALUE;
+
+    private final String name;
+    private final List<URL> urls;
+    private final URLClassLoader classLoader;
+    private final List<CommandProvider> commandProviders;
+
+    /**
+     * the number of Commands created by the CommandProviders that have not completed and the
+     * RELEASED bit, changed together so that no Command is counted once the deployment is
+     * released and the class loader is closed exactly once
+     */
+    private final AtomicInteger state = new AtomicInteger();
+    private final CountDownLatch releasedSignal = new CountDownLatch(1);
+
+    private volatile boolean retired;
+    private volatile boolean released;
+
+    /**
+     * Load the CommandProviders declared by the jars.
+     *
+     * @param name the name of the deployment
+     * @param urls the jars of the deployment
+     * @param parent the class loader of the RootCommandProvider
+     * @return the deployment
+     * @throws ProviderDeploymentException if no CommandProvider is declared or a CommandProvider cannot be loaded
+     */
+    static ProviderDeployment load(final String name, final URL[] urls, final ClassLoader parent)
+            throws ProviderDeploymentException {
+        URLClassLoader classLoader = new URLClassLoader(urls.clone(), parent);
+        try {
+            List<CommandProvider> commandProviders = new ArrayList<>();
+            // findResources() searches only the jars of the deployment, not the parent
+            Enumeration<URL> serviceResources = classLoader.findResources(SERVICE_RESOURCE);
+            while (serviceResources.hasMoreElements()) {
+                for (String className : readProviderClassNames(serviceResources.nextElement())) {
+                    commandProviders.add(instantiate(name, className, classLoader));
+                }
+            }
+            if (commandProviders.isEmpty()) {
+                throw new ProviderDeploymentException(name, "no CommandProvider is declared in " + SERVICE_RESOURCE);
+            }
+            return new ProviderDeployment(name, urls, classLoader, commandProviders);
+        } catch (ProviderDeploymentException pdX) {
+            closeQuietly(name, classLoader);
+            throw pdX;
+        } catch (IOException | ReflectiveOperationException | RuntimeException | LinkageError x) {
+            closeQuietly(name, classLoader);
+            throw new ProviderDeploymentException(name, "a CommandProvider could not be loaded", x);
+        }
+    }
+
+    private static CommandProvider instantiate(final String name, final String className, final ClassLoader classLoader)
+            throws ReflectiveOperationException, ProviderDeploymentException {
+        Class<?> providerClass = Class.forName(className, true, classLoader);
+        if (!CommandProvider.class.isAssignableFrom(providerClass)) {
+            throw new ProviderDeploymentException(name, className + " is not a CommandProvider");
+        }
+        if (providerClass.getClassLoader() != classLoader) {
+            throw new ProviderDeploymentException(name, className + " is on the application class path");
+        }
+        return (CommandProvider) providerClass.getConstructor().newInstance();
+    }
+
+    /**
+     * Parse a provider-configuration file, one class name per line, '#' begins a comment.
+     */
+    private static List<String> readProviderClassNames(final URL serviceResource) throws IOException {
+        List<String> classNames = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(serviceResource.openStream(), StandardCharsets.UTF_8))) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                int commentIndex = line.indexOf('#');
+                String className = (commentIndex < 0 ? line : line.substring(0, commentIndex)).trim();
+                if (!className.isEmpty()) {
+                    classNames.add(className);
+                }
+            }
+        }
+        return classNames;
+    }
+
+    private static void closeQuietly(final String name, final URLClassLoader classLoader) {
+        try {
+            classLoader.close();
+        } catch (IOException ioX) {
+            LOGGER.warn("Unable to close the class loader of deployment '{}'", name, ioX);
+        }
+    }
+
+    private ProviderDeployment(
+            final String name,
+            final URL[] urls,
+            final URLClassLoader classLoader,
+            final List<CommandProvider> commandProviders) {
+        this.name = name;
+        this.urls = Collections.unmodifiableList(Arrays.asList(urls.clone()));
+        this.classLoader = classLoader;
+        this.commandProviders = Collections.unmodifiableList(commandProviders);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<URL> getUrls() {
+        return urls;
+    }
+
+    public List<CommandProvider> getCommandProviders() {
+        return commandProviders;
+    }
+
+    /**
+     * @return the number of Commands created by this deployment that have not yet completed
+     */
+    public int getInFlightCommandCount() {
+        return state.get() & IN_FLIGHT;
+    }
+
+    /**
+     * @return true once the deployment has been replaced or undeployed
+     */
+    public boolean isRetired() {
+        return retired;
+    }
+
+    /**
+     * @return true once the deployment has drained and its class loader has been closed
+     */
+    public boolean isReleased() {
+        return released;
+    }
+
+    /**
+     * Wait for the deployment to be released.
+     *
+     * @param timeoutMillis
+     * @return true if the deployment was released within the timeout
+     * @throws InterruptedException
+     */
+    public boolean awaitReleased(final long timeoutMillis) throws InterruptedException {
+        return releasedSignal.await(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // ==========================================================================================
+    // Lifecycle, usable ONLY by members of this package
+    // ==========================================================================================
+    /**
+     * Count a Command that is about to be created by one of the CommandProviders of this deployment,
+     * the class loader is not closed until the Command has completed.
+     *
+     * @return false if the deployment has been released and no Command may be created
+     */
+    boolean commandCreating() {
+        while (true) {
+            int current = this.state.get();
+            if ((current & RELEASED) != 0) {
+                return false;
+            }
+            if (this.state.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * A Command counted by commandCreating() has completed, or was never created.
+     * A retired deployment is released by the completion of its last Command.
+     */
+    void commandCompleted() {
+        if ((this.state.decrementAndGet() & IN_FLIGHT) == 0 && this.retired) {
+            releaseIfDrained();
+        }
+    }
+
+    /**
+     * Close the class loader of a deployment that was never put into service, there is nothing to drain.
+     */
+    void discard() {
+        this.retired = true;
+        forceRelease();
+    }
+
+    /**
+     * Release the deployment once its Commands have completed, or at the drain timeout if they have not.
+     *
+     * @param drainTimeoutMillis the maximum time to wait for the Commands of the deployment
+     */
+    void retire(final long drainTimeoutMillis) {
+        this.retired = true;
+        if (releaseIfDrained()) {
+            return;
+        }
+
+        Thread drainTimeout = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (releasedSignal.await(drainTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                        return;
+                    }
+                } catch (InterruptedException iX) {
+                    Thread.currentThread().interrupt();
+                }
+                LOGGER.warn("Deployment '{}' released with {} Commands that may still be executing",
+                        name, getInFlightCommandCount());
+                forceRelease();
+            }
+        }, "CommandProviderDrain-" + name);
+        drainTimeout.setDaemon(true);
+        drainTimeout.start();
+    }
+
+    /**
+     * Release the deployment if no Command is in flight, a Command counted meanwhile prevents it.
+     *
+     * @return true if the deployment is released
+     */
+    private boolean releaseIfDrained() {
+        if (this.state.compareAndSet(0, RELEASED)) {
+            closeClassLoader();
+        }
+        return (this.state.get() & RELEASED) != 0;
+    }
+
+    /**
+     * Release the deployment whether or not Commands are in flight.
+     */
+    private void forceRelease() {
+        while (true) {
+            int current = this.state.get();
+            if ((current & RELEASED) != 0) {
+                return;
+            }
+            if (this.state.compareAndSet(current, current | RELEASED)) {
+                closeClassLoader();
+                return;
+            }
+        }
+    }
+
+    private void closeClassLoader() {
+        closeQuietly(name, classLoader);
+        this.released = true;
+        this.releasedSignal.countDown();
+        LOGGER.info("Deployment '{}' released", name);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ProviderDeployment[%s, providers=%d, inFlightCommands=%d%s]",
+                name, commandProviders.size(), getInFlightCommandCount(), released ? ", released" : retired ? ", retired" : "");
+    }
+}
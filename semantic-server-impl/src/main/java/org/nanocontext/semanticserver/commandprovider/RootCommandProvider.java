@@ -1,28 +1,67 @@
 package org.nanocontext.semanticserver.semanticserver.commandprovider;
 
+import org.nanocontext.semanticserver.semanticserver.commandprovider.exceptions.AmbiguousCommandCapabilitiesException;
+import org.nanocontext.semanticserver.semanticserver.commandprovider.exceptions.CommandLookupIncompleteException;
+import org.nanocontext.semanticserver.semanticserver.commandprovider.exceptions.ProviderDeploymentException;
 import org.nanocontext.semanticserverapi.core.commandprocessor.RoutingToken;
 import org.nanocontext.semanticserverapi.core.commandprovider.AbstractCommandProvider;
+import org.nanocontext.semanticserverapi.core.commandprovider.CapabilityDeclaringCommandProvider;
 import org.nanocontext.semanticserverapi.core.commandprovider.CommandInstantiationToken;
 import org.nanocontext.semanticserverapi.core.commandprovider.CommandProvider;
 import org.nanocontext.semanticserverapi.core.commandprovider.exceptions.CommandProviderException;
 import org.nanocontext.semanticserverapi.core.commandprovider.exceptions.MultipleCommandImplementationsException;
+import org.nanocontext.semanticserverapi.core.semantics.ApplicationSemantics;
 import org.nanocontext.semanticserverapi.core.semantics.CommandClassSemantics;
 import com.paypal.utility.ParameterCheckUtility;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- *
+ * The CommandProvider that delegates to the CommandProviders discovered by a ServiceLoader.
+ * The discovered CommandProviders are held in an immutable snapshot, which reload() rebuilds
+ * and swaps, so that finding and creating a Command never locks or iterates the ServiceLoader.
+ * CommandProviders that declare their capabilities are asked only for the Commands that they
+ * declared, through a CommandDispatchIndex, all other CommandProviders are asked for every Command.
+ * Declarations that overlap are rejected, a deployment that introduces them is not put into service.
+ * A lookup that finds no Command is remembered, for the negative cache time to live, and counted
+ * (by RoutingToken) as a rejected lookup.
+ * When parallel probing is enabled the CommandProviders of a lookup are asked concurrently, on a
+ * pool shared by all lookups, a lookup that a CommandProvider does not answer within the probe
+ * timeout throws a CommandLookupIncompleteException, unless the answers already found are ambiguous.
+ * CommandProviders may also be deployed, replaced and undeployed while the application is running,
+ * each deployment is loaded in a class loader of its own, warmed before it is swapped into service
+ * and, when it is replaced or undeployed, drained before its class loader is closed. A Command of
+ * a deployment is in flight until the CommandProcessor reports its completion, see commandCompleted().
  */
 public class RootCommandProvider
     extends AbstractCommandProvider
     implements CommandProvider {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RootCommandProvider.class);
 
     // ============================================================================
     // Static Methods to manage instances of this class
@@ -62,6 +101,8 @@ public class RootCommandProvider
     // ============================================================================
     // RootCommandProvider implementation
     // ============================================================================
+    public static final long DEFAULT_NEGATIVE_CACHE_TTL_MILLIS = 30000L;
+    public static final long DEFAULT_DRAIN_TIMEOUT_MILLIS = 60000L;
 
     /** The ONLY ServiceLoader for the RootCommandProvider type */
     private final ServiceLoader<CommandProvider> commandProviderLoader;
@@ -69,6 +110,28 @@ public class RootCommandProvider
     /** */
     private final ClassLoader classLoader;
 
+    /** incremented by every reload(), see getGeneration() */
+    private final AtomicLong generation = new AtomicLong();
+
+    /** the CommandProviders of the current generation, replaced (never modified) by reload() */
+    private volatile ProviderSnapshot snapshot;
+
+    private volatile long negativeCacheTimeToLiveNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_NEGATIVE_CACHE_TTL_MILLIS);
+
+    /** the pool and timeout of parallel probing, null to probe sequentially on the calling thread */
+    private volatile ParallelProbing parallelProbing;
+
+    /** the maximum time that a retired deployment waits for its Commands before it is released */
+    private volatile long drainTimeoutMillis = DEFAULT_DRAIN_TIMEOUT_MILLIS;
+
+    /** the Commands of deployments that are in flight, by identity, and the deployment that created each */
+    private final Map<Callable<?>, ProviderDeployment> deployedCommands =
+            Collections.synchronizedMap(new IdentityHashMap<Callable<?>, ProviderDeployment>());
+
+    /** the number of lookups that found no Command, in total and by RoutingToken */
+    private final AtomicLong rejectedLookupCount = new AtomicLong();
+    private final Map<RoutingToken, AtomicLong> rejectedLookupCounts = new ConcurrentHashMap<>();
+
     /**
      */
     public RootCommandProvider(final ClassLoader classLoader) {
@@ -76,6 +139,16 @@ public class RootCommandProvider
 
         this.classLoader = classLoader;
         this.commandProviderLoader = ServiceLoader.load(CommandProvider.class, this.classLoader);
+        this.snapshot = new ProviderSnapshot(
+                loadCommandProviders(), Collections.<String, ProviderDeployment>emptyMap());
+    }
+
+    private List<CommandProvider> loadCommandProviders() {
+        List<CommandProvider> commandProviders = new ArrayList<>();
+        for (CommandProvider commandProvider : this.commandProviderLoader) {
+            commandProviders.add(commandProvider);
+        }
+        return Collections.unmodifiableList(commandProviders);
     }
 
     /**
@@ -87,21 +160,207 @@ public class RootCommandProvider
         return null;
     }
 
-    private boolean isKnownProvider(final CommandProvider commandProvider) {
-        for (Iterator<CommandProvider> iter = this.commandProviderLoader.iterator(); iter.hasNext(); ) {
-            // reference equality is intentional, this MUST be the instance that this root manages
-            if (commandProvider == iter.next()) {
-                return true;
+    private static boolean isKnownProvider(final ProviderSnapshot snapshot, final CommandProvider commandProvider) {
+        // identity is intentional, this MUST be the instance that this root manages
+        return snapshot.identities.contains(commandProvider);
+    }
+
+    /**
+     * Reload the service factories, the lookups remembered as having found no Command are forgotten.
+     * The new snapshot is published before the generation changes, so that a
+     * CommandInstantiationToken found in the new snapshot is never cached as a previous generation.
+     */
+    public final synchronized void reload() {
+        this.commandProviderLoader.reload();
+        swap(new ProviderSnapshot(loadCommandProviders(), this.snapshot.deployments));
+    }
+
+    private void swap(final ProviderSnapshot replacement) {
+        this.snapshot = replacement;
+        this.generation.incrementAndGet();
+    }
+
+    /**
+     * Deploy the CommandProviders of a set of jars, replacing the deployment of the same name if
+     * there is one. The CommandProviders are loaded and warmed (the capabilities of those that
+     * declare them are indexed) before they are swapped into service, a lookup never waits for a
+     * deployment. The replaced deployment is drained and released.
+     * A deployment whose declared capabilities overlap those in service, or each other, is rejected
+     * when it is warmed.
+     *
+     * @param name the name of the deployment
+     * @param urls the jars of the deployment
+     * @param warmingSemantics the ApplicationSemantics to warm the deployment with, null to not warm it
+     * @return the deployment
+     * @throws ProviderDeploymentException if the CommandProviders cannot be loaded or their capabilities are ambiguous,
+     * the CommandProviders in service are unchanged
+     */
+    public synchronized ProviderDeployment deploy(
+            final String name,
+            final URL[] urls,
+            final ApplicationSemantics warmingSemantics)
+            throws ProviderDeploymentException {
+        ParameterCheckUtility.checkParameterNotNull(name, "name");
+        ParameterCheckUtility.checkParameterNotNull(urls, "urls");
+
+        ProviderDeployment deployment = ProviderDeployment.load(name, urls, this.classLoader);
+
+        ProviderSnapshot current = this.snapshot;
+        Map<String, ProviderDeployment> deployments = new LinkedHashMap<>(current.deployments);
+        ProviderDeployment replaced = deployments.put(name, deployment);
+        ProviderSnapshot replacement = new ProviderSnapshot(current.baseProviders, deployments);
+        if (warmingSemantics != null) {
+            try {
+                replacement.dispatchIndex.warm(warmingSemantics);
+            } catch (AmbiguousCommandCapabilitiesException acX) {
+                deployment.discard();
+                throw new ProviderDeploymentException(name, "its command capabilities are ambiguous", acX);
             }
         }
-        return false;
+        swap(replacement);
+        LOGGER.info("Deployed '{}' with {} command providers", name, deployment.getCommandProviders().size());
+
+        if (replaced != null) {
+            retire(replaced);
+        }
+        return deployment;
     }
 
     /**
-     * Reload the service factories.
+     * Remove a deployment from service, it is drained and released.
+     *
+     * @param name
+     * @return true if there was a deployment of that name
      */
-    public final void reload() {
-        this.commandProviderLoader.reload();
+    public synchronized boolean undeploy(final String name) {
+        ProviderSnapshot current = this.snapshot;
+        if (!current.deployments.containsKey(name)) {
+            return false;
+        }
+        Map<String, ProviderDeployment> deployments = new LinkedHashMap<>(current.deployments);
+        ProviderDeployment removed = deployments.remove(name);
+        swap(new ProviderSnapshot(current.baseProviders, deployments));
+        LOGGER.info("Undeployed '{}'", name);
+
+        retire(removed);
+        return true;
+    }
+
+    private void retire(final ProviderDeployment deployment) {
+        // forget the Commands, created but never executed, of the deployments released at their drain timeout
+        synchronized (this.deployedCommands) {
+            Iterator<ProviderDeployment> deployments = this.deployedCommands.values().iterator();
+            while (deployments.hasNext()) {
+                if (deployments.next().isReleased()) {
+                    deployments.remove();
+                }
+            }
+        }
+        deployment.retire(this.drainTimeoutMillis);
+    }
+
+    /**
+     * @return the deployments in service, in order of deployment
+     */
+    public Collection<ProviderDeployment> getDeployments() {
+        return this.snapshot.deployments.values();
+    }
+
+    /**
+     * @param drainTimeoutMillis the maximum time that a retired deployment waits for its Commands to complete
+     */
+    public void setDrainTimeoutMillis(final long drainTimeoutMillis) {
+        this.drainTimeoutMillis = Math.max(0L, drainTimeoutMillis);
+    }
+
+    public long getDrainTimeoutMillis() {
+        return this.drainTimeoutMillis;
+    }
+
+    /**
+     * Set the time for which a lookup that found no Command is remembered, the remembered
+     * lookups are forgotten when the service factories are reloaded.
+     *
+     * @param negativeCacheTimeToLiveMillis zero to always ask the CommandProviders
+     */
+    public void setNegativeCacheTimeToLiveMillis(final long negativeCacheTimeToLiveMillis) {
+        this.negativeCacheTimeToLiveNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0L, negativeCacheTimeToLiveMillis));
+    }
+
+    public long getNegativeCacheTimeToLiveMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(this.negativeCacheTimeToLiveNanos);
+    }
+
+    /**
+     * Enable, or disable, parallel probing of the CommandProviders. The pool is shared by all
+     * lookups, a probe that the pool rejects (because it is saturated, or has been replaced by
+     * this method) is never executed on the calling thread, it is treated as unanswered.
+     * A lookup that is not answered by all of its CommandProviders within the timeout throws a
+     * CommandLookupIncompleteException, it is neither resolved nor counted or remembered as rejected.
+     *
+     * @param threads the number of probing threads, zero to disable parallel probing
+     * @param probeTimeoutMillis the time that a lookup waits for its CommandProviders to answer
+     */
+    public synchronized void setParallelProbing(final int threads, final long probeTimeoutMillis) {
+        ParallelProbing previous = this.parallelProbing;
+        this.parallelProbing = threads > 0
+                ? new ParallelProbing(threads, TimeUnit.MILLISECONDS.toNanos(Math.max(0L, probeTimeoutMillis)))
+                : null;
+        if (previous != null) {
+            previous.executor.shutdown();
+        }
+    }
+
+    public boolean isParallelProbing() {
+        return this.parallelProbing != null;
+    }
+
+    /**
+     * @return the number of lookups that found no Command, including those answered by the negative cache
+     */
+    public long getRejectedLookupCount() {
+        return this.rejectedLookupCount.get();
+    }
+
+    /**
+     * The rejected lookups of each RoutingToken, to identify the clients that call methods for
+     * which there is no Command. At most NegativeResultCache.MAXIMUM_SIZE RoutingTokens are
+     * counted individually, the lookups of further RoutingTokens are only counted in the total.
+     *
+     * @return the number of lookups that found no Command, by RoutingToken
+     */
+    public Map<RoutingToken, Long> getRejectedLookupCounts() {
+        Map<RoutingToken, Long> counts = new HashMap<>();
+        for (Map.Entry<RoutingToken, AtomicLong> entry : this.rejectedLookupCounts.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().get());
+        }
+        return Collections.unmodifiableMap(counts);
+    }
+
+    private void countRejectedLookup(final RoutingToken routingToken) {
+        this.rejectedLookupCount.incrementAndGet();
+        AtomicLong count = this.rejectedLookupCounts.get(routingToken);
+        if (count == null && this.rejectedLookupCounts.size() < NegativeResultCache.MAXIMUM_SIZE) {
+            AtomicLong created = new AtomicLong();
+            count = this.rejectedLookupCounts.putIfAbsent(routingToken, created);
+            if (count == null) {
+                count = created;
+            }
+        }
+        if (count != null) {
+            count.incrementAndGet();
+        }
+    }
+
+    /**
+     * The generation changes whenever the service factories are reloaded. A CommandInstantiationToken
+     * that was found in a previous generation may refer to a CommandProvider that is no longer loaded
+     * and must not be cached across generations.
+     *
+     * @return the number of times that the service factories have been reloaded
+     */
+    public long getGeneration() {
+        return this.generation.get();
     }
 
     // ============================================================================
@@ -127,23 +386,56 @@ public class RootCommandProvider
         ParameterCheckUtility.checkParameterNotNull(routingToken, "routingToken");
         ParameterCheckUtility.checkParameterNotNull(commandClassSemantics, "commandClassSemantics");
 
-        List<CommandInstantiationToken> commandInstantiationTokens = new ArrayList<>();
+        ProviderSnapshot current = this.snapshot;
+        NegativeResultCache.LookupKey lookupKey =
+                new NegativeResultCache.LookupKey(routingToken, commandClassSemantics, parameterTypes, resultType);
+        if (current.negativeResults.contains(lookupKey)) {
+            countRejectedLookup(routingToken);
+            return null;
+        }
 
-        for (Iterator<CommandProvider> iter = this.commandProviderLoader.iterator(); iter.hasNext(); ) {
-            CommandProvider commandProvider = iter.next();
+        List<CommandProvider> candidates =
+                new ArrayList<>(current.dispatchIndex.lookup(commandClassSemantics, routingToken));
+        Collections.addAll(candidates, current.pollingProviders);
 
-            CommandInstantiationToken providerToken =
-                    commandProvider.findCommand(routingToken, commandClassSemantics, parameterTypes, resultType);
-            if (providerToken != null) {
-                commandInstantiationTokens.add(providerToken);
+        List<CommandInstantiationToken> commandInstantiationTokens = new ArrayList<>();
+        List<String> unanswered = Collections.emptyList();
+        ParallelProbing probing = this.parallelProbing;
+        if (probing != null && candidates.size() > 1) {
+            unanswered = probing.findCommand(
+                    candidates, routingToken, commandClassSemantics, parameterTypes, resultType, commandInstantiationTokens);
+        } else {
+            for (CommandProvider commandProvider : candidates) {
+                findCommand(commandProvider, routingToken, commandClassSemantics, parameterTypes, resultType, commandInstantiationTokens);
             }
         }
-        if (commandInstantiationTokens.size() == 1) {
+
+        if (commandInstantiationTokens.size() > 1) {
+            throw new MultipleCommandImplementationsException(commandClassSemantics, commandInstantiationTokens);
+        } else if (!unanswered.isEmpty()) {
+            // a CommandProvider that did not answer may yet find the Command, or find it too
+            throw new CommandLookupIncompleteException(commandClassSemantics, unanswered);
+        } else if (commandInstantiationTokens.size() == 1) {
             return commandInstantiationTokens.get(0);
-        } else if (commandInstantiationTokens.size() == 0) {
-            return null;
         } else {
-            throw new MultipleCommandImplementationsException(commandClassSemantics, commandInstantiationTokens);
+            current.negativeResults.add(lookupKey, this.negativeCacheTimeToLiveNanos);
+            countRejectedLookup(routingToken);
+            return null;
+        }
+    }
+
+    private static void findCommand(
+            final CommandProvider commandProvider,
+            final RoutingToken routingToken,
+            final CommandClassSemantics commandClassSemantics,
+            final Class<?>[] parameterTypes,
+            final Class<?> resultType,
+            final List<CommandInstantiationToken> commandInstantiationTokens)
+            throws CommandProviderException {
+        CommandInstantiationToken providerToken =
+                commandProvider.findCommand(routingToken, commandClassSemantics, parameterTypes, resultType);
+        if (providerToken != null) {
+            commandInstantiationTokens.add(providerToken);
         }
     }
 
@@ -162,10 +454,219 @@ public class RootCommandProvider
         ParameterCheckUtility.checkParameterNotNull(commandInstantiationToken, "commandInstantiationToken");
 
         // Security check
-        if (isKnownProvider(commandInstantiationToken.getCommandProvider())) {
-            return commandInstantiationToken.getCommandProvider().createCommand(commandInstantiationToken, parameters);
+        ProviderSnapshot current = this.snapshot;
+        CommandProvider commandProvider = commandInstantiationToken.getCommandProvider();
+        if (!isKnownProvider(current, commandProvider)) {
+            return null;
         }
 
-        return null;
+        ProviderDeployment deployment = current.deploymentsByProvider.get(commandProvider);
+        if (deployment == null) {
+            return commandProvider.createCommand(commandInstantiationToken, parameters);
+        }
+
+        // the Commands of a deployment must complete before it is released
+        if (!deployment.commandCreating()) {
+            return null;
+        }
+        Callable<?> command = null;
+        try {
+            command = commandProvider.createCommand(commandInstantiationToken, parameters);
+        } finally {
+            if (command == null) {
+                deployment.commandCompleted();
+            } else {
+                this.deployedCommands.put(command, deployment);
+            }
+        }
+        return command;
+    }
+
+    /**
+     * Called by the CommandProcessor when a Command has completed, that is when it has returned,
+     * thrown, or will never be executed. A Command created by a deployment is in flight until
+     * then, and the deployment is not released while it has Commands in flight.
+     * Commands that were not created by a deployment are ignored.
+     *
+     * @param command
+     */
+    public void commandCompleted(final Callable<?> command) {
+        ProviderDeployment deployment = this.deployedCommands.remove(command);
+        if (deployment != null) {
+            deployment.commandCompleted();
+        }
+    }
+
+    // ============================================================================
+    // The discovered CommandProviders
+    // ============================================================================
+
+    /**
+     * The CommandProviders discovered by one iteration of the ServiceLoader, and those of the
+     * deployments, every CommandProvider is instantiated before the snapshot is created.
+     */
+    private static final class ProviderSnapshot {
+        /** the CommandProviders discovered by the ServiceLoader */
+        private final List<CommandProvider> baseProviders;
+        private final Map<String, ProviderDeployment> deployments;
+        private final Map<CommandProvider, ProviderDeployment> deploymentsByProvider;
+        /** the CommandProviders that do not declare their capabilities */
+        private final CommandProvider[] pollingProviders;
+        private final CommandDispatchIndex dispatchIndex;
+        private final Set<CommandProvider> identities;
+        /** the lookups that found no Command in this snapshot */
+        private final NegativeResultCache negativeResults = new NegativeResultCache();
+
+        private ProviderSnapshot(
+                final List<CommandProvider> baseProviders,
+                final Map<String, ProviderDeployment> deployments) {
+            this.baseProviders = baseProviders;
+            this.deployments = Collections.unmodifiableMap(new LinkedHashMap<>(deployments));
+
+            List<CommandProvider> commandProviders = new ArrayList<>(baseProviders);
+            Map<CommandProvider, ProviderDeployment> providerDeployments = new IdentityHashMap<>();
+            for (ProviderDeployment deployment : this.deployments.values()) {
+                for (CommandProvider commandProvider : deployment.getCommandProviders()) {
+                    commandProviders.add(commandProvider);
+                    providerDeployments.put(commandProvider, deployment);
+                }
+            }
+            this.deploymentsByProvider = providerDeployments;
+
+            List<CommandProvider> polling = new ArrayList<>();
+            List<CapabilityDeclaringCommandProvider> declaring = new ArrayList<>();
+            Set<CommandProvider> discoveredIdentities =
+                    Collections.newSetFromMap(new IdentityHashMap<CommandProvider, Boolean>());
+            for (CommandProvider commandProvider : commandProviders) {
+                if (commandProvider instanceof CapabilityDeclaringCommandProvider) {
+                    declaring.add((CapabilityDeclaringCommandProvider) commandProvider);
+                } else {
+                    polling.add(commandProvider);
+                }
+                discoveredIdentities.add(commandProvider);
+            }
+            this.pollingProviders = polling.toArray(new CommandProvider[polling.size()]);
+            this.dispatchIndex = new CommandDispatchIndex(
+                    declaring.toArray(new CapabilityDeclaringCommandProvider[declaring.size()]));
+            this.identities = Collections.unmodifiableSet(discoveredIdentities);
+        }
+    }
+
+    // ============================================================================
+    // Parallel probing
+    // ============================================================================
+
+    /**
+     * A pool that asks the CommandProviders of a lookup concurrently, with a timeout.
+     * The calling thread only waits, so one slow CommandProvider cannot stall a lookup beyond the timeout.
+     */
+    private static final class ParallelProbing {
+        private final ThreadPoolExecutor executor;
+        private final long probeTimeoutNanos;
+
+        private ParallelProbing(final int threads, final long probeTimeoutNanos) {
+            final AtomicInteger threadIndex = new AtomicInteger();
+            this.executor = new ThreadPoolExecutor(
+                    threads, threads, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<Runnable>(threads * 4),
+                    new ThreadFactory() {
+                        @Override
+                        public Thread newThread(final Runnable r) {
+                            Thread result = new Thread(r, "CommandProviderProbe-" + threadIndex.incrementAndGet());
+                            result.setDaemon(true);
+                            return result;
+                        }
+                    },
+                    new ThreadPoolExecutor.AbortPolicy());
+            this.probeTimeoutNanos = probeTimeoutNanos;
+        }
+
+        /**
+         * Ask the CommandProviders concurrently and wait, until the timeout, for their answers.
+         * A CommandProvider that has not answered by the timeout is cancelled (interrupted).
+         *
+         * @return the publishers of the CommandProviders that did not answer, empty if every CommandProvider answered
+         * @throws CommandProviderException the first exception thrown by a CommandProvider
+         */
+        private List<String> findCommand(
+                final List<CommandProvider> candidates,
+                final RoutingToken routingToken,
+                final CommandClassSemantics commandClassSemantics,
+                final Class<?>[] parameterTypes,
+                final Class<?> resultType,
+                final List<CommandInstantiationToken> commandInstantiationTokens)
+                throws CommandProviderException {
+            // the providers are asked at once, so they share a deadline from the first submission
+            final long deadline = System.nanoTime() + this.probeTimeoutNanos;
+            List<String> unanswered = new ArrayList<>();
+
+            // null where the pool rejected the probe
+            List<Future<CommandInstantiationToken>> probes = new ArrayList<>(candidates.size());
+            for (final CommandProvider commandProvider : candidates) {
+                try {
+                    probes.add(this.executor.submit(new Callable<CommandInstantiationToken>() {
+                        @Override
+                        public CommandInstantiationToken call() throws Exception {
+                            return commandProvider.findCommand(routingToken, commandClassSemantics, parameterTypes, resultType);
+                        }
+                    }));
+                } catch (RejectedExecutionException reX) {
+                    LOGGER.warn("'{}' was not asked for '{}', the probing pool rejected the probe",
+                            commandProvider.getPublisher(), commandClassSemantics);
+                    probes.add(null);
+                    unanswered.add(commandProvider.getPublisher());
+                }
+            }
+
+            int index = 0;
+            try {
+                for (; index < probes.size(); ++index) {
+                    Future<CommandInstantiationToken> probe = probes.get(index);
+                    if (probe == null) {
+                        continue;
+                    }
+                    try {
+                        CommandInstantiationToken providerToken =
+                                probe.get(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                        if (providerToken != null) {
+                            commandInstantiationTokens.add(providerToken);
+                        }
+                    } catch (TimeoutException tX) {
+                        LOGGER.warn("'{}' did not answer the lookup of '{}' within {}ms",
+                                candidates.get(index).getPublisher(), commandClassSemantics,
+                                TimeUnit.NANOSECONDS.toMillis(this.probeTimeoutNanos));
+                        probe.cancel(true);
+                        unanswered.add(candidates.get(index).getPublisher());
+                    } catch (ExecutionException eX) {
+                        Throwable cause = eX.getCause();
+                        if (cause instanceof CommandProviderException) {
+                            throw (CommandProviderException) cause;
+                        }
+                        if (cause instanceof Error) {
+                            throw (Error) cause;
+                        }
+                        throw cause instanceof RuntimeException
+                                ? (RuntimeException) cause
+                                : new IllegalStateException(cause);
+                    }
+                }
+            } catch (InterruptedException iX) {
+                Thread.currentThread().interrupt();
+                // the probe being waited for and those after it, except the rejected ones, are unanswered
+                for (; index < probes.size(); ++index) {
+                    if (probes.get(index) != null) {
+                        unanswered.add(candidates.get(index).getPublisher());
+                    }
+                }
+            } finally {
+                // nothing is waiting for the providers that have not answered
+                for (Future<CommandInstantiationToken> probe : probes) {
+                    if (probe != null) {
+                        probe.cancel(true);
+                    }
+                }
+            }
+            return unanswered;
+        }
     }
 }
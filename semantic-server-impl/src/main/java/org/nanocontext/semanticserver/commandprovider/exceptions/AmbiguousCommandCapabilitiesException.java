@@ -0,0 +1,31 @@
+package org.nanocontext.semanticserver.semanticserver.commandprovider.exceptions;
+
+import org.nanocontext.semanticserverapi.core.commandprovider.exceptions.CommandProviderException;
+
+import java.util.List;
+
+/**
+ * Thrown when more than one CapabilityDeclaringCommandProvider declares the same semantics for
+ * the same, or any, RoutingToken. A deployment with such declarations is rejected, otherwise
+ * no Command of the ambiguously declared semantics is found until the declarations are corrected.
+ */
+public class AmbiguousCommandCapabilitiesException
+extends CommandProviderException {
+	private static String createMessage(final List<String> ambiguities) {
+		return String.format("Ambiguous command capabilities, %s", ambiguities);
+	}
+
+	private final List<String> ambiguities;
+
+	/**
+	 * @param ambiguities a description of each ambiguously declared semantics and the providers that declare it
+	 */
+	public AmbiguousCommandCapabilitiesException(final List<String> ambiguities) {
+		super(createMessage(ambiguities));
+		this.ambiguities = ambiguities;
+	}
+
+	public List<String> getAmbiguities() {
+		return ambiguities;
+	}
+}
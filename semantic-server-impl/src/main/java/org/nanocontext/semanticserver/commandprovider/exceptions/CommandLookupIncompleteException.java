@@ -0,0 +1,33 @@
+package org.nanocontext.semanticserver.semanticserver.commandprovider.exceptions;
+
+import org.nanocontext.semanticserverapi.core.commandprovider.exceptions.CommandProviderException;
+import org.nanocontext.semanticserverapi.core.semantics.CommandClassSemantics;
+
+import java.util.List;
+
+/**
+ * Thrown when a parallel lookup is not answered by all of its CommandProviders within the probe
+ * timeout. A CommandProvider that did not answer may yet provide the Command, so the lookup is
+ * neither resolved to the Commands that were found nor remembered as not found.
+ */
+public class CommandLookupIncompleteException
+extends CommandProviderException {
+	private static String createMessage(final CommandClassSemantics commandClassSemantics, final List<String> unanswered) {
+		return String.format("The lookup of '%s' is incomplete, %s did not answer", commandClassSemantics, unanswered);
+	}
+
+	private final List<String> unanswered;
+
+	/**
+	 * @param commandClassSemantics the semantics that were looked up
+	 * @param unanswered the publishers of the CommandProviders that did not answer
+	 */
+	public CommandLookupIncompleteException(final CommandClassSemantics commandClassSemantics, final List<String> unanswered) {
+		super(createMessage(commandClassSemantics, unanswered));
+		this.unanswered = unanswered;
+	}
+
+	public List<String> getUnanswered() {
+		return unanswered;
+	}
+}
@@ -0,0 +1,22 @@
+package org.nanocontext.semanticserver.semanticserver.commandprovider.exceptions;
+
+import org.nanocontext.semanticserverapi.core.commandprovider.exceptions.CommandProviderException;
+
+/**
+ * Thrown when the CommandProviders of a deployment cannot be loaded or warmed,
+ * the deployment is discarded and the CommandProviders in service are unchanged.
+ */
+public class ProviderDeploymentException
+extends CommandProviderException {
+	private static String createMessage(final String deploymentName, final String reason) {
+		return String.format("Unable to deploy the command providers of '%s', %s", deploymentName, reason);
+	}
+
+	public ProviderDeploymentException(final String deploymentName, final String reason) {
+		super(createMessage(deploymentName, reason));
+	}
+
+	public ProviderDeploymentException(final String deploymentName, final String reason, final Throwable cause) {
+		super(createMessage(deploymentName, reason), cause);
+	}
+}
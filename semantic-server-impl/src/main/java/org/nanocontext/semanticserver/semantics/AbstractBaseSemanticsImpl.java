@@ -77,6 +77,7 @@ public abstract class AbstractBaseSemanticsImpl implements AbstractBaseSemantics
 	private final VocabularyWord preposition;
 	private final String object;
     private final Class<?> objectClass;
+    private final long fingerprint;
 
     /**
      *
@@ -118,6 +119,7 @@ public abstract class AbstractBaseSemanticsImpl implements AbstractBaseSemantics
 
         this.subjectClass = findSubjectClass(this.subject);
         this.objectClass = findObjectClass(this.object);
+        this.fingerprint = fingerprint(this.action, this.subject, this.collectionType, this.preposition, this.object);
     }
 
     /**
@@ -146,6 +148,7 @@ public abstract class AbstractBaseSemanticsImpl implements AbstractBaseSemantics
 
         this.subjectClass = findSubjectClass(this.subject);
         this.objectClass = findObjectClass(this.object);
+        this.fingerprint = fingerprint(this.action, this.subject, this.collectionType, this.preposition, this.object);
 	}
 
     private Class<?> findSubjectClass(final String subject) {
@@ -190,6 +193,11 @@ public abstract class AbstractBaseSemanticsImpl implements AbstractBaseSemantics
 		return object;
 	}
 
+    @Override
+    public long getFingerprint() {
+        return this.fingerprint;
+    }
+
     // =======================================================
     // toString()
     // =======================================================
@@ -224,26 +232,7 @@ public abstract class AbstractBaseSemanticsImpl implements AbstractBaseSemantics
 	@Override
 	public int hashCode()
 	{
-		final int prime = 31;
-		int result = 1;
-		result = prime * result
-				+ ((this.action == null) ? 0 : this.action.hashCode());
-		result = prime
-				* result
-				+ ((this.collectionType == null) ? 0
-						: this.collectionType.hashCode());
-		result = prime
-				* result
-				+ ((this.subject == null) ? 0 : this.subject
-						.hashCode());
-		result = prime
-				* result
-				+ ((this.preposition == null) ? 0 : this.preposition.hashCode());
-		result = prime
-				* result
-				+ ((this.object == null) ? 0 : this.object
-						.hashCode());
-		return result;
+		return (int)(this.fingerprint ^ (this.fingerprint >>> 32));
 	}
 
 	/* (non-Javadoc)
@@ -260,7 +249,7 @@ public abstract class AbstractBaseSemanticsImpl implements AbstractBaseSemantics
 			return false;
 		final AbstractBaseSemanticsImpl other = (AbstractBaseSemanticsImpl) obj;
 
-        return directMapping(other);
+        return this.fingerprint == other.fingerprint && directMapping(other);
 	}
 
 	/**
@@ -278,6 +267,9 @@ public abstract class AbstractBaseSemanticsImpl implements AbstractBaseSemantics
 	 */
 	public boolean directMapping(final AbstractBaseSemantics other)
 	{
+		if (other instanceof AbstractBaseSemanticsImpl
+				&& this.fingerprint != ((AbstractBaseSemanticsImpl) other).fingerprint)
+			return false;
 		if (this.action == null)
 		{
 			if (other.getAction() != null)
@@ -312,4 +304,51 @@ public abstract class AbstractBaseSemanticsImpl implements AbstractBaseSemantics
 
 		return true;
 	}
+
+    // =======================================================
+    // Fingerprint
+    // =======================================================
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * A 64 bit FNV-1a hash of the constituent parts of the semantics.
+     * The vocabulary words contribute their hashCode() so that the fingerprint is
+     * consistent with equals().
+     */
+    static long fingerprint(
+            final VocabularyWord action,
+            final String subject,
+            final CollectionType collectionType,
+            final VocabularyWord preposition,
+            final String object) {
+        long hash = FNV_OFFSET_BASIS;
+        hash = fingerprint(hash, action == null ? 0 : action.hashCode());
+        hash = fingerprint(hash, subject);
+        hash = fingerprint(hash, collectionType == null ? -1 : collectionType.ordinal());
+        hash = fingerprint(hash, preposition == null ? 0 : preposition.hashCode());
+        hash = fingerprint(hash, object);
+        return hash;
+    }
+
+    private static long fingerprint(long hash, final int value) {
+        for (int shift = 0; shift < 32; shift += 8) {
+            hash = (hash ^ ((value >>> shift) & 0xff)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    private static long fingerprint(long hash, final String value) {
+        if (value == null) {
+            // distinguishes null from the empty String
+            return fingerprint(hash, -1);
+        }
+        hash = fingerprint(hash, value.length());
+        for (int index = 0; index < value.length(); ++index) {
+            char c = value.charAt(index);
+            hash = (hash ^ (c & 0xff)) * FNV_PRIME;
+            hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+        }
+        return hash;
+    }
 }
@@ -5,7 +5,12 @@ import org.nanocontext.semanticserverapi.core.semantics.exceptions.CoreRouterSem
 import com.paypal.utility.ParameterCheckUtility;
 
 import javax.validation.constraints.NotNull;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Method;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * ApplicationSemantics defines and acts as a factory for all of the semantic objects
@@ -17,6 +22,22 @@ public class ApplicationSemanticsImpl implements ApplicationSemantics {
             "java.util"
     };
 
+    /**
+     * The implementations of the LogicalNameParser.
+     */
+    public enum LogicalNameParserType {
+        /** scans the logical name with the regular expressions of the vocabulary words */
+        REGULAR_EXPRESSION,
+        /**
+         * scans the logical name once using tries built from the vocabulary words,
+         * if the vocabulary words cannot be expanded into tries then the REGULAR_EXPRESSION
+         * parser is used
+         */
+        TRIE
+    }
+
+    public static final LogicalNameParserType DEFAULT_LOGICAL_NAME_PARSER_TYPE = LogicalNameParserType.TRIE;
+
     public static ApplicationSemanticsImpl create(String packageName)
             throws CoreRouterSemanticsException {
         return create(null, new String[]{packageName});
@@ -34,14 +55,14 @@ public class ApplicationSemanticsImpl implements ApplicationSemantics {
 
         Vocabulary actionVocabulary = VocabularyImpl.createDefaultActionsVocabulary();
 
-        ModelVocabulary subjectVocabulary = ModelVocabularyImpl.create(classLoader, packageNames);
+        ModelVocabulary subjectVocabulary = IndexedModelVocabularyImpl.create(classLoader, packageNames);
 
         Vocabulary prepositionVocabulary = VocabularyImpl.createDefaultPrepositionVocabulary();
 
         String[] objectPackageNames = new String[packageNames.length + DEFAULT_OBJECT_PACKAGES.length];
         System.arraycopy(packageNames, 0, objectPackageNames, 0, packageNames.length);
         System.arraycopy(DEFAULT_OBJECT_PACKAGES, 0, objectPackageNames, packageNames.length, DEFAULT_OBJECT_PACKAGES.length);
-        ModelVocabulary objectVocabulary = ModelVocabularyImpl.create(classLoader, packageNames);
+        ModelVocabulary objectVocabulary = IndexedModelVocabularyImpl.create(classLoader, packageNames);
 
         return new ApplicationSemanticsImpl(effectiveClassLoader, actionVocabulary, subjectVocabulary, prepositionVocabulary, objectVocabulary);
     }
@@ -55,6 +76,7 @@ public class ApplicationSemanticsImpl implements ApplicationSemantics {
     private final ModelVocabulary subjectVocabulary;
     private final Vocabulary prepositionVocabulary;
     private final ModelVocabulary objectVocabulary;
+    private final LogicalNameParserType logicalNameParserType;
 
     public ApplicationSemanticsImpl(
             final ClassLoader classLoader,
@@ -62,11 +84,23 @@ public class ApplicationSemanticsImpl implements ApplicationSemantics {
             @NotNull final ModelVocabulary subjectVocabulary,
             @NotNull final Vocabulary prepositionVocabulary,
             @NotNull final ModelVocabulary objectVocabulary) {
+        this(classLoader, actionVocabulary, subjectVocabulary, prepositionVocabulary, objectVocabulary,
+                DEFAULT_LOGICAL_NAME_PARSER_TYPE);
+    }
+
+    public ApplicationSemanticsImpl(
+            final ClassLoader classLoader,
+            @NotNull final Vocabulary actionVocabulary,
+            @NotNull final ModelVocabulary subjectVocabulary,
+            @NotNull final Vocabulary prepositionVocabulary,
+            @NotNull final ModelVocabulary objectVocabulary,
+            final LogicalNameParserType logicalNameParserType) {
         this.classLoader = classLoader;
         this.actionVocabulary = actionVocabulary;
         this.subjectVocabulary = subjectVocabulary;
         this.prepositionVocabulary = prepositionVocabulary;
         this.objectVocabulary = objectVocabulary;
+        this.logicalNameParserType = logicalNameParserType == null ? DEFAULT_LOGICAL_NAME_PARSER_TYPE : logicalNameParserType;
     }
 
     /**
@@ -109,11 +143,24 @@ public class ApplicationSemanticsImpl implements ApplicationSemantics {
         return objectVocabulary;
     }
 
+    /**
+     * @return the type of LogicalNameParser that was requested, see getLogicalNameParserImpl()
+     */
+    public LogicalNameParserType getLogicalNameParserType() {
+        return logicalNameParserType;
+    }
+
     private LogicalNameParser logicalNameParser = null;
 
     public synchronized LogicalNameParser getLogicalNameParserImpl() {
         if (logicalNameParser == null) {
-            this.logicalNameParser = new LogicalNameParserImpl(actionVocabulary, subjectVocabulary, prepositionVocabulary, objectVocabulary);
+            if (logicalNameParserType == LogicalNameParserType.TRIE) {
+                this.logicalNameParser = TrieLogicalNameParserImpl.create(actionVocabulary, prepositionVocabulary);
+            }
+            // either requested or the vocabularies cannot be represented as tries
+            if (logicalNameParser == null) {
+                this.logicalNameParser = new LogicalNameParserImpl(actionVocabulary, subjectVocabulary, prepositionVocabulary, objectVocabulary);
+            }
         }
         return logicalNameParser;
     }
@@ -124,7 +171,15 @@ public class ApplicationSemanticsImpl implements ApplicationSemantics {
     @Override
     public CommandClassSemantics createCommandClassSemantic(final String name)
             throws CoreRouterSemanticsException {
-        return new CommandClassSemanticsImpl(this, name);
+        CommandClassSemantics result = name == null ? null : get(commandClassSemanticsByName, name);
+        if (result == null) {
+            result = internCommandClassSemantic(new CommandClassSemanticsImpl(this, name));
+            if (commandClassSemanticsByName.size() >= MAX_NAMED_COMMAND_CLASS_SEMANTICS) {
+                commandClassSemanticsByName.clear();
+            }
+            commandClassSemanticsByName.put(name, new CanonicalReference<>(name, result, commandClassSemanticsByName, collected));
+        }
+        return result;
     }
 
     @Override
@@ -156,7 +211,11 @@ public class ApplicationSemanticsImpl implements ApplicationSemantics {
             final VocabularyWord preposition,
             final String object)
             throws CoreRouterSemanticsException {
-        return new CommandClassSemanticsImpl(this, action, subject, collectionType, preposition, object);
+        CommandClassSemantics canonical = get(commandClassSemantics,
+                new CommandClassKey(action, subject, collectionType, preposition, object));
+        return canonical != null
+                ? canonical
+                : internCommandClassSemantic(new CommandClassSemanticsImpl(this, action, subject, collectionType, preposition, object));
     }
 
     @Override
@@ -185,9 +244,12 @@ public class ApplicationSemanticsImpl implements ApplicationSemantics {
     // Convert from one semantic type to another
     // ===================================================================================================
 
-    public CommandClassSemanticsImpl createCommandClassSemantic(final AbstractBaseSemantics baseSemantics)
+    public CommandClassSemantics createCommandClassSemantic(final AbstractBaseSemantics baseSemantics)
             throws CoreRouterSemanticsException {
-        return new CommandClassSemanticsImpl(this, baseSemantics);
+        CommandClassSemantics canonical = baseSemantics == null ? null : get(commandClassSemantics, new CommandClassKey(baseSemantics));
+        return canonical != null
+                ? canonical
+                : internCommandClassSemantic(new CommandClassSemanticsImpl(this, baseSemantics));
     }
 
     public CommandFactoryMethodSemanticsImpl createFactoryMethodSemantic(final AbstractBaseSemantics baseSemantics)
@@ -199,4 +261,141 @@ public class ApplicationSemanticsImpl implements ApplicationSemantics {
             throws CoreRouterSemanticsException {
         return new ProcessorBridgeMethodSemanticsImpl(this, baseSemantics);
     }
+
+    // ===================================================================================================
+    // Interning of semantic types
+    // ===================================================================================================
+    /** the maximum number of command class names whose CommandClassSemantics are remembered */
+    static final int MAX_NAMED_COMMAND_CLASS_SEMANTICS = 1024;
+
+    /**
+     * the canonical CommandClassSemantics, by their constituent parts. The values are weakly
+     * referenced, so a canonical instance is discarded once nothing else refers to it.
+     * Any instance that is still referenced remains canonical, so comparison by identity holds.
+     * The constituent parts of a CommandClassSemantics are looked up before it is created, so that
+     * an existing canonical instance is found without parsing or allocating another one.
+     */
+    private final ConcurrentHashMap<CommandClassKey, CanonicalReference<CommandClassKey>> commandClassSemantics =
+            new ConcurrentHashMap<>();
+    /**
+     * the canonical CommandClassSemantics of parsed command class names, cleared rather than grow
+     * past MAX_NAMED_COMMAND_CLASS_SEMANTICS so that distinct names cannot accumulate
+     */
+    private final ConcurrentHashMap<String, CanonicalReference<String>> commandClassSemanticsByName =
+            new ConcurrentHashMap<>();
+    /** the references of both maps whose CommandClassSemantics have been collected */
+    private final ReferenceQueue<CommandClassSemantics> collected = new ReferenceQueue<>();
+
+    @Override
+    public CommandClassSemantics internCommandClassSemantic(final CommandClassSemantics commandClassSemantics) {
+        if (commandClassSemantics == null) {
+            return null;
+        }
+        expungeCollected();
+        CommandClassKey key = new CommandClassKey(commandClassSemantics);
+        CanonicalReference<CommandClassKey> candidate =
+                new CanonicalReference<>(key, commandClassSemantics, this.commandClassSemantics, collected);
+        while (true) {
+            CanonicalReference<CommandClassKey> existing = this.commandClassSemantics.putIfAbsent(key, candidate);
+            if (existing == null) {
+                return commandClassSemantics;
+            }
+            CommandClassSemantics canonical = existing.get();
+            if (canonical != null) {
+                return canonical;
+            }
+            // the canonical instance was collected, replace its reference
+            if (this.commandClassSemantics.replace(key, existing, candidate)) {
+                return commandClassSemantics;
+            }
+        }
+    }
+
+    private <K> CommandClassSemantics get(
+            final ConcurrentHashMap<K, CanonicalReference<K>> canonicals, final K key) {
+        CanonicalReference<K> reference = canonicals.get(key);
+        return reference == null ? null : reference.get();
+    }
+
+    private void expungeCollected() {
+        for (Reference<?> reference = collected.poll(); reference != null; reference = collected.poll()) {
+            ((CanonicalReference<?>) reference).expunge();
+        }
+    }
+
+    /**
+     * A weak reference to a canonical CommandClassSemantics that removes itself from its map once collected.
+     */
+    private static final class CanonicalReference<K>
+    extends WeakReference<CommandClassSemantics> {
+        private final K key;
+        private final ConcurrentHashMap<K, CanonicalReference<K>> owner;
+
+        private CanonicalReference(
+                final K key,
+                final CommandClassSemantics referent,
+                final ConcurrentHashMap<K, CanonicalReference<K>> owner,
+                final ReferenceQueue<CommandClassSemantics> queue) {
+            super(referent, queue);
+            this.key = key;
+            this.owner = owner;
+        }
+
+        private void expunge() {
+            owner.remove(key, this);
+        }
+    }
+
+    /**
+     * The constituent parts of a CommandClassSemantics, equal exactly when the semantics are equal.
+     */
+    private static final class CommandClassKey {
+        private final VocabularyWord action;
+        private final String subject;
+        private final CollectionType collectionType;
+        private final VocabularyWord preposition;
+        private final String object;
+        private final long fingerprint;
+
+        private CommandClassKey(final AbstractBaseSemantics semantics) {
+            this(semantics.getAction(), semantics.getSubject(), semantics.getCollectionType(),
+                    semantics.getPreposition(), semantics.getObject());
+        }
+
+        private CommandClassKey(
+                final VocabularyWord action,
+                final String subject,
+                final CollectionType collectionType,
+                final VocabularyWord preposition,
+                final String object) {
+            this.action = action;
+            this.subject = subject;
+            this.collectionType = collectionType;
+            this.preposition = preposition;
+            this.object = object;
+            this.fingerprint = AbstractBaseSemanticsImpl.fingerprint(action, subject, collectionType, preposition, object);
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (fingerprint ^ (fingerprint >>> 32));
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof CommandClassKey)) {
+                return false;
+            }
+            CommandClassKey other = (CommandClassKey) obj;
+            return fingerprint == other.fingerprint
+                    && Objects.equals(action, other.action)
+                    && Objects.equals(subject, other.subject)
+                    && collectionType == other.collectionType
+                    && Objects.equals(preposition, other.preposition)
+                    && Objects.equals(object, other.object);
+        }
+    }
 }
@@ -0,0 +1,269 @@
+package org.nanocontext.semanticserver.semanticserver.semantics;
+
+import com.paypal.utility.ParameterCheckUtility;
+import org.nanocontext.semanticserverapi.core.semantics.ModelVocabulary;
+import org.nanocontext.semanticserverapi.core.semantics.exceptions.CoreRouterSemanticsException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.io.File;
+import java.io.IOException;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * A ModelVocabulary that resolves the same classes as ModelVocabularyImpl, that is the
+ * class with the simple name in the first of the packages that contains it, but which does not
+ * rely on ClassNotFoundException to find the package.
+ *
+ * The packages are scanned (on the class path of the ClassLoader) once, when the vocabulary
+ * is created, and the simple names of the top level classes in each package are indexed.
+ * Each lookup result, including the absence of a class, is then cached so that repeated
+ * lookups of the same name are a single hash lookup. The names are supplied by callers so the
+ * cached absences are bounded, they are cleared rather than grow past MAXIMUM_CACHED_MISSES.
+ * A package that cannot be scanned (e.g. it is provided by a ClassLoader that does
+ * not expose its resources) is searched by loading the class, as ModelVocabularyImpl does.
+ *
+ * refresh() re-scans the packages and discards the cached results, it must be called if
+ * classes are added to the packages after the vocabulary is created.
+ */
+public class IndexedModelVocabularyImpl implements ModelVocabulary {
+    private static final Logger LOGGER = LoggerFactory.getLogger(IndexedModelVocabularyImpl.class);
+
+    private static final String CLASS_FILE_SUFFIX = ".class";
+
+    /** the cached absences are cleared, rather than grow past this number of names */
+    public static final int MAXIMUM_CACHED_MISSES = 4096;
+
+    /**
+     *
+     * @param packageNames
+     * @return
+     * @throws CoreRouterSemanticsException
+     */
+    public static IndexedModelVocabularyImpl create(@NotNull final String packageNames)
+            throws CoreRouterSemanticsException {
+        return create(null, packageNames.split(","));
+    }
+
+    /**
+     *
+     * @param packageNames
+     * @return
+     * @throws CoreRouterSemanticsException
+     */
+    public static IndexedModelVocabularyImpl create(@NotNull @Min(1) final String[] packageNames)
+            throws CoreRouterSemanticsException {
+        return create(null, packageNames);
+    }
+
+    /**
+     *
+     * @param classLoader
+     * @param packageNames
+     * @return
+     * @throws CoreRouterSemanticsException
+     */
+    public static IndexedModelVocabularyImpl create(final ClassLoader classLoader, final @NotNull @Min(1) String[] packageNames)
+            throws CoreRouterSemanticsException {
+        ParameterCheckUtility.checkParameterNotNull(packageNames, "packageNames");
+
+        ClassLoader effectiveClassLoader = classLoader == null ? IndexedModelVocabularyImpl.class.getClassLoader() : classLoader;
+        String[] packages = new String[packageNames.length];
+        for (int n=0; n<packageNames.length; ++n) {
+            packages[n] = packageNames[n] == null ? null : packageNames[n].trim();
+        }
+
+        return new IndexedModelVocabularyImpl(effectiveClassLoader, packages);
+    }
+
+    // ==========================================================================================
+    // Instance Members
+    // ==========================================================================================
+    private final String[] packageNames;
+    private final ClassLoader classLoader;
+    private volatile Index index;
+
+    private IndexedModelVocabularyImpl(final ClassLoader classLoader, final String... packageNames) {
+        this.classLoader = classLoader;
+        this.packageNames = packageNames;
+        this.index = createIndex();
+    }
+
+    /**
+     * Re-scan the packages and discard all cached lookup results.
+     */
+    public void refresh() {
+        this.index = createIndex();
+    }
+
+    /**
+     *
+     * @param simpleName
+     * @return the model class, or null if none of the packages contains a class with the simple name
+     */
+    @Override
+    public Class<?> getClass(String simpleName) {
+        if (simpleName == null) {
+            return null;
+        }
+
+        Index currentIndex = this.index;
+        Class<?> result = currentIndex.resolved.get(simpleName);
+        if (result != null || currentIndex.misses.contains(simpleName)) {
+            return result;
+        }
+
+        result = resolve(currentIndex, simpleName);
+        if (result == null) {
+            if (currentIndex.misses.size() >= MAXIMUM_CACHED_MISSES) {
+                currentIndex.misses.clear();
+            }
+            currentIndex.misses.add(simpleName);
+        } else {
+            currentIndex.resolved.put(simpleName, result);
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of names that are cached as having no model class
+     */
+    public int getCachedMissCount() {
+        return this.index.misses.size();
+    }
+
+    /**
+     * Search the packages in order, only loading the class from a scanned package if the package
+     * contains it.
+     */
+    private Class<?> resolve(final Index currentIndex, final String simpleName) {
+        for (int n=0; n<packageNames.length; ++n) {
+            Set<String> simpleNames = currentIndex.packageSimpleNames[n];
+            if (simpleNames != null && !simpleNames.contains(simpleName)) {
+                continue;
+            }
+
+            String objectClassName =
+                    packageNames[n] == null ? simpleName : packageNames[n] + "." + simpleName;
+            try {
+                return this.classLoader.loadClass(objectClassName);
+            } catch (ClassNotFoundException | NoClassDefFoundError x) {
+                // the package could not be scanned or the class file is not loadable, continue searching
+            }
+        }
+        return null;
+    }
+
+    // ==========================================================================================
+    // Package scanning
+    // ==========================================================================================
+
+    private Index createIndex() {
+        Set<String>[] packageSimpleNames = new Set[packageNames.length];
+        for (int n=0; n<packageNames.length; ++n) {
+            packageSimpleNames[n] = scanPackage(packageNames[n]);
+        }
+        return new Index(packageSimpleNames);
+    }
+
+    /**
+     *
+     * @param packageName
+     * @return the simple names of the top level classes in the package, or null if the package could not be scanned
+     */
+    private Set<String> scanPackage(final String packageName) {
+        String packagePath = packageName == null ? "" : packageName.replace('.', '/');
+        Set<String> simpleNames = new HashSet<>();
+        try {
+            Enumeration<URL> packageUrls = this.classLoader.getResources(packagePath);
+            while (packageUrls.hasMoreElements()) {
+                URL packageUrl = packageUrls.nextElement();
+                if ("file".equals(packageUrl.getProtocol())) {
+                    scanDirectory(packageUrl, simpleNames);
+                } else if ("jar".equals(packageUrl.getProtocol())) {
+                    scanJar(packageUrl, packagePath, simpleNames);
+                } else {
+                    LOGGER.debug("Package {} is provided from {}, which cannot be scanned", packageName, packageUrl);
+                    return null;
+                }
+            }
+        } catch (IOException ioX) {
+            LOGGER.debug(String.format("Package %s could not be scanned", packageName), ioX);
+            return null;
+        }
+        // an empty package may be a package that the ClassLoader does not expose as a resource
+        return simpleNames.isEmpty() ? null : Collections.unmodifiableSet(simpleNames);
+    }
+
+    private static void scanDirectory(final URL packageUrl, final Set<String> simpleNames)
+            throws IOException {
+        File directory;
+        try {
+            // the URI decodes the path correctly, where URLDecoder would turn a '+' into a space
+            directory = new File(packageUrl.toURI());
+        } catch (URISyntaxException | IllegalArgumentException x) {
+            throw new IOException(String.format("%s is not a directory URL", packageUrl), x);
+        }
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                addSimpleName(file.getName(), simpleNames);
+            }
+        }
+    }
+
+    private static void scanJar(final URL packageUrl, final String packagePath, final Set<String> simpleNames)
+            throws IOException {
+        URLConnection connection = packageUrl.openConnection();
+        if (!(connection instanceof JarURLConnection)) {
+            throw new IOException(String.format("%s is not a jar URL", packageUrl));
+        }
+        // do not use the shared, cached, JarFile as it is closed here
+        connection.setUseCaches(false);
+        String prefix = packagePath.isEmpty() ? "" : packagePath + "/";
+        try (JarFile jarFile = ((JarURLConnection)connection).getJarFile()) {
+            Enumeration<JarEntry> entries = jarFile.entries();
+            while (entries.hasMoreElements()) {
+                String entryName = entries.nextElement().getName();
+                if (entryName.startsWith(prefix) && entryName.indexOf('/', prefix.length()) < 0) {
+                    addSimpleName(entryName.substring(prefix.length()), simpleNames);
+                }
+            }
+        }
+    }
+
+    /**
+     * Add the simple name of a top level class file, nested class files and other files are ignored.
+     */
+    private static void addSimpleName(final String fileName, final Set<String> simpleNames) {
+        if (fileName.endsWith(CLASS_FILE_SUFFIX) && fileName.indexOf('$') < 0) {
+            simpleNames.add(fileName.substring(0, fileName.length() - CLASS_FILE_SUFFIX.length()));
+        }
+    }
+
+    /**
+     * The scanned packages and the cached lookup results, replaced as a whole by refresh().
+     */
+    private static final class Index {
+        /** in the same order as the package names, null where the package could not be scanned */
+        private final Set<String>[] packageSimpleNames;
+        private final ConcurrentHashMap<String, Class<?>> resolved = new ConcurrentHashMap<>();
+        private final Set<String> misses = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+        private Index(final Set<String>[] packageSimpleNames) {
+            this.packageSimpleNames = packageSimpleNames;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package org.nanocontext.semanticserver.semanticserver.semantics;
+
+import org.nanocontext.semanticserverapi.core.semantics.*;
+import org.nanocontext.semanticserverapi.core.semantics.exceptions.CoreRouterSemanticsException;
+
+import javax.validation.constraints.NotNull;
+import java.util.Set;
+
+/**
+ * Parses the logical name into Action, Subject (CollectionType)(, Preposition, and Object),
+ * as LogicalNameParserImpl does (except where vocabulary words overlap, see below), but using
+ * character tries built once from the vocabularies rather than scanning the logical name with
+ * the vocabulary regular expressions.
+ * The collection type and the preposition are each searched for by trying a trie match at
+ * successive positions of the logical name (see VocabularyTrie.find()), and the only
+ * allocations are the parts of the ParsedName.
+ *
+ * The tries are built from the expansion of the vocabulary word expressions (see
+ * VocabularyExpressions), if any word in the vocabularies cannot be expanded then
+ * this parser cannot be used.
+ *
+ * Note that where more than one vocabulary word matches at the same position (e.g. "In"
+ * and "Into") this parser always matches the longest word, where the regular expression
+ * parser matches whichever word happens to be first in the vocabulary.
+ */
+class TrieLogicalNameParserImpl implements LogicalNameParser {
+    private final VocabularyTrie<VocabularyWord> actions;
+    private final VocabularyTrie<CollectionType> collectionTypes;
+    private final VocabularyTrie<VocabularyWord> prepositions;
+
+    /**
+     *
+     * @param actionVocabulary
+     * @param prepositionVocabulary
+     * @return a parser, or null if any word in the vocabularies cannot be expanded
+     */
+    static TrieLogicalNameParserImpl create(
+            @NotNull final Vocabulary actionVocabulary,
+            @NotNull final Vocabulary prepositionVocabulary) {
+        VocabularyTrie<VocabularyWord> actions = createTrie(actionVocabulary);
+        VocabularyTrie<VocabularyWord> prepositions = createTrie(prepositionVocabulary);
+        if (actions == null || prepositions == null) {
+            return null;
+        }
+
+        VocabularyTrie.Builder<CollectionType> collectionTypes = VocabularyTrie.builder();
+        for (CollectionType collectionType : CollectionType.values()) {
+            collectionTypes.add(collectionType.getSimpleName(), collectionType);
+        }
+
+        return new TrieLogicalNameParserImpl(actions, collectionTypes.build(), prepositions);
+    }
+
+    private static VocabularyTrie<VocabularyWord> createTrie(final Vocabulary vocabulary) {
+        VocabularyTrie.Builder<VocabularyWord> builder = VocabularyTrie.builder();
+        for (VocabularyWord word : vocabulary.getWords()) {
+            Set<String> synonyms = VocabularyExpressions.expand(word.getExpression());
+            if (synonyms == null) {
+                return null;
+            }
+            for (String synonym : synonyms) {
+                if (!synonym.isEmpty()) {
+                    builder.add(synonym, word);
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    private TrieLogicalNameParserImpl(
+            final VocabularyTrie<VocabularyWord> actions,
+            final VocabularyTrie<CollectionType> collectionTypes,
+            final VocabularyTrie<VocabularyWord> prepositions) {
+        this.actions = actions;
+        this.collectionTypes = collectionTypes;
+        this.prepositions = prepositions;
+    }
+
+    /**
+     * Parse a String like this:
+     * ActionSubject[Collection][PrepositionObject]
+     * into Action, Subject, Collection, Preposition and Object
+     *
+     * @param logicalName
+     * @throws CoreRouterSemanticsException
+     */
+    @Override
+    public ParsedName parse(final String logicalName)
+            throws CoreRouterSemanticsException {
+        VocabularyWord action;
+        String subject;
+        CollectionType collectionType;
+        VocabularyWord preposition;
+        String object;
+
+        // extract the Action verb, which must be at the start
+        int actionNode = this.actions.longestMatch(logicalName, 0);
+        if (actionNode == VocabularyTrie.NO_MATCH) {
+            throw new CoreRouterSemanticsException(String.format("Logical commandprovider name %s does not include a valid action verb at at the start.", logicalName));
+        }
+        action = this.actions.getValue(actionNode);
+        int endOfAction = this.actions.getLength(actionNode);
+
+        // the first collection type after the action ends the subject
+        int endOfSubject = this.collectionTypes.find(logicalName, endOfAction);
+        if (endOfSubject != VocabularyTrie.NO_MATCH) {
+            collectionType = this.collectionTypes.getValue(this.collectionTypes.longestMatch(logicalName, endOfSubject));
+        } else {
+            collectionType = null;
+        }
+
+        // the first preposition after the action, and the collection type, ends the subject (if there is
+        // no collection type) and the remainder of the name is the object
+        int startOfPreposition = this.prepositions.find(logicalName, Math.max(endOfAction, endOfSubject));
+        if (startOfPreposition != VocabularyTrie.NO_MATCH) {
+            int prepositionNode = this.prepositions.longestMatch(logicalName, startOfPreposition);
+            if (endOfSubject == VocabularyTrie.NO_MATCH) {
+                endOfSubject = startOfPreposition;
+            }
+            preposition = this.prepositions.getValue(prepositionNode);
+
+            object = logicalName.substring(startOfPreposition + this.prepositions.getLength(prepositionNode));
+            if (object.isEmpty()) {
+                throw new CoreRouterSemanticsException(String.format("Logical commandprovider name %s included a preposition but does not include an object.", logicalName));
+            }
+        } else {
+            preposition = null;
+            object = null;
+        }
+
+        if (endOfSubject == VocabularyTrie.NO_MATCH) {
+            endOfSubject = logicalName.length();
+        }
+
+        subject = logicalName.substring(endOfAction, endOfSubject);
+        if (subject.isEmpty()) {
+            throw new CoreRouterSemanticsException(String.format("Logical commandprovider name %s does not include a subject.", logicalName));
+        }
+
+        return new ParsedName(logicalName, action, subject, collectionType, preposition, object);
+    }
+}
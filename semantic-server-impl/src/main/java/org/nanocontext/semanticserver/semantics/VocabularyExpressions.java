@@ -0,0 +1,191 @@
+package org.nanocontext.semanticserver.semanticserver.semantics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Expands the regular expression of a vocabulary word into the finite set of
+ * Strings that it matches, e.g. "[gG]et|[rR]ead" expands to "get", "Get", "read" and "Read".
+ * Only the subset of the regular expression syntax that matches a finite (and small)
+ * set of Strings is expanded, that is literal characters, escaped characters, character
+ * classes (without negation), alternation and (non-capturing or capturing) groups.
+ * Expressions that include quantifiers, wildcards, anchors or flags cannot be expanded.
+ *
+ * Usable ONLY by members of this package.
+ */
+final class VocabularyExpressions {
+    /** expressions that expand to more Strings than this are not expanded */
+    static final int MAXIMUM_EXPANSION = 1024;
+
+    private static final String UNEXPANDABLE_CHARACTERS = ".*+?{}^$";
+
+    /**
+     *
+     * @param expression a regular expression
+     * @return the Strings matched by the expression, or null if the expression cannot be expanded
+     */
+    static Set<String> expand(final String expression) {
+        if (expression == null) {
+            return null;
+        }
+
+        try {
+            VocabularyExpressions parser = new VocabularyExpressions(expression);
+            List<String> result = parser.parseAlternation();
+            if (parser.position != expression.length()) {
+                return null;
+            }
+            return Collections.unmodifiableSet(new LinkedHashSet<>(result));
+        } catch (UnexpandableExpressionException ueX) {
+            return null;
+        }
+    }
+
+    // ==========================================================================================
+    // A recursive descent parser of the expandable subset of the regular expression syntax
+    // ==========================================================================================
+    private final String expression;
+    private int position;
+
+    private VocabularyExpressions(final String expression) {
+        this.expression = expression;
+        this.position = 0;
+    }
+
+    /** alternation := sequence ('|' sequence)* */
+    private List<String> parseAlternation() throws UnexpandableExpressionException {
+        List<String> result = new ArrayList<>(parseSequence());
+        while (position < expression.length() && expression.charAt(position) == '|') {
+            ++position;
+            result.addAll(parseSequence());
+            checkSize(result.size());
+        }
+        return result;
+    }
+
+    /** sequence := atom* */
+    private List<String> parseSequence() throws UnexpandableExpressionException {
+        List<String> result = Collections.singletonList("");
+        while (position < expression.length()) {
+            char c = expression.charAt(position);
+            if (c == '|' || c == ')') {
+                break;
+            }
+
+            List<String> atom = parseAtom();
+            checkSize(result.size() * atom.size());
+            List<String> product = new ArrayList<>(result.size() * atom.size());
+            for (String prefix : result) {
+                for (String suffix : atom) {
+                    product.add(prefix + suffix);
+                }
+            }
+            result = product;
+        }
+        return result;
+    }
+
+    /** atom := '(' alternation ')' | '[' class ']' | '\' char | char */
+    private List<String> parseAtom() throws UnexpandableExpressionException {
+        char c = expression.charAt(position++);
+        switch (c) {
+            case '(':
+                if (position < expression.length() && expression.charAt(position) == '?') {
+                    if (position + 1 < expression.length() && expression.charAt(position + 1) == ':') {
+                        position += 2;
+                    } else {
+                        throw new UnexpandableExpressionException();
+                    }
+                }
+                List<String> group = parseAlternation();
+                if (position >= expression.length() || expression.charAt(position) != ')') {
+                    throw new UnexpandableExpressionException();
+                }
+                ++position;
+                return group;
+            case '[':
+                return parseCharacterClass();
+            case '\\':
+                return Collections.singletonList(String.valueOf(parseEscapedCharacter()));
+            default:
+                if (UNEXPANDABLE_CHARACTERS.indexOf(c) >= 0) {
+                    throw new UnexpandableExpressionException();
+                }
+                return Collections.singletonList(String.valueOf(c));
+        }
+    }
+
+    /** class := (char | char '-' char)+ ']' */
+    private List<String> parseCharacterClass() throws UnexpandableExpressionException {
+        if (position < expression.length() && expression.charAt(position) == '^') {
+            throw new UnexpandableExpressionException();
+        }
+
+        Set<String> result = new LinkedHashSet<>();
+        while (position < expression.length() && expression.charAt(position) != ']') {
+            char first = parseClassCharacter();
+            char last = first;
+            if (position + 1 < expression.length()
+                    && expression.charAt(position) == '-'
+                    && expression.charAt(position + 1) != ']') {
+                ++position;
+                last = parseClassCharacter();
+            }
+            checkSize(result.size() + (last - first) + 1);
+            for (char c = first; c <= last; ++c) {
+                result.add(String.valueOf(c));
+            }
+        }
+
+        if (position >= expression.length() || result.isEmpty()) {
+            throw new UnexpandableExpressionException();
+        }
+        ++position;
+        return new ArrayList<>(result);
+    }
+
+    private char parseClassCharacter() throws UnexpandableExpressionException {
+        char c = expression.charAt(position++);
+        if (c == '\\') {
+            return parseEscapedCharacter();
+        }
+        if (c == '[' || c == '&') {
+            // nested classes, unions and intersections
+            throw new UnexpandableExpressionException();
+        }
+        return c;
+    }
+
+    /**
+     * Only escaped punctuation is expanded, escaped letters and digits are
+     * predefined classes (e.g. \d) or back references.
+     */
+    private char parseEscapedCharacter() throws UnexpandableExpressionException {
+        if (position >= expression.length()) {
+            throw new UnexpandableExpressionException();
+        }
+        char c = expression.charAt(position++);
+        if (Character.isLetterOrDigit(c)) {
+            throw new UnexpandableExpressionException();
+        }
+        return c;
+    }
+
+    private static void checkSize(final int size) throws UnexpandableExpressionException {
+        if (size > MAXIMUM_EXPANSION) {
+            throw new UnexpandableExpressionException();
+        }
+    }
+
+    /** thrown internally when any part of an expression cannot be expanded */
+    private static class UnexpandableExpressionException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        private UnexpandableExpressionException() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -10,7 +10,12 @@ import java.io.InputStreamReader;
 import java.io.LineNumberReader;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.regex.Pattern;
 
@@ -18,9 +23,19 @@ import java.util.regex.Pattern;
  * This class represents one portion of the application vocabulary,
  * either the  actions (verbs) or the prepositions.
  * Subjects and Objects (nouns) are represented by the model classes.
+ *
+ * The vocabulary is indexed when it is created. Each word expression that can be expanded
+ * into its (finite set of) synonyms is entered into a hash index of synonym to word, only
+ * the words whose expression cannot be expanded are matched with their regular expression.
+ * The Pattern that matches any word is compiled once.
  */
 public class VocabularyImpl implements Vocabulary {
     private final Set<VocabularyWord> words;
+    /** synonym to word, for the words whose expression could be expanded */
+    private final Map<String, VocabularyWord> synonymIndex;
+    /** the words whose expression could not be expanded, matched by regular expression */
+    private final List<VocabularyWord> unindexedWords;
+    private final Pattern anyPattern;
 
     public static VocabularyImpl createDefaultActionsVocabulary() throws CoreRouterSemanticsException {
         try {
@@ -59,7 +74,31 @@ public class VocabularyImpl implements Vocabulary {
     }
 
     private VocabularyImpl(Set<VocabularyWord> words) {
-        this.words = words;
+        this.words = Collections.unmodifiableSet(words);
+
+        Map<String, VocabularyWord> synonymIndex = new HashMap<>();
+        List<VocabularyWord> unindexedWords = new ArrayList<>();
+        for (VocabularyWord word : this.words) {
+            Set<String> synonyms = VocabularyExpressions.expand(word.getExpression());
+            if (synonyms == null) {
+                unindexedWords.add(word);
+            } else {
+                for (String synonym : synonyms) {
+                    // where two words share a synonym the first word found is used, as find() always did
+                    if (!synonymIndex.containsKey(synonym)) {
+                        synonymIndex.put(synonym, word);
+                    }
+                }
+            }
+        }
+        this.synonymIndex = synonymIndex;
+        this.unindexedWords = unindexedWords;
+        this.anyPattern = createAnyPattern(this.words);
+    }
+
+    @Override
+    public Set<VocabularyWord> getWords() {
+        return words;
     }
 
     /**
@@ -73,9 +112,14 @@ public class VocabularyImpl implements Vocabulary {
         if (synonym == null)
             return null;
 
-        for (VocabularyWord word : this.words) {
-            if (word.matches(synonym)) {
-                return word;
+        VocabularyWord word = this.synonymIndex.get(synonym.toString());
+        if (word != null) {
+            return word;
+        }
+
+        for (VocabularyWord unindexedWord : this.unindexedWords) {
+            if (unindexedWord.matches(synonym)) {
+                return unindexedWord;
             }
         }
         return null;
@@ -94,9 +138,13 @@ public class VocabularyImpl implements Vocabulary {
 
     @Override
     public Pattern getAnyPattern() {
+        return anyPattern;
+    }
+
+    private static Pattern createAnyPattern(final Set<VocabularyWord> words) {
         StringBuilder sb = new StringBuilder();
 
-        for (VocabularyWord word : this.words) {
+        for (VocabularyWord word : words) {
             if (sb.length() > 0) {
                 sb.append('|');
             }
@@ -0,0 +1,186 @@
+package org.nanocontext.semanticserver.semanticserver.semantics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An immutable character trie that maps words to values.
+ * The trie is flattened into arrays when it is built so that matching does
+ * not allocate, the nodes are identified by their index in the arrays.
+ *
+ * Usable ONLY by members of this package.
+ */
+final class VocabularyTrie<V> {
+    /** returned from longestMatch() when no word matches */
+    static final int NO_MATCH = -1;
+
+    private static final int ROOT = 0;
+
+    /** the edge characters of each node, sorted */
+    private final char[][] edgeCharacters;
+    /** the target node of each edge, in the same order as the edge characters */
+    private final int[][] edgeTargets;
+    /** the value of each node, null if the node does not terminate a word */
+    private final Object[] values;
+    /** the length of the word that ends at each node */
+    private final int[] depths;
+
+    private VocabularyTrie(
+            final char[][] edgeCharacters,
+            final int[][] edgeTargets,
+            final Object[] values,
+            final int[] depths) {
+        this.edgeCharacters = edgeCharacters;
+        this.edgeTargets = edgeTargets;
+        this.values = values;
+        this.depths = depths;
+    }
+
+    /**
+     * Find the longest word that starts at the given position.
+     *
+     * @param charSequence
+     * @param start the index of the first character of the word
+     * @return the node that terminates the longest word, or NO_MATCH
+     */
+    int longestMatch(final CharSequence charSequence, final int start) {
+        int result = NO_MATCH;
+        int node = ROOT;
+        for (int index = start; index < charSequence.length(); ++index) {
+            int edge = Arrays.binarySearch(edgeCharacters[node], charSequence.charAt(index));
+            if (edge < 0) {
+                break;
+            }
+            node = edgeTargets[node][edge];
+            if (values[node] != null) {
+                result = node;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Find the first position, at or after the given position, at which a word starts.
+     * A match is tried at each position in turn, so the cost is O(n * k) where n is the
+     * number of characters searched and k is the length of the longest word. This is a
+     * simple scan, not a multiple pattern automaton (e.g. Aho-Corasick), which is adequate
+     * for the short logical names and vocabulary words that are searched.
+     *
+     * @param charSequence
+     * @param from the index at which to start searching
+     * @return the index at which a word starts, or NO_MATCH
+     */
+    int find(final CharSequence charSequence, final int from) {
+        for (int index = from; index < charSequence.length(); ++index) {
+            if (longestMatch(charSequence, index) != NO_MATCH) {
+                return index;
+            }
+        }
+        return NO_MATCH;
+    }
+
+    /**
+     * @param node a node returned from longestMatch()
+     * @return the value of the word that ends at the node
+     */
+    V getValue(final int node) {
+        return (V) values[node];
+    }
+
+    /**
+     * @param node a node returned from longestMatch()
+     * @return the length of the word that ends at the node
+     */
+    int getLength(final int node) {
+        return depths[node];
+    }
+
+    /**
+     * @return a builder of an immutable VocabularyTrie
+     */
+    static <V> Builder<V> builder() {
+        return new Builder<>();
+    }
+
+    /**
+     * Builds a VocabularyTrie. A word that is added more than once keeps the first value.
+     */
+    static final class Builder<V> {
+        private final BuilderNode<V> root = new BuilderNode<>(0);
+
+        private Builder() {
+        }
+
+        /**
+         * @param word a non-empty word
+         * @param value a non-null value
+         * @return this builder
+         */
+        Builder<V> add(final String word, final V value) {
+            if (word == null || word.isEmpty() || value == null) {
+                throw new IllegalArgumentException("'word' and 'value' must not be null or empty");
+            }
+
+            BuilderNode<V> node = root;
+            for (int index = 0; index < word.length(); ++index) {
+                BuilderNode<V> child = node.children.get(word.charAt(index));
+                if (child == null) {
+                    child = new BuilderNode<>(index + 1);
+                    node.children.put(word.charAt(index), child);
+                }
+                node = child;
+            }
+            if (node.value == null) {
+                node.value = value;
+            }
+            return this;
+        }
+
+        VocabularyTrie<V> build() {
+            // number the nodes breadth first
+            List<BuilderNode<V>> nodes = new ArrayList<>();
+            nodes.add(root);
+            for (int index = 0; index < nodes.size(); ++index) {
+                BuilderNode<V> node = nodes.get(index);
+                for (BuilderNode<V> child : node.children.values()) {
+                    child.index = nodes.size();
+                    nodes.add(child);
+                }
+            }
+
+            char[][] edgeCharacters = new char[nodes.size()][];
+            int[][] edgeTargets = new int[nodes.size()][];
+            Object[] values = new Object[nodes.size()];
+            int[] depths = new int[nodes.size()];
+            for (BuilderNode<V> node : nodes) {
+                edgeCharacters[node.index] = new char[node.children.size()];
+                edgeTargets[node.index] = new int[node.children.size()];
+                int edge = 0;
+                // TreeMap iterates in character order, as required by the binary search
+                for (Map.Entry<Character, BuilderNode<V>> child : node.children.entrySet()) {
+                    edgeCharacters[node.index][edge] = child.getKey();
+                    edgeTargets[node.index][edge] = child.getValue().index;
+                    ++edge;
+                }
+                values[node.index] = node.value;
+                depths[node.index] = node.depth;
+            }
+
+            return new VocabularyTrie<>(edgeCharacters, edgeTargets, values, depths);
+        }
+    }
+
+    private static final class BuilderNode<V> {
+        private final TreeMap<Character, BuilderNode<V>> children = new TreeMap<>();
+        private final int depth;
+        private int index;
+        private V value;
+
+        private BuilderNode(final int depth) {
+            this.depth = depth;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package org.nanocontext.semanticserver.semanticserver.applicationbridge;
+
+import org.nanocontext.semanticserver.semanticserver.commandprovider.RootCommandProvider;
+import org.nanocontext.semanticserver.semanticserver.semantics.ApplicationSemanticsImpl;
+import org.nanocontext.semanticserver.test.TestApplication;
+import org.nanocontext.semanticserver.test.model.Authorization;
+import org.nanocontext.semanticserver.test.model.AuthorizationId;
+import org.nanocontext.semanticserverapi.core.commandprocessor.RoutingToken;
+import org.nanocontext.semanticserverapi.core.commandprovider.CommandInstantiationToken;
+import org.nanocontext.semanticserverapi.core.commandprovider.CommandProvider;
+import org.nanocontext.semanticserverapi.core.commandprovider.exceptions.CommandProviderException;
+import org.nanocontext.semanticserverapi.core.semantics.CommandClassSemantics;
+import org.nanocontext.semanticserverapi.core.semantics.exceptions.CoreRouterSemanticsException;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+
+/**
+ * Tests that CommandResolutionCache re-uses a token within a generation of the
+ * RootCommandProvider and never across generations.
+ */
+public class CommandResolutionCacheTest {
+    private static final RoutingToken ROUTING_TOKEN = new ProductTypeRoutingToken("USACON");
+
+    private CountingRootCommandProvider rootCommandProvider;
+    private MethodDispatchPlan plan;
+    private CommandResolutionCache cache;
+
+    public interface AuthorizationProcessorBridge {
+        Authorization getAuthorizationByAuthorizationId(AuthorizationId authorizationId);
+    }
+
+    @BeforeMethod
+    public void b4Method() throws CoreRouterSemanticsException, NoSuchMethodException {
+        CommandClassSemantics semantics = ApplicationSemanticsImpl.create(TestApplication.MODEL_PACKAGE)
+                .createCommandClassSemantic("GetAuthorizationByAuthorizationIdCommand");
+        Method method = AuthorizationProcessorBridge.class.getMethod("getAuthorizationByAuthorizationId", AuthorizationId.class);
+
+        rootCommandProvider = new CountingRootCommandProvider();
+        plan = MethodDispatchPlan.create(method, semantics);
+        cache = new CommandResolutionCache();
+    }
+
+    @Test
+    public void testTokenIsReusedWithinAGeneration() throws Exception {
+        Object first = createCommand(new AuthorizationId()).call();
+        Object second = createCommand(new AuthorizationId()).call();
+
+        Assert.assertEquals(rootCommandProvider.findCount, 1);
+        Assert.assertSame(second, first);
+    }
+
+    @Test
+    public void testReloadInvalidatesTokens() throws Exception {
+        Object first = createCommand(new AuthorizationId()).call();
+        long generation = rootCommandProvider.getGeneration();
+
+        rootCommandProvider.reload();
+        Assert.assertEquals(rootCommandProvider.getGeneration(), generation + 1);
+
+        Object second = createCommand(new AuthorizationId()).call();
+        Assert.assertEquals(rootCommandProvider.findCount, 2);
+        Assert.assertNotSame(second, first);
+
+        // the token of the new generation is cached
+        Assert.assertSame(createCommand(new AuthorizationId()).call(), second);
+        Assert.assertEquals(rootCommandProvider.findCount, 2);
+    }
+
+    @Test
+    public void testArgumentTypesAreDistinguished() throws Exception {
+        createCommand(new AuthorizationId());
+        createCommand((Object) null);
+        createCommand((Object) null);
+
+        Assert.assertEquals(rootCommandProvider.findCount, 2);
+    }
+
+    @Test
+    public void testNotFoundIsNotCached() throws Exception {
+        rootCommandProvider.found = false;
+        Assert.assertNull(createCommand(new AuthorizationId()));
+        Assert.assertNull(createCommand(new AuthorizationId()));
+        Assert.assertEquals(rootCommandProvider.findCount, 2);
+
+        rootCommandProvider.found = true;
+        Assert.assertNotNull(createCommand(new AuthorizationId()));
+        Assert.assertEquals(rootCommandProvider.findCount, 3);
+    }
+
+    private Callable<Object> createCommand(final Object argument) throws CommandProviderException {
+        return cache.createCommand(rootCommandProvider, plan, new Object[]{argument}, ROUTING_TOKEN);
+    }
+
+    // ==========================================================================================
+    // A RootCommandProvider that counts the lookups, each lookup finds a new token
+    // ==========================================================================================
+    private static class CountingRootCommandProvider
+    extends RootCommandProvider {
+        private volatile int findCount;
+        private volatile boolean found = true;
+
+        private CountingRootCommandProvider() {
+            super(CountingRootCommandProvider.class.getClassLoader());
+        }
+
+        @Override
+        public CommandInstantiationToken findCommand(
+                final RoutingToken routingToken,
+                final CommandClassSemantics commandClassSemantics,
+                final Class<?>[] parameterTypes,
+                final Class<?> resultType) {
+            ++findCount;
+            if (!found) {
+                return null;
+            }
+            return new CommandInstantiationToken() {
+                @Override
+                public CommandProvider getCommandProvider() {
+                    return CountingRootCommandProvider.this;
+                }
+            };
+        }
+
+        /**
+         * The Command returns the token it was created from.
+         */
+        @Override
+        public Callable<?> createCommand(
+                final CommandInstantiationToken commandInstantiationToken,
+                final Object[] parameters) {
+            return new Callable<Object>() {
+                @Override
+                public Object call() {
+                    return commandInstantiationToken;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package org.nanocontext.semanticserver.semanticserver.applicationbridge;
+
+import org.nanocontext.semanticserverapi.core.commandprocessor.AsynchronousExecutionCallback;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Tests that CompletableFutureCallback completes the future and then notifies the delegate.
+ */
+public class CompletableFutureCallbackTest {
+
+    @Test
+    public void testSuccess() throws Exception {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        RecordingCallback delegate = new RecordingCallback(future);
+
+        new CompletableFutureCallback<>(future, delegate).success("result");
+
+        Assert.assertEquals(future.get(), "result");
+        Assert.assertEquals(delegate.result, "result");
+        Assert.assertTrue(delegate.futureWasDone, "the delegate was notified before the future was completed");
+        Assert.assertNull(delegate.failure);
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        RecordingCallback delegate = new RecordingCallback(future);
+        IllegalStateException failure = new IllegalStateException();
+
+        new CompletableFutureCallback<>(future, delegate).failure(failure);
+
+        try {
+            future.get();
+            Assert.fail("the future was not completed exceptionally");
+        } catch (ExecutionException eX) {
+            Assert.assertSame(eX.getCause(), failure);
+        }
+        Assert.assertSame(delegate.failure, failure);
+        Assert.assertTrue(delegate.futureWasDone, "the delegate was notified before the future was completed");
+    }
+
+    @Test
+    public void testWithoutDelegate() throws Exception {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        new CompletableFutureCallback<>(future, null).success("result");
+        Assert.assertEquals(future.get(), "result");
+
+        CompletableFuture<String> failed = new CompletableFuture<>();
+        new CompletableFutureCallback<>(failed, null).failure(new IllegalStateException());
+        Assert.assertTrue(failed.isCompletedExceptionally());
+    }
+
+    @Test
+    public void testCancelledFutureStillNotifiesDelegate() {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        RecordingCallback delegate = new RecordingCallback(future);
+        future.cancel(true);
+
+        new CompletableFutureCallback<>(future, delegate).success("late");
+
+        Assert.assertTrue(future.isCancelled());
+        Assert.assertEquals(delegate.result, "late");
+    }
+
+    private static class RecordingCallback
+    implements AsynchronousExecutionCallback<String> {
+        private final CompletableFuture<String> future;
+        private volatile String result;
+        private volatile Throwable failure;
+        private volatile boolean futureWasDone;
+
+        private RecordingCallback(final CompletableFuture<String> future) {
+            this.future = future;
+        }
+
+        @Override
+        public void success(final String result) {
+            this.futureWasDone = future.isDone();
+            this.result = result;
+        }
+
+        @Override
+        public void failure(final Throwable t) {
+            this.futureWasDone = future.isDone();
+            this.failure = t;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package org.nanocontext.semanticserver.semanticserver.commandprocessor;
+
+import org.nanocontext.semanticserver.semanticserver.commandprocessor.exceptions.ConcurrencyLimitExceededException;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests the AIMD adjustment of the limit, the queueing and rejection of Commands over the limit
+ * and the passing of a released permit to a queued Command, driving the AdaptiveLimiter directly.
+ */
+public class AdaptiveLimiterTest {
+    private static final Class<?> COMMAND_CLASS = AdaptiveLimiterTest.class;
+    private static final long MINIMUM_RTT = 1000L;
+
+    @Test
+    public void testAdditiveIncrease() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(4, 1, 5, 0);
+        acquire(limiter, 2);
+
+        // half of the limit is in use and the RTT is within the tolerance
+        limiter.release(COMMAND_CLASS, MINIMUM_RTT);
+        Assert.assertEquals(getLimit(limiter).getLimit(), 5);
+        Assert.assertEquals(getLimit(limiter).getMinimumRttNanos(), MINIMUM_RTT);
+
+        // less than half of the limit is in use
+        limiter.release(COMMAND_CLASS, MINIMUM_RTT);
+        Assert.assertEquals(getLimit(limiter).getLimit(), 5);
+
+        // the limit does not exceed the maximum
+        acquire(limiter, 5);
+        limiter.release(COMMAND_CLASS, MINIMUM_RTT);
+        Assert.assertEquals(getLimit(limiter).getLimit(), 5);
+        Assert.assertEquals(getLimit(limiter).getInFlight(), 4);
+    }
+
+    @Test
+    public void testMultiplicativeDecrease() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(10, 3, 20, 0, 0.5, 2.0);
+        acquire(limiter, 4);
+        limiter.release(COMMAND_CLASS, MINIMUM_RTT);
+        Assert.assertEquals(getLimit(limiter).getLimit(), 10);
+
+        // within the tolerance the limit is not decreased
+        limiter.release(COMMAND_CLASS, 2L * MINIMUM_RTT);
+        Assert.assertEquals(getLimit(limiter).getLimit(), 10);
+
+        limiter.release(COMMAND_CLASS, 3L * MINIMUM_RTT);
+        Assert.assertEquals(getLimit(limiter).getLimit(), 5);
+
+        // the limit does not fall below the minimum
+        limiter.release(COMMAND_CLASS, 3L * MINIMUM_RTT);
+        Assert.assertEquals(getLimit(limiter).getLimit(), 3);
+        Assert.assertEquals(getLimit(limiter).getInFlight(), 0);
+    }
+
+    /**
+     * A Command that was not executed (e.g. it was cancelled) releases its permit without an RTT.
+     */
+    @Test
+    public void testUnexecutedReleaseIsNotSampled() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(4, 1, 10, 0);
+        acquire(limiter, 4);
+
+        limiter.release(COMMAND_CLASS, -1L);
+
+        Assert.assertEquals(getLimit(limiter).getLimit(), 4);
+        Assert.assertEquals(getLimit(limiter).getMinimumRttNanos(), 0L);
+        Assert.assertEquals(getLimit(limiter).getInFlight(), 3);
+    }
+
+    @Test
+    public void testRejection() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(1, 1, 1, 0);
+        acquire(limiter, 1);
+
+        try {
+            limiter.tryAcquire(COMMAND_CLASS, new CountingDispatch());
+            Assert.fail("the limiter admitted a command over the limit");
+        } catch (ConcurrencyLimitExceededException cleX) {
+            // expected
+        }
+        Assert.assertEquals(getLimit(limiter).getRejectedCount(), 1L);
+        Assert.assertEquals(getLimit(limiter).getInFlight(), 1);
+        Assert.assertEquals(getLimit(limiter).getQueueLength(), 0);
+    }
+
+    @Test
+    public void testQueueing() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(1, 1, 1, 1);
+        acquire(limiter, 1);
+
+        CountingDispatch queued = new CountingDispatch();
+        Assert.assertFalse(limiter.tryAcquire(COMMAND_CLASS, queued));
+        Assert.assertEquals(getLimit(limiter).getQueueLength(), 1);
+
+        // the queue is full
+        try {
+            limiter.tryAcquire(COMMAND_CLASS, new CountingDispatch());
+            Assert.fail("the limiter queued a command over the maximum queue length");
+        } catch (ConcurrencyLimitExceededException cleX) {
+            // expected
+        }
+        Assert.assertEquals(getLimit(limiter).getRejectedCount(), 1L);
+        Assert.assertEquals(queued.count.get(), 0);
+    }
+
+    /**
+     * A released permit passes to the first queued Command, which is dispatched by the releasing thread.
+     */
+    @Test
+    public void testPermitInheritance() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(1, 1, 1, 2);
+        acquire(limiter, 1);
+        CountingDispatch first = new CountingDispatch();
+        CountingDispatch second = new CountingDispatch();
+        Assert.assertFalse(limiter.tryAcquire(COMMAND_CLASS, first));
+        Assert.assertFalse(limiter.tryAcquire(COMMAND_CLASS, second));
+
+        limiter.release(COMMAND_CLASS, MINIMUM_RTT);
+        Assert.assertEquals(first.count.get(), 1);
+        Assert.assertEquals(second.count.get(), 0);
+        Assert.assertEquals(getLimit(limiter).getInFlight(), 1);
+        Assert.assertEquals(getLimit(limiter).getQueueLength(), 1);
+
+        limiter.release(COMMAND_CLASS, MINIMUM_RTT);
+        Assert.assertEquals(second.count.get(), 1);
+        Assert.assertEquals(getLimit(limiter).getInFlight(), 1);
+
+        limiter.release(COMMAND_CLASS, MINIMUM_RTT);
+        Assert.assertEquals(getLimit(limiter).getInFlight(), 0);
+    }
+
+    /**
+     * When the limit has decreased below the in flight count, a released permit is retired
+     * rather than passed to a queued Command.
+     */
+    @Test
+    public void testPermitIsRetiredOverTheLimit() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(4, 1, 10, 2, 0.5, 2.0);
+        acquire(limiter, 4);
+        CountingDispatch first = new CountingDispatch();
+        CountingDispatch second = new CountingDispatch();
+        Assert.assertFalse(limiter.tryAcquire(COMMAND_CLASS, first));
+        Assert.assertFalse(limiter.tryAcquire(COMMAND_CLASS, second));
+
+        // increases the limit to 5, the permit passes to the first queued Command
+        limiter.release(COMMAND_CLASS, MINIMUM_RTT);
+        Assert.assertEquals(first.count.get(), 1);
+        Assert.assertEquals(getLimit(limiter).getLimit(), 5);
+
+        // decreases the limit to 2, with 4 in flight
+        limiter.release(COMMAND_CLASS, 10L * MINIMUM_RTT);
+        Assert.assertEquals(getLimit(limiter).getLimit(), 2);
+        Assert.assertEquals(getLimit(limiter).getInFlight(), 3);
+        limiter.release(COMMAND_CLASS, -1L);
+        Assert.assertEquals(getLimit(limiter).getInFlight(), 2);
+        Assert.assertEquals(second.count.get(), 0);
+
+        // within the limit, the permit passes to the second queued Command
+        limiter.release(COMMAND_CLASS, -1L);
+        Assert.assertEquals(second.count.get(), 1);
+        Assert.assertEquals(getLimit(limiter).getInFlight(), 2);
+        Assert.assertEquals(getLimit(limiter).getQueueLength(), 0);
+    }
+
+    @Test
+    public void testLimitsAreByCommandClass() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(1, 1, 1, 0);
+        acquire(limiter, 1);
+
+        Assert.assertTrue(limiter.tryAcquire(String.class, new CountingDispatch()));
+        Assert.assertEquals(limiter.getCommandClassLimits().size(), 2);
+        Assert.assertEquals(limiter.getCommandClassLimit(String.class).getInFlight(), 1);
+        Assert.assertNull(limiter.getCommandClassLimit(Integer.class));
+    }
+
+    @Test
+    public void testLimitsOfUnloadedClassesAreNotRetained() throws Exception {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(1, 1, 1, 0);
+        WeakReference<Class<?>> unloadable = acquireUnloadable(limiter);
+
+        for (int n = 0; n < 50 && unloadable.get() != null; ++n) {
+            System.gc();
+            Thread.sleep(10L);
+        }
+        Assert.assertNull(unloadable.get(), "the command class is still referenced");
+        Assert.assertTrue(limiter.getCommandClassLimits().isEmpty());
+    }
+
+    /**
+     * Acquire and release a permit for a class loaded by a ClassLoader that is then discarded.
+     */
+    private static WeakReference<Class<?>> acquireUnloadable(final AdaptiveLimiter limiter) throws Exception {
+        URL location = AdaptiveLimiterTest.class.getProtectionDomain().getCodeSource().getLocation();
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{location}, null)) {
+            Class<?> commandClass = loader.loadClass(CountingDispatch.class.getName());
+            Assert.assertNotSame(commandClass, CountingDispatch.class);
+
+            Assert.assertTrue(limiter.tryAcquire(commandClass, new CountingDispatch()));
+            limiter.release(commandClass, MINIMUM_RTT);
+            Assert.assertEquals(limiter.getCommandClassLimits().size(), 1);
+            return new WeakReference<Class<?>>(commandClass);
+        }
+    }
+
+    private static void acquire(final AdaptiveLimiter limiter, final int permits) {
+        for (int index = 0; index < permits; ++index) {
+            Assert.assertTrue(limiter.tryAcquire(COMMAND_CLASS, new CountingDispatch()));
+        }
+    }
+
+    private static AdaptiveLimiter.CommandClassLimit getLimit(final AdaptiveLimiter limiter) {
+        return limiter.getCommandClassLimit(COMMAND_CLASS);
+    }
+
+    private static class CountingDispatch implements Runnable {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public void run() {
+            count.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,322 @@
+package org.nanocontext.semanticserver.semanticserver.commandprocessor;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Writes and recovers journals in a temporary directory, including journals whose last
+ * segment was torn by a crash.
+ */
+public class CommandJournalTest {
+    private static final int SMALL_SEGMENT_SIZE = 1024;
+
+    private File directory;
+    private CommandJournal journal;
+
+    @BeforeMethod
+    public void b4Method() throws IOException {
+        directory = Files.createTempDirectory("CommandJournalTest").toFile();
+    }
+
+    @AfterMethod
+    public void afterMethod() {
+        if (journal != null) {
+            journal.close();
+            journal = null;
+        }
+        delete(directory);
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        journal = open(CommandJournal.DEFAULT_SEGMENT_SIZE);
+        Assert.assertTrue(journal.getRecovered().isEmpty());
+        long first = journal.submitted(new JournaledCommand("first"));
+        journal.submitted(new JournaledCommand("second"));
+        journal.submitted(new JournaledCommand("third"));
+        journal.completed(first);
+
+        reopen(CommandJournal.DEFAULT_SEGMENT_SIZE);
+
+        Assert.assertEquals(getNames(journal.getRecovered()), Arrays.asList("second", "third"));
+    }
+
+    /**
+     * A crash while a record is appended leaves its length zero, a record whose length exceeds
+     * the segment is also the end of the segment.
+     */
+    @Test
+    public void testTornRecordEndsTheSegment() throws IOException {
+        journal = open(CommandJournal.DEFAULT_SEGMENT_SIZE);
+        journal.submitted(new JournaledCommand("complete"));
+        journal.close();
+        journal = null;
+
+        File segment = getSegments().get(0);
+        int end = getEndOfRecords(segment);
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            // the type and id of a record whose length was never written
+            file.seek(end + 4);
+            file.writeByte(1);
+            file.writeLong(1L);
+        }
+
+        reopen(CommandJournal.DEFAULT_SEGMENT_SIZE);
+        Assert.assertEquals(getNames(journal.getRecovered()), Arrays.asList("complete"));
+        journal.close();
+        journal = null;
+
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            file.seek(end);
+            file.writeInt(Integer.MAX_VALUE);
+        }
+        reopen(CommandJournal.DEFAULT_SEGMENT_SIZE);
+        Assert.assertEquals(getNames(journal.getRecovered()), Arrays.asList("complete"));
+    }
+
+    /**
+     * A crash while a segment is created may leave an empty file.
+     */
+    @Test
+    public void testZeroLengthSegment() throws IOException {
+        journal = open(CommandJournal.DEFAULT_SEGMENT_SIZE);
+        journal.submitted(new JournaledCommand("recovered"));
+        journal.close();
+        journal = null;
+        Assert.assertTrue(new File(directory, String.format("journal-%016d.seg", 99L)).createNewFile());
+
+        reopen(CommandJournal.DEFAULT_SEGMENT_SIZE);
+
+        Assert.assertEquals(getNames(journal.getRecovered()), Arrays.asList("recovered"));
+        // the new segment follows the empty segment
+        Assert.assertTrue(new File(directory, String.format("journal-%016d.seg", 100L)).exists());
+    }
+
+    @Test
+    public void testRotationAndSegmentDeletion() throws IOException {
+        journal = open(SMALL_SEGMENT_SIZE);
+        List<Long> ids = new ArrayList<>();
+        for (int index = 0; index < 20; ++index) {
+            ids.add(journal.submitted(new JournaledCommand("command-" + index)));
+        }
+        int segmentCount = getSegments().size();
+        Assert.assertTrue(segmentCount > 2, "the commands did not fill several segments");
+
+        // the later segments are not deleted while the oldest has an outstanding Command
+        for (int index = 1; index < ids.size(); ++index) {
+            journal.completed(ids.get(index));
+        }
+        Assert.assertTrue(getSegments().size() >= segmentCount);
+
+        journal.completed(ids.get(0));
+        Assert.assertEquals(getSegments().size(), 1);
+
+        reopen(SMALL_SEGMENT_SIZE);
+        Assert.assertTrue(journal.getRecovered().isEmpty());
+    }
+
+    /**
+     * A failed Command does not keep its segment from being deleted, its FAILED record is carried
+     * forward and it is recovered, as one more attempt, when the journal is reopened.
+     */
+    @Test
+    public void testFailedCommandDoesNotPinSegments() throws IOException {
+        journal = open(SMALL_SEGMENT_SIZE);
+        JournaledCommand failing = new JournaledCommand("failing");
+        long failingId = journal.submitted(failing);
+        List<Long> ids = new ArrayList<>();
+        for (int index = 0; index < 20; ++index) {
+            ids.add(journal.submitted(new JournaledCommand("command-" + index)));
+        }
+        Assert.assertTrue(getSegments().size() > 2, "the commands did not fill several segments");
+
+        journal.failed(failingId, failing);
+        for (Long id : ids) {
+            journal.completed(id);
+        }
+        Assert.assertEquals(getSegments().size(), 1);
+
+        // the segment that holds the FAILED record is deleted in turn
+        ids.clear();
+        for (int index = 0; index < 20; ++index) {
+            ids.add(journal.submitted(new JournaledCommand("later-" + index)));
+        }
+        for (Long id : ids) {
+            journal.completed(id);
+        }
+        Assert.assertEquals(getSegments().size(), 1);
+
+        reopen(SMALL_SEGMENT_SIZE);
+        Assert.assertEquals(getNames(journal.getRecovered()), Arrays.asList("failing"));
+        Assert.assertTrue(journal.getDeadLetters().isEmpty());
+    }
+
+    @Test
+    public void testLastFailedAttemptIsDeadLettered() throws IOException {
+        journal = CommandJournal.open(directory.getPath(), SMALL_SEGMENT_SIZE, 1L, 1);
+        JournaledCommand failing = new JournaledCommand("failing");
+        journal.failed(journal.submitted(failing), failing);
+
+        Assert.assertEquals(journal.getDeadLetters().size(), 1);
+        Assert.assertTrue(journal.getDeadLetters().get(0).length() > 0L);
+        journal.close();
+        journal = CommandJournal.open(directory.getPath(), SMALL_SEGMENT_SIZE, 1L, 1);
+        Assert.assertTrue(journal.getRecovered().isEmpty());
+    }
+
+    @Test
+    public void testRecoveryAcrossSegments() throws IOException {
+        journal = open(SMALL_SEGMENT_SIZE);
+        List<Long> ids = new ArrayList<>();
+        for (int index = 0; index < 20; ++index) {
+            ids.add(journal.submitted(new JournaledCommand("command-" + index)));
+        }
+        // the completion of the first Command is in a later segment than its submission
+        journal.completed(ids.get(0));
+        journal.completed(ids.get(19));
+
+        reopen(SMALL_SEGMENT_SIZE);
+
+        List<String> names = getNames(journal.getRecovered());
+        Assert.assertEquals(names.size(), 18);
+        Assert.assertEquals(names.get(0), "command-1");
+        Assert.assertEquals(names.get(17), "command-18");
+    }
+
+    @Test
+    public void testDiscardRecovered() throws IOException {
+        journal = open(CommandJournal.DEFAULT_SEGMENT_SIZE);
+        journal.submitted(new JournaledCommand("replayed"));
+        reopen(CommandJournal.DEFAULT_SEGMENT_SIZE);
+        List<File> recoveredSegments = getSegments();
+        Assert.assertEquals(recoveredSegments.size(), 2);
+
+        // the recovered Command is journaled again, in the new segment, before the old segment is discarded
+        journal.submitted(journal.getRecovered().get(0));
+        journal.discardRecovered();
+
+        Assert.assertTrue(journal.getRecovered().isEmpty());
+        Assert.assertEquals(getSegments().size(), 1);
+        reopen(CommandJournal.DEFAULT_SEGMENT_SIZE);
+        Assert.assertEquals(getNames(journal.getRecovered()), Arrays.asList("replayed"));
+    }
+
+    /**
+     * A Command that is submitted the maximum number of attempts without completing is written
+     * to a dead letter file rather than recovered again.
+     */
+    @Test
+    public void testReplaysAreCapped() throws IOException {
+        journal = CommandJournal.open(directory.getPath(), CommandJournal.DEFAULT_SEGMENT_SIZE, 1L, 2);
+        journal.submitted(new JournaledCommand("poison"));
+        journal.submitted(new JournaledCommand("healthy"));
+
+        journal.close();
+        journal = CommandJournal.open(directory.getPath(), CommandJournal.DEFAULT_SEGMENT_SIZE, 1L, 2);
+        Assert.assertEquals(getNames(journal.getRecovered()), Arrays.asList("poison", "healthy"));
+        // the second attempt of both, the healthy Command then completes
+        journal.submitted(journal.getRecovered().get(0));
+        long healthy = journal.submitted(journal.getRecovered().get(1));
+        journal.discardRecovered();
+        journal.completed(healthy);
+
+        journal.close();
+        journal = CommandJournal.open(directory.getPath(), CommandJournal.DEFAULT_SEGMENT_SIZE, 1L, 2);
+        Assert.assertTrue(journal.getRecovered().isEmpty());
+        Assert.assertEquals(journal.getDeadLetters().size(), 1);
+        Assert.assertTrue(journal.getDeadLetters().get(0).length() > 0L);
+
+        // a Command submitted anew is not counted as an attempt of a recovered Command
+        journal.submitted(new JournaledCommand("poison"));
+        journal.close();
+        journal = CommandJournal.open(directory.getPath(), CommandJournal.DEFAULT_SEGMENT_SIZE, 1L, 2);
+        Assert.assertEquals(getNames(journal.getRecovered()), Arrays.asList("poison"));
+    }
+
+    // ==========================================================================================
+    // Helpers
+    // ==========================================================================================
+    private CommandJournal open(final int segmentSize) throws IOException {
+        return CommandJournal.open(directory.getPath(), segmentSize, 1L, CommandJournal.DEFAULT_MAXIMUM_ATTEMPTS);
+    }
+
+    private void reopen(final int segmentSize) throws IOException {
+        if (journal != null) {
+            journal.close();
+        }
+        journal = open(segmentSize);
+    }
+
+    private List<File> getSegments() {
+        List<File> segments = new ArrayList<>();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().endsWith(".seg")) {
+                    segments.add(file);
+                }
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * @return the offset of the zero length that follows the last record of the segment
+     */
+    private static int getEndOfRecords(final File segment) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(segment, "r")) {
+            int position = 0;
+            int length;
+            while ((length = file.readInt()) > 0) {
+                position += 4 + length;
+                file.seek(position);
+            }
+            return position;
+        }
+    }
+
+    private static List<String> getNames(final List<Callable<?>> commands) {
+        List<String> names = new ArrayList<>();
+        for (Callable<?> command : commands) {
+            names.add(((JournaledCommand) command).name);
+        }
+        return names;
+    }
+
+    private static void delete(final File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static class JournaledCommand
+    implements Callable<String>, Serializable {
+        private static final long serialVersionUID = 1L;
+        private final String name;
+
+        private JournaledCommand(final String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String call() {
+            return name;
+        }
+    }
+}
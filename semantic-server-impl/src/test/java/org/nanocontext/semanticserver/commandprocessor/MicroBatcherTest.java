@@ -0,0 +1,315 @@
+package org.nanocontext.semanticserver.semanticserver.commandprocessor;
+
+import org.nanocontext.semanticserver.test.RecordingCallback;
+import org.nanocontext.semanticserverapi.core.commandprocessor.AsynchronouslyExecutableCommand;
+import org.nanocontext.semanticserverapi.core.commandprocessor.BatchableCommand;
+import org.nanocontext.semanticserverapi.core.commandprocessor.CommandHandle;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Tests the flushing of batches by size and by linger time, and the reporting of the results
+ * and failures of a batch to the task of each command, driving the MicroBatcher directly.
+ */
+public class MicroBatcherTest {
+    private static final long TIMEOUT_MILLIS = 5000L;
+    private static final long LONG_LINGER_MILLIS = 60000L;
+
+    /** executes a batch on the thread that flushed it */
+    private static final Executor DIRECT_EXECUTOR = new Executor() {
+        @Override
+        public void execute(final Runnable command) {
+            command.run();
+        }
+    };
+
+    private BatchRecorder recorder;
+    private MicroBatcher microBatcher;
+
+    @BeforeMethod
+    public void b4Method() {
+        recorder = new BatchRecorder();
+    }
+
+    @AfterMethod
+    public void afterMethod() {
+        if (microBatcher != null) {
+            microBatcher.shutdown();
+            microBatcher = null;
+        }
+    }
+
+    @Test
+    public void testSizeFlush() {
+        microBatcher = new MicroBatcher(3, LONG_LINGER_MILLIS, DIRECT_EXECUTOR);
+        List<RecordingCallback<Integer>> callbacks = add(1, 2);
+        Assert.assertTrue(recorder.getBatches().isEmpty());
+
+        callbacks.addAll(add(3, 4));
+
+        // the batch is executed by the thread that filled it, in order of submission
+        Assert.assertEquals(recorder.getBatches(), Collections.singletonList(Arrays.asList(1, 2, 3)));
+        for (int index = 0; index < 3; ++index) {
+            Assert.assertTrue(callbacks.get(index).isNotified());
+            Assert.assertEquals(callbacks.get(index).getResult(), Integer.valueOf((index + 1) * 10));
+        }
+        Assert.assertFalse(callbacks.get(3).isNotified());
+    }
+
+    @Test
+    public void testLingerFlush() throws InterruptedException {
+        final long lingerMillis = 100L;
+        microBatcher = new MicroBatcher(10, lingerMillis, DIRECT_EXECUTOR);
+
+        long start = System.currentTimeMillis();
+        List<RecordingCallback<Integer>> callbacks = add(1, 2);
+        Assert.assertTrue(callbacks.get(1).awaitNotified(TIMEOUT_MILLIS));
+
+        Assert.assertTrue(System.currentTimeMillis() - start >= lingerMillis - 10L);
+        Assert.assertEquals(recorder.getBatches(), Collections.singletonList(Arrays.asList(1, 2)));
+        Assert.assertEquals(callbacks.get(0).getResult(), Integer.valueOf(10));
+        Assert.assertEquals(callbacks.get(1).getResult(), Integer.valueOf(20));
+
+        // the next command starts a new batch, with its own linger time
+        RecordingCallback<Integer> next = add(3).get(0);
+        Assert.assertTrue(next.awaitNotified(TIMEOUT_MILLIS));
+        Assert.assertEquals(recorder.getBatches().get(1), Collections.singletonList(3));
+    }
+
+    @Test
+    public void testBatchesAreByCommandClass() {
+        microBatcher = new MicroBatcher(2, LONG_LINGER_MILLIS, DIRECT_EXECUTOR);
+        RecordingCallback<Integer> other = new RecordingCallback<>();
+
+        add(1);
+        microBatcher.add(new OtherBatchableCommand(2, recorder), new RecordingTask<>(other));
+        Assert.assertTrue(recorder.getBatches().isEmpty());
+
+        add(3);
+        Assert.assertEquals(recorder.getBatches(), Collections.singletonList(Arrays.asList(1, 3)));
+        Assert.assertFalse(other.isNotified());
+    }
+
+    @Test
+    public void testFailureFanOut() {
+        microBatcher = new MicroBatcher(3, LONG_LINGER_MILLIS, DIRECT_EXECUTOR);
+        Exception failure = new IllegalStateException("downstream failed");
+        recorder.failure = failure;
+
+        List<RecordingCallback<Integer>> callbacks = add(1, 2, 3);
+
+        for (RecordingCallback<Integer> callback : callbacks) {
+            Assert.assertTrue(callback.isNotified());
+            Assert.assertSame(callback.getFailure(), failure);
+        }
+    }
+
+    @Test
+    public void testWrongResultCountIsAFailure() {
+        microBatcher = new MicroBatcher(2, LONG_LINGER_MILLIS, DIRECT_EXECUTOR);
+        recorder.dropLastResult = true;
+
+        List<RecordingCallback<Integer>> callbacks = add(1, 2);
+
+        for (RecordingCallback<Integer> callback : callbacks) {
+            Assert.assertTrue(callback.getFailure() instanceof IllegalStateException);
+        }
+    }
+
+    @Test
+    public void testRejectedBatchIsAFailure() {
+        microBatcher = new MicroBatcher(2, LONG_LINGER_MILLIS, new Executor() {
+            @Override
+            public void execute(final Runnable command) {
+                throw new RejectedExecutionException("rejecting");
+            }
+        });
+
+        List<RecordingCallback<Integer>> callbacks = add(1, 2);
+
+        Assert.assertTrue(recorder.getBatches().isEmpty());
+        for (RecordingCallback<Integer> callback : callbacks) {
+            Assert.assertTrue(callback.getFailure() instanceof RejectedExecutionException);
+        }
+    }
+
+    /**
+     * A task that is done (i.e. cancelled) while its command is pending is dropped from the batch.
+     */
+    @Test
+    public void testDoneTasksAreDropped() {
+        microBatcher = new MicroBatcher(3, LONG_LINGER_MILLIS, DIRECT_EXECUTOR);
+        RecordingCallback<Integer> cancelled = new RecordingCallback<>();
+        RecordingTask<Integer> cancelledTask = new RecordingTask<>(cancelled);
+        microBatcher.add(new RecordedBatchableCommand(1, recorder), cancelledTask);
+        cancelledTask.done = true;
+
+        List<RecordingCallback<Integer>> callbacks = add(2, 3);
+
+        Assert.assertEquals(recorder.getBatches(), Collections.singletonList(Arrays.asList(2, 3)));
+        Assert.assertFalse(cancelled.isNotified());
+        Assert.assertEquals(callbacks.get(0).getResult(), Integer.valueOf(20));
+        Assert.assertEquals(callbacks.get(1).getResult(), Integer.valueOf(30));
+
+        // a batch whose tasks are all done is not executed
+        cancelledTask = new RecordingTask<>(new RecordingCallback<Integer>());
+        cancelledTask.done = true;
+        microBatcher.add(new OtherBatchableCommand(4, recorder), cancelledTask);
+        microBatcher.shutdown();
+        microBatcher = null;
+        Assert.assertEquals(recorder.getBatches().size(), 1);
+    }
+
+    /**
+     * A batched Command that is cancelled while its batch is pending is not executed by the
+     * CommandProcessor, and its callback hears of the cancellation.
+     */
+    @Test
+    public void testCancelledPendingCommandIsNotExecuted() throws InterruptedException {
+        CommandProcessorDefaultImpl commandProcessor = CommandProcessorDefaultImpl.createBatching(3, LONG_LINGER_MILLIS);
+        try {
+            RecordingCallback<Integer> cancelled = new RecordingCallback<>();
+            CommandHandle<Integer> handle = commandProcessor.submitAsynchronously(
+                    new AsynchronousBatchableCommand(1, recorder), cancelled);
+            Assert.assertTrue(handle.cancel(false));
+            Assert.assertTrue(cancelled.getFailure() instanceof CancellationException);
+
+            // the cancelled Command still counts toward the size of its pending batch
+            RecordingCallback<Integer> second = new RecordingCallback<>();
+            RecordingCallback<Integer> third = new RecordingCallback<>();
+            commandProcessor.doAsynchronously(new AsynchronousBatchableCommand(2, recorder), second);
+            commandProcessor.doAsynchronously(new AsynchronousBatchableCommand(3, recorder), third);
+
+            Assert.assertTrue(third.awaitNotified(TIMEOUT_MILLIS));
+            Assert.assertEquals(recorder.getBatches(), Collections.singletonList(Arrays.asList(2, 3)));
+            Assert.assertEquals(second.getResult(), Integer.valueOf(20));
+            Assert.assertEquals(third.getResult(), Integer.valueOf(30));
+        } finally {
+            commandProcessor.shutdown();
+        }
+    }
+
+    @Test
+    public void testShutdownFlushes() {
+        microBatcher = new MicroBatcher(10, LONG_LINGER_MILLIS, DIRECT_EXECUTOR);
+        List<RecordingCallback<Integer>> callbacks = add(1, 2);
+
+        microBatcher.shutdown();
+        microBatcher = null;
+
+        Assert.assertEquals(recorder.getBatches(), Collections.singletonList(Arrays.asList(1, 2)));
+        Assert.assertEquals(callbacks.get(1).getResult(), Integer.valueOf(20));
+    }
+
+    private List<RecordingCallback<Integer>> add(final int... values) {
+        List<RecordingCallback<Integer>> callbacks = new ArrayList<>();
+        for (int value : values) {
+            RecordingCallback<Integer> callback = new RecordingCallback<>();
+            callbacks.add(callback);
+            microBatcher.add(new RecordedBatchableCommand(value, recorder), new RecordingTask<>(callback));
+        }
+        return callbacks;
+    }
+
+    /**
+     * A task that reports to a callback, and that is done only when the test says so.
+     */
+    private static class RecordingTask<R>
+    implements UnadmittedTask<R> {
+        private final RecordingCallback<R> callback;
+        private volatile boolean done;
+
+        private RecordingTask(final RecordingCallback<R> callback) {
+            this.callback = callback;
+        }
+
+        @Override
+        public boolean start() {
+            return !done;
+        }
+
+        @Override
+        public void succeeded(final R result) {
+            callback.success(result);
+        }
+
+        @Override
+        public void failed(final Throwable t) {
+            callback.failure(t);
+        }
+    }
+
+    // ==========================================================================================
+    // BatchableCommands that record their batches, the result of a command is ten times its value
+    // ==========================================================================================
+    private static class BatchRecorder {
+        private final List<List<Integer>> batches = Collections.synchronizedList(new ArrayList<List<Integer>>());
+        private volatile Exception failure;
+        private volatile boolean dropLastResult;
+
+        private List<List<Integer>> getBatches() {
+            synchronized (batches) {
+                return new ArrayList<>(batches);
+            }
+        }
+    }
+
+    private static class RecordedBatchableCommand
+    implements BatchableCommand<Integer> {
+        private final int value;
+        private final BatchRecorder recorder;
+
+        private RecordedBatchableCommand(final int value, final BatchRecorder recorder) {
+            this.value = value;
+            this.recorder = recorder;
+        }
+
+        @Override
+        public Integer call() {
+            return value * 10;
+        }
+
+        @Override
+        public List<Integer> callBatch(final List<? extends BatchableCommand<Integer>> batch) throws Exception {
+            List<Integer> values = new ArrayList<>();
+            List<Integer> results = new ArrayList<>();
+            for (BatchableCommand<Integer> command : batch) {
+                values.add(((RecordedBatchableCommand) command).value);
+                results.add(command.call());
+            }
+            recorder.batches.add(values);
+            if (recorder.failure != null) {
+                throw recorder.failure;
+            }
+            if (recorder.dropLastResult) {
+                results.remove(results.size() - 1);
+            }
+            return results;
+        }
+    }
+
+    private static class OtherBatchableCommand
+    extends RecordedBatchableCommand {
+        private OtherBatchableCommand(final int value, final BatchRecorder recorder) {
+            super(value, recorder);
+        }
+    }
+
+    @AsynchronouslyExecutableCommand
+    public static class AsynchronousBatchableCommand
+    extends RecordedBatchableCommand {
+        private AsynchronousBatchableCommand(final int value, final BatchRecorder recorder) {
+            super(value, recorder);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package org.nanocontext.semanticserver.semanticserver.commandprocessor;
+
+import org.testng.Assert;
+import org.testng.SkipException;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tests that the concurrency limit holds on virtual threads and on the platform thread fallback,
+ * and that a task is not run until it holds a permit.
+ */
+public class VirtualThreadExecutionStrategyTest {
+    private static final int MAXIMUM_CONCURRENCY = 3;
+    private static final int COMMANDS = 20;
+
+    @Test
+    public void testConcurrencyLimitOnVirtualThreads() throws Exception {
+        if (!VirtualThreads.isAvailable()) {
+            throw new SkipException("Virtual threads are not supported by this JVM");
+        }
+        VirtualThreadExecutionStrategy strategy = new VirtualThreadExecutionStrategy(MAXIMUM_CONCURRENCY, true);
+        try {
+            List<Thread> threads = assertConcurrencyLimit(strategy);
+            Method isVirtual = Thread.class.getMethod("isVirtual");
+            for (Thread thread : threads) {
+                Assert.assertEquals(isVirtual.invoke(thread), Boolean.TRUE);
+            }
+        } finally {
+            strategy.shutdown();
+        }
+    }
+
+    @Test
+    public void testConcurrencyLimitOnPlatformThreads() throws Exception {
+        VirtualThreadExecutionStrategy strategy = new VirtualThreadExecutionStrategy(MAXIMUM_CONCURRENCY, false);
+        try {
+            List<Thread> threads = assertConcurrencyLimit(strategy);
+            for (Thread thread : threads) {
+                Assert.assertTrue(thread.getName().startsWith("AsynchCommandExecution-"), thread.getName());
+            }
+        } finally {
+            strategy.shutdown();
+        }
+    }
+
+    /**
+     * A task that waits for a permit has not started, so the execution time measured by the
+     * CommandProcessor, from when the task runs, does not include the wait.
+     */
+    @Test
+    public void testTaskRunsWhenPermitted() throws Exception {
+        VirtualThreadExecutionStrategy strategy = new VirtualThreadExecutionStrategy(1, false);
+        try {
+            final CountDownLatch gate = new CountDownLatch(1);
+            final CountDownLatch started = new CountDownLatch(1);
+            Callable<Object> blocking = new Callable<Object>() {
+                @Override
+                public Object call() throws InterruptedException {
+                    started.countDown();
+                    gate.await();
+                    return null;
+                }
+            };
+            FutureTask<Object> blockingTask = new FutureTask<>(blocking);
+            strategy.execute(blocking, blockingTask);
+            Assert.assertTrue(started.await(5L, TimeUnit.SECONDS));
+
+            final AtomicLong runNanos = new AtomicLong();
+            Callable<Object> waiting = new Callable<Object>() {
+                @Override
+                public Object call() {
+                    return null;
+                }
+            };
+            FutureTask<Object> waitingTask = new FutureTask<Object>(waiting) {
+                @Override
+                public void run() {
+                    runNanos.set(System.nanoTime());
+                    super.run();
+                }
+            };
+            strategy.execute(waiting, waitingTask);
+            Thread.sleep(100L);
+            Assert.assertEquals(runNanos.get(), 0L);
+
+            long openNanos = System.nanoTime();
+            gate.countDown();
+            waitingTask.get(5L, TimeUnit.SECONDS);
+            Assert.assertTrue(runNanos.get() - openNanos >= 0L);
+        } finally {
+            strategy.shutdown();
+        }
+    }
+
+    /**
+     * A task cancelled while it waits for a permit is not run, and does not keep the permit.
+     */
+    @Test
+    public void testCancelledWaitingTaskIsNotRun() throws Exception {
+        VirtualThreadExecutionStrategy strategy = new VirtualThreadExecutionStrategy(1, false);
+        try {
+            final CountDownLatch gate = new CountDownLatch(1);
+            Callable<Object> blocking = new Callable<Object>() {
+                @Override
+                public Object call() throws InterruptedException {
+                    gate.await();
+                    return null;
+                }
+            };
+            FutureTask<Object> blockingTask = new FutureTask<>(blocking);
+            strategy.execute(blocking, blockingTask);
+
+            final AtomicInteger calls = new AtomicInteger();
+            Callable<Object> cancelled = new Callable<Object>() {
+                @Override
+                public Object call() {
+                    calls.incrementAndGet();
+                    return null;
+                }
+            };
+            FutureTask<Object> cancelledTask = new FutureTask<>(cancelled);
+            strategy.execute(cancelled, cancelledTask);
+            Assert.assertTrue(cancelledTask.cancel(true));
+
+            gate.countDown();
+            blockingTask.get(5L, TimeUnit.SECONDS);
+            awaitIdle(strategy);
+            Assert.assertEquals(calls.get(), 0);
+        } finally {
+            strategy.shutdown();
+        }
+    }
+
+    /**
+     * Execute more Commands than the concurrency limit, all at once, and assert that no more than
+     * the limit executed at the same time and that the limit was reached.
+     *
+     * @return the threads that executed the Commands
+     */
+    private static List<Thread> assertConcurrencyLimit(final VirtualThreadExecutionStrategy strategy) throws Exception {
+        final AtomicInteger executing = new AtomicInteger();
+        final AtomicInteger maximumExecuting = new AtomicInteger();
+        final CountDownLatch gate = new CountDownLatch(1);
+        final List<Thread> threads = new ArrayList<>();
+        List<FutureTask<Object>> tasks = new ArrayList<>();
+
+        for (int index = 0; index < COMMANDS; ++index) {
+            Callable<Object> command = new Callable<Object>() {
+                @Override
+                public Object call() throws InterruptedException {
+                    int now = executing.incrementAndGet();
+                    synchronized (threads) {
+                        threads.add(Thread.currentThread());
+                        maximumExecuting.set(Math.max(maximumExecuting.get(), now));
+                    }
+                    gate.await();
+                    Thread.sleep(5L);
+                    executing.decrementAndGet();
+                    return null;
+                }
+            };
+            FutureTask<Object> task = new FutureTask<>(command);
+            tasks.add(task);
+            strategy.execute(command, task);
+        }
+
+        // the limit is reached and held while the gate is closed
+        long deadline = System.currentTimeMillis() + 5000L;
+        while (executing.get() < MAXIMUM_CONCURRENCY && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5L);
+        }
+        Thread.sleep(50L);
+        Assert.assertEquals(executing.get(), MAXIMUM_CONCURRENCY);
+        Assert.assertEquals(strategy.getSaturation(), 1.0, 0.001);
+
+        gate.countDown();
+        for (FutureTask<Object> task : tasks) {
+            task.get(5L, TimeUnit.SECONDS);
+        }
+        Assert.assertEquals(maximumExecuting.get(), MAXIMUM_CONCURRENCY);
+        Assert.assertEquals(threads.size(), COMMANDS);
+        awaitIdle(strategy);
+        return threads;
+    }
+
+    /**
+     * Wait for every permit to be released, a permit is released after its task has completed.
+     */
+    private static void awaitIdle(final VirtualThreadExecutionStrategy strategy) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000L;
+        while (strategy.getSaturation() > 0.0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5L);
+        }
+        Assert.assertEquals(strategy.getSaturation(), 0.0, 0.001);
+    }
+}
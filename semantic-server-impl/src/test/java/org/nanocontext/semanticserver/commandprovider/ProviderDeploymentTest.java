@@ -0,0 +1,313 @@
+package org.nanocontext.semanticserver.semanticserver.commandprovider;
+
+import org.nanocontext.semanticserver.semanticserver.applicationbridge.ProductTypeRoutingToken;
+import org.nanocontext.semanticserver.semanticserver.commandprocessor.CommandJournal;
+import org.nanocontext.semanticserver.semanticserver.commandprocessor.CommandProcessorDefaultImpl;
+import org.nanocontext.semanticserver.semanticserver.commandprocessor.exceptions.CommandJournalException;
+import org.nanocontext.semanticserver.semanticserver.commandprovider.exceptions.AmbiguousCommandCapabilitiesException;
+import org.nanocontext.semanticserver.semanticserver.commandprovider.exceptions.ProviderDeploymentException;
+import org.nanocontext.semanticserver.semanticserver.semantics.ApplicationSemanticsImpl;
+import org.nanocontext.semanticserver.test.TestApplication;
+import org.nanocontext.semanticserver.test.commandprovider.ServicesClassLoader;
+import org.nanocontext.semanticserverapi.core.commandprocessor.CommandHandle;
+import org.nanocontext.semanticserverapi.core.commandprocessor.RoutingToken;
+import org.nanocontext.semanticserverapi.core.commandprovider.AbstractCommandProvider;
+import org.nanocontext.semanticserverapi.core.commandprovider.CommandInstantiationToken;
+import org.nanocontext.semanticserverapi.core.commandprovider.CommandProvider;
+import org.nanocontext.semanticserverapi.core.semantics.ApplicationSemantics;
+import org.nanocontext.semanticserverapi.core.semantics.CommandClassSemantics;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+/**
+ * Deploys, replaces and undeploys jars of CommandProviders that are compiled, through the
+ * javax.tools compiler, when the test runs, so that their classes are not on the class path.
+ */
+public class ProviderDeploymentTest {
+    private static final String PROVIDER_CLASS_NAME = "com.acme.deployed.DeployedCommandProvider";
+    private static final RoutingToken USACON = new ProductTypeRoutingToken("USACON");
+
+    private Path workDirectory;
+    private ApplicationSemantics applicationSemantics;
+    private CommandClassSemantics semantics;
+    private RootCommandProvider rootCommandProvider;
+
+    @BeforeMethod
+    public void b4Method() throws Exception {
+        workDirectory = Files.createTempDirectory("ProviderDeploymentTest");
+        applicationSemantics = ApplicationSemanticsImpl.create(TestApplication.MODEL_PACKAGE);
+        semantics = applicationSemantics.createCommandClassSemantic("PostAuthorizationCommand");
+        // no CommandProvider other than those deployed
+        rootCommandProvider = new RootCommandProvider(new ServicesClassLoader(getClass().getClassLoader()));
+    }
+
+    @AfterMethod
+    public void afterMethod() {
+        for (ProviderDeployment deployment : rootCommandProvider.getDeployments()) {
+            rootCommandProvider.undeploy(deployment.getName());
+        }
+        delete(workDirectory.toFile());
+    }
+
+    @Test
+    public void testDeployJar() throws Exception {
+        ProviderDeployment deployment = deploy("acme", "v1", false);
+
+        Assert.assertEquals(deployment.getCommandProviders().size(), 1);
+        CommandProvider deployedProvider = deployment.getCommandProviders().get(0);
+        Assert.assertEquals(deployedProvider.getClass().getName(), PROVIDER_CLASS_NAME);
+        Assert.assertNotSame(deployedProvider.getClass().getClassLoader(), getClass().getClassLoader());
+
+        CommandInstantiationToken token = rootCommandProvider.findCommand(USACON, semantics, null, null);
+        Assert.assertSame(token.getCommandProvider(), deployedProvider);
+        Callable<?> command = rootCommandProvider.createCommand(token, new Object[0]);
+        Assert.assertEquals(command.call(), "v1");
+
+        // in flight until its completion is reported
+        Assert.assertEquals(deployment.getInFlightCommandCount(), 1);
+        rootCommandProvider.commandCompleted(command);
+        Assert.assertEquals(deployment.getInFlightCommandCount(), 0);
+    }
+
+    @Test
+    public void testReplaceRetiresPreviousDeployment() throws Exception {
+        ProviderDeployment first = deploy("acme", "v1", false);
+        CommandInstantiationToken firstToken = rootCommandProvider.findCommand(USACON, semantics, null, null);
+
+        ProviderDeployment second = deploy("acme", "v2", false);
+
+        Assert.assertTrue(first.isRetired());
+        Assert.assertTrue(first.awaitReleased(1000L));
+        Assert.assertFalse(second.isRetired());
+        Assert.assertEquals(new ArrayList<>(rootCommandProvider.getDeployments()), Arrays.asList(second));
+
+        // the token of the retired deployment is refused
+        Assert.assertNull(rootCommandProvider.createCommand(firstToken, new Object[0]));
+
+        CommandInstantiationToken secondToken = rootCommandProvider.findCommand(USACON, semantics, null, null);
+        Assert.assertEquals(rootCommandProvider.createCommand(secondToken, new Object[0]).call(), "v2");
+    }
+
+    @Test
+    public void testUndeployDrainsInFlightCommands() throws Exception {
+        CommandProcessorDefaultImpl commandProcessor = CommandProcessorDefaultImpl.create();
+        new TestApplication(rootCommandProvider, commandProcessor);
+        try {
+            ProviderDeployment deployment = deploy("acme", "v1", false);
+            CommandInstantiationToken token = rootCommandProvider.findCommand(USACON, semantics, null, null);
+            CountDownLatch gate = new CountDownLatch(1);
+            Callable<Object> command = (Callable<Object>) rootCommandProvider.createCommand(token, new Object[]{gate});
+            CommandHandle<Object> handle = commandProcessor.submitAsynchronously(command, null);
+
+            Assert.assertTrue(rootCommandProvider.undeploy("acme"));
+            Assert.assertTrue(deployment.isRetired());
+            Assert.assertFalse(deployment.awaitReleased(200L));
+
+            gate.countDown();
+            Assert.assertEquals(handle.get(1000L, TimeUnit.MILLISECONDS), "v1");
+            Assert.assertTrue(deployment.awaitReleased(1000L));
+            Assert.assertEquals(deployment.getInFlightCommandCount(), 0);
+        } finally {
+            commandProcessor.shutdown();
+        }
+    }
+
+    /**
+     * A Command that cannot be journaled is never executed, it is no longer in flight.
+     */
+    @Test
+    public void testUnjournaledCommandCompletes() throws Exception {
+        CommandProcessorDefaultImpl commandProcessor = CommandProcessorDefaultImpl.create();
+        new TestApplication(rootCommandProvider, commandProcessor);
+        CommandJournal journal = CommandJournal.open(workDirectory.resolve("journal").toString());
+        journal.close();
+        commandProcessor.setCommandJournal(journal);
+        try {
+            ProviderDeployment deployment = deploy("acme", "v1", false);
+            CommandInstantiationToken token = rootCommandProvider.findCommand(USACON, semantics, null, null);
+            Callable<Object> command = (Callable<Object>) rootCommandProvider.createCommand(token, new Object[0]);
+            Assert.assertEquals(deployment.getInFlightCommandCount(), 1);
+
+            try {
+                commandProcessor.submitAsynchronously(command, null);
+                Assert.fail("a closed journal must refuse the command");
+            } catch (CommandJournalException cjX) {
+                // expected
+            }
+            Assert.assertEquals(deployment.getInFlightCommandCount(), 0);
+        } finally {
+            commandProcessor.shutdown();
+        }
+    }
+
+    @Test
+    public void testDrainTimeoutReleasesDeployment() throws Exception {
+        rootCommandProvider.setDrainTimeoutMillis(100L);
+        ProviderDeployment deployment = deploy("acme", "v1", false);
+        CommandInstantiationToken token = rootCommandProvider.findCommand(USACON, semantics, null, null);
+        // created and never executed
+        rootCommandProvider.createCommand(token, new Object[0]);
+
+        rootCommandProvider.undeploy("acme");
+        Assert.assertTrue(deployment.awaitReleased(2000L));
+        Assert.assertEquals(deployment.getInFlightCommandCount(), 1);
+    }
+
+    @Test
+    public void testAmbiguousDeploymentIsRejected() throws Exception {
+        ProviderDeployment first = deploy("first", "v1", true);
+
+        try {
+            deploy("second", "v2", true);
+            Assert.fail("a deployment of overlapping declarations must be rejected");
+        } catch (ProviderDeploymentException pdX) {
+            Assert.assertTrue(pdX.getCause() instanceof AmbiguousCommandCapabilitiesException);
+        }
+
+        // the deployments in service are unchanged
+        Assert.assertEquals(new ArrayList<>(rootCommandProvider.getDeployments()), Arrays.asList(first));
+        CommandInstantiationToken token = rootCommandProvider.findCommand(USACON, semantics, null, null);
+        Assert.assertEquals(rootCommandProvider.createCommand(token, new Object[0]).call(), "v1");
+    }
+
+    // ==========================================================================================
+    // The deployed jars
+    // ==========================================================================================
+    private ProviderDeployment deploy(final String name, final String version, final boolean declaring)
+            throws Exception {
+        URL jar = createJar(name + "-" + version, version, declaring);
+        return rootCommandProvider.deploy(name, new URL[]{jar}, applicationSemantics);
+    }
+
+    /**
+     * Compile a CommandProvider, whose Commands return the version, and jar it with its services file.
+     * The Command waits for a CountDownLatch if it is given one as its parameter.
+     *
+     * @param declaring true if the CommandProvider declares its capability, for any RoutingToken
+     */
+    private URL createJar(final String jarName, final String version, final boolean declaring)
+            throws IOException, URISyntaxException {
+        Path sourceFile = workDirectory.resolve(jarName + "/src/com/acme/deployed/DeployedCommandProvider.java");
+        Files.createDirectories(sourceFile.getParent());
+        Files.write(sourceFile, createSource(version, declaring).getBytes(StandardCharsets.UTF_8));
+        Path classes = Files.createDirectories(workDirectory.resolve(jarName + "/classes"));
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        Assert.assertNotNull(compiler, "the tests must run on a JDK");
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8)) {
+            boolean compiled = compiler.getTask(null, fileManager, diagnostics,
+                    Arrays.asList("-classpath", getClassPath(), "-d", classes.toString()),
+                    null, fileManager.getJavaFileObjects(sourceFile.toFile())).call();
+            Assert.assertTrue(compiled, diagnostics.getDiagnostics().toString());
+        }
+
+        Path jar = workDirectory.resolve(jarName + ".jar");
+        try (JarOutputStream jarOut = new JarOutputStream(Files.newOutputStream(jar))) {
+            jarOut.putNextEntry(new JarEntry("META-INF/services/" + CommandProvider.class.getName()));
+            jarOut.write((PROVIDER_CLASS_NAME + "\n").getBytes(StandardCharsets.UTF_8));
+            jarOut.closeEntry();
+            File[] classFiles = classes.resolve("com/acme/deployed").toFile().listFiles();
+            Assert.assertNotNull(classFiles);
+            for (File classFile : classFiles) {
+                jarOut.putNextEntry(new JarEntry("com/acme/deployed/" + classFile.getName()));
+                Files.copy(classFile.toPath(), jarOut);
+                jarOut.closeEntry();
+            }
+        }
+        return jar.toUri().toURL();
+    }
+
+    private static String createSource(final String version, final boolean declaring) {
+        return "package com.acme.deployed;\n"
+                + "import org.nanocontext.semanticserverapi.core.commandprocessor.*;\n"
+                + "import org.nanocontext.semanticserverapi.core.commandprovider.*;\n"
+                + "import org.nanocontext.semanticserverapi.core.semantics.*;\n"
+                + "import java.util.*;\n"
+                + "import java.util.concurrent.*;\n"
+                + "public class DeployedCommandProvider extends AbstractCommandProvider"
+                + (declaring ? " implements CapabilityDeclaringCommandProvider" : "") + " {\n"
+                + "    public String getPublisher() { return \"deployed-" + version + "\"; }\n"
+                + (declaring
+                    ? "    public Collection<CommandCapability> getCapabilities(ApplicationSemantics applicationSemantics) {\n"
+                    + "        try {\n"
+                    + "            return Collections.singletonList(new CommandCapability(\n"
+                    + "                    applicationSemantics.createCommandClassSemantic(\"PostAuthorizationCommand\")));\n"
+                    + "        } catch (Exception x) {\n"
+                    + "            throw new IllegalStateException(x);\n"
+                    + "        }\n"
+                    + "    }\n"
+                    : "")
+                + "    public CommandInstantiationToken findCommand(RoutingToken routingToken, CommandClassSemantics semantics,\n"
+                + "            Class<?>[] parameterTypes, Class<?> resultType) {\n"
+                + "        return new CommandInstantiationToken() {\n"
+                + "            public CommandProvider getCommandProvider() { return DeployedCommandProvider.this; }\n"
+                + "        };\n"
+                + "    }\n"
+                + "    public Callable<?> createCommand(CommandInstantiationToken token, final Object[] parameters) {\n"
+                + "        return new DeployedCommand(parameters);\n"
+                + "    }\n"
+                + "    @AsynchronouslyExecutableCommand\n"
+                + "    public static class DeployedCommand implements Callable<String>, java.io.Serializable {\n"
+                + "        private final Object[] parameters;\n"
+                + "        private DeployedCommand(Object[] parameters) { this.parameters = parameters; }\n"
+                + "        public String call() throws Exception {\n"
+                + "            if (parameters.length > 0 && parameters[0] instanceof CountDownLatch) {\n"
+                + "                ((CountDownLatch) parameters[0]).await();\n"
+                + "            }\n"
+                + "            return \"" + version + "\";\n"
+                + "        }\n"
+                + "    }\n"
+                + "}\n";
+    }
+
+    /**
+     * The semantic server API classes and the test class path.
+     */
+    private static String getClassPath() throws URISyntaxException {
+        List<String> entries = new ArrayList<>();
+        entries.add(new File(AbstractCommandProvider.class.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath());
+        entries.add(System.getProperty("java.class.path"));
+        StringBuilder sb = new StringBuilder();
+        for (String entry : entries) {
+            if (sb.length() > 0) {
+                sb.append(File.pathSeparatorChar);
+            }
+            sb.append(entry);
+        }
+        return sb.toString();
+    }
+
+    private static void delete(final File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,317 @@
+package org.nanocontext.semanticserver.semanticserver.commandprovider;
+
+import org.nanocontext.semanticserver.semanticserver.applicationbridge.ProductTypeRoutingToken;
+import org.nanocontext.semanticserver.semanticserver.commandprovider.exceptions.AmbiguousCommandCapabilitiesException;
+import org.nanocontext.semanticserver.semanticserver.commandprovider.exceptions.CommandLookupIncompleteException;
+import org.nanocontext.semanticserver.semanticserver.semantics.ApplicationSemanticsImpl;
+import org.nanocontext.semanticserver.test.TestApplication;
+import org.nanocontext.semanticserver.test.commandprovider.ServicesClassLoader;
+import org.nanocontext.semanticserverapi.core.commandprocessor.RoutingToken;
+import org.nanocontext.semanticserverapi.core.commandprovider.AbstractCommandProvider;
+import org.nanocontext.semanticserverapi.core.commandprovider.CapabilityDeclaringCommandProvider;
+import org.nanocontext.semanticserverapi.core.commandprovider.CommandCapability;
+import org.nanocontext.semanticserverapi.core.commandprovider.CommandInstantiationToken;
+import org.nanocontext.semanticserverapi.core.commandprovider.CommandProvider;
+import org.nanocontext.semanticserverapi.core.semantics.ApplicationSemantics;
+import org.nanocontext.semanticserverapi.core.semantics.CommandClassSemantics;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests that the RootCommandProvider asks a CapabilityDeclaringCommandProvider only for the
+ * Commands that it declared, asks every other CommandProvider for every Command, and rejects
+ * overlapping declarations. The CommandProviders are discovered through a ServicesClassLoader.
+ */
+public class RootCommandProviderRoutingTest {
+    private static final RoutingToken USACON = new ProductTypeRoutingToken("USACON");
+    private static final RoutingToken OTHER = new ProductTypeRoutingToken("OTHER");
+
+    private static final AtomicInteger declaringFinds = new AtomicInteger();
+    private static final AtomicInteger pollingFinds = new AtomicInteger();
+    private static final AtomicInteger failingFinds = new AtomicInteger();
+    private static final AtomicInteger overlappingFinds = new AtomicInteger();
+    private static final AtomicInteger repeatingFinds = new AtomicInteger();
+    private static final AtomicInteger slowPollingFinds = new AtomicInteger();
+
+    /** static as the providers are instantiated by the ServiceLoader */
+    private static volatile CommandClassSemantics getSemantics;
+    private static volatile CommandClassSemantics postSemantics;
+
+    @BeforeMethod
+    public void b4Method() throws Exception {
+        ApplicationSemantics applicationSemantics = ApplicationSemanticsImpl.create(TestApplication.MODEL_PACKAGE);
+        getSemantics = applicationSemantics.createCommandClassSemantic("GetAuthorizationByAuthorizationIdCommand");
+        postSemantics = applicationSemantics.createCommandClassSemantic("PostAuthorizationCommand");
+
+        declaringFinds.set(0);
+        pollingFinds.set(0);
+        failingFinds.set(0);
+        overlappingFinds.set(0);
+        repeatingFinds.set(0);
+        slowPollingFinds.set(0);
+    }
+
+    @Test
+    public void testDeclaringProviderIsAskedOnlyForItsCommands() throws Exception {
+        RootCommandProvider root = createRootCommandProvider(DeclaringProvider.class, PollingProvider.class);
+
+        CommandInstantiationToken token = root.findCommand(USACON, getSemantics, null, null);
+        Assert.assertNotNull(token);
+        Assert.assertTrue(token.getCommandProvider() instanceof DeclaringProvider);
+        Assert.assertEquals(declaringFinds.get(), 1);
+        Assert.assertEquals(pollingFinds.get(), 1);
+
+        token = root.findCommand(USACON, postSemantics, null, null);
+        Assert.assertNotNull(token);
+        Assert.assertTrue(token.getCommandProvider() instanceof PollingProvider);
+        Assert.assertEquals(declaringFinds.get(), 1);
+        Assert.assertEquals(pollingFinds.get(), 2);
+    }
+
+    @Test
+    public void testDeclaringProviderIsNotAskedForUndeclaredRoutingTokens() throws Exception {
+        RootCommandProvider root = createRootCommandProvider(DeclaringProvider.class, PollingProvider.class);
+
+        Assert.assertNull(root.findCommand(OTHER, getSemantics, null, null));
+        Assert.assertEquals(declaringFinds.get(), 0);
+        Assert.assertEquals(pollingFinds.get(), 1);
+    }
+
+    @Test
+    public void testProviderWithoutCapabilitiesIsAskedForEveryCommand() throws Exception {
+        RootCommandProvider root = createRootCommandProvider(FailingDeclaringProvider.class, DeclaringProvider.class);
+
+        Assert.assertNull(root.findCommand(USACON, postSemantics, null, null));
+        Assert.assertEquals(failingFinds.get(), 1);
+        Assert.assertEquals(declaringFinds.get(), 0);
+
+        CommandInstantiationToken token = root.findCommand(USACON, getSemantics, null, null);
+        Assert.assertTrue(token.getCommandProvider() instanceof DeclaringProvider);
+        Assert.assertEquals(failingFinds.get(), 2);
+        Assert.assertEquals(declaringFinds.get(), 1);
+    }
+
+    @Test
+    public void testAmbiguousCapabilitiesAreRejected() throws Exception {
+        RootCommandProvider root = createRootCommandProvider(DeclaringProvider.class, OverlappingProvider.class);
+
+        try {
+            root.findCommand(USACON, getSemantics, null, null);
+            Assert.fail("overlapping declarations must be rejected");
+        } catch (AmbiguousCommandCapabilitiesException acX) {
+            Assert.assertEquals(acX.getAmbiguities().size(), 1);
+        }
+        Assert.assertEquals(declaringFinds.get(), 0);
+        Assert.assertEquals(overlappingFinds.get(), 0);
+    }
+
+    @Test
+    public void testAmbiguityDoesNotRejectOtherSemantics() throws Exception {
+        RootCommandProvider root = createRootCommandProvider(DeclaringProvider.class, OverlappingProvider.class, PollingProvider.class);
+
+        CommandInstantiationToken token = root.findCommand(USACON, postSemantics, null, null);
+        Assert.assertNotNull(token);
+        Assert.assertTrue(token.getCommandProvider() instanceof PollingProvider);
+        Assert.assertEquals(declaringFinds.get(), 0);
+        Assert.assertEquals(overlappingFinds.get(), 0);
+    }
+
+    @Test
+    public void testRepeatedDeclarationsOfOneProviderAreNotAmbiguous() throws Exception {
+        RootCommandProvider root = createRootCommandProvider(RepeatingProvider.class);
+
+        CommandInstantiationToken token = root.findCommand(USACON, getSemantics, null, null);
+        Assert.assertNotNull(token);
+        Assert.assertTrue(token.getCommandProvider() instanceof RepeatingProvider);
+        Assert.assertEquals(repeatingFinds.get(), 1);
+
+        token = root.findCommand(OTHER, getSemantics, null, null);
+        Assert.assertNotNull(token);
+        Assert.assertEquals(repeatingFinds.get(), 2);
+    }
+
+    @Test
+    public void testSlowMatchingProviderPreventsResolution() throws Exception {
+        RootCommandProvider root = createRootCommandProvider(PollingProvider.class, SlowPollingProvider.class);
+        root.setParallelProbing(2, 50L);
+
+        try {
+            root.findCommand(USACON, postSemantics, null, null);
+            Assert.fail("the lookup must not resolve to the provider that answered first");
+        } catch (CommandLookupIncompleteException cliX) {
+            Assert.assertEquals(cliX.getUnanswered(), Collections.singletonList("SlowPollingProvider"));
+        } finally {
+            root.setParallelProbing(0, 0L);
+        }
+        Assert.assertEquals(pollingFinds.get(), 1);
+        Assert.assertEquals(slowPollingFinds.get(), 1);
+        Assert.assertEquals(root.getRejectedLookupCount(), 0L);
+    }
+
+    private RootCommandProvider createRootCommandProvider(final Class<?>... providerClasses) throws IOException {
+        return new RootCommandProvider(new ServicesClassLoader(getClass().getClassLoader(), providerClasses));
+    }
+
+    // ==========================================================================================
+    // The test providers, each counts the lookups that it is asked
+    // ==========================================================================================
+    private abstract static class CountingProvider
+    extends AbstractCommandProvider {
+        private final AtomicInteger finds;
+
+        private CountingProvider(final AtomicInteger finds) {
+            this.finds = finds;
+        }
+
+        @Override
+        public String getPublisher() {
+            return getClass().getSimpleName();
+        }
+
+        @Override
+        public CommandInstantiationToken findCommand(
+                final RoutingToken routingToken,
+                final CommandClassSemantics commandClassSemantics,
+                final Class<?>[] parameterTypes,
+                final Class<?> resultType) {
+            this.finds.incrementAndGet();
+            if (!provides(routingToken, commandClassSemantics)) {
+                return null;
+            }
+            return new CommandInstantiationToken() {
+                @Override
+                public CommandProvider getCommandProvider() {
+                    return CountingProvider.this;
+                }
+            };
+        }
+
+        protected abstract boolean provides(RoutingToken routingToken, CommandClassSemantics commandClassSemantics);
+
+        @Override
+        public Callable<?> createCommand(final CommandInstantiationToken commandInstantiationToken, final Object[] parameters) {
+            return null;
+        }
+    }
+
+    /** Provides, and declares, GetAuthorizationByAuthorizationIdCommand for USACON */
+    public static class DeclaringProvider
+    extends CountingProvider
+    implements CapabilityDeclaringCommandProvider {
+        public DeclaringProvider() {
+            super(declaringFinds);
+        }
+
+        @Override
+        public Collection<CommandCapability> getCapabilities(final ApplicationSemantics applicationSemantics) {
+            return Collections.singletonList(new CommandCapability(getSemantics, Collections.singletonList(USACON)));
+        }
+
+        @Override
+        protected boolean provides(final RoutingToken routingToken, final CommandClassSemantics commandClassSemantics) {
+            return USACON.equals(routingToken) && getSemantics.equals(commandClassSemantics);
+        }
+    }
+
+    /** Provides PostAuthorizationCommand, without declaring it */
+    public static class PollingProvider
+    extends CountingProvider {
+        public PollingProvider() {
+            super(pollingFinds);
+        }
+
+        @Override
+        protected boolean provides(final RoutingToken routingToken, final CommandClassSemantics commandClassSemantics) {
+            return postSemantics.equals(commandClassSemantics);
+        }
+    }
+
+    /** Provides PostAuthorizationCommand, without declaring it, after a delay that exceeds the probe timeout */
+    public static class SlowPollingProvider
+    extends CountingProvider {
+        public SlowPollingProvider() {
+            super(slowPollingFinds);
+        }
+
+        @Override
+        protected boolean provides(final RoutingToken routingToken, final CommandClassSemantics commandClassSemantics) {
+            try {
+                Thread.sleep(5000L);
+            } catch (InterruptedException iX) {
+                Thread.currentThread().interrupt();
+            }
+            return postSemantics.equals(commandClassSemantics);
+        }
+    }
+
+    /** Declares capabilities but cannot determine them, provides nothing */
+    public static class FailingDeclaringProvider
+    extends CountingProvider
+    implements CapabilityDeclaringCommandProvider {
+        public FailingDeclaringProvider() {
+            super(failingFinds);
+        }
+
+        @Override
+        public Collection<CommandCapability> getCapabilities(final ApplicationSemantics applicationSemantics) {
+            throw new IllegalStateException("capabilities are not available");
+        }
+
+        @Override
+        protected boolean provides(final RoutingToken routingToken, final CommandClassSemantics commandClassSemantics) {
+            return false;
+        }
+    }
+
+    /** Declares GetAuthorizationByAuthorizationIdCommand for any RoutingToken, overlapping DeclaringProvider */
+    public static class OverlappingProvider
+    extends CountingProvider
+    implements CapabilityDeclaringCommandProvider {
+        public OverlappingProvider() {
+            super(overlappingFinds);
+        }
+
+        @Override
+        public Collection<CommandCapability> getCapabilities(final ApplicationSemantics applicationSemantics) {
+            return Collections.singletonList(new CommandCapability(getSemantics));
+        }
+
+        @Override
+        protected boolean provides(final RoutingToken routingToken, final CommandClassSemantics commandClassSemantics) {
+            return getSemantics.equals(commandClassSemantics);
+        }
+    }
+
+    /**
+     * Declares GetAuthorizationByAuthorizationIdCommand for any RoutingToken, again for USACON and
+     * again for any RoutingToken, none of which overlaps another provider
+     */
+    public static class RepeatingProvider
+    extends CountingProvider
+    implements CapabilityDeclaringCommandProvider {
+        public RepeatingProvider() {
+            super(repeatingFinds);
+        }
+
+        @Override
+        public Collection<CommandCapability> getCapabilities(final ApplicationSemantics applicationSemantics) {
+            return Arrays.asList(
+                    new CommandCapability(getSemantics),
+                    new CommandCapability(getSemantics, Collections.singletonList(USACON)),
+                    new CommandCapability(getSemantics));
+        }
+
+        @Override
+        protected boolean provides(final RoutingToken routingToken, final CommandClassSemantics commandClassSemantics) {
+            return getSemantics.equals(commandClassSemantics);
+        }
+    }
+}
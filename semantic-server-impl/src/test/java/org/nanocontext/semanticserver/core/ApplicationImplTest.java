@@ -251,6 +251,76 @@ public class ApplicationImplTest {
         }
     }
 
+    /**
+     * The trie parser must parse as the regular expression parser does, for logical names
+     * in which no vocabulary words overlap.
+     */
+    public static class TrieLogicalNameParserImplTest {
+        private LogicalNameParser regularExpressionParser;
+        private LogicalNameParser trieParser;
+
+        @BeforeTest
+        public void beforeTest() throws CoreRouterSemanticsException {
+            ApplicationSemantics defaults = org.nanocontext.semanticserver.semanticserver.semantics.ApplicationSemanticsImpl.create("com.paypal.semanticserver.testValidWorkflow.model");
+
+            this.regularExpressionParser = new org.nanocontext.semanticserver.semanticserver.semantics.ApplicationSemanticsImpl(
+                    null,
+                    defaults.getActionVocabulary(), defaults.getSubjectVocabulary(),
+                    defaults.getPrepositionVocabulary(), defaults.getObjectVocabulary(),
+                    org.nanocontext.semanticserver.semanticserver.semantics.ApplicationSemanticsImpl.LogicalNameParserType.REGULAR_EXPRESSION
+            ).getLogicalNameParserImpl();
+            this.trieParser = new org.nanocontext.semanticserver.semanticserver.semantics.ApplicationSemanticsImpl(
+                    null,
+                    defaults.getActionVocabulary(), defaults.getSubjectVocabulary(),
+                    defaults.getPrepositionVocabulary(), defaults.getObjectVocabulary(),
+                    org.nanocontext.semanticserver.semanticserver.semantics.ApplicationSemanticsImpl.LogicalNameParserType.TRIE
+            ).getLogicalNameParserImpl();
+        }
+
+        @DataProvider
+        public Object[][] logicalNames() {
+            return new Object[][] {
+                    new Object[]{"GetAuthorization"},
+                    new Object[]{"readAuthorization"},
+                    new Object[]{"GetAuthorizationList"},
+                    new Object[]{"GetAuthorizationMapByAuthorizationId"},
+                    new Object[]{"GetAuthorizationByAuthorizationId"},
+                    new Object[]{"createAuthorizationWithAuthorizationId"},
+                    new Object[]{"deleteAuthorizationSetAgainstAccount"},
+                    new Object[]{"updateAccountAmongAccounts"},
+            };
+        }
+
+        @Test (dataProvider = "logicalNames")
+        public void testSameParse(final String stimulus) throws CoreRouterSemanticsException {
+            ParsedName expected = regularExpressionParser.parse(stimulus);
+            ParsedName actual = trieParser.parse(stimulus);
+
+            assertEquals(actual.getAction(), expected.getAction());
+            assertEquals(actual.getSubject(), expected.getSubject());
+            assertEquals(actual.getCollectionType(), expected.getCollectionType());
+            assertEquals(actual.getPreposition(), expected.getPreposition());
+            assertEquals(actual.getObject(), expected.getObject());
+        }
+
+        @DataProvider
+        public Object[][] invalidLogicalNames() {
+            return new Object[][] {
+                    new Object[]{""},
+                    new Object[]{"Authorization"},
+                    new Object[]{"Get"},
+                    new Object[]{"GetList"},
+                    new Object[]{"chooseAuthorizationByAuthorizationId"},
+                    new Object[]{"GetAuthorizationListBy"},
+            };
+        }
+
+        @Test (dataProvider = "invalidLogicalNames", expectedExceptions = {CoreRouterSemanticsException.class})
+        public void testInvalidLogicalNames(final String stimulus) throws CoreRouterSemanticsException {
+            trieParser.parse(stimulus);
+        }
+    }
+
     /**
      *
      */
@@ -0,0 +1,144 @@
+package org.nanocontext.semanticserver.core.applicationbridge;
+
+import com.paypal.credit.xactionctx.TransactionContextFactory;
+import org.nanocontext.semanticserver.semanticserver.applicationbridge.ApplicationBridgeFactory;
+import org.nanocontext.semanticserver.semanticserver.applicationbridge.ApplicationBridgeGeneratedImplFactory;
+import org.nanocontext.semanticserver.semanticserver.applicationbridge.ApplicationBridgeProxyImplFactory;
+import org.nanocontext.semanticserver.semanticserver.applicationbridge.ApplicationBridgeRealization;
+import org.nanocontext.semanticserver.semanticserver.applicationbridge.ProductTypeRoutingToken;
+import org.nanocontext.semanticserver.semanticserver.commandprocessor.CommandProcessorDefaultImpl;
+import org.nanocontext.semanticserver.semanticserver.commandprocessor.exceptions.ProcessorBridgeInstantiationException;
+import org.nanocontext.semanticserver.semanticserver.commandprocessor.exceptions.UnknownCommandException;
+import org.nanocontext.semanticserver.test.FacadeTransactionContext;
+import org.nanocontext.semanticserver.test.TestApplication;
+import org.nanocontext.semanticserver.test.commandprovider.RecordingCommandProvider;
+import org.nanocontext.semanticserver.test.model.Authorization;
+import org.nanocontext.semanticserver.test.model.AuthorizationId;
+import org.nanocontext.semanticserverapi.core.Application;
+import org.nanocontext.semanticserverapi.core.semantics.exceptions.CoreRouterSemanticsException;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.Proxy;
+import java.lang.reflect.UndeclaredThrowableException;
+
+/**
+ * Tests the processor bridge realizations that ApplicationBridgeGeneratedImplFactory
+ * generates at runtime.
+ */
+public class ApplicationBridgeGeneratedImplFactoryTest {
+    private RecordingCommandProvider commandProvider;
+    private Application application;
+    private ApplicationBridgeGeneratedImplFactory factory;
+
+    /**
+     * A processor bridge with primitive parameters and results and with
+     * declared and undeclared exceptions.
+     */
+    public interface PrimitiveProcessorBridge {
+        AuthorizationId postAuthorization(Authorization authorization);
+
+        long deleteAuthorizationByAuthorizationId(AuthorizationId authorizationId, int reason, double weight);
+
+        boolean putAuthorization(Authorization authorization, char code, boolean flag);
+
+        void patchAuthorization(Authorization authorization) throws UnknownCommandException;
+
+        Authorization getAuthorizationByAuthorizationId(AuthorizationId authorizationId);
+    }
+
+    @BeforeMethod
+    public void b4Method() throws CoreRouterSemanticsException {
+        commandProvider = new RecordingCommandProvider();
+        application = new TestApplication(commandProvider, CommandProcessorDefaultImpl.create());
+        factory = new ApplicationBridgeGeneratedImplFactory(application);
+
+        FacadeTransactionContext ctx = TransactionContextFactory.get(FacadeTransactionContext.class);
+        ctx.setRoutingToken(new ProductTypeRoutingToken("USACON"));
+    }
+
+    @AfterMethod
+    public void afterMethod() {
+        application.shutdown();
+        System.clearProperty(ApplicationBridgeRealization.REALIZATION_PROPERTY);
+    }
+
+    @Test
+    public void testGeneratedClass() throws ProcessorBridgeInstantiationException {
+        PrimitiveProcessorBridge bridge = factory.create(PrimitiveProcessorBridge.class);
+
+        Assert.assertFalse(Proxy.isProxyClass(bridge.getClass()));
+        // the generated class is defined in a child of the class loader of the interface
+        Assert.assertSame(bridge.getClass().getClassLoader().getParent(), PrimitiveProcessorBridge.class.getClassLoader());
+        Assert.assertSame(factory.create(PrimitiveProcessorBridge.class), bridge);
+    }
+
+    @Test
+    public void testArgumentsAndResult() throws ProcessorBridgeInstantiationException {
+        PrimitiveProcessorBridge bridge = factory.create(PrimitiveProcessorBridge.class);
+        Authorization authorization = new Authorization();
+        AuthorizationId authorizationId = new AuthorizationId();
+        commandProvider.setResult(authorizationId);
+
+        Assert.assertSame(bridge.postAuthorization(authorization), authorizationId);
+        Assert.assertEquals(commandProvider.getLastArguments(), new Object[]{authorization});
+        Assert.assertSame(commandProvider.getLastResultType(), AuthorizationId.class);
+    }
+
+    @Test
+    public void testPrimitiveBoxing() throws ProcessorBridgeInstantiationException {
+        PrimitiveProcessorBridge bridge = factory.create(PrimitiveProcessorBridge.class);
+        AuthorizationId authorizationId = new AuthorizationId();
+        Authorization authorization = new Authorization();
+
+        commandProvider.setResult(42L);
+        Assert.assertEquals(bridge.deleteAuthorizationByAuthorizationId(authorizationId, 7, 0.5), 42L);
+        Assert.assertEquals(commandProvider.getLastArguments(), new Object[]{authorizationId, 7, 0.5});
+
+        commandProvider.setResult(Boolean.TRUE);
+        Assert.assertTrue(bridge.putAuthorization(authorization, 'x', false));
+        Assert.assertEquals(commandProvider.getLastArguments(), new Object[]{authorization, 'x', Boolean.FALSE});
+        Assert.assertSame(commandProvider.getLastResultType(), boolean.class);
+    }
+
+    @Test
+    public void testDeclaredExceptionPassesThrough() throws ProcessorBridgeInstantiationException {
+        PrimitiveProcessorBridge bridge = factory.create(PrimitiveProcessorBridge.class);
+        IllegalStateException failure = new IllegalStateException("patch failed");
+        commandProvider.setException(failure);
+
+        try {
+            bridge.patchAuthorization(new Authorization());
+            Assert.fail("the declared exception was not thrown");
+        } catch (UnknownCommandException ucX) {
+            Assert.assertSame(ucX.getCause(), failure);
+        }
+    }
+
+    @Test
+    public void testUndeclaredExceptionIsWrapped() throws ProcessorBridgeInstantiationException {
+        PrimitiveProcessorBridge bridge = factory.create(PrimitiveProcessorBridge.class);
+        IllegalStateException failure = new IllegalStateException("get failed");
+        commandProvider.setException(failure);
+
+        try {
+            bridge.getAuthorizationByAuthorizationId(new AuthorizationId());
+            Assert.fail("the undeclared exception was not thrown");
+        } catch (UndeclaredThrowableException utX) {
+            Assert.assertTrue(utX.getCause() instanceof UnknownCommandException);
+            Assert.assertSame(utX.getCause().getCause(), failure);
+        }
+    }
+
+    @Test
+    public void testConfiguredRealization() {
+        Assert.assertSame(ApplicationBridgeRealization.getConfigured(), ApplicationBridgeRealization.PROXY);
+        Assert.assertTrue(ApplicationBridgeRealization.createConfiguredFactory(application) instanceof ApplicationBridgeProxyImplFactory);
+
+        System.setProperty(ApplicationBridgeRealization.REALIZATION_PROPERTY, "generated");
+        ApplicationBridgeFactory configured = ApplicationBridgeRealization.createConfiguredFactory(application);
+        Assert.assertTrue(configured instanceof ApplicationBridgeGeneratedImplFactory);
+    }
+}
@@ -0,0 +1,138 @@
+package org.nanocontext.semanticserver.core.applicationbridge;
+
+import com.paypal.credit.xactionctx.TransactionContextFactory;
+import org.nanocontext.semanticserver.semanticserver.applicationbridge.ApplicationBridgeProxyImplFactory;
+import org.nanocontext.semanticserver.semanticserver.applicationbridge.ProductTypeRoutingToken;
+import org.nanocontext.semanticserver.semanticserver.commandprocessor.CommandProcessorDefaultImpl;
+import org.nanocontext.semanticserver.test.FacadeTransactionContext;
+import org.nanocontext.semanticserver.test.TestApplication;
+import org.nanocontext.semanticserver.test.commandprovider.RecordingCommandProvider;
+import org.nanocontext.semanticserver.test.model.Authorization;
+import org.nanocontext.semanticserver.test.model.AuthorizationId;
+import org.nanocontext.semanticserverapi.core.Application;
+import org.nanocontext.semanticserverapi.core.commandprocessor.AsynchronousExecutionCallback;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests the processor bridge methods that return a CompletableFuture or a CompletionStage.
+ */
+public class FutureResultProcessorBridgeTest {
+    private RecordingCommandProvider commandProvider;
+    private Application application;
+    private FutureProcessorBridge bridge;
+
+    public interface FutureProcessorBridge {
+        CompletableFuture<AuthorizationId> postAuthorization(Authorization authorization);
+
+        CompletionStage<Long> deleteAuthorizationByAuthorizationId(AuthorizationId authorizationId);
+
+        CompletableFuture<Authorization> getAuthorizationByAuthorizationId(
+                AsynchronousExecutionCallback<Authorization> callback, AuthorizationId authorizationId);
+    }
+
+    @BeforeMethod
+    public void b4Method() throws Exception {
+        commandProvider = new RecordingCommandProvider();
+        application = new TestApplication(commandProvider, CommandProcessorDefaultImpl.create());
+        bridge = new ApplicationBridgeProxyImplFactory(application).create(FutureProcessorBridge.class);
+
+        FacadeTransactionContext ctx = TransactionContextFactory.get(FacadeTransactionContext.class);
+        ctx.setRoutingToken(new ProductTypeRoutingToken("USACON"));
+    }
+
+    @AfterMethod
+    public void afterMethod() {
+        application.shutdown();
+    }
+
+    @Test
+    public void testFutureIsCompletedWithResult() throws Exception {
+        Authorization authorization = new Authorization();
+        AuthorizationId authorizationId = new AuthorizationId();
+        commandProvider.setResult(authorizationId);
+
+        Assert.assertSame(bridge.postAuthorization(authorization).get(5L, TimeUnit.SECONDS), authorizationId);
+        // the Command is located by the type argument of the future
+        Assert.assertSame(commandProvider.getLastResultType(), AuthorizationId.class);
+        Assert.assertEquals(commandProvider.getLastArguments(), new Object[]{authorization});
+    }
+
+    @Test
+    public void testCompletionStage() throws Exception {
+        commandProvider.setResult(42L);
+
+        CompletionStage<Long> stage = bridge.deleteAuthorizationByAuthorizationId(new AuthorizationId());
+
+        Assert.assertEquals(stage.toCompletableFuture().get(5L, TimeUnit.SECONDS), Long.valueOf(42L));
+        Assert.assertSame(commandProvider.getLastResultType(), Long.class);
+    }
+
+    @Test
+    public void testFutureIsCompletedExceptionally() throws Exception {
+        IllegalStateException failure = new IllegalStateException("post failed");
+        commandProvider.setException(failure);
+
+        try {
+            bridge.postAuthorization(new Authorization()).get(5L, TimeUnit.SECONDS);
+            Assert.fail("the future was not completed exceptionally");
+        } catch (ExecutionException eX) {
+            Assert.assertSame(eX.getCause(), failure);
+        }
+    }
+
+    @Test
+    public void testCallbackArgumentIsNotified() throws Exception {
+        final Authorization authorization = new Authorization();
+        AuthorizationId authorizationId = new AuthorizationId();
+        final CountDownLatch notified = new CountDownLatch(1);
+        commandProvider.setResult(authorization);
+
+        CompletableFuture<Authorization> future = bridge.getAuthorizationByAuthorizationId(
+                new AsynchronousExecutionCallback<Authorization>() {
+                    @Override
+                    public void success(final Authorization result) {
+                        if (result == authorization) {
+                            notified.countDown();
+                        }
+                    }
+
+                    @Override
+                    public void failure(final Throwable t) {
+                    }
+                },
+                authorizationId);
+
+        Assert.assertSame(future.get(5L, TimeUnit.SECONDS), authorization);
+        Assert.assertTrue(notified.await(5L, TimeUnit.SECONDS));
+        // the callback is not an argument of the Command
+        Assert.assertEquals(commandProvider.getLastArguments(), new Object[]{authorizationId});
+    }
+
+    @Test
+    public void testCancellingTheFutureInterruptsTheCommand() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        commandProvider.setStartSignal(started);
+        commandProvider.setGate(new CountDownLatch(1));
+
+        CompletableFuture<AuthorizationId> future = bridge.postAuthorization(new Authorization());
+        Assert.assertTrue(started.await(5L, TimeUnit.SECONDS));
+
+        Assert.assertTrue(future.cancel(true));
+
+        long deadline = System.currentTimeMillis() + 5000L;
+        while (commandProvider.getInterruptedCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10L);
+        }
+        Assert.assertEquals(commandProvider.getInterruptedCount(), 1);
+        Assert.assertTrue(future.isCancelled());
+    }
+}
@@ -0,0 +1,129 @@
+package org.nanocontext.semanticserver.core.commandprocessor;
+
+import org.nanocontext.semanticserver.semanticserver.commandprocessor.CommandProcessorDefaultImpl;
+import org.nanocontext.semanticserver.semanticserver.commandprocessor.CommandProcessorDefaultImpl.SaturationPolicy;
+import org.nanocontext.semanticserver.semanticserver.commandprocessor.exceptions.CommandProcessorSaturatedException;
+import org.nanocontext.semanticserver.test.commands.GatedCommand;
+import org.nanocontext.semanticserverapi.core.commandprocessor.CommandHandle;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Tests the SaturationPolicy and the saturation of a bounded CommandProcessor with one thread
+ * and a work queue of one Command.
+ */
+public class BoundedCommandProcessorTest {
+    private static final long TIMEOUT_MILLIS = 5000L;
+
+    private CountDownLatch gate;
+    private CommandProcessorDefaultImpl commandProcessor;
+
+    @BeforeMethod
+    public void b4Method() {
+        gate = new CountDownLatch(1);
+    }
+
+    @AfterMethod
+    public void afterMethod() {
+        gate.countDown();
+        commandProcessor.shutdown();
+    }
+
+    @Test
+    public void testSaturation() throws InterruptedException {
+        saturate(SaturationPolicy.REJECT, 0L);
+        Assert.assertEquals(commandProcessor.getSaturationPolicy(), SaturationPolicy.REJECT);
+        Assert.assertEquals(commandProcessor.getSaturation(), 1.0, 0.001);
+    }
+
+    @Test
+    public void testUnboundedSaturation() {
+        commandProcessor = CommandProcessorDefaultImpl.create();
+        commandProcessor.doAsynchronously(new GatedCommand("running", gate), null);
+
+        Assert.assertNull(commandProcessor.getSaturationPolicy());
+        Assert.assertEquals(commandProcessor.getSaturation(), 0.0, 0.001);
+    }
+
+    @Test
+    public void testReject() throws InterruptedException {
+        saturate(SaturationPolicy.REJECT, 0L);
+        GatedCommand rejected = new GatedCommand("rejected", null);
+
+        try {
+            commandProcessor.doAsynchronously(rejected, null);
+            Assert.fail("the saturated command processor accepted a command");
+        } catch (CommandProcessorSaturatedException cpsX) {
+            // expected
+        }
+        gate.countDown();
+        Assert.assertFalse(rejected.awaitStarted(100L));
+    }
+
+    @Test
+    public void testCallerRuns() throws InterruptedException {
+        saturate(SaturationPolicy.CALLER_RUNS, 0L);
+        GatedCommand callerRuns = new GatedCommand("caller", null);
+
+        CommandHandle<String> handle = commandProcessor.submitAsynchronously(callerRuns, null);
+
+        Assert.assertSame(callerRuns.getExecutingThread(), Thread.currentThread());
+        Assert.assertEquals(handle.getStatus(), CommandHandle.Status.SUCCEEDED);
+    }
+
+    @Test
+    public void testBlockTimesOut() throws InterruptedException {
+        saturate(SaturationPolicy.BLOCK, 200L);
+
+        long start = System.currentTimeMillis();
+        try {
+            commandProcessor.doAsynchronously(new GatedCommand("blocked", null), null);
+            Assert.fail("the saturated command processor accepted a command");
+        } catch (CommandProcessorSaturatedException cpsX) {
+            Assert.assertTrue(System.currentTimeMillis() - start >= 150L, "did not wait for the block timeout");
+        }
+    }
+
+    @Test
+    public void testBlockWaitsForRoom() throws InterruptedException {
+        saturate(SaturationPolicy.BLOCK, TIMEOUT_MILLIS);
+        GatedCommand blocked = new GatedCommand("blocked", null);
+
+        Thread opener = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(100L);
+                } catch (InterruptedException iX) {
+                    // open the gate at once
+                }
+                gate.countDown();
+            }
+        });
+        opener.start();
+
+        commandProcessor.doAsynchronously(blocked, null);
+        Assert.assertTrue(blocked.awaitStarted(TIMEOUT_MILLIS));
+        Assert.assertNotSame(blocked.getExecutingThread(), Thread.currentThread());
+    }
+
+    /**
+     * Create a bounded CommandProcessor and occupy its thread and its work queue.
+     */
+    private void saturate(final SaturationPolicy saturationPolicy, final long blockTimeoutMillis) throws InterruptedException {
+        commandProcessor = CommandProcessorDefaultImpl.createBounded(1, 1, 1, saturationPolicy, blockTimeoutMillis);
+        Assert.assertEquals(commandProcessor.getSaturation(), 0.0, 0.001);
+
+        GatedCommand running = new GatedCommand("running", gate);
+        commandProcessor.doAsynchronously(running, null);
+        Assert.assertTrue(running.awaitStarted(TIMEOUT_MILLIS));
+        Assert.assertEquals(commandProcessor.getSaturation(), 0.5, 0.001);
+
+        commandProcessor.doAsynchronously(new GatedCommand("queued", gate), null);
+        Assert.assertEquals(commandProcessor.getSaturation(), 1.0, 0.001);
+    }
+}
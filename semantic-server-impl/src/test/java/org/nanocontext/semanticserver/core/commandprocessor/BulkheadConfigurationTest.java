@@ -0,0 +1,100 @@
+package org.nanocontext.semanticserver.core.commandprocessor;
+
+import com.paypal.credit.context.exceptions.ContextInitializationException;
+import org.nanocontext.semanticserver.ApplicationImpl;
+import org.nanocontext.semanticserver.semanticserver.applicationbridge.ProductTypeRoutingToken;
+import org.nanocontext.semanticserver.semanticserver.commandprocessor.Bulkhead;
+import org.nanocontext.semanticserver.semanticserver.commandprocessor.CommandProcessorDefaultImpl;
+import org.nanocontext.semanticserver.semanticserver.commandprocessor.exceptions.BulkheadFullException;
+import org.nanocontext.semanticserver.test.commands.GatedCommand;
+import org.nanocontext.semanticserverapi.core.Application;
+import org.nanocontext.semanticserverapi.core.commandprocessor.RoutingToken;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.xml.bind.JAXBException;
+import java.io.FileNotFoundException;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Tests the Bulkheads of a command processor configured in the application context,
+ * as described by Bulkhead.
+ */
+public class BulkheadConfigurationTest {
+    private static final long TIMEOUT_MILLIS = 5000L;
+
+    private static final RoutingToken CREDIT = new ProductTypeRoutingToken("CREDIT");
+    private static final RoutingToken DEBIT = new ProductTypeRoutingToken("DEBIT");
+
+    private CountDownLatch gate;
+    private Application application;
+    private CommandProcessorDefaultImpl commandProcessor;
+
+    @BeforeMethod
+    public void b4Method() throws FileNotFoundException, JAXBException, ContextInitializationException {
+        gate = new CountDownLatch(1);
+        application = ApplicationImpl.create(true, "BulkheadedApplication.xml");
+        commandProcessor = (CommandProcessorDefaultImpl) application.getCommandProcessor();
+    }
+
+    @AfterMethod
+    public void afterMethod() {
+        gate.countDown();
+        application.shutdown();
+    }
+
+    @Test
+    public void testConfiguredBulkheads() {
+        Bulkhead credit = commandProcessor.getBulkhead(CREDIT);
+        Assert.assertNotNull(credit);
+        Assert.assertEquals(credit.getName(), "credit");
+        Assert.assertEquals(credit.getMaximumConcurrency(), 2);
+        Assert.assertEquals(credit.getMaximumWaitMillis(), 0L);
+        Assert.assertEquals(credit.getRoutingTokens(), Collections.singletonList(CREDIT));
+
+        Bulkhead debit = commandProcessor.getBulkhead(DEBIT);
+        Assert.assertNotNull(debit);
+        Assert.assertEquals(debit.getName(), "debit");
+        Assert.assertEquals(debit.getMaximumConcurrency(), 1);
+        Assert.assertEquals(debit.getMaximumWaitMillis(), 200L);
+        Assert.assertEquals(debit.getRoutingTokens(), Collections.singletonList(DEBIT));
+    }
+
+    @Test
+    public void testRejectionCounts() throws InterruptedException {
+        Bulkhead credit = commandProcessor.getBulkhead(CREDIT);
+        Bulkhead debit = commandProcessor.getBulkhead(DEBIT);
+        fill(credit, CREDIT);
+        fill(debit, DEBIT);
+
+        assertRejected(CREDIT);
+        assertRejected(CREDIT);
+        assertRejected(DEBIT);
+
+        Assert.assertEquals(credit.getAdmittedCount(), 2L);
+        Assert.assertEquals(credit.getRejectedCount(), 2L);
+        Assert.assertEquals(debit.getAdmittedCount(), 1L);
+        Assert.assertEquals(debit.getRejectedCount(), 1L);
+    }
+
+    private void assertRejected(final RoutingToken routingToken) {
+        try {
+            commandProcessor.doAsynchronously(routingToken, new GatedCommand("rejected", null), null);
+            Assert.fail("the full bulkhead admitted a command");
+        } catch (BulkheadFullException bfX) {
+            // expected
+        }
+    }
+
+    private void fill(final Bulkhead bulkhead, final RoutingToken routingToken) throws InterruptedException {
+        for (int index = 0; index < bulkhead.getMaximumConcurrency(); ++index) {
+            GatedCommand command = new GatedCommand("filling-" + index, gate);
+            commandProcessor.doAsynchronously(routingToken, command, null);
+            Assert.assertTrue(command.awaitStarted(TIMEOUT_MILLIS));
+        }
+        Assert.assertEquals(bulkhead.getActiveCount(), bulkhead.getMaximumConcurrency());
+    }
+}
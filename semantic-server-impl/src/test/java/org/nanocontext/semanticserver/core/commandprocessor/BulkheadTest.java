@@ -0,0 +1,216 @@
+package org.nanocontext.semanticserver.core.commandprocessor;
+
+import org.nanocontext.semanticserver.semanticserver.applicationbridge.ProductTypeRoutingToken;
+import org.nanocontext.semanticserver.semanticserver.commandprocessor.Bulkhead;
+import org.nanocontext.semanticserver.semanticserver.commandprocessor.CommandProcessorDefaultImpl;
+import org.nanocontext.semanticserver.semanticserver.commandprocessor.exceptions.BulkheadFullException;
+import org.nanocontext.semanticserver.test.RecordingCallback;
+import org.nanocontext.semanticserver.test.commands.GatedCommand;
+import org.nanocontext.semanticserverapi.core.commandprocessor.CommandHandle;
+import org.nanocontext.semanticserverapi.core.commandprocessor.RoutingToken;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Tests the admission, rejection and release of asynchronous Commands by the Bulkheads of
+ * a CommandProcessor.
+ */
+public class BulkheadTest {
+    private static final long TIMEOUT_MILLIS = 5000L;
+
+    private static final RoutingToken CREDIT = new ProductTypeRoutingToken("CREDIT");
+    private static final RoutingToken DEBIT = new ProductTypeRoutingToken("DEBIT");
+    private static final RoutingToken OTHER = new ProductTypeRoutingToken("OTHER");
+
+    private CountDownLatch gate;
+    private Bulkhead creditBulkhead;
+    private CommandProcessorDefaultImpl commandProcessor;
+
+    @BeforeMethod
+    public void b4Method() {
+        gate = new CountDownLatch(1);
+        creditBulkhead = new Bulkhead("credit", 2, Collections.singletonList(CREDIT));
+        commandProcessor = CommandProcessorDefaultImpl.createBulkheaded(Collections.singletonList(creditBulkhead));
+    }
+
+    @AfterMethod
+    public void afterMethod() {
+        gate.countDown();
+        commandProcessor.shutdown();
+    }
+
+    @Test
+    public void testAdmission() throws InterruptedException {
+        Assert.assertSame(commandProcessor.getBulkhead(CREDIT), creditBulkhead);
+        Assert.assertNull(commandProcessor.getBulkhead(DEBIT));
+
+        GatedCommand first = new GatedCommand("first", gate);
+        GatedCommand second = new GatedCommand("second", gate);
+        commandProcessor.doAsynchronously(CREDIT, first, null);
+        commandProcessor.doAsynchronously(CREDIT, second, null);
+
+        Assert.assertTrue(first.awaitStarted(TIMEOUT_MILLIS));
+        Assert.assertTrue(second.awaitStarted(TIMEOUT_MILLIS));
+        Assert.assertEquals(creditBulkhead.getActiveCount(), 2);
+        Assert.assertEquals(creditBulkhead.getAdmittedCount(), 2L);
+        Assert.assertEquals(creditBulkhead.getRejectedCount(), 0L);
+    }
+
+    @Test
+    public void testRejection() throws InterruptedException {
+        fill(creditBulkhead, CREDIT);
+        GatedCommand rejected = new GatedCommand("rejected", null);
+
+        try {
+            commandProcessor.doAsynchronously(CREDIT, rejected, null);
+            Assert.fail("the full bulkhead admitted a command");
+        } catch (BulkheadFullException bfX) {
+            // expected
+        }
+        Assert.assertEquals(creditBulkhead.getRejectedCount(), 1L);
+        Assert.assertEquals(creditBulkhead.getAdmittedCount(), 2L);
+        Assert.assertFalse(rejected.awaitStarted(100L));
+
+        // the Commands of the other RoutingTokens are not limited by the full Bulkhead
+        GatedCommand unlimited = new GatedCommand("unlimited", null);
+        commandProcessor.doAsynchronously(DEBIT, unlimited, null);
+        Assert.assertTrue(unlimited.awaitStarted(TIMEOUT_MILLIS));
+    }
+
+    @Test
+    public void testReleaseOnCompletion() throws InterruptedException {
+        RecordingCallback<String> firstCallback = new RecordingCallback<>();
+        RecordingCallback<String> secondCallback = new RecordingCallback<>();
+        commandProcessor.doAsynchronously(CREDIT, new GatedCommand("first", gate), firstCallback);
+        commandProcessor.doAsynchronously(CREDIT, new GatedCommand("second", gate), secondCallback);
+
+        gate.countDown();
+
+        // the admission is released before the callback is notified
+        Assert.assertTrue(firstCallback.awaitNotified(TIMEOUT_MILLIS));
+        Assert.assertTrue(secondCallback.awaitNotified(TIMEOUT_MILLIS));
+        Assert.assertEquals(creditBulkhead.getActiveCount(), 0);
+
+        GatedCommand admitted = new GatedCommand("admitted", null);
+        commandProcessor.doAsynchronously(CREDIT, admitted, null);
+        Assert.assertTrue(admitted.awaitStarted(TIMEOUT_MILLIS));
+        Assert.assertEquals(creditBulkhead.getRejectedCount(), 0L);
+    }
+
+    @Test
+    public void testReleaseOnFailure() throws InterruptedException {
+        RecordingCallback<Object> callback = new RecordingCallback<>();
+        commandProcessor.doAsynchronously(CREDIT, new CallbackNotificationTest.FailingCommand(new IllegalStateException()), callback);
+
+        Assert.assertTrue(callback.awaitNotified(TIMEOUT_MILLIS));
+        Assert.assertNotNull(callback.getFailure());
+        Assert.assertEquals(creditBulkhead.getActiveCount(), 0);
+    }
+
+    @Test
+    public void testReleaseOnCancellation() throws InterruptedException {
+        GatedCommand running = new GatedCommand("running", gate);
+        CommandHandle<String> handle = commandProcessor.submitAsynchronously(CREDIT, running, null);
+        commandProcessor.doAsynchronously(CREDIT, new GatedCommand("second", gate), null);
+        Assert.assertTrue(running.awaitStarted(TIMEOUT_MILLIS));
+        Assert.assertEquals(creditBulkhead.getActiveCount(), 2);
+
+        Assert.assertTrue(handle.cancel(false));
+
+        // the cancelled Command is still executing, it holds its admission until it returns
+        Assert.assertEquals(creditBulkhead.getActiveCount(), 2);
+        try {
+            commandProcessor.doAsynchronously(CREDIT, new GatedCommand("rejected", null), null);
+            Assert.fail("the full bulkhead admitted a command");
+        } catch (BulkheadFullException bfX) {
+            // expected
+        }
+
+        gate.countDown();
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (creditBulkhead.getActiveCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10L);
+        }
+        Assert.assertEquals(creditBulkhead.getActiveCount(), 0);
+        GatedCommand admitted = new GatedCommand("admitted", null);
+        commandProcessor.doAsynchronously(CREDIT, admitted, null);
+        Assert.assertTrue(admitted.awaitStarted(TIMEOUT_MILLIS));
+        Assert.assertEquals(creditBulkhead.getRejectedCount(), 1L);
+    }
+
+    @Test
+    public void testMaximumWait() throws InterruptedException {
+        final Bulkhead waitingBulkhead = new Bulkhead("waiting", 1, 200L, Collections.singletonList(CREDIT));
+        commandProcessor.setBulkheads(Collections.singletonList(waitingBulkhead));
+        fill(waitingBulkhead, CREDIT);
+
+        long start = System.currentTimeMillis();
+        try {
+            commandProcessor.doAsynchronously(CREDIT, new GatedCommand("rejected", null), null);
+            Assert.fail("the full bulkhead admitted a command");
+        } catch (BulkheadFullException bfX) {
+            // expected
+        }
+        Assert.assertTrue(System.currentTimeMillis() - start >= 150L);
+        Assert.assertEquals(waitingBulkhead.getRejectedCount(), 1L);
+
+        // a submitter that is waiting is admitted when a Command completes
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(50L);
+                } catch (InterruptedException iX) {
+                    Thread.currentThread().interrupt();
+                }
+                gate.countDown();
+            }
+        }).start();
+        GatedCommand admitted = new GatedCommand("admitted", null);
+        commandProcessor.doAsynchronously(CREDIT, admitted, null);
+        Assert.assertTrue(admitted.awaitStarted(TIMEOUT_MILLIS));
+        Assert.assertEquals(waitingBulkhead.getRejectedCount(), 1L);
+    }
+
+    @Test
+    public void testDefaultBulkhead() throws InterruptedException {
+        Bulkhead defaultBulkhead = new Bulkhead("default", 1, null);
+        commandProcessor.setDefaultBulkhead(defaultBulkhead);
+        Assert.assertSame(commandProcessor.getBulkhead(OTHER), defaultBulkhead);
+        Assert.assertSame(commandProcessor.getBulkhead(null), defaultBulkhead);
+        Assert.assertSame(commandProcessor.getBulkhead(CREDIT), creditBulkhead);
+
+        commandProcessor.doAsynchronously(OTHER, new GatedCommand("other", gate), null);
+        try {
+            // a Command without a RoutingToken shares the default Bulkhead
+            commandProcessor.doAsynchronously(new GatedCommand("none", null), null);
+            Assert.fail("the full default bulkhead admitted a command");
+        } catch (BulkheadFullException bfX) {
+            // expected
+        }
+        Assert.assertEquals(defaultBulkhead.getRejectedCount(), 1L);
+        Assert.assertEquals(creditBulkhead.getAdmittedCount(), 0L);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testRoutingTokenInTwoBulkheads() {
+        commandProcessor.setBulkheads(Arrays.asList(
+                creditBulkhead,
+                new Bulkhead("duplicate", 1, Arrays.asList(DEBIT, CREDIT))));
+    }
+
+    private void fill(final Bulkhead bulkhead, final RoutingToken routingToken) throws InterruptedException {
+        for (int index = 0; index < bulkhead.getMaximumConcurrency(); ++index) {
+            GatedCommand command = new GatedCommand("filling-" + index, gate);
+            commandProcessor.doAsynchronously(routingToken, command, null);
+            Assert.assertTrue(command.awaitStarted(TIMEOUT_MILLIS));
+        }
+        Assert.assertEquals(bulkhead.getActiveCount(), bulkhead.getMaximumConcurrency());
+    }
+}
@@ -0,0 +1,160 @@
+package org.nanocontext.semanticserver.core.commandprocessor;
+
+import org.nanocontext.semanticserver.semanticserver.commandprocessor.CommandProcessorDefaultImpl;
+import org.nanocontext.semanticserver.test.RecordingCallback;
+import org.nanocontext.semanticserver.test.commands.GatedCommand;
+import org.nanocontext.semanticserverapi.core.commandprocessor.AsynchronouslyExecutableCommand;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Tests the notification of the callbacks of asynchronous Commands, by the thread that completed
+ * the Command or by a callback Executor.
+ */
+public class CallbackNotificationTest {
+    private static final long TIMEOUT_MILLIS = 5000L;
+
+    private CommandProcessorDefaultImpl commandProcessor;
+    private ExecutorService callbackExecutor;
+
+    @BeforeMethod
+    public void b4Method() {
+        commandProcessor = CommandProcessorDefaultImpl.create();
+        callbackExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable r) {
+                return new Thread(r, "CallbackNotificationTest-callback");
+            }
+        });
+    }
+
+    @AfterMethod
+    public void afterMethod() {
+        commandProcessor.shutdown();
+        callbackExecutor.shutdown();
+    }
+
+    /**
+     * A Command may complete before doAsynchronously() returns, its callback must still be notified.
+     */
+    @Test
+    public void testImmediateCompletionIsNotified() throws InterruptedException {
+        List<RecordingCallback<String>> callbacks = new ArrayList<>();
+        for (int index = 0; index < 500; ++index) {
+            RecordingCallback<String> callback = new RecordingCallback<>();
+            callbacks.add(callback);
+            commandProcessor.doAsynchronously(new GatedCommand("immediate-" + index, null), callback);
+        }
+
+        for (int index = 0; index < callbacks.size(); ++index) {
+            Assert.assertTrue(callbacks.get(index).awaitNotified(TIMEOUT_MILLIS), "callback " + index + " was not notified");
+            Assert.assertEquals(callbacks.get(index).getResult(), "immediate-" + index);
+        }
+    }
+
+    @Test
+    public void testNotifiedOnCompletingThread() throws InterruptedException {
+        GatedCommand command = new GatedCommand("result", null);
+        RecordingCallback<String> callback = new RecordingCallback<>();
+
+        commandProcessor.doAsynchronously(command, callback);
+
+        Assert.assertTrue(callback.awaitNotified(TIMEOUT_MILLIS));
+        Assert.assertSame(callback.getNotifyingThread(), command.getExecutingThread());
+    }
+
+    @Test
+    public void testFailureIsNotified() throws InterruptedException {
+        final IllegalStateException failure = new IllegalStateException();
+        RecordingCallback<Object> callback = new RecordingCallback<>();
+
+        commandProcessor.doAsynchronously(new FailingCommand(failure), callback);
+
+        Assert.assertTrue(callback.awaitNotified(TIMEOUT_MILLIS));
+        Assert.assertSame(callback.getFailure(), failure);
+    }
+
+    @Test
+    public void testPerCallCallbackExecutor() throws InterruptedException {
+        RecordingCallback<String> callback = new RecordingCallback<>();
+
+        commandProcessor.doAsynchronously(new GatedCommand("result", null), callback, callbackExecutor);
+
+        Assert.assertTrue(callback.awaitNotified(TIMEOUT_MILLIS));
+        Assert.assertEquals(callback.getNotifyingThread().getName(), "CallbackNotificationTest-callback");
+        Assert.assertEquals(callback.getResult(), "result");
+    }
+
+    @Test
+    public void testProcessorCallbackExecutor() throws InterruptedException {
+        commandProcessor.setCallbackExecutor(callbackExecutor);
+        Assert.assertSame(commandProcessor.getCallbackExecutor(), callbackExecutor);
+        RecordingCallback<String> callback = new RecordingCallback<>();
+
+        commandProcessor.doAsynchronously(new GatedCommand("result", null), callback);
+
+        Assert.assertTrue(callback.awaitNotified(TIMEOUT_MILLIS));
+        Assert.assertEquals(callback.getNotifyingThread().getName(), "CallbackNotificationTest-callback");
+    }
+
+    @Test
+    public void testPerCallExecutorOverridesProcessorExecutor() throws InterruptedException {
+        commandProcessor.setCallbackExecutor(new RejectingExecutor());
+        GatedCommand command = new GatedCommand("result", null);
+        RecordingCallback<String> callback = new RecordingCallback<>();
+
+        commandProcessor.doAsynchronously(command, callback, callbackExecutor);
+
+        Assert.assertTrue(callback.awaitNotified(TIMEOUT_MILLIS));
+        Assert.assertEquals(callback.getNotifyingThread().getName(), "CallbackNotificationTest-callback");
+    }
+
+    /**
+     * A callback Executor that rejects the notification does not lose it, it is made on the
+     * thread that completed the Command.
+     */
+    @Test
+    public void testRejectedNotificationIsMadeOnCompletingThread() throws InterruptedException {
+        GatedCommand command = new GatedCommand("result", null);
+        RecordingCallback<String> callback = new RecordingCallback<>();
+
+        commandProcessor.doAsynchronously(command, callback, new RejectingExecutor());
+
+        Assert.assertTrue(callback.awaitNotified(TIMEOUT_MILLIS));
+        Assert.assertSame(callback.getNotifyingThread(), command.getExecutingThread());
+    }
+
+    @AsynchronouslyExecutableCommand
+    public static class FailingCommand
+    implements Callable<Object> {
+        private final Exception failure;
+
+        public FailingCommand(final Exception failure) {
+            this.failure = failure;
+        }
+
+        @Override
+        public Object call() throws Exception {
+            throw failure;
+        }
+    }
+
+    private static class RejectingExecutor
+    implements Executor {
+        @Override
+        public void execute(final Runnable command) {
+            throw new RejectedExecutionException("rejecting");
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package org.nanocontext.semanticserver.core.commandprocessor;
+
+import org.nanocontext.semanticserver.semanticserver.applicationbridge.ProductTypeRoutingToken;
+import org.nanocontext.semanticserver.semanticserver.commandprocessor.AdaptiveLimiter;
+import org.nanocontext.semanticserver.semanticserver.commandprocessor.Bulkhead;
+import org.nanocontext.semanticserver.semanticserver.commandprocessor.CommandProcessorDefaultImpl;
+import org.nanocontext.semanticserver.semanticserver.commandprocessor.exceptions.CommandNotAsynchronouslyExecutableException;
+import org.nanocontext.semanticserver.test.RecordingCallback;
+import org.nanocontext.semanticserver.test.commands.GatedCommand;
+import org.nanocontext.semanticserverapi.core.commandprocessor.CommandHandle;
+import org.nanocontext.semanticserverapi.core.commandprocessor.RoutingToken;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests the status of a CommandHandle and the cancellation of a Command through its handle.
+ */
+public class CommandHandleTest {
+    private static final long TIMEOUT_MILLIS = 5000L;
+    private static final RoutingToken ROUTING_TOKEN = new ProductTypeRoutingToken("USACON");
+
+    private CountDownLatch gate;
+    private CommandProcessorDefaultImpl commandProcessor;
+
+    @BeforeMethod
+    public void b4Method() {
+        gate = new CountDownLatch(1);
+    }
+
+    @AfterMethod
+    public void afterMethod() {
+        gate.countDown();
+        commandProcessor.shutdown();
+    }
+
+    @Test
+    public void testStatus() throws Exception {
+        commandProcessor = CommandProcessorDefaultImpl.createBounded(1, 1, 1, CommandProcessorDefaultImpl.SaturationPolicy.REJECT);
+        GatedCommand running = new GatedCommand("running", gate);
+        GatedCommand queued = new GatedCommand("queued", null);
+
+        CommandHandle<String> runningHandle = commandProcessor.submitAsynchronously(running, null);
+        Assert.assertTrue(running.awaitStarted(TIMEOUT_MILLIS));
+        CommandHandle<String> queuedHandle = commandProcessor.submitAsynchronously(queued, null);
+
+        Assert.assertEquals(runningHandle.getStatus(), CommandHandle.Status.RUNNING);
+        Assert.assertEquals(queuedHandle.getStatus(), CommandHandle.Status.QUEUED);
+
+        gate.countDown();
+        Assert.assertEquals(runningHandle.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS), "running");
+        Assert.assertEquals(queuedHandle.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS), "queued");
+        Assert.assertEquals(runningHandle.getStatus(), CommandHandle.Status.SUCCEEDED);
+        Assert.assertEquals(queuedHandle.getStatus(), CommandHandle.Status.SUCCEEDED);
+    }
+
+    @Test
+    public void testFailedStatus() throws Exception {
+        commandProcessor = CommandProcessorDefaultImpl.create();
+        IllegalStateException failure = new IllegalStateException();
+
+        CommandHandle<Object> handle = commandProcessor.submitAsynchronously(
+                new CallbackNotificationTest.FailingCommand(failure), null);
+
+        try {
+            handle.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            Assert.fail("the handle of a failed command returned a result");
+        } catch (ExecutionException eX) {
+            Assert.assertSame(eX.getCause(), failure);
+        }
+        Assert.assertEquals(handle.getStatus(), CommandHandle.Status.FAILED);
+    }
+
+    @Test
+    public void testNotAsynchronouslyExecutableIsFailed() throws Exception {
+        commandProcessor = CommandProcessorDefaultImpl.create();
+        RecordingCallback<String> callback = new RecordingCallback<>();
+
+        CommandHandle<String> handle = commandProcessor.submitAsynchronously(new Callable<String>() {
+            @Override
+            public String call() {
+                return "synchronous";
+            }
+        }, callback);
+
+        Assert.assertEquals(handle.getStatus(), CommandHandle.Status.FAILED);
+        Assert.assertTrue(callback.getFailure() instanceof CommandNotAsynchronouslyExecutableException);
+    }
+
+    @Test
+    public void testCancelInterruptsRunningCommand() throws Exception {
+        commandProcessor = CommandProcessorDefaultImpl.create();
+        GatedCommand running = new GatedCommand("running", gate);
+        RecordingCallback<String> callback = new RecordingCallback<>();
+
+        CommandHandle<String> handle = commandProcessor.submitAsynchronously(running, callback);
+        Assert.assertTrue(running.awaitStarted(TIMEOUT_MILLIS));
+
+        Assert.assertTrue(handle.cancel(true));
+
+        Assert.assertEquals(handle.getStatus(), CommandHandle.Status.CANCELLED);
+        Assert.assertTrue(callback.awaitNotified(TIMEOUT_MILLIS));
+        Assert.assertTrue(callback.getFailure() instanceof CancellationException);
+        awaitInterrupted(running);
+        // a completed handle cannot be cancelled again
+        Assert.assertFalse(handle.cancel(true));
+    }
+
+    @Test
+    public void testCancelQueuedCommand() throws Exception {
+        commandProcessor = CommandProcessorDefaultImpl.createBounded(1, 1, 1, CommandProcessorDefaultImpl.SaturationPolicy.REJECT);
+        GatedCommand running = new GatedCommand("running", gate);
+        GatedCommand queued = new GatedCommand("queued", null);
+        RecordingCallback<String> callback = new RecordingCallback<>();
+        commandProcessor.submitAsynchronously(running, null);
+        Assert.assertTrue(running.awaitStarted(TIMEOUT_MILLIS));
+        CommandHandle<String> handle = commandProcessor.submitAsynchronously(queued, callback);
+
+        Assert.assertTrue(handle.cancel(false));
+
+        Assert.assertTrue(callback.getFailure() instanceof CancellationException);
+        gate.countDown();
+        Assert.assertFalse(queued.awaitStarted(200L));
+        Assert.assertEquals(handle.getStatus(), CommandHandle.Status.CANCELLED);
+    }
+
+    @Test
+    public void testCancelReleasesBulkheadAndLimiter() throws Exception {
+        Bulkhead bulkhead = new Bulkhead("cancelled", 1, Collections.singletonList(ROUTING_TOKEN));
+        AdaptiveLimiter limiter = new AdaptiveLimiter(1, 1, 1, 0);
+        commandProcessor = CommandProcessorDefaultImpl.createBulkheaded(Collections.singletonList(bulkhead));
+        commandProcessor.setAdaptiveLimiter(limiter);
+        GatedCommand running = new GatedCommand("running", gate);
+
+        CommandHandle<String> handle = commandProcessor.submitAsynchronously(ROUTING_TOKEN, running, null);
+        Assert.assertTrue(running.awaitStarted(TIMEOUT_MILLIS));
+        Assert.assertEquals(bulkhead.getActiveCount(), 1);
+        Assert.assertEquals(limiter.getCommandClassLimit(GatedCommand.class).getInFlight(), 1);
+
+        Assert.assertTrue(handle.cancel(true));
+
+        // the admissions are released when the interrupted Command returns, without an RTT sample
+        awaitInterrupted(running);
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while ((bulkhead.getActiveCount() > 0 || limiter.getCommandClassLimit(GatedCommand.class).getInFlight() > 0)
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5L);
+        }
+        Assert.assertEquals(bulkhead.getActiveCount(), 0);
+        Assert.assertEquals(limiter.getCommandClassLimit(GatedCommand.class).getInFlight(), 0);
+        Assert.assertEquals(limiter.getCommandClassLimit(GatedCommand.class).getMinimumRttNanos(), 0L);
+
+        GatedCommand next = new GatedCommand("next", null);
+        CommandHandle<String> nextHandle = commandProcessor.submitAsynchronously(ROUTING_TOKEN, next, null);
+        Assert.assertEquals(nextHandle.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS), "next");
+        Assert.assertEquals(bulkhead.getRejectedCount(), 0L);
+    }
+
+    /**
+     * A Command cancelled while it is queued by the AdaptiveLimiter is not executed, its permit
+     * passes to the next queued Command.
+     */
+    @Test
+    public void testCancelCommandQueuedByLimiter() throws Exception {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(1, 1, 1, 2);
+        commandProcessor = CommandProcessorDefaultImpl.createAdaptive(limiter);
+        GatedCommand running = new GatedCommand("running", gate);
+        GatedCommand cancelled = new GatedCommand("cancelled", null);
+        GatedCommand next = new GatedCommand("next", null);
+
+        commandProcessor.submitAsynchronously(running, null);
+        Assert.assertTrue(running.awaitStarted(TIMEOUT_MILLIS));
+        CommandHandle<String> cancelledHandle = commandProcessor.submitAsynchronously(cancelled, null);
+        CommandHandle<String> nextHandle = commandProcessor.submitAsynchronously(next, null);
+        Assert.assertEquals(limiter.getCommandClassLimit(GatedCommand.class).getQueueLength(), 2);
+
+        Assert.assertTrue(cancelledHandle.cancel(true));
+        gate.countDown();
+
+        Assert.assertEquals(nextHandle.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS), "next");
+        Assert.assertFalse(cancelled.isStarted());
+        Assert.assertEquals(cancelledHandle.getStatus(), CommandHandle.Status.CANCELLED);
+
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (limiter.getCommandClassLimit(GatedCommand.class).getInFlight() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5L);
+        }
+        Assert.assertEquals(limiter.getCommandClassLimit(GatedCommand.class).getInFlight(), 0);
+        Assert.assertEquals(limiter.getCommandClassLimit(GatedCommand.class).getQueueLength(), 0);
+    }
+
+    private static void awaitInterrupted(final GatedCommand command) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!command.isInterrupted() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5L);
+        }
+        Assert.assertTrue(command.isInterrupted());
+    }
+}
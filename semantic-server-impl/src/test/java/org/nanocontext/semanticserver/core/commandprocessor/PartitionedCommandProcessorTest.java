@@ -0,0 +1,189 @@
+package org.nanocontext.semanticserver.core.commandprocessor;
+
+import org.nanocontext.semanticserver.semanticserver.commandprocessor.CommandProcessorDefaultImpl;
+import org.nanocontext.semanticserver.semanticserver.commandprocessor.exceptions.CommandProcessorSaturatedException;
+import org.nanocontext.semanticserver.test.RecordingCallback;
+import org.nanocontext.semanticserverapi.core.commandprocessor.AsynchronouslyExecutableCommand;
+import org.nanocontext.semanticserverapi.core.commandprocessor.PartitionedCommand;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests the ordering of PartitionedCommands by partition key and the bound on the Commands
+ * waiting in a lane of a partitioned CommandProcessor.
+ */
+public class PartitionedCommandProcessorTest {
+    private static final long TIMEOUT_MILLIS = 5000L;
+
+    private CountDownLatch gate;
+    private CommandProcessorDefaultImpl commandProcessor;
+
+    @BeforeMethod
+    public void b4Method() {
+        gate = new CountDownLatch(1);
+    }
+
+    @AfterMethod
+    public void afterMethod() {
+        gate.countDown();
+        commandProcessor.shutdown();
+    }
+
+    @Test
+    public void testOrderPerPartitionKey() throws InterruptedException {
+        commandProcessor = CommandProcessorDefaultImpl.createPartitioned(4, 1000);
+        final int keys = 8;
+        final int commandsPerKey = 50;
+        Map<Object, List<Integer>> executionOrder = new ConcurrentHashMap<>();
+        AtomicInteger[] concurrentByKey = new AtomicInteger[keys];
+        for (int key = 0; key < keys; ++key) {
+            executionOrder.put(key, Collections.synchronizedList(new ArrayList<Integer>()));
+            concurrentByKey[key] = new AtomicInteger();
+        }
+
+        final CountDownLatch completed = new CountDownLatch(keys * commandsPerKey);
+        for (int sequence = 0; sequence < commandsPerKey; ++sequence) {
+            for (int key = 0; key < keys; ++key) {
+                commandProcessor.doAsynchronously(
+                        new SequencedCommand(key, sequence, executionOrder.get(key), concurrentByKey[key], null),
+                        new CountingCallback(completed));
+            }
+        }
+
+        Assert.assertTrue(completed.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        for (int key = 0; key < keys; ++key) {
+            List<Integer> order = executionOrder.get(key);
+            Assert.assertEquals(order.size(), commandsPerKey);
+            for (int sequence = 0; sequence < commandsPerKey; ++sequence) {
+                Assert.assertEquals(order.get(sequence).intValue(), sequence, "partition key " + key);
+            }
+            // a negative count records that two Commands of the key overlapped
+            Assert.assertEquals(concurrentByKey[key].get(), 0, "partition key " + key);
+        }
+    }
+
+    @Test
+    public void testUnpartitionedCommandIsNotOrdered() throws InterruptedException {
+        commandProcessor = CommandProcessorDefaultImpl.createPartitioned(1, 10);
+        List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+        commandProcessor.doAsynchronously(new SequencedCommand("key", 0, order, new AtomicInteger(), gate), null);
+
+        // the null partition key executes outside of the (blocked) lane
+        RecordingCallback<Integer> callback = new RecordingCallback<>();
+        commandProcessor.doAsynchronously(new SequencedCommand(null, 1, order, new AtomicInteger(), null), callback);
+        Assert.assertTrue(callback.awaitNotified(TIMEOUT_MILLIS));
+        Assert.assertEquals(callback.getResult(), Integer.valueOf(1));
+    }
+
+    @Test
+    public void testFullLaneIsRejected() throws InterruptedException {
+        commandProcessor = CommandProcessorDefaultImpl.createPartitioned(1, 2);
+        List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+        AtomicInteger concurrent = new AtomicInteger();
+
+        RecordingCallback<Integer> running = new RecordingCallback<>();
+        SequencedCommand first = new SequencedCommand("key", 0, order, concurrent, gate);
+        commandProcessor.doAsynchronously(first, running);
+        Assert.assertTrue(first.awaitStarted(TIMEOUT_MILLIS));
+        // with one lane every partition key shares the lane, which has room for two waiting Commands
+        commandProcessor.doAsynchronously(new SequencedCommand("key", 1, order, concurrent, null), null);
+        RecordingCallback<Integer> last = new RecordingCallback<>();
+        commandProcessor.doAsynchronously(new SequencedCommand("other", 2, order, concurrent, null), last);
+        Assert.assertEquals(commandProcessor.getSaturation(), 1.0, 0.001);
+
+        try {
+            commandProcessor.doAsynchronously(new SequencedCommand("key", 3, order, concurrent, null), null);
+            Assert.fail("the full lane accepted a command");
+        } catch (CommandProcessorSaturatedException cpsX) {
+            // expected
+        }
+
+        gate.countDown();
+        Assert.assertTrue(last.awaitNotified(TIMEOUT_MILLIS));
+        Assert.assertEquals(order, Arrays.asList(0, 1, 2));
+        Assert.assertEquals(commandProcessor.getSaturation(), 0.0, 0.001);
+    }
+
+    // ==========================================================================================
+    // A PartitionedCommand that records the order of its execution
+    // ==========================================================================================
+    @AsynchronouslyExecutableCommand
+    public static class SequencedCommand
+    implements Callable<Integer>, PartitionedCommand {
+        private final Object partitionKey;
+        private final int sequence;
+        private final List<Integer> executionOrder;
+        private final AtomicInteger concurrent;
+        private final CountDownLatch gate;
+        private final CountDownLatch started = new CountDownLatch(1);
+
+        /**
+         * @param concurrent the count of the executing Commands of the partition key
+         * @param gate the gate to wait for, null to not wait
+         */
+        public SequencedCommand(
+                final Object partitionKey,
+                final int sequence,
+                final List<Integer> executionOrder,
+                final AtomicInteger concurrent,
+                final CountDownLatch gate) {
+            this.partitionKey = partitionKey;
+            this.sequence = sequence;
+            this.executionOrder = executionOrder;
+            this.concurrent = concurrent;
+            this.gate = gate;
+        }
+
+        @Override
+        public Object getPartitionKey() {
+            return partitionKey;
+        }
+
+        @Override
+        public Integer call() throws InterruptedException {
+            if (concurrent.incrementAndGet() != 1) {
+                concurrent.set(Integer.MIN_VALUE);
+            }
+            started.countDown();
+            executionOrder.add(sequence);
+            if (gate != null) {
+                gate.await();
+            }
+            Thread.yield();
+            concurrent.decrementAndGet();
+            return sequence;
+        }
+
+        public boolean awaitStarted(final long timeoutMillis) throws InterruptedException {
+            return started.await(timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static class CountingCallback
+    extends RecordingCallback<Integer> {
+        private final CountDownLatch completed;
+
+        private CountingCallback(final CountDownLatch completed) {
+            this.completed = completed;
+        }
+
+        @Override
+        public void success(final Integer result) {
+            super.success(result);
+            completed.countDown();
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package org.nanocontext.semanticserver.core.commandprocessor;
+
+import org.nanocontext.semanticserver.semanticserver.commandprocessor.CommandProcessorDefaultImpl;
+import org.nanocontext.semanticserver.test.RecordingCallback;
+import org.nanocontext.semanticserver.test.TestApplication;
+import org.nanocontext.semanticserver.test.commands.GatedCommand;
+import org.nanocontext.semanticserverapi.core.commandprocessor.AsynchronouslyExecutableCommand;
+import org.nanocontext.semanticserverapi.core.commandprocessor.CommandPriority;
+import org.nanocontext.semanticserverapi.core.semantics.exceptions.CoreRouterSemanticsException;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Tests the order in which a prioritized CommandProcessor, with one thread, executes the
+ * Commands that are waiting for its thread.
+ */
+public class PrioritizedCommandProcessorTest {
+    private static final long TIMEOUT_MILLIS = 5000L;
+    private static final long AGING_MILLIS = 50L;
+
+    private CountDownLatch gate;
+    private List<String> executionOrder;
+    private CommandProcessorDefaultImpl commandProcessor;
+
+    @BeforeMethod
+    public void b4Method() {
+        gate = new CountDownLatch(1);
+        executionOrder = Collections.synchronizedList(new ArrayList<String>());
+        commandProcessor = CommandProcessorDefaultImpl.createPrioritized(1, AGING_MILLIS);
+    }
+
+    @AfterMethod
+    public void afterMethod() {
+        gate.countDown();
+        commandProcessor.shutdown();
+    }
+
+    @Test
+    public void testPriorityOrder() throws InterruptedException {
+        occupyThread();
+
+        commandProcessor.doAsynchronously(new LowCommand("low", executionOrder), null);
+        commandProcessor.doAsynchronously(new NormalCommand("normal", executionOrder), null);
+        commandProcessor.doAsynchronously(new HighCommand("high-1", executionOrder), null);
+        commandProcessor.doAsynchronously(new HighCommand("high-2", executionOrder), null);
+        awaitLast(new LowCommand("last", executionOrder));
+
+        // Commands of the same priority are executed in order of submission
+        Assert.assertEquals(executionOrder, Arrays.asList("high-1", "high-2", "normal", "low", "last"));
+    }
+
+    /**
+     * A LOW priority Command waits at most twice the aging time for HIGH priority Commands,
+     * those submitted after that are executed after it.
+     */
+    @Test
+    public void testAgingBound() throws InterruptedException {
+        occupyThread();
+
+        commandProcessor.doAsynchronously(new LowCommand("low", executionOrder), null);
+        commandProcessor.doAsynchronously(new HighCommand("high-early", executionOrder), null);
+        Thread.sleep(2L * AGING_MILLIS + 50L);
+        commandProcessor.doAsynchronously(new HighCommand("high-late", executionOrder), null);
+        commandProcessor.doAsynchronously(new NormalCommand("normal-late", executionOrder), null);
+        awaitLast(new LowCommand("last", executionOrder));
+
+        Assert.assertEquals(executionOrder, Arrays.asList("high-early", "low", "high-late", "normal-late", "last"));
+    }
+
+    /**
+     * The priority of a Command without a CommandPriority annotation follows from the action
+     * of its class name, as recognized by the semantics of the application.
+     */
+    @Test
+    public void testPriorityFromApplicationSemantics() throws InterruptedException, CoreRouterSemanticsException {
+        new TestApplication(null, commandProcessor);
+        occupyThread();
+
+        commandProcessor.doAsynchronously(new SubmitAuthorizationCommand("submit", executionOrder), null);
+        commandProcessor.doAsynchronously(new PutAuthorizationCommand("put", executionOrder), null);
+        commandProcessor.doAsynchronously(new GetAuthorizationCommand("get", executionOrder), null);
+        awaitLast(new SubmitAuthorizationCommand("last", executionOrder));
+
+        Assert.assertEquals(executionOrder, Arrays.asList("get", "put", "submit", "last"));
+    }
+
+    /**
+     * Block the single thread of the CommandProcessor, so that the Commands submitted next wait.
+     */
+    private void occupyThread() throws InterruptedException {
+        GatedCommand occupying = new GatedCommand("occupying", gate);
+        commandProcessor.doAsynchronously(occupying, null);
+        Assert.assertTrue(occupying.awaitStarted(TIMEOUT_MILLIS));
+    }
+
+    /**
+     * Submit the last Command, which must be the last to be executed, open the gate and wait
+     * for the last Command to complete.
+     */
+    private void awaitLast(final Callable<String> last) throws InterruptedException {
+        RecordingCallback<String> callback = new RecordingCallback<>();
+        commandProcessor.doAsynchronously(last, callback);
+        gate.countDown();
+        Assert.assertTrue(callback.awaitNotified(TIMEOUT_MILLIS));
+    }
+
+    // ==========================================================================================
+    // Commands that record the order of their execution
+    // ==========================================================================================
+    private abstract static class OrderRecordingCommand
+    implements Callable<String> {
+        private final String name;
+        private final List<String> executionOrder;
+
+        private OrderRecordingCommand(final String name, final List<String> executionOrder) {
+            this.name = name;
+            this.executionOrder = executionOrder;
+        }
+
+        @Override
+        public String call() {
+            executionOrder.add(name);
+            return name;
+        }
+    }
+
+    @AsynchronouslyExecutableCommand
+    @CommandPriority(CommandPriority.Priority.HIGH)
+    public static class HighCommand extends OrderRecordingCommand {
+        public HighCommand(final String name, final List<String> executionOrder) {
+            super(name, executionOrder);
+        }
+    }
+
+    @AsynchronouslyExecutableCommand
+    @CommandPriority(CommandPriority.Priority.NORMAL)
+    public static class NormalCommand extends OrderRecordingCommand {
+        public NormalCommand(final String name, final List<String> executionOrder) {
+            super(name, executionOrder);
+        }
+    }
+
+    @AsynchronouslyExecutableCommand
+    @CommandPriority(CommandPriority.Priority.LOW)
+    public static class LowCommand extends OrderRecordingCommand {
+        public LowCommand(final String name, final List<String> executionOrder) {
+            super(name, executionOrder);
+        }
+    }
+
+    // ==========================================================================================
+    // Commands without a CommandPriority annotation, prioritized by the action of their name
+    // ==========================================================================================
+    @AsynchronouslyExecutableCommand
+    public static class GetAuthorizationCommand extends OrderRecordingCommand {
+        public GetAuthorizationCommand(final String name, final List<String> executionOrder) {
+            super(name, executionOrder);
+        }
+    }
+
+    @AsynchronouslyExecutableCommand
+    public static class PutAuthorizationCommand extends OrderRecordingCommand {
+        public PutAuthorizationCommand(final String name, final List<String> executionOrder) {
+            super(name, executionOrder);
+        }
+    }
+
+    @AsynchronouslyExecutableCommand
+    public static class SubmitAuthorizationCommand extends OrderRecordingCommand {
+        public SubmitAuthorizationCommand(final String name, final List<String> executionOrder) {
+            super(name, executionOrder);
+        }
+    }
+}
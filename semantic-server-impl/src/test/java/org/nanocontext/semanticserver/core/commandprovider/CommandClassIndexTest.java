@@ -0,0 +1,44 @@
+package org.nanocontext.semanticserver.core.commandprovider;
+
+import org.nanocontext.semanticserver.semanticserver.semantics.ApplicationSemanticsImpl;
+import org.nanocontext.semanticserver.test.commands.PostAuthorizationCommand;
+import org.nanocontext.semanticserverapi.core.commandprovider.CommandClassIndex;
+import org.nanocontext.semanticserverapi.core.semantics.ApplicationSemantics;
+import org.nanocontext.semanticserverapi.core.semantics.CommandClassSemantics;
+import org.nanocontext.semanticserverapi.core.semantics.exceptions.CoreRouterSemanticsException;
+import org.testng.Assert;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+
+import java.util.Collections;
+
+/**
+ * CommandClassIndex must find the same command classes that CommandClassSemantics.describes().
+ */
+public class CommandClassIndexTest {
+    private ApplicationSemantics applicationSemantics;
+    private CommandClassIndex commandClassIndex;
+
+    @BeforeTest
+    public void beforeTest() throws CoreRouterSemanticsException {
+        this.applicationSemantics = ApplicationSemanticsImpl.create("org.nanocontext.semanticserver.test.model");
+        this.commandClassIndex = new CommandClassIndex();
+        this.commandClassIndex.register(PostAuthorizationCommand.class);
+    }
+
+    @Test
+    public void testLookup() throws CoreRouterSemanticsException {
+        CommandClassSemantics semantics = applicationSemantics.createCommandClassSemantic("PostAuthorizationCommand");
+
+        Assert.assertTrue(semantics.describes(PostAuthorizationCommand.class));
+        Assert.assertEquals(commandClassIndex.lookup(semantics), Collections.singletonList(PostAuthorizationCommand.class));
+    }
+
+    @Test
+    public void testLookupNotFound() throws CoreRouterSemanticsException {
+        CommandClassSemantics semantics = applicationSemantics.createCommandClassSemantic("GetAuthorizationCommand");
+
+        Assert.assertFalse(semantics.describes(PostAuthorizationCommand.class));
+        Assert.assertTrue(commandClassIndex.lookup(semantics).isEmpty());
+    }
+}
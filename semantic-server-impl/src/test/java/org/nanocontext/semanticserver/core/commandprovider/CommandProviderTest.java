@@ -1,6 +1,7 @@
 package org.nanocontext.semanticserver.core.commandprovider;
 
 import org.nanocontext.semanticserver.semanticserver.commandprovider.RootCommandProvider;
+import org.nanocontext.semanticserver.semanticserver.commandprovider.exceptions.CommandLookupIncompleteException;
 import org.nanocontext.semanticserverapi.core.commandprocessor.RoutingToken;
 import org.nanocontext.semanticserverapi.core.commandprovider.CommandInstantiationToken;
 import org.nanocontext.semanticserverapi.core.commandprovider.exceptions.CommandProviderException;
@@ -11,12 +12,20 @@ import org.nanocontext.semanticserverapi.core.semantics.ProcessorBridgeMethodSem
 import org.nanocontext.semanticserverapi.core.semantics.exceptions.CoreRouterSemanticsException;
 import org.nanocontext.semanticserver.semanticserver.applicationbridge.ProductTypeRoutingToken;
 import org.nanocontext.semanticserver.test.model.Authorization;
+import org.nanocontext.semanticserver.test.commandprovider.NotFoundCommandProvider;
+import org.nanocontext.semanticserver.test.commandprovider.ServicesClassLoader;
+import org.nanocontext.semanticserver.test.commandprovider.TestCommandProviderImpl;
 import org.nanocontext.semanticserver.test.model.AuthorizationId;
+import org.nanocontext.semanticserverapi.core.commandprovider.CommandCapability;
 import org.testng.Assert;
 import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.BeforeTest;
 import org.testng.annotations.Test;
 
+import java.io.IOException;
+import java.util.Map;
+
 /**
  * Created by cbeckey on 11/11/15.
  */
@@ -35,6 +44,11 @@ public class CommandProviderTest {
         applicationSemantics = ApplicationSemanticsImpl.create("com.paypal.semanticserver.test.model");
     }
 
+    @BeforeMethod
+    public void b4Method() {
+        NotFoundCommandProvider.reset();
+    }
+
     @Test
     public void testFindCommand() throws CoreRouterSemanticsException, CommandProviderException {
         ProcessorBridgeMethodSemantics rms = applicationSemantics.createProcessorBridgeMethodSemantics("postAuthorization");
@@ -48,4 +62,166 @@ public class CommandProviderTest {
         Assert.assertNotNull(commandRank.getCommandProvider());
 
     }
+
+    @Test
+    public void testDeclaredCapabilities() throws CoreRouterSemanticsException {
+        ProcessorBridgeMethodSemantics rms = applicationSemantics.createProcessorBridgeMethodSemantics("postAuthorization");
+        CommandClassSemantics ccs = applicationSemantics.createCommandClassSemantic(rms);
+
+        boolean declared = false;
+        for (CommandCapability capability : new TestCommandProviderImpl().getCapabilities(applicationSemantics)) {
+            declared |= capability.getCommandClassSemantics().equals(ccs) && capability.isAnyRoutingToken();
+        }
+        Assert.assertTrue(declared);
+    }
+
+    @Test
+    public void testReloadReplacesKnownProviders() throws CoreRouterSemanticsException, CommandProviderException {
+        RootCommandProvider reloadingProvider = new RootCommandProvider(Thread.currentThread().getContextClassLoader());
+        ProcessorBridgeMethodSemantics rms = applicationSemantics.createProcessorBridgeMethodSemantics("postAuthorization");
+        CommandClassSemantics ccs = applicationSemantics.createCommandClassSemantic(rms);
+        RoutingToken rt = new ProductTypeRoutingToken("USACON");
+
+        CommandInstantiationToken before =
+                reloadingProvider.findCommand(rt, ccs, new Class[]{Authorization.class}, AuthorizationId.class);
+        Assert.assertNotNull(before);
+        long generation = reloadingProvider.getGeneration();
+
+        reloadingProvider.reload();
+
+        Assert.assertEquals(reloadingProvider.getGeneration(), generation + 1);
+        CommandInstantiationToken after =
+                reloadingProvider.findCommand(rt, ccs, new Class[]{Authorization.class}, AuthorizationId.class);
+        Assert.assertNotNull(after);
+        Assert.assertNotSame(after.getCommandProvider(), before.getCommandProvider());
+        // the provider of the previous generation is no longer known, its token is refused
+        Assert.assertNull(reloadingProvider.createCommand(before, new Object[]{new Authorization()}));
+    }
+
+    @Test
+    public void testNotFoundIsRememberedUntilItExpires() throws Exception {
+        RootCommandProvider notFoundProvider = createNotFoundRootCommandProvider(NotFoundCommandProvider.class);
+        notFoundProvider.setNegativeCacheTimeToLiveMillis(200L);
+        CommandClassSemantics ccs = applicationSemantics.createCommandClassSemantic("PostAuthorizationCommand");
+        RoutingToken rt = new ProductTypeRoutingToken("USACON");
+
+        Assert.assertNull(notFoundProvider.findCommand(rt, ccs, null, null));
+        Assert.assertNull(notFoundProvider.findCommand(rt, ccs, null, null));
+        Assert.assertEquals(NotFoundCommandProvider.getFindCount(), 1);
+
+        Thread.sleep(300L);
+        Assert.assertNull(notFoundProvider.findCommand(rt, ccs, null, null));
+        Assert.assertEquals(NotFoundCommandProvider.getFindCount(), 2);
+    }
+
+    @Test
+    public void testZeroTimeToLiveDisablesTheNegativeCache() throws Exception {
+        RootCommandProvider notFoundProvider = createNotFoundRootCommandProvider(NotFoundCommandProvider.class);
+        notFoundProvider.setNegativeCacheTimeToLiveMillis(0L);
+        CommandClassSemantics ccs = applicationSemantics.createCommandClassSemantic("PostAuthorizationCommand");
+        RoutingToken rt = new ProductTypeRoutingToken("USACON");
+
+        Assert.assertNull(notFoundProvider.findCommand(rt, ccs, null, null));
+        Assert.assertNull(notFoundProvider.findCommand(rt, ccs, null, null));
+        Assert.assertEquals(NotFoundCommandProvider.getFindCount(), 2);
+    }
+
+    @Test
+    public void testReloadForgetsNotFound() throws Exception {
+        RootCommandProvider notFoundProvider = createNotFoundRootCommandProvider(NotFoundCommandProvider.class);
+        CommandClassSemantics ccs = applicationSemantics.createCommandClassSemantic("PostAuthorizationCommand");
+        RoutingToken rt = new ProductTypeRoutingToken("USACON");
+
+        Assert.assertNull(notFoundProvider.findCommand(rt, ccs, null, null));
+        Assert.assertNull(notFoundProvider.findCommand(rt, ccs, null, null));
+        Assert.assertEquals(NotFoundCommandProvider.getFindCount(), 1);
+
+        notFoundProvider.reload();
+        Assert.assertNull(notFoundProvider.findCommand(rt, ccs, null, null));
+        Assert.assertEquals(NotFoundCommandProvider.getFindCount(), 2);
+    }
+
+    @Test
+    public void testTimedOutLookupIsNotRemembered() throws Exception {
+        RootCommandProvider notFoundProvider = createNotFoundRootCommandProvider(
+                NotFoundCommandProvider.class, NotFoundCommandProvider.Other.class);
+        notFoundProvider.setParallelProbing(2, 50L);
+        NotFoundCommandProvider.setDelayMillis(5000L);
+        CommandClassSemantics ccs = applicationSemantics.createCommandClassSemantic("PostAuthorizationCommand");
+        RoutingToken rt = new ProductTypeRoutingToken("USACON");
+
+        try {
+            for (int lookup = 0; lookup < 2; ++lookup) {
+                try {
+                    notFoundProvider.findCommand(rt, ccs, null, null);
+                    Assert.fail("a lookup that was not answered must not be rejected");
+                } catch (CommandLookupIncompleteException cliX) {
+                    Assert.assertEquals(cliX.getUnanswered().size(), 2);
+                }
+            }
+            // both providers were asked by both lookups, neither lookup was rejected
+            Assert.assertEquals(NotFoundCommandProvider.getFindCount(), 4);
+            Assert.assertEquals(notFoundProvider.getRejectedLookupCount(), 0L);
+        } finally {
+            notFoundProvider.setParallelProbing(0, 0L);
+        }
+    }
+
+    @Test
+    public void testSlowProviderDoesNotStallLookup() throws Exception {
+        RootCommandProvider probingProvider = createNotFoundRootCommandProvider(
+                TestCommandProviderImpl.class, NotFoundCommandProvider.class);
+        probingProvider.setParallelProbing(2, 100L);
+        NotFoundCommandProvider.setDelayMillis(5000L);
+        ProcessorBridgeMethodSemantics rms = applicationSemantics.createProcessorBridgeMethodSemantics("postAuthorization");
+        CommandClassSemantics ccs = applicationSemantics.createCommandClassSemantic(rms);
+        RoutingToken rt = new ProductTypeRoutingToken("USACON");
+
+        try {
+            long start = System.nanoTime();
+            try {
+                probingProvider.findCommand(rt, ccs, new Class[]{Authorization.class}, AuthorizationId.class);
+                Assert.fail("the slow provider may also provide the command, the lookup must not resolve");
+            } catch (CommandLookupIncompleteException cliX) {
+                Assert.assertEquals(cliX.getUnanswered().size(), 1);
+            }
+            long elapsedMillis = (System.nanoTime() - start) / 1000000L;
+
+            // the slow provider is abandoned at the timeout
+            Assert.assertTrue(elapsedMillis < 2000L, "the lookup took " + elapsedMillis + "ms");
+            Assert.assertEquals(NotFoundCommandProvider.getFindCount(), 1);
+
+            long deadline = System.currentTimeMillis() + 2000L;
+            while (NotFoundCommandProvider.getInterruptedCount() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10L);
+            }
+            Assert.assertEquals(NotFoundCommandProvider.getInterruptedCount(), 1);
+        } finally {
+            probingProvider.setParallelProbing(0, 0L);
+        }
+    }
+
+    @Test
+    public void testRejectedLookupsAreCountedByRoutingToken() throws Exception {
+        RootCommandProvider notFoundProvider = createNotFoundRootCommandProvider(NotFoundCommandProvider.class);
+        CommandClassSemantics ccs = applicationSemantics.createCommandClassSemantic("PostAuthorizationCommand");
+        RoutingToken usacon = new ProductTypeRoutingToken("USACON");
+        RoutingToken other = new ProductTypeRoutingToken("OTHER");
+
+        notFoundProvider.findCommand(usacon, ccs, null, null);
+        // answered by the negative cache and still counted
+        notFoundProvider.findCommand(usacon, ccs, null, null);
+        notFoundProvider.findCommand(other, ccs, null, null);
+
+        Map<RoutingToken, Long> counts = notFoundProvider.getRejectedLookupCounts();
+        Assert.assertEquals(counts.size(), 2);
+        Assert.assertEquals(counts.get(usacon), Long.valueOf(2L));
+        Assert.assertEquals(counts.get(other), Long.valueOf(1L));
+        Assert.assertEquals(notFoundProvider.getRejectedLookupCount(), 3L);
+        Assert.assertEquals(NotFoundCommandProvider.getFindCount(), 2);
+    }
+
+    private RootCommandProvider createNotFoundRootCommandProvider(final Class<?>... providerClasses) throws IOException {
+        return new RootCommandProvider(new ServicesClassLoader(getClass().getClassLoader(), providerClasses));
+    }
 }
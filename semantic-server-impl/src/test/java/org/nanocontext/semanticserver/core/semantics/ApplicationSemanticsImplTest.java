@@ -0,0 +1,102 @@
+package org.nanocontext.semanticserver.core.semantics;
+
+import org.nanocontext.semanticserver.semanticserver.semantics.ApplicationSemanticsImpl;
+import org.nanocontext.semanticserverapi.core.semantics.ApplicationSemantics;
+import org.nanocontext.semanticserverapi.core.semantics.CommandClassSemantics;
+import org.nanocontext.semanticserverapi.core.semantics.CommandFactoryMethodSemantics;
+import org.nanocontext.semanticserverapi.core.semantics.exceptions.CoreRouterSemanticsException;
+import org.testng.Assert;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The CommandClassSemantics created by ApplicationSemanticsImpl are interned.
+ */
+public class ApplicationSemanticsImplTest {
+    private ApplicationSemantics applicationSemantics;
+
+    @BeforeTest
+    public void beforeTest() throws CoreRouterSemanticsException {
+        this.applicationSemantics = ApplicationSemanticsImpl.create("org.nanocontext.semanticserver.test.model");
+    }
+
+    @Test
+    public void testCommandClassSemanticsAreInterned() throws CoreRouterSemanticsException {
+        CommandClassSemantics byName = applicationSemantics.createCommandClassSemantic("GetAuthorizationListByAuthorizationIdCommand");
+        CommandClassSemantics byParts = applicationSemantics.createCommandClassSemantic(
+                byName.getAction(), byName.getSubject(), byName.getCollectionType(), byName.getPreposition(), byName.getObject());
+        CommandFactoryMethodSemantics factoryMethod = applicationSemantics.createFactoryMethodSemantic("createGetAuthorizationListByAuthorizationIdCommand");
+        CommandClassSemantics bySemantics = applicationSemantics.createCommandClassSemantic(factoryMethod);
+
+        Assert.assertSame(applicationSemantics.createCommandClassSemantic("GetAuthorizationListByAuthorizationIdCommand"), byName);
+        Assert.assertSame(byParts, byName);
+        Assert.assertSame(bySemantics, byName);
+        Assert.assertSame(applicationSemantics.internCommandClassSemantic(byName), byName);
+    }
+
+    @Test
+    public void testFingerprint() throws CoreRouterSemanticsException {
+        CommandClassSemantics commandClass = applicationSemantics.createCommandClassSemantic("GetAuthorizationByAuthorizationIdCommand");
+        CommandFactoryMethodSemantics factoryMethod = applicationSemantics.createFactoryMethodSemantic("createGetAuthorizationByAuthorizationIdCommand");
+        CommandClassSemantics other = applicationSemantics.createCommandClassSemantic("GetAuthorizationListByAuthorizationIdCommand");
+
+        Assert.assertEquals(factoryMethod.getFingerprint(), commandClass.getFingerprint());
+        Assert.assertTrue(commandClass.directMapping(factoryMethod));
+        Assert.assertNotEquals(other.getFingerprint(), commandClass.getFingerprint());
+        Assert.assertNotEquals(other, commandClass);
+        Assert.assertFalse(commandClass.directMapping(other));
+    }
+
+    @Test
+    public void testUnreferencedSemanticsAreNotRetained() throws CoreRouterSemanticsException, InterruptedException {
+        CommandClassSemantics template = applicationSemantics.createCommandClassSemantic("PutAuthorizationCommand");
+        WeakReference<CommandClassSemantics> interned = new WeakReference<>(applicationSemantics.createCommandClassSemantic(
+                template.getAction(), "AuthorizationId", null, null, null));
+
+        for (int n = 0; n < 50 && interned.get() != null; ++n) {
+            System.gc();
+            Thread.sleep(10L);
+        }
+        Assert.assertNull(interned.get(), "the interned semantics are still referenced");
+
+        // an equal instance becomes the canonical instance
+        CommandClassSemantics recreated = applicationSemantics.createCommandClassSemantic(
+                template.getAction(), "AuthorizationId", null, null, null);
+        Assert.assertSame(applicationSemantics.internCommandClassSemantic(recreated), recreated);
+    }
+
+    @Test
+    public void testConcurrentCreationIsInterned() throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<CommandClassSemantics>> created = new ArrayList<>();
+            for (int n = 0; n < 8; ++n) {
+                created.add(executor.submit(new Callable<CommandClassSemantics>() {
+                    @Override
+                    public CommandClassSemantics call() throws Exception {
+                        start.await();
+                        return applicationSemantics.createCommandClassSemantic("DeleteAuthorizationByAuthorizationIdCommand");
+                    }
+                }));
+            }
+            start.countDown();
+
+            CommandClassSemantics canonical = created.get(0).get();
+            for (Future<CommandClassSemantics> result : created) {
+                Assert.assertSame(result.get(), canonical);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
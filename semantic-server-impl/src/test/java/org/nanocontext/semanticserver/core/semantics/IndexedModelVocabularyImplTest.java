@@ -0,0 +1,114 @@
+package org.nanocontext.semanticserver.core.semantics;
+
+import org.nanocontext.semanticserver.semanticserver.semantics.IndexedModelVocabularyImpl;
+import org.nanocontext.semanticserver.semanticserver.semantics.ModelVocabularyImpl;
+import org.nanocontext.semanticserverapi.core.semantics.ModelVocabulary;
+import org.nanocontext.semanticserverapi.core.semantics.exceptions.CoreRouterSemanticsException;
+import org.testng.Assert;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * IndexedModelVocabularyImpl must resolve exactly the classes that ModelVocabularyImpl does.
+ */
+public class IndexedModelVocabularyImplTest {
+    private static final String[] PACKAGES = new String[]{"org.nanocontext.semanticserver.test.model", "java.util"};
+
+    private IndexedModelVocabularyImpl indexedVocabulary;
+    private ModelVocabulary vocabulary;
+
+    @BeforeTest
+    public void beforeTest() throws CoreRouterSemanticsException {
+        this.indexedVocabulary = IndexedModelVocabularyImpl.create(PACKAGES);
+        this.vocabulary = ModelVocabularyImpl.create(PACKAGES);
+    }
+
+    @DataProvider
+    public Object[][] simpleNames() {
+        return new Object[][] {
+                new Object[]{"Authorization"},
+                new Object[]{"AuthorizationId"},
+                new Object[]{"List"},
+                new Object[]{"Unknown"},
+                new Object[]{"authorization"},
+                new Object[]{""},
+        };
+    }
+
+    @Test (dataProvider = "simpleNames")
+    public void testGetClass(final String simpleName) {
+        Class<?> expected = vocabulary.getClass(simpleName);
+
+        Assert.assertEquals(indexedVocabulary.getClass(simpleName), expected);
+        // the second lookup is from the cache
+        Assert.assertEquals(indexedVocabulary.getClass(simpleName), expected);
+    }
+
+    @Test (dependsOnMethods = "testGetClass")
+    public void testRefresh() {
+        indexedVocabulary.refresh();
+
+        Assert.assertNotNull(indexedVocabulary.getClass("Authorization"));
+        Assert.assertNull(indexedVocabulary.getClass("Unknown"));
+    }
+
+    @Test
+    public void testCachedMissesAreBounded() throws CoreRouterSemanticsException {
+        IndexedModelVocabularyImpl boundedVocabulary = IndexedModelVocabularyImpl.create(PACKAGES);
+
+        for (int n = 0; n < IndexedModelVocabularyImpl.MAXIMUM_CACHED_MISSES + 10; ++n) {
+            Assert.assertNull(boundedVocabulary.getClass("Unknown" + n));
+        }
+        Assert.assertTrue(boundedVocabulary.getCachedMissCount() <= IndexedModelVocabularyImpl.MAXIMUM_CACHED_MISSES);
+        Assert.assertTrue(boundedVocabulary.getCachedMissCount() > 0);
+        Assert.assertNotNull(boundedVocabulary.getClass("Authorization"));
+    }
+
+    /**
+     * A package in a directory whose name includes characters that are encoded in a URL must
+     * still be scanned, so that a class that is not in the package is not loaded.
+     */
+    @Test
+    public void testScanDirectoryWithEncodedName() throws IOException, CoreRouterSemanticsException {
+        Path classes = Files.createTempDirectory("model+classes ");
+        Path packageDirectory = Files.createDirectories(classes.resolve("org/nanocontext/semanticserver/test/model"));
+        try (InputStream classFile = getClass().getResourceAsStream("/org/nanocontext/semanticserver/test/model/Authorization.class")) {
+            Files.copy(classFile, packageDirectory.resolve("Authorization.class"));
+        }
+
+        final AtomicInteger loadCount = new AtomicInteger();
+        // no parent, so that the package is only found in the temporary directory
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{classes.toUri().toURL()}, null) {
+                @Override
+                public Class<?> loadClass(final String name) throws ClassNotFoundException {
+                    if (name.startsWith("org.nanocontext.semanticserver.test.model.")) {
+                        loadCount.incrementAndGet();
+                    }
+                    return super.loadClass(name);
+                }
+            }) {
+            IndexedModelVocabularyImpl vocabulary = IndexedModelVocabularyImpl.create(
+                    classLoader, new String[]{"org.nanocontext.semanticserver.test.model"});
+
+            Assert.assertEquals(vocabulary.getClass("Authorization").getName(), "org.nanocontext.semanticserver.test.model.Authorization");
+            Assert.assertEquals(loadCount.get(), 1);
+            Assert.assertNull(vocabulary.getClass("Unknown"));
+            // the package was scanned so the unknown class was never loaded
+            Assert.assertEquals(loadCount.get(), 1);
+        } finally {
+            Files.delete(packageDirectory.resolve("Authorization.class"));
+            for (Path directory = packageDirectory; !directory.equals(classes.getParent()); directory = directory.getParent()) {
+                Files.delete(directory);
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package org.nanocontext.semanticserver.core.semantics;
+
+import org.nanocontext.semanticserver.semanticserver.semantics.ApplicationSemanticsImpl;
+import org.nanocontext.semanticserverapi.core.semantics.ApplicationSemantics;
+import org.nanocontext.semanticserverapi.core.semantics.LogicalNameParser;
+import org.nanocontext.semanticserverapi.core.semantics.ParsedName;
+import org.nanocontext.semanticserverapi.core.semantics.exceptions.CoreRouterSemanticsException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the regular expression and the trie implementations of the LogicalNameParser.
+ * This is not run as part of the unit tests, run the main() method to execute it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class LogicalNameParserBenchmark {
+    @Param({"REGULAR_EXPRESSION", "TRIE"})
+    public ApplicationSemanticsImpl.LogicalNameParserType parserType;
+
+    @Param({"GetAuthorization", "GetAuthorizationListByAuthorizationId", "deleteAuthorizationSetAgainstAccount"})
+    public String logicalName;
+
+    private LogicalNameParser parser;
+
+    @Setup
+    public void setup() throws CoreRouterSemanticsException {
+        ApplicationSemantics defaults = ApplicationSemanticsImpl.create("org.nanocontext.semanticserver.test.model");
+        this.parser = new ApplicationSemanticsImpl(
+                null,
+                defaults.getActionVocabulary(), defaults.getSubjectVocabulary(),
+                defaults.getPrepositionVocabulary(), defaults.getObjectVocabulary(),
+                parserType
+        ).getLogicalNameParserImpl();
+    }
+
+    @Benchmark
+    public ParsedName parse() throws CoreRouterSemanticsException {
+        return parser.parse(logicalName);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(LogicalNameParserBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,71 @@
+package org.nanocontext.semanticserver.core.semantics;
+
+import org.nanocontext.semanticserver.semanticserver.semantics.VocabularyImpl;
+import org.nanocontext.semanticserverapi.core.semantics.Vocabulary;
+import org.nanocontext.semanticserverapi.core.semantics.VocabularyWord;
+import org.nanocontext.semanticserverapi.core.semantics.exceptions.CoreRouterSemanticsException;
+import org.testng.Assert;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+/**
+ * The indexed lookup of VocabularyImpl must find the same words as matching
+ * each word expression.
+ */
+public class VocabularyImplTest {
+    private Vocabulary vocabulary;
+
+    @BeforeTest
+    public void beforeTest() throws CoreRouterSemanticsException, IOException {
+        File vocabularyFile = File.createTempFile("vocabulary", ".csv");
+        vocabularyFile.deleteOnExit();
+        try (FileWriter writer = new FileWriter(vocabularyFile)) {
+            writer.write("GET,[gG]et|[rR]ead\n");
+            writer.write("POST,[pP]ost|(?:[cC]reate)\n");
+            writer.write("SEARCH,[sS]earch[A-Z]*\n");
+        }
+        this.vocabulary = VocabularyImpl.create(vocabularyFile.toURI().toURL());
+    }
+
+    @DataProvider
+    public Object[][] synonyms() {
+        return new Object[][] {
+                new Object[]{"get", "GET"},
+                new Object[]{"Read", "GET"},
+                new Object[]{"Post", "POST"},
+                new Object[]{"create", "POST"},
+                new Object[]{"search", "SEARCH"},
+                new Object[]{"SearchALL", "SEARCH"},
+                new Object[]{"Gets", null},
+                new Object[]{"searchAll", null},
+                new Object[]{"", null},
+        };
+    }
+
+    @Test (dataProvider = "synonyms")
+    public void testFind(final String synonym, final String expectedNominalValue) {
+        VocabularyWord word = vocabulary.find(synonym);
+
+        if (expectedNominalValue == null) {
+            Assert.assertNull(word);
+            Assert.assertFalse(vocabulary.matchesAny(synonym));
+        } else {
+            Assert.assertNotNull(word);
+            Assert.assertEquals(word.getNominalValue(), expectedNominalValue);
+            Assert.assertTrue(word.matches(synonym));
+            Assert.assertTrue(vocabulary.matchesAny(synonym));
+        }
+    }
+
+    @Test
+    public void testAnyPatternIsCompiledOnce() {
+        Assert.assertSame(vocabulary.getAnyPattern(), vocabulary.getAnyPattern());
+        Assert.assertTrue(vocabulary.getAnyPattern().matcher("Read").matches());
+        Assert.assertTrue(vocabulary.getAnyPattern().matcher("searchABC").matches());
+    }
+}
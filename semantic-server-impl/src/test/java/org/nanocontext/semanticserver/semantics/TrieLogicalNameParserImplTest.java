@@ -0,0 +1,74 @@
+package org.nanocontext.semanticserver.semanticserver.semantics;
+
+import org.nanocontext.semanticserverapi.core.semantics.CollectionType;
+import org.nanocontext.semanticserverapi.core.semantics.ParsedName;
+import org.nanocontext.semanticserverapi.core.semantics.exceptions.CoreRouterSemanticsException;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the matching of overlapping vocabulary words, where the trie parser matches the
+ * longest word.
+ */
+public class TrieLogicalNameParserImplTest {
+    private TrieLogicalNameParserImpl parser;
+
+    @BeforeClass
+    public void b4Class() throws CoreRouterSemanticsException {
+        parser = TrieLogicalNameParserImpl.create(
+                VocabularyImpl.createDefaultActionsVocabulary(),
+                VocabularyImpl.createDefaultPrepositionVocabulary());
+        Assert.assertNotNull(parser);
+    }
+
+    @Test
+    public void testLongestMatch() {
+        VocabularyTrie<String> trie = VocabularyTrie.<String>builder()
+                .add("In", "IN")
+                .add("Into", "INTO")
+                .build();
+
+        int node = trie.longestMatch("IntoAccount", 0);
+        Assert.assertEquals(trie.getValue(node), "INTO");
+        Assert.assertEquals(trie.getLength(node), 4);
+
+        node = trie.longestMatch("IntAccount", 0);
+        Assert.assertEquals(trie.getValue(node), "IN");
+        Assert.assertEquals(trie.getLength(node), 2);
+
+        Assert.assertEquals(trie.longestMatch("Account", 0), VocabularyTrie.NO_MATCH);
+    }
+
+    @Test
+    public void testFind() {
+        VocabularyTrie<String> trie = VocabularyTrie.<String>builder()
+                .add("In", "IN")
+                .add("Into", "INTO")
+                .build();
+
+        Assert.assertEquals(trie.find("AuthorizationIntoAccount", 0), 13);
+        Assert.assertEquals(trie.find("AuthorizationIntoAccount", 14), VocabularyTrie.NO_MATCH);
+        Assert.assertEquals(trie.find("Authorization", 0), VocabularyTrie.NO_MATCH);
+    }
+
+    @Test
+    public void testIntoIsNotParsedAsIn() throws CoreRouterSemanticsException {
+        ParsedName parsedName = parser.parse("PutAuthorizationIntoAccount");
+
+        Assert.assertEquals(parsedName.getAction().getNominalValue(), "PUT");
+        Assert.assertEquals(parsedName.getSubject(), "Authorization");
+        Assert.assertEquals(parsedName.getPreposition().getNominalValue(), "INTO");
+        Assert.assertEquals(parsedName.getObject(), "Account");
+    }
+
+    @Test
+    public void testIn() throws CoreRouterSemanticsException {
+        ParsedName parsedName = parser.parse("GetAuthorizationListInAccount");
+
+        Assert.assertEquals(parsedName.getSubject(), "Authorization");
+        Assert.assertEquals(parsedName.getCollectionType(), CollectionType.LIST);
+        Assert.assertEquals(parsedName.getPreposition().getNominalValue(), "IN");
+        Assert.assertEquals(parsedName.getObject(), "Account");
+    }
+}
@@ -0,0 +1,58 @@
+package org.nanocontext.semanticserver.test;
+
+import org.nanocontext.semanticserverapi.core.commandprocessor.AsynchronousExecutionCallback;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An AsynchronousExecutionCallback that records its (first) notification and the thread that
+ * notified it.
+ */
+public class RecordingCallback<R>
+implements AsynchronousExecutionCallback<R> {
+    private final CountDownLatch notified = new CountDownLatch(1);
+    private volatile R result;
+    private volatile Throwable failure;
+    private volatile Thread notifyingThread;
+
+    @Override
+    public void success(final R result) {
+        this.result = result;
+        notified(Thread.currentThread());
+    }
+
+    @Override
+    public void failure(final Throwable t) {
+        this.failure = t;
+        notified(Thread.currentThread());
+    }
+
+    private void notified(final Thread thread) {
+        this.notifyingThread = thread;
+        this.notified.countDown();
+    }
+
+    /**
+     * @return true if the callback was notified within the timeout
+     */
+    public boolean awaitNotified(final long timeoutMillis) throws InterruptedException {
+        return notified.await(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public boolean isNotified() {
+        return notified.getCount() == 0L;
+    }
+
+    public R getResult() {
+        return result;
+    }
+
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    public Thread getNotifyingThread() {
+        return notifyingThread;
+    }
+}
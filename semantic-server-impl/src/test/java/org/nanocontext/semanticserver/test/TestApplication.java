@@ -0,0 +1,71 @@
+package org.nanocontext.semanticserver.test;
+
+import com.paypal.credit.context.Context;
+import org.nanocontext.semanticserver.semanticserver.semantics.ApplicationSemanticsImpl;
+import org.nanocontext.semanticserverapi.core.Application;
+import org.nanocontext.semanticserverapi.core.commandprocessor.CommandProcessor;
+import org.nanocontext.semanticserverapi.core.commandprovider.CommandProvider;
+import org.nanocontext.semanticserverapi.core.datasourceprovider.RootDataSourceProvider;
+import org.nanocontext.semanticserverapi.core.semantics.ApplicationSemantics;
+import org.nanocontext.semanticserverapi.core.semantics.exceptions.CoreRouterSemanticsException;
+
+/**
+ * An Application assembled directly from a CommandProvider and a CommandProcessor,
+ * without a context, over the test model.
+ */
+public class TestApplication
+implements Application {
+    public static final String MODEL_PACKAGE = "org.nanocontext.semanticserver.test.model";
+
+    private final ApplicationSemantics applicationSemantics;
+    private final CommandProvider rootCommandProvider;
+    private final CommandProcessor commandProcessor;
+
+    public TestApplication(final CommandProvider rootCommandProvider, final CommandProcessor commandProcessor)
+            throws CoreRouterSemanticsException {
+        this.applicationSemantics = ApplicationSemanticsImpl.create(MODEL_PACKAGE);
+        this.rootCommandProvider = rootCommandProvider;
+        this.commandProcessor = commandProcessor;
+        this.commandProcessor.setApplication(this);
+    }
+
+    @Override
+    public ClassLoader getClassLoader() {
+        return TestApplication.class.getClassLoader();
+    }
+
+    @Override
+    public ApplicationSemantics getApplicationSemantics() {
+        return applicationSemantics;
+    }
+
+    @Override
+    public CommandProvider getRootCommandProvider() {
+        return rootCommandProvider;
+    }
+
+    @Override
+    public RootDataSourceProvider getServiceProvider() {
+        return null;
+    }
+
+    @Override
+    public CommandProcessor getCommandProcessor() {
+        return commandProcessor;
+    }
+
+    @Override
+    public Context getContext() {
+        return null;
+    }
+
+    @Override
+    public void shutdown() {
+        getCommandProcessor().shutdown();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return getCommandProcessor().isShutdown();
+    }
+}
@@ -0,0 +1,85 @@
+package org.nanocontext.semanticserver.test.commandprovider;
+
+import org.nanocontext.semanticserverapi.core.commandprocessor.RoutingToken;
+import org.nanocontext.semanticserverapi.core.commandprovider.AbstractCommandProvider;
+import org.nanocontext.semanticserverapi.core.commandprovider.CommandInstantiationToken;
+import org.nanocontext.semanticserverapi.core.semantics.CommandClassSemantics;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A CommandProvider that finds no Command, after an optional delay. It is instantiated by a
+ * ServiceLoader so its lookups are counted, and its delay configured, for all instances.
+ * Other is a second CommandProvider of the same behavior, for lookups with more than one candidate.
+ */
+public class NotFoundCommandProvider
+extends AbstractCommandProvider {
+    private static final AtomicInteger findCount = new AtomicInteger();
+    private static final AtomicInteger interruptedCount = new AtomicInteger();
+    private static volatile long delayMillis;
+
+    public static void reset() {
+        findCount.set(0);
+        interruptedCount.set(0);
+        delayMillis = 0L;
+    }
+
+    /**
+     * @param delayMillis the time that each lookup takes
+     */
+    public static void setDelayMillis(final long delayMillis) {
+        NotFoundCommandProvider.delayMillis = delayMillis;
+    }
+
+    /**
+     * @return the number of lookups that the providers have been asked
+     */
+    public static int getFindCount() {
+        return findCount.get();
+    }
+
+    /**
+     * @return the number of lookups that were interrupted during the delay
+     */
+    public static int getInterruptedCount() {
+        return interruptedCount.get();
+    }
+
+    @Override
+    public String getPublisher() {
+        return "notFound";
+    }
+
+    @Override
+    public CommandInstantiationToken findCommand(
+            final RoutingToken routingToken,
+            final CommandClassSemantics commandClassSemantics,
+            final Class<?>[] parameterTypes,
+            final Class<?> resultType) {
+        findCount.incrementAndGet();
+        long delay = delayMillis;
+        if (delay > 0L) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException iX) {
+                interruptedCount.incrementAndGet();
+                Thread.currentThread().interrupt();
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Callable<?> createCommand(final CommandInstantiationToken commandInstantiationToken, final Object[] parameters) {
+        return null;
+    }
+
+    public static class Other
+    extends NotFoundCommandProvider {
+        @Override
+        public String getPublisher() {
+            return "otherNotFound";
+        }
+    }
+}
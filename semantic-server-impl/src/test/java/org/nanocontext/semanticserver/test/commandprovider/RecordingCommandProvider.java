@@ -0,0 +1,148 @@
+package org.nanocontext.semanticserver.test.commandprovider;
+
+import org.nanocontext.semanticserverapi.core.commandprocessor.AbstractBaseCommand;
+import org.nanocontext.semanticserverapi.core.commandprocessor.AsynchronouslyExecutableCommand;
+import org.nanocontext.semanticserverapi.core.commandprocessor.RoutingToken;
+import org.nanocontext.semanticserverapi.core.commandprovider.CommandInstantiationToken;
+import org.nanocontext.semanticserverapi.core.commandprovider.CommandProvider;
+import org.nanocontext.semanticserverapi.core.semantics.CommandClassSemantics;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A CommandProvider that finds a Command for any semantics and parameter types.
+ * The Command records its arguments and then returns the configured result, or throws
+ * the configured exception. If a gate is set then the Command waits for the gate to open
+ * before it completes. If a start signal is set then the Command counts it down when it starts.
+ */
+public class RecordingCommandProvider
+implements CommandProvider {
+    private final AtomicInteger findCount = new AtomicInteger();
+    private volatile Object result;
+    private volatile Exception exception;
+    private volatile CountDownLatch gate;
+    private volatile CountDownLatch startSignal;
+    private final AtomicInteger interruptedCount = new AtomicInteger();
+    private volatile CommandClassSemantics lastCommandClassSemantics;
+    private volatile Class<?> lastResultType;
+    private volatile Object[] lastArguments;
+
+    @Override
+    public String getPublisher() {
+        return "recording";
+    }
+
+    public void setResult(final Object result) {
+        this.result = result;
+        this.exception = null;
+    }
+
+    public void setException(final Exception exception) {
+        this.exception = exception;
+    }
+
+    public void setGate(final CountDownLatch gate) {
+        this.gate = gate;
+    }
+
+    public void setStartSignal(final CountDownLatch startSignal) {
+        this.startSignal = startSignal;
+    }
+
+    /**
+     * @return the number of Commands that were interrupted while waiting for the gate
+     */
+    public int getInterruptedCount() {
+        return interruptedCount.get();
+    }
+
+    /**
+     * @return the number of times that a Command has been looked for
+     */
+    public int getFindCount() {
+        return findCount.get();
+    }
+
+    public CommandClassSemantics getLastCommandClassSemantics() {
+        return lastCommandClassSemantics;
+    }
+
+    public Class<?> getLastResultType() {
+        return lastResultType;
+    }
+
+    /**
+     * @return the arguments of the most recently executed Command
+     */
+    public Object[] getLastArguments() {
+        return lastArguments;
+    }
+
+    @Override
+    public CommandInstantiationToken findCommand(
+            final RoutingToken routingToken,
+            final CommandClassSemantics commandClassSemantics,
+            final Class<?>[] parameterTypes,
+            final Class<?> resultType) {
+        findCount.incrementAndGet();
+        this.lastCommandClassSemantics = commandClassSemantics;
+        this.lastResultType = resultType;
+        return new CommandInstantiationToken() {
+            @Override
+            public CommandProvider getCommandProvider() {
+                return RecordingCommandProvider.this;
+            }
+        };
+    }
+
+    @Override
+    public Callable<?> createCommand(final CommandInstantiationToken commandInstantiationToken, final Object[] parameters) {
+        return new RecordingCommand(parameters);
+    }
+
+    @Override
+    public <R, C extends Callable<R>> C createCommand(
+            final RoutingToken routingToken,
+            final CommandClassSemantics commandClassSemantics,
+            final Object[] parameters,
+            final Class<R> resultType) {
+        return (C) createCommand(findCommand(routingToken, commandClassSemantics, null, resultType), parameters);
+    }
+
+    /**
+     * The Command of every semantics.
+     */
+    @AsynchronouslyExecutableCommand
+    public class RecordingCommand
+    extends AbstractBaseCommand<Object> {
+        private final Object[] arguments;
+
+        private RecordingCommand(final Object[] arguments) {
+            this.arguments = arguments;
+        }
+
+        @Override
+        public Object call() throws Exception {
+            lastArguments = arguments;
+            CountDownLatch startSignal = RecordingCommandProvider.this.startSignal;
+            if (startSignal != null) {
+                startSignal.countDown();
+            }
+            CountDownLatch gate = RecordingCommandProvider.this.gate;
+            if (gate != null) {
+                try {
+                    gate.await();
+                } catch (InterruptedException iX) {
+                    interruptedCount.incrementAndGet();
+                    throw iX;
+                }
+            }
+            if (exception != null) {
+                throw exception;
+            }
+            return result;
+        }
+    }
+}
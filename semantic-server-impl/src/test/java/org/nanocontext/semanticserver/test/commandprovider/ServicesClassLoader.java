@@ -0,0 +1,56 @@
+package org.nanocontext.semanticserver.test.commandprovider;
+
+import org.nanocontext.semanticserverapi.core.commandprovider.CommandProvider;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Enumeration;
+
+/**
+ * A ClassLoader that serves a services file of the given CommandProvider classes in place of
+ * those on the class path, so that a RootCommandProvider discovers only those CommandProviders.
+ * Classes are loaded by the parent.
+ */
+public class ServicesClassLoader
+extends ClassLoader {
+    private static final String SERVICE_RESOURCE = "META-INF/services/" + CommandProvider.class.getName();
+
+    private final URL services;
+
+    public ServicesClassLoader(final ClassLoader parent, final Class<?>... providerClasses) throws IOException {
+        super(parent);
+        StringBuilder sb = new StringBuilder();
+        for (Class<?> providerClass : providerClasses) {
+            sb.append(providerClass.getName()).append('\n');
+        }
+        final byte[] content = sb.toString().getBytes(StandardCharsets.UTF_8);
+        this.services = new URL(null, "services:" + SERVICE_RESOURCE, new URLStreamHandler() {
+            @Override
+            protected URLConnection openConnection(final URL url) {
+                return new URLConnection(url) {
+                    @Override
+                    public void connect() {
+                    }
+
+                    @Override
+                    public InputStream getInputStream() {
+                        return new ByteArrayInputStream(content);
+                    }
+                };
+            }
+        });
+    }
+
+    @Override
+    public Enumeration<URL> getResources(final String name) throws IOException {
+        return SERVICE_RESOURCE.equals(name)
+                ? Collections.enumeration(Collections.singletonList(this.services))
+                : super.getResources(name);
+    }
+}
@@ -1,30 +1,35 @@
 package org.nanocontext.semanticserver.test.commandprovider;
 
 import org.nanocontext.semanticserverapi.core.commandprocessor.RoutingToken;
+import org.nanocontext.semanticserverapi.core.commandprovider.CapabilityDeclaringCommandProvider;
+import org.nanocontext.semanticserverapi.core.commandprovider.CommandCapability;
+import org.nanocontext.semanticserverapi.core.commandprovider.CommandClassIndex;
 import org.nanocontext.semanticserverapi.core.commandprovider.CommandInstantiationToken;
 import org.nanocontext.semanticserverapi.core.commandprovider.CommandProvider;
 import org.nanocontext.semanticserverapi.core.commandprovider.exceptions.CommandProviderException;
+import org.nanocontext.semanticserverapi.core.semantics.ApplicationSemantics;
 import org.nanocontext.semanticserverapi.core.semantics.CommandClassSemantics;
 import org.nanocontext.semanticserver.test.commands.PostAuthorizationCommand;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.reflect.Constructor;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.Callable;
 
 /**
  * Created by cbeckey on 11/11/15.
  */
 public class TestCommandProviderImpl
-implements CommandProvider {
+implements CommandProvider, CapabilityDeclaringCommandProvider {
     private final static Logger LOGGER = LoggerFactory.getLogger(TestCommandProviderImpl.class);
-    private static final Set<Class<? extends Callable<?>>> availableCommands;
+    private static final CommandClassIndex availableCommands;
 
     static {
-        availableCommands = new HashSet<>();
-        availableCommands.add(PostAuthorizationCommand.class);
+        availableCommands = new CommandClassIndex();
+        availableCommands.register(PostAuthorizationCommand.class);
     }
 
     public TestCommandProviderImpl() {
@@ -41,6 +46,15 @@ implements CommandProvider {
         return "testValidWorkflow";
     }
 
+    @Override
+    public Collection<CommandCapability> getCapabilities(final ApplicationSemantics applicationSemantics) {
+        List<CommandCapability> capabilities = new ArrayList<>();
+        for (CommandClassSemantics commandClassSemantics : availableCommands.getCommandClassSemantics(applicationSemantics)) {
+            capabilities.add(new CommandCapability(commandClassSemantics));
+        }
+        return capabilities;
+    }
+
     @Override
     public CommandInstantiationToken findCommand(
             final RoutingToken routingToken,
@@ -48,14 +62,12 @@ implements CommandProvider {
             final Class<?>[] parameters,
             final Class<?> resultType) {
 
-        for (Class<? extends Callable<?>> commandClass : availableCommands) {
-            if (commandClassSemantics.describes(commandClass)) {
-                try {
-                    Constructor ctor = commandClass.getConstructor(parameters);
-                    return new TestCommandInstantiationToken(this, commandClass, ctor);
-                } catch (NoSuchMethodException e) {
-                    // just ignore and go on ...
-                }
+        for (Class<? extends Callable<?>> commandClass : availableCommands.lookup(commandClassSemantics)) {
+            try {
+                Constructor ctor = commandClass.getConstructor(parameters);
+                return new TestCommandInstantiationToken(this, commandClass, ctor);
+            } catch (NoSuchMethodException e) {
+                // just ignore and go on ...
             }
         }
 
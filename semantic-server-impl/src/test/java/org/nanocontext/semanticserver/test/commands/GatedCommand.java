@@ -0,0 +1,68 @@
+package org.nanocontext.semanticserver.test.commands;
+
+import org.nanocontext.semanticserverapi.core.commandprocessor.AbstractBaseCommand;
+import org.nanocontext.semanticserverapi.core.commandprocessor.AsynchronouslyExecutableCommand;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An asynchronously executable Command that signals that it has started and then waits for
+ * its gate to open before it returns its name. The Command records the thread that executed it.
+ */
+@AsynchronouslyExecutableCommand
+public class GatedCommand
+        extends AbstractBaseCommand<String> {
+    private final String name;
+    private final CountDownLatch gate;
+    private final CountDownLatch started = new CountDownLatch(1);
+    private volatile Thread executingThread;
+    private volatile boolean interrupted;
+
+    /**
+     *
+     * @param name the result of the Command
+     * @param gate the gate to wait for, null to not wait
+     */
+    public GatedCommand(final String name, final CountDownLatch gate) {
+        this.name = name;
+        this.gate = gate;
+    }
+
+    @Override
+    public String call() throws InterruptedException {
+        executingThread = Thread.currentThread();
+        started.countDown();
+        if (gate != null) {
+            try {
+                gate.await();
+            } catch (InterruptedException iX) {
+                interrupted = true;
+                throw iX;
+            }
+        }
+        return name;
+    }
+
+    /**
+     * @return true if the Command started within the timeout
+     */
+    public boolean awaitStarted(final long timeoutMillis) throws InterruptedException {
+        return started.await(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public boolean isStarted() {
+        return started.getCount() == 0L;
+    }
+
+    public Thread getExecutingThread() {
+        return executingThread;
+    }
+
+    /**
+     * @return true if the Command was interrupted while it waited for the gate
+     */
+    public boolean isInterrupted() {
+        return interrupted;
+    }
+}
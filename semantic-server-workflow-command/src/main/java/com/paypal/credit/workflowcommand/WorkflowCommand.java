@@ -45,12 +45,26 @@ public class WorkflowCommand<C extends RSProcessorContext, R>
      * A synchronous execution of this command.
      * Asynchronous execution is managed by the CommandProcessor, this is the
      * (only) invocation of the command.
+     * A cancelled asynchronous execution interrupts the executing thread, but the Workflow does
+     * not check for interruption so a workflow that has started is not stopped between its steps,
+     * it runs to completion (a step that blocks interruptibly may end early). Cancellation only
+     * prevents a workflow from starting, if the thread is already interrupted, and discards the
+     * result of a workflow during which the thread was interrupted, the effects of its steps
+     * are not undone.
      *
      * @return
+     * @throws InterruptedException if the execution was cancelled
      */
     @Override
     public R call() throws Exception {
-        if (this.workflow.execute((C)this.processorContext)) {
+        if (Thread.interrupted()) {
+            throw new InterruptedException("Workflow cancelled before execution");
+        }
+        boolean executed = this.workflow.execute((C)this.processorContext);
+        if (Thread.interrupted()) {
+            throw new InterruptedException("Workflow cancelled during execution");
+        }
+        if (executed) {
             return extractResultFromContext(processorContext);
         }
 